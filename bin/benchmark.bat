@@ -0,0 +1,2 @@
+@echo off
+java -cp %~dp0\..\target\botcraft-1.0.0.jar gr.uoa.di.thanos.botcraft.benchmarks.OffscreenBenchmark %*
@@ -0,0 +1,2 @@
+#!/bin/bash
+java -cp $( dirname "${BASH_SOURCE[0]}" )/../target/botcraft-1.0.0.jar gr.uoa.di.thanos.botcraft.benchmarks.OffscreenBenchmark "$@"
@@ -0,0 +1,181 @@
+package gr.uoa.di.thanos.botcraft.benchmarks;
+
+import gr.uoa.di.thanos.botcraft.geometry.Matrix4f;
+import gr.uoa.di.thanos.botcraft.geometry.Vector;
+import gr.uoa.di.thanos.botcraft.geometry.Vector3f;
+import gr.uoa.di.thanos.botcraft.geometry.VectorArrays;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Micro benchmark comparing the bulk operations of {@link VectorArrays} to the same operations on one vector object at a time. Each operation is repeated enough times for the JIT compiler to compile it before the minimum time is taken.
+ * 
+ * @author thanos
+ */
+public class GeometryBenchmark {
+	private static enum Operation {
+		TRANSFORM, NORMALIZE, DOT, CROSS, DISTANCE
+	}
+
+	private static final int DEFAULT_VECTORS = 65536;
+	private static final int DEFAULT_RUNS = 200;
+	private static final long SEED = 0L;
+	private static final Logger LOGGER = Logger.getLogger(GeometryBenchmark.class.getName());
+
+	private final int vectors;
+	private final float[] xs;
+	private final float[] ys;
+	private final float[] zs;
+	private final float[] otherXs;
+	private final float[] otherYs;
+	private final float[] otherZs;
+	private final float[] resultXs;
+	private final float[] resultYs;
+	private final float[] resultZs;
+	private final float[] resultWs;
+	private final Vector[] objects;
+	private final Vector[] otherObjects;
+	private final Vector[] resultObjects;
+	private final Vector3f[] mutableObjects;
+	private final Vector3f[] mutableResultObjects;
+	private final float[] results;
+	private final Matrix4f matrix;
+	private float checksum;
+
+	/**
+	 * Run a geometry benchmark in standalone mode.
+	 * 
+	 * @param arguments
+	 *            optional number of vectors and number of runs
+	 */
+	public static void main(final String[] arguments) {
+		final int vectors = (arguments.length > 0) ? Integer.parseInt(arguments[0]) : DEFAULT_VECTORS;
+		final int runs = (arguments.length > 1) ? Integer.parseInt(arguments[1]) : DEFAULT_RUNS;
+		final GeometryBenchmark benchmark = new GeometryBenchmark(vectors);
+		for (final Operation operation : Operation.values()) {
+			final long objectTime = benchmark.time(operation, false, runs);
+			final long bulkTime = benchmark.time(operation, true, runs);
+			LOGGER.info(operation + " of " + vectors + " vectors, per object min " + nanosToMicros(objectTime) + " us, bulk min " + nanosToMicros(bulkTime) + " us, speedup " + String.format("%1$.1f", objectTime / (double) Math.max(bulkTime, 1L)));
+		}
+		LOGGER.info("Checksum " + benchmark.checksum); // keeps results alive
+	}
+
+	private static float nanosToMicros(final long nanos) {
+		return nanos / (float) TimeUnit.NANOSECONDS.convert(1L, TimeUnit.MICROSECONDS);
+	}
+
+	/**
+	 * Construct a new geometry benchmark.
+	 * 
+	 * @param vectors
+	 *            the number of vectors to operate on
+	 */
+	public GeometryBenchmark(final int vectors) {
+		if (vectors <= 0) {
+			throw new IllegalArgumentException("Vectors must be positive");
+		}
+		this.vectors = vectors;
+		final Random random = new Random(SEED);
+		xs = new float[vectors];
+		ys = new float[vectors];
+		zs = new float[vectors];
+		otherXs = new float[vectors];
+		otherYs = new float[vectors];
+		otherZs = new float[vectors];
+		resultXs = new float[vectors];
+		resultYs = new float[vectors];
+		resultZs = new float[vectors];
+		resultWs = new float[vectors];
+		results = new float[vectors];
+		objects = new Vector[vectors];
+		otherObjects = new Vector[vectors];
+		resultObjects = new Vector[vectors];
+		mutableObjects = new Vector3f[vectors];
+		mutableResultObjects = new Vector3f[vectors];
+		for (int i = 0; i < vectors; i++) {
+			xs[i] = random.nextFloat() + 1.0f; // never zero, so that per object normalization does not fail
+			ys[i] = random.nextFloat();
+			zs[i] = random.nextFloat();
+			otherXs[i] = random.nextFloat();
+			otherYs[i] = random.nextFloat();
+			otherZs[i] = random.nextFloat();
+			objects[i] = new Vector(xs[i], ys[i], zs[i]);
+			otherObjects[i] = new Vector(otherXs[i], otherYs[i], otherZs[i]);
+			mutableObjects[i] = new Vector3f(xs[i], ys[i], zs[i]);
+			mutableResultObjects[i] = new Vector3f();
+		}
+		matrix = new Matrix4f().perspectiveProjection(1.0f, 1.0f, 1.0f, 100.0f).translate(0.0f, 0.0f, -10.0f).rotate(0.5f, 1.0f, 1.0f, 0.0f);
+		checksum = 0.0f;
+	}
+
+	private long time(final Operation operation, final boolean bulk, final int runs) {
+		long min = Long.MAX_VALUE;
+		for (int i = 0; i < runs; i++) {
+			final long start = System.nanoTime();
+			if (bulk) {
+				runBulk(operation);
+			} else {
+				runPerObject(operation);
+			}
+			min = Math.min(min, System.nanoTime() - start);
+			checksum += results[i % vectors] + resultXs[i % vectors] + ((resultObjects[i % vectors] == null) ? 0.0f : resultObjects[i % vectors].getX()) + mutableResultObjects[i % vectors].getX();
+		}
+		return min;
+	}
+
+	private void runBulk(final Operation operation) {
+		switch (operation) {
+		case TRANSFORM:
+			VectorArrays.transform(matrix, xs, ys, zs, resultXs, resultYs, resultZs, resultWs, 0, vectors);
+			break;
+		case NORMALIZE:
+			VectorArrays.normalize(xs, ys, zs, resultXs, resultYs, resultZs, 0, vectors);
+			break;
+		case DOT:
+			VectorArrays.dot(xs, ys, zs, otherXs, otherYs, otherZs, results, 0, vectors);
+			break;
+		case CROSS:
+			VectorArrays.cross(xs, ys, zs, otherXs, otherYs, otherZs, resultXs, resultYs, resultZs, 0, vectors);
+			break;
+		case DISTANCE:
+			VectorArrays.distance(xs, ys, zs, otherXs, otherYs, otherZs, results, 0, vectors);
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown operation " + operation);
+		}
+	}
+
+	private void runPerObject(final Operation operation) {
+		switch (operation) {
+		case TRANSFORM: // Matrix does not transform vectors, so the mutable types are compared
+			for (int i = 0; i < vectors; i++) {
+				mutableResultObjects[i].transform(matrix, mutableObjects[i]);
+			}
+			break;
+		case NORMALIZE:
+			for (int i = 0; i < vectors; i++) {
+				resultObjects[i] = objects[i].normalize();
+			}
+			break;
+		case DOT:
+			for (int i = 0; i < vectors; i++) {
+				results[i] = objects[i].dot(otherObjects[i]);
+			}
+			break;
+		case CROSS:
+			for (int i = 0; i < vectors; i++) {
+				resultObjects[i] = objects[i].cross(otherObjects[i]);
+			}
+			break;
+		case DISTANCE:
+			for (int i = 0; i < vectors; i++) {
+				results[i] = otherObjects[i].subtract(objects[i]).length();
+			}
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown operation " + operation);
+		}
+	}
+}
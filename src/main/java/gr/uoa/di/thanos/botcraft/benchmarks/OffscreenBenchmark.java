@@ -0,0 +1,255 @@
+package gr.uoa.di.thanos.botcraft.benchmarks;
+
+import gr.uoa.di.thanos.botcraft.etc.configuration.Configuration;
+import gr.uoa.di.thanos.botcraft.game.Map;
+import gr.uoa.di.thanos.botcraft.game.Terrain;
+import gr.uoa.di.thanos.botcraft.game.Tile;
+import gr.uoa.di.thanos.botcraft.geometry.Matrix4f;
+import gr.uoa.di.thanos.botcraft.renderers.ColorComponent;
+import gr.uoa.di.thanos.botcraft.renderers.MapScene;
+import gr.uoa.di.thanos.botcraft.renderers.RendererException;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import com.jogamp.common.nio.Buffers;
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL3;
+import com.jogamp.opengl.GLAutoDrawable;
+import com.jogamp.opengl.GLCapabilities;
+import com.jogamp.opengl.GLDrawableFactory;
+import com.jogamp.opengl.GLEventListener;
+import com.jogamp.opengl.GLException;
+import com.jogamp.opengl.GLOffscreenAutoDrawable;
+import com.jogamp.opengl.GLProfile;
+import com.jogamp.opengl.GLRunnable;
+
+/**
+ * Headless benchmark rendering a map into an offscreen (FBO backed) drawable. No window is needed, so it can run on build servers, including ones with only a software rasterizer (e.g. Mesa with <code>LIBGL_ALWAYS_SOFTWARE=1</code>). Frames can be read back for checksum comparison.
+ *
+ * @author thanos
+ */
+public class OffscreenBenchmark implements GLEventListener, AutoCloseable {
+	private static final int DEFAULT_WIDTH = 640;
+	private static final int DEFAULT_HEIGHT = 480;
+	private static final int DEFAULT_FRAMES = 100;
+	private static final int MAP_SIZE = 200;
+	private static final int KERNEL_RUNS = 10;
+	private static final float FIELD_OF_VIEW_X = 114.0f * (float) Math.PI / 180.0f; // 114 degrees in rads
+	private static final float FIELD_OF_VIEW_Y = 135.0f * (float) Math.PI / 180.0f; // 135 degrees in rads
+	private static final float NEAR = 1.0f;
+	private static final float ELEVATION = ((float) Math.PI) / 4.0f;
+	private static final float DISTANCE = 50.0f;
+	private static final String CHECKSUM_FORMAT = "%1$08x";
+	private static final Logger LOGGER = Logger.getLogger(OffscreenBenchmark.class.getName());
+
+	private final Configuration configuration;
+	private final Map map;
+	private final GLOffscreenAutoDrawable drawable;
+	private final Matrix4f transformation;
+	private final ByteBuffer frame;
+	private MapScene scene;
+	private RendererException error;
+
+	/**
+	 * Run an offscreen benchmark in standalone mode.
+	 *
+	 * @param arguments
+	 *            optional width, height, number of frames and expected hexadecimal checksum of the last frame
+	 * @throws RendererException
+	 *             if any errors occur
+	 */
+	public static void main(final String[] arguments) throws RendererException {
+		final int width = (arguments.length > 0) ? Integer.parseInt(arguments[0]) : DEFAULT_WIDTH;
+		final int height = (arguments.length > 1) ? Integer.parseInt(arguments[1]) : DEFAULT_HEIGHT;
+		final int frames = (arguments.length > 2) ? Integer.parseInt(arguments[2]) : DEFAULT_FRAMES;
+		final String expectedChecksum = (arguments.length > 3) ? arguments[3] : null;
+		try (final OffscreenBenchmark benchmark = new OffscreenBenchmark(new Configuration(), createMap(), width, height)) {
+			long min = Long.MAX_VALUE;
+			long max = 0L;
+			long total = 0L;
+			for (int i = 0; i < frames; i++) {
+				final long time = benchmark.renderFrame();
+				min = Math.min(min, time);
+				max = Math.max(max, time);
+				total += time;
+			}
+			final String checksum = String.format(CHECKSUM_FORMAT, benchmark.checksum());
+			for (final java.util.Map.Entry<String, Long> kernel : benchmark.profile(KERNEL_RUNS).entrySet()) {
+				LOGGER.info("Kernel " + kernel.getKey() + " device time min " + nanosToMillis(kernel.getValue()) + " ms");
+			}
+			LOGGER.info("Rendered " + frames + " frames of " + width + " x " + height + " pixels, frame time min " + nanosToMillis(min) + " ms, avg " + nanosToMillis(total / Math.max(frames, 1)) + " ms, max " + nanosToMillis(max) + " ms, last frame checksum " + checksum);
+			if ((expectedChecksum != null) && (!expectedChecksum.equalsIgnoreCase(checksum))) {
+				LOGGER.severe("Last frame checksum " + checksum + " does not match expected checksum " + expectedChecksum);
+				System.exit(1);
+			}
+		}
+	}
+
+	private static Map createMap() {
+		final Map map = new Map(MAP_SIZE, MAP_SIZE, Terrain.ROCK);
+		for (int latitude = 0; latitude < map.getLatitudinalSize(); latitude += 9) {
+			for (int longitude = 0; longitude < map.getLongitudinalSize(); longitude += 11) {
+				final int n = latitude * map.getLongitudinalSize() + longitude;
+				map.setTile(latitude, longitude, new Tile(n % 8.0f, Terrain.values()[n % Terrain.values().length]));
+			}
+		}
+		return map;
+	}
+
+	private static float nanosToMillis(final long nanos) {
+		return nanos / (float) TimeUnit.NANOSECONDS.convert(1L, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Construct a new offscreen benchmark.
+	 *
+	 * @param configuration
+	 *            the configuration to use
+	 * @param map
+	 *            the map to render
+	 * @param width
+	 *            the width of the offscreen drawable in pixels
+	 * @param height
+	 *            the height of the offscreen drawable in pixels
+	 * @throws RendererException
+	 *             if any errors occur
+	 */
+	public OffscreenBenchmark(final Configuration configuration, final Map map, final int width, final int height) throws RendererException {
+		Objects.requireNonNull(configuration, "Configuration must not be null");
+		Objects.requireNonNull(map, "Map must not be null");
+		if (width <= 0) {
+			throw new IllegalArgumentException("Width must be positive");
+		}
+		if (height <= 0) {
+			throw new IllegalArgumentException("Height must be positive");
+		}
+		this.configuration = configuration;
+		this.map = map;
+		final GLProfile profile = GLProfile.get(GLProfile.GL3);
+		final GLCapabilities capabilities = new GLCapabilities(profile);
+		capabilities.setOnscreen(false);
+		capabilities.setFBO(true);
+		capabilities.setDoubleBuffered(false);
+		capabilities.setDepthBits(configuration.getDepthBufferBits());
+		try {
+			drawable = GLDrawableFactory.getFactory(profile).createOffscreenAutoDrawable(null, capabilities, null, width, height);
+		} catch (final GLException e) {
+			throw new RendererException("Error creating offscreen drawable", e);
+		}
+		final float far = DISTANCE + (float) Math.sqrt(Math.pow(map.getLatitudinalSize(), 2.0f) + Math.pow(map.getLongitudinalSize(), 2.0f));
+		transformation = new Matrix4f().perspectiveProjection(FIELD_OF_VIEW_X, FIELD_OF_VIEW_Y, NEAR, far).translate(0.0f, 0.0f, -DISTANCE).rotate(ELEVATION, 1.0f, 0.0f, 0.0f).translate(-map.getLongitudinalSize() / 2.0f, 0.0f, map.getLatitudinalSize() / 2.0f);
+		frame = Buffers.newDirectByteBuffer(width * height * ColorComponent.values().length);
+		drawable.addGLEventListener(this);
+		drawable.display(); // initializes the scene
+		if (error != null) {
+			drawable.destroy();
+			throw error;
+		}
+		LOGGER.info("Initialized offscreen drawable with profile " + drawable.getGLProfile().getName() + " and renderer " + drawable.getContext().getGLVersion());
+	}
+
+	@Override
+	public void close() {
+		drawable.destroy();
+	}
+
+	/**
+	 * Render a single frame and wait for it to complete.
+	 *
+	 * @return the time needed to render the frame in nanoseconds
+	 */
+	public long renderFrame() {
+		final long start = System.nanoTime();
+		drawable.display();
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * Profile the calculations of the scene rendered.
+	 *
+	 * @param runs
+	 *            the number of times to execute each calculation
+	 * @return the minimum time spent by each calculation in nanoseconds, by calculation name
+	 */
+	public java.util.Map<String, Long> profile(final int runs) {
+		final java.util.Map<String, Long> times = new LinkedHashMap<String, Long>();
+		drawable.invoke(true, new GLRunnable() {
+			@Override
+			public boolean run(final GLAutoDrawable drawable) {
+				times.putAll(scene.profile(drawable.getGL().getGL3(), runs));
+				return true;
+			}
+		});
+		return times;
+	}
+
+	/**
+	 * Get the pixels of the last frame rendered.
+	 *
+	 * @return a read only buffer containing the RGBA pixels of the last frame rendered, bottom row first
+	 */
+	public ByteBuffer readFrame() {
+		drawable.invoke(true, new GLRunnable() {
+			@Override
+			public boolean run(final GLAutoDrawable drawable) {
+				final GL3 gl = drawable.getGL().getGL3();
+				frame.clear();
+				gl.glPixelStorei(GL.GL_PACK_ALIGNMENT, 1);
+				gl.glReadPixels(0, 0, drawable.getSurfaceWidth(), drawable.getSurfaceHeight(), GL.GL_RGBA, GL.GL_UNSIGNED_BYTE, frame);
+				return true;
+			}
+		});
+		return frame.asReadOnlyBuffer();
+	}
+
+	/**
+	 * Calculate the checksum of the last frame rendered.
+	 *
+	 * @return the CRC32 checksum of the pixels of the last frame rendered
+	 */
+	public long checksum() {
+		final ByteBuffer pixels = readFrame();
+		final byte[] bytes = new byte[pixels.remaining()];
+		pixels.get(bytes);
+		final CRC32 crc = new CRC32();
+		crc.update(bytes);
+		return crc.getValue();
+	}
+
+	@Override
+	public void display(final GLAutoDrawable drawable) {
+		if (scene == null) {
+			return;
+		}
+		final GL3 gl = drawable.getGL().getGL3();
+		scene.render(gl, transformation);
+		gl.glFinish(); // wait for the frame to complete so that frame time is measured accurately
+	}
+
+	@Override
+	public void dispose(final GLAutoDrawable drawable) {
+		if (scene != null) {
+			scene.dispose(drawable.getGL().getGL3());
+		}
+	}
+
+	@Override
+	public void init(final GLAutoDrawable drawable) {
+		final GL3 gl = drawable.getGL().getGL3();
+		try {
+			scene = new MapScene(gl, configuration, map);
+		} catch (final RendererException e) {
+			error = e;
+		}
+	}
+
+	@Override
+	public void reshape(final GLAutoDrawable drawable, final int x, final int y, final int width, final int height) {
+		drawable.getGL().getGL3().glViewport(0, 0, width, height);
+	}
+}
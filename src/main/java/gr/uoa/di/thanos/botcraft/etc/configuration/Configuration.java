@@ -2,6 +2,8 @@ package gr.uoa.di.thanos.botcraft.etc.configuration;
 
 import gr.uoa.di.thanos.botcraft.etc.utilities.SimpleGraphicsConfigTemplate;
 import gr.uoa.di.thanos.botcraft.renderers.ColorComponent;
+import gr.uoa.di.thanos.botcraft.renderers.AntialiasingType;
+import gr.uoa.di.thanos.botcraft.renderers.ComputeBackendType;
 
 import java.awt.Container;
 import java.awt.DisplayMode;
@@ -40,6 +42,16 @@ public class Configuration {
 	 */
 	public static final int MAX_SAMPLE_BUFFERS = 16;
 
+	/**
+	 * Minimum device memory budget for terrain in megabytes.
+	 */
+	public static final int MIN_TERRAIN_MEMORY_BUDGET = 16;
+
+	/**
+	 * Maximum device memory budget for terrain in megabytes.
+	 */
+	public static final int MAX_TERRAIN_MEMORY_BUDGET = 65536;
+
 	private static final String LANGUAGE = "language";
 	private static final String RESOURCE_BUNDLE = "gr.uoa.di.thanos.botcraft.i18n.botcraft";
 	private static final String ABOUT = "/gr/uoa/di/thanos/botcraft/about/botcraft-%1$s.html";
@@ -58,8 +70,17 @@ public class Configuration {
 	private static final String FRAME_BUFFER_BITS_COLOR_COMPONENT = "frameBufferBits.%1$s";
 	private static final String DEPTH_BUFFER_BITS = "depthBufferBits";
 	private static final String SAMPLE_BUFFERS = "sampleBuffers";
+	private static final String ANTIALIASING = "antialiasing";
 	private static final String CL_PLATFORM = "clPlatform";
 	private static final String CL_DEVICE = "clDevice";
+	private static final String MULTIPLE_CL_DEVICES = "multipleClDevices";
+	private static final String CL_LOCAL_WORK_SIZES = "clLocalWorkSizes.%1$s.%2$s.%3$08x";
+	private static final String CL_RANGES_SEPARATOR = "x";
+	private static final String CL_LOCAL_WORK_SIZES_SEPARATOR = ",";
+	private static final String TERRAIN_MEMORY_BUDGET = "terrainMemoryBudget";
+	private static final String COMPUTE_BACKEND = "computeBackend";
+	private static final String FASTEST_COMPUTE_BACKEND = "fastestComputeBackend.%1$08x";
+	private static final int DEFAULT_TERRAIN_MEMORY_BUDGET = 512;
 	private static final int MAX_FRAMES_PER_SECOND = 120;
 
 	private final Preferences preferences;
@@ -493,6 +514,33 @@ public class Configuration {
 		preferences.flush();
 	}
 
+	/**
+	 * Get the antialiasing to use.
+	 * 
+	 * @return the antialiasing to use
+	 */
+	public AntialiasingType getAntialiasing() {
+		try {
+			return AntialiasingType.valueOf(preferences.get(ANTIALIASING, AntialiasingType.MSAA.name()));
+		} catch (final IllegalArgumentException e) {
+			return AntialiasingType.MSAA;
+		}
+	}
+
+	/**
+	 * Set the antialiasing to use.
+	 * 
+	 * @param antialiasing
+	 *            the antialiasing to use
+	 * @throws BackingStoreException
+	 *             if any errors occur
+	 */
+	public void setAntialiasing(final AntialiasingType antialiasing) throws BackingStoreException {
+		Objects.requireNonNull(antialiasing, "Antialiasing must not be null");
+		preferences.put(ANTIALIASING, antialiasing.name());
+		preferences.flush();
+	}
+
 	/**
 	 * Get the OpenCL platform to use.
 	 * 
@@ -548,6 +596,219 @@ public class Configuration {
 		preferences.flush();
 	}
 
+	/**
+	 * Check whether to split calculations across multiple OpenCL devices.
+	 * 
+	 * @return <code>true</code> to split calculations across multiple OpenCL devices, <code>false</code> to use only the OpenCL device selected
+	 */
+	public boolean isMultipleClDevices() {
+		return preferences.getBoolean(MULTIPLE_CL_DEVICES, false);
+	}
+
+	/**
+	 * Set whether to split calculations across multiple OpenCL devices.
+	 * 
+	 * @param multipleClDevices
+	 *            <code>true</code> to split calculations across multiple OpenCL devices, <code>false</code> to use only the OpenCL device selected
+	 * @throws BackingStoreException
+	 *             if any errors occur
+	 */
+	public void setMultipleClDevices(final boolean multipleClDevices) throws BackingStoreException {
+		preferences.putBoolean(MULTIPLE_CL_DEVICES, multipleClDevices);
+		preferences.flush();
+	}
+
+	/**
+	 * Get the OpenCL devices helping the OpenCL device selected with calculations. Helper devices may belong to any OpenCL platform and need not support memory sharing with OpenGL.
+	 * 
+	 * @return the OpenCL devices to help the OpenCL device selected (empty unless splitting calculations across multiple OpenCL devices)
+	 */
+	public List<CLDevice> getHelperClDevices() {
+		final List<CLDevice> helperClDevices = new ArrayList<CLDevice>();
+		if (isMultipleClDevices()) {
+			final CLDevice clDevice = getClDevice();
+			for (final CLPlatform clPlatform : CLPlatform.listCLPlatforms()) {
+				for (final CLDevice helperClDevice : clPlatform.listCLDevices()) {
+					if (helperClDevice.isCompilerAvailable() && (!helperClDevice.equals(clDevice))) {
+						helperClDevices.add(helperClDevice);
+					}
+				}
+			}
+		}
+		return helperClDevices;
+	}
+
+	/**
+	 * Get the OpenCL local work sizes tuned for a specific kernel on a specific OpenCL device over specific ranges of work items.
+	 * 
+	 * @param clDevice
+	 *            the OpenCL device the kernel runs on
+	 * @param kernel
+	 *            the name of the kernel
+	 * @param ranges
+	 *            the ranges of work items the kernel was tuned on, rounded up to powers of two (one per dimension)
+	 * @return the local work sizes tuned for the given kernel on the given OpenCL device over the given ranges (or <code>null</code> if the kernel has not been tuned on the device over these ranges yet)
+	 */
+	public long[] getClLocalWorkSizes(final CLDevice clDevice, final String kernel, final long[] ranges) {
+		Objects.requireNonNull(clDevice, "OpenCL device must not be null");
+		Objects.requireNonNull(kernel, "Kernel must not be null");
+		Objects.requireNonNull(ranges, "Ranges must not be null");
+		if (ranges.length == 0) {
+			throw new IllegalArgumentException("Ranges must not be empty");
+		}
+		final int dimensions = ranges.length;
+		final String value = preferences.get(getClLocalWorkSizesKey(clDevice, kernel, ranges), null);
+		if (value == null) {
+			return null;
+		}
+		final String[] values = value.split(CL_LOCAL_WORK_SIZES_SEPARATOR);
+		if (values.length != dimensions) {
+			return null;
+		}
+		final long[] localWorkSizes = new long[dimensions];
+		try {
+			for (int i = 0; i < dimensions; i++) {
+				localWorkSizes[i] = Long.parseLong(values[i]);
+				if (localWorkSizes[i] <= 0L) {
+					return null;
+				}
+			}
+		} catch (final NumberFormatException e) {
+			return null;
+		}
+		return localWorkSizes;
+	}
+
+	/**
+	 * Set the OpenCL local work sizes tuned for a specific kernel on a specific OpenCL device over specific ranges of work items.
+	 * 
+	 * @param clDevice
+	 *            the OpenCL device the kernel runs on
+	 * @param kernel
+	 *            the name of the kernel
+	 * @param ranges
+	 *            the ranges of work items the kernel was tuned on, rounded up to powers of two (one per dimension)
+	 * @param localWorkSizes
+	 *            the local work sizes tuned for the given kernel on the given OpenCL device over the given ranges (one per dimension)
+	 * @throws BackingStoreException
+	 *             if any errors occur
+	 */
+	public void setClLocalWorkSizes(final CLDevice clDevice, final String kernel, final long[] ranges, final long[] localWorkSizes) throws BackingStoreException {
+		Objects.requireNonNull(clDevice, "OpenCL device must not be null");
+		Objects.requireNonNull(kernel, "Kernel must not be null");
+		Objects.requireNonNull(ranges, "Ranges must not be null");
+		Objects.requireNonNull(localWorkSizes, "Local work sizes must not be null");
+		if (localWorkSizes.length == 0) {
+			throw new IllegalArgumentException("Local work sizes must not be empty");
+		}
+		if (ranges.length != localWorkSizes.length) {
+			throw new IllegalArgumentException("Ranges and local work sizes must have the same dimensions");
+		}
+		final StringBuilder value = new StringBuilder();
+		for (final long localWorkSize : localWorkSizes) {
+			if (localWorkSize <= 0L) {
+				throw new IllegalArgumentException("Local work sizes must be positive");
+			}
+			value.append((value.length() == 0) ? "" : CL_LOCAL_WORK_SIZES_SEPARATOR).append(localWorkSize);
+		}
+		preferences.put(getClLocalWorkSizesKey(clDevice, kernel, ranges), value.toString());
+		preferences.flush();
+	}
+
+	/**
+	 * Get the device memory budget for terrain. Maps whose terrain does not fit in the budget are streamed chunk by chunk.
+	 * 
+	 * @return the device memory budget for terrain in megabytes
+	 */
+	public int getTerrainMemoryBudget() {
+		final int terrainMemoryBudget = preferences.getInt(TERRAIN_MEMORY_BUDGET, DEFAULT_TERRAIN_MEMORY_BUDGET);
+		return ((terrainMemoryBudget < MIN_TERRAIN_MEMORY_BUDGET) || (terrainMemoryBudget > MAX_TERRAIN_MEMORY_BUDGET)) ? DEFAULT_TERRAIN_MEMORY_BUDGET : terrainMemoryBudget;
+	}
+
+	/**
+	 * Set the device memory budget for terrain.
+	 * 
+	 * @param terrainMemoryBudget
+	 *            the device memory budget for terrain in megabytes
+	 * @throws BackingStoreException
+	 *             if any errors occur
+	 */
+	public void setTerrainMemoryBudget(final int terrainMemoryBudget) throws BackingStoreException {
+		if ((terrainMemoryBudget < MIN_TERRAIN_MEMORY_BUDGET) || (terrainMemoryBudget > MAX_TERRAIN_MEMORY_BUDGET)) {
+			throw new IllegalArgumentException("Terrain memory budget must be between " + MIN_TERRAIN_MEMORY_BUDGET + " and " + MAX_TERRAIN_MEMORY_BUDGET + " inclusive");
+		}
+		preferences.putInt(TERRAIN_MEMORY_BUDGET, terrainMemoryBudget);
+		preferences.flush();
+	}
+
+	/**
+	 * Get the compute backend calculating for renderers.
+	 * 
+	 * @return the compute backend calculating for renderers
+	 */
+	public ComputeBackendType getComputeBackend() {
+		try {
+			return ComputeBackendType.valueOf(preferences.get(COMPUTE_BACKEND, ComputeBackendType.AUTO.name()));
+		} catch (final IllegalArgumentException e) {
+			return ComputeBackendType.AUTO;
+		}
+	}
+
+	/**
+	 * Set the compute backend calculating for renderers.
+	 * 
+	 * @param computeBackend
+	 *            the compute backend calculating for renderers
+	 * @throws BackingStoreException
+	 *             if any errors occur
+	 */
+	public void setComputeBackend(final ComputeBackendType computeBackend) throws BackingStoreException {
+		Objects.requireNonNull(computeBackend, "Compute backend must not be null");
+		preferences.put(COMPUTE_BACKEND, computeBackend.name());
+		preferences.flush();
+	}
+
+	/**
+	 * Get the fastest compute backend measured with a specific OpenCL device on this host.
+	 * 
+	 * @param clDevice
+	 *            the OpenCL device the OpenCL compute backend was measured on
+	 * @return the fastest compute backend measured with the given OpenCL device on this host (or <code>null</code> if the compute backends have not been measured yet)
+	 */
+	public ComputeBackendType getFastestComputeBackend(final CLDevice clDevice) {
+		Objects.requireNonNull(clDevice, "OpenCL device must not be null");
+		final String value = preferences.get(getFastestComputeBackendKey(clDevice), null);
+		if (value == null) {
+			return null;
+		}
+		try {
+			final ComputeBackendType fastestComputeBackend = ComputeBackendType.valueOf(value);
+			return (fastestComputeBackend == ComputeBackendType.AUTO) ? null : fastestComputeBackend;
+		} catch (final IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Set the fastest compute backend measured with a specific OpenCL device on this host.
+	 * 
+	 * @param clDevice
+	 *            the OpenCL device the OpenCL compute backend was measured on
+	 * @param fastestComputeBackend
+	 *            the fastest compute backend measured with the given OpenCL device on this host
+	 * @throws BackingStoreException
+	 *             if any errors occur
+	 */
+	public void setFastestComputeBackend(final CLDevice clDevice, final ComputeBackendType fastestComputeBackend) throws BackingStoreException {
+		Objects.requireNonNull(clDevice, "OpenCL device must not be null");
+		Objects.requireNonNull(fastestComputeBackend, "Fastest compute backend must not be null");
+		if (fastestComputeBackend == ComputeBackendType.AUTO) {
+			throw new IllegalArgumentException("Fastest compute backend must not be auto");
+		}
+		preferences.put(getFastestComputeBackendKey(clDevice), fastestComputeBackend.name());
+		preferences.flush();
+	}
+
 	/**
 	 * Reset this configuration to default values.
 	 * 
@@ -559,6 +820,23 @@ public class Configuration {
 		preferences.flush();
 	}
 
+	private String getClLocalWorkSizesKey(final CLDevice clDevice, final String kernel, final long[] ranges) {
+		final StringBuilder key = new StringBuilder();
+		for (final long range : ranges) {
+			if (range <= 0L) {
+				throw new IllegalArgumentException("Ranges must be positive");
+			}
+			key.append((key.length() == 0) ? "" : CL_RANGES_SEPARATOR).append(range);
+		}
+		// device names are not unique across platforms and tuning results do not survive driver updates
+		return String.format(CL_LOCAL_WORK_SIZES, kernel, key, (clDevice.getPlatform().getName() + clDevice.getName() + clDevice.getDriverVersion()).hashCode());
+	}
+
+	private String getFastestComputeBackendKey(final CLDevice clDevice) {
+		// Java backends compete with the OpenCL device, so the result also depends on the processors of the host
+		return String.format(FASTEST_COMPUTE_BACKEND, (clDevice.getPlatform().getName() + clDevice.getName() + clDevice.getDriverVersion() + Runtime.getRuntime().availableProcessors()).hashCode());
+	}
+
 	private GraphicsDevice getScreen(final String id) {
 		for (final GraphicsDevice screen : GraphicsEnvironment.getLocalGraphicsEnvironment().getScreenDevices()) {
 			if (screen.getIDstring().equals(id)) {
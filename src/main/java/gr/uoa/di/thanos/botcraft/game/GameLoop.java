@@ -0,0 +1,248 @@
+package gr.uoa.di.thanos.botcraft.game;
+
+import gr.uoa.di.thanos.botcraft.profiling.Profiler;
+import gr.uoa.di.thanos.botcraft.profiling.Span;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A game loop advancing a simulation at a fixed rate on its own thread, independently of rendering. After each tick the simulation writes a snapshot of its state (an array of floats), and the renderer interpolates between the last two snapshots, so motion is smooth at any frame rate and the renderer can drop frames under load without slowing the game. If the simulation falls behind, it runs several ticks in a row to catch up, but never more than a maximum number, dropping the rest of the time, so that a simulation slower than real time cannot fall further and further behind (spiral of death).
+ *
+ * @author thanos
+ */
+public class GameLoop implements AutoCloseable {
+	/**
+	 * A simulation advanced by a game loop.
+	 *
+	 * @author thanos
+	 */
+	public interface Simulation {
+		/**
+		 * Advance the simulation by one tick. Called on the thread of the game loop.
+		 *
+		 * @param dt
+		 *            the duration of a tick in fractional seconds
+		 * @param state
+		 *            the array to write the snapshot of the state of the simulation after the tick to
+		 */
+		void tick(float dt, float[] state);
+	}
+
+	private static final String THREAD_NAME = "Simulation";
+	private static final Logger LOGGER = Logger.getLogger(GameLoop.class.getName());
+
+	private final Simulation simulation;
+	private final long tickTime;
+	private final int maxCatchUpTicks;
+	private final Thread thread;
+	private final Object lock;
+	private float[] previous;
+	private float[] current;
+	private float[] next;
+	private long published;
+	private volatile boolean running;
+	private volatile boolean paused;
+	private volatile long ticks;
+	private volatile long droppedTicks;
+	private volatile long simulationTime;
+	private volatile RuntimeException failure;
+
+	/**
+	 * Construct a new game loop. The loop does not run until started.
+	 *
+	 * @param simulation
+	 *            the simulation to advance
+	 * @param state
+	 *            the initial state of the simulation (its length being the length of all snapshots)
+	 * @param ticksPerSecond
+	 *            the number of ticks to advance the simulation by per second
+	 * @param maxCatchUpTicks
+	 *            the maximum number of ticks to run in a row to catch up
+	 */
+	public GameLoop(final Simulation simulation, final float[] state, final int ticksPerSecond, final int maxCatchUpTicks) {
+		this.simulation = Objects.requireNonNull(simulation, "Simulation must not be null");
+		Objects.requireNonNull(state, "State must not be null");
+		if (ticksPerSecond <= 0) {
+			throw new IllegalArgumentException("Ticks per second must be positive");
+		}
+		if (maxCatchUpTicks <= 0) {
+			throw new IllegalArgumentException("Max catch up ticks must be positive");
+		}
+		tickTime = TimeUnit.NANOSECONDS.convert(1L, TimeUnit.SECONDS) / ticksPerSecond;
+		this.maxCatchUpTicks = maxCatchUpTicks;
+		thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				loop();
+			}
+		}, THREAD_NAME);
+		thread.setDaemon(true);
+		lock = new Object();
+		previous = state.clone();
+		current = state.clone();
+		next = state.clone();
+		published = System.nanoTime();
+		running = false;
+		paused = false;
+		ticks = 0L;
+		droppedTicks = 0L;
+		simulationTime = 0L;
+		failure = null;
+	}
+
+	/**
+	 * Start running the simulation.
+	 */
+	public void start() {
+		running = true;
+		thread.start();
+	}
+
+	/**
+	 * Stop running the simulation and wait for the current tick to complete.
+	 */
+	@Override
+	public void close() {
+		running = false;
+		LockSupport.unpark(thread);
+		try {
+			thread.join();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		LOGGER.info("Simulated " + ticks + " ticks, average tick time " + (getAverageTickTime() / (float) TimeUnit.NANOSECONDS.convert(1L, TimeUnit.MILLISECONDS)) + " ms, dropped " + droppedTicks + " ticks");
+	}
+
+	/**
+	 * Check whether the simulation is paused.
+	 *
+	 * @return <code>true</code> if the simulation is paused, <code>false</code> otherwise
+	 */
+	public boolean isPaused() {
+		return paused;
+	}
+
+	/**
+	 * Pause or resume the simulation. Time spent paused is not caught up.
+	 *
+	 * @param paused
+	 *            <code>true</code> to pause the simulation, <code>false</code> to resume it
+	 */
+	public void setPaused(final boolean paused) {
+		this.paused = paused;
+		LockSupport.unpark(thread);
+	}
+
+	/**
+	 * Check whether the simulation is running. The simulation stops running when closed or when a tick fails.
+	 *
+	 * @return <code>true</code> if the simulation is running, <code>false</code> otherwise
+	 */
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * Get the error that stopped the simulation, so that its owner can surface it.
+	 *
+	 * @return the error thrown by the tick that stopped the simulation (or <code>null</code> if no tick has failed)
+	 */
+	public RuntimeException getFailure() {
+		return failure;
+	}
+
+	/**
+	 * Get the last two snapshots of the state of the simulation, to interpolate between.
+	 *
+	 * @param previous
+	 *            the array to copy the snapshot before the last one to
+	 * @param current
+	 *            the array to copy the last snapshot to
+	 * @return the fraction of a tick elapsed since the last snapshot (between 0 and 1), to interpolate by
+	 */
+	public float getStates(final float[] previous, final float[] current) {
+		Objects.requireNonNull(previous, "Previous must not be null");
+		Objects.requireNonNull(current, "Current must not be null");
+		synchronized (lock) {
+			System.arraycopy(this.previous, 0, previous, 0, this.previous.length);
+			System.arraycopy(this.current, 0, current, 0, this.current.length);
+			return paused ? 1.0f : Math.max(0.0f, Math.min((System.nanoTime() - published) / (float) tickTime, 1.0f));
+		}
+	}
+
+	/**
+	 * Get the number of ticks run so far.
+	 *
+	 * @return the number of ticks run so far
+	 */
+	public long getTicks() {
+		return ticks;
+	}
+
+	/**
+	 * Get the number of ticks dropped so far, because the simulation could not catch up.
+	 *
+	 * @return the number of ticks dropped so far
+	 */
+	public long getDroppedTicks() {
+		return droppedTicks;
+	}
+
+	/**
+	 * Get the average time spent in a tick of the simulation, measuring the throughput of the simulation alone.
+	 *
+	 * @return the average time spent in a tick of the simulation in nanoseconds
+	 */
+	public long getAverageTickTime() {
+		final long ticks = this.ticks;
+		return (ticks == 0L) ? 0L : (simulationTime / ticks);
+	}
+
+	private void loop() {
+		final float dt = tickTime / (float) TimeUnit.NANOSECONDS.convert(1L, TimeUnit.SECONDS);
+		long last = System.nanoTime();
+		long accumulator = 0L;
+		while (running) {
+			final long now = System.nanoTime();
+			accumulator += now - last;
+			last = now;
+			if (paused) {
+				accumulator = 0L;
+				LockSupport.park(this);
+				continue;
+			}
+			if (accumulator > maxCatchUpTicks * tickTime) { // too far behind to catch up
+				droppedTicks += accumulator / tickTime - maxCatchUpTicks;
+				accumulator = maxCatchUpTicks * tickTime;
+			}
+			while (accumulator >= tickTime) {
+				final long start = System.nanoTime();
+				try {
+					simulation.tick(dt, next);
+				} catch (final RuntimeException e) {
+					LOGGER.log(Level.SEVERE, "Error running simulation", e);
+					failure = e;
+					running = false;
+					return;
+				}
+				final long end = System.nanoTime();
+				simulationTime += end - start;
+				Profiler.record(Span.TICK, end - start);
+				ticks++;
+				synchronized (lock) {
+					final float[] oldest = previous;
+					previous = current;
+					current = next;
+					next = oldest;
+					published = end;
+				}
+				accumulator -= tickTime;
+			}
+			LockSupport.parkNanos(this, tickTime - accumulator);
+		}
+	}
+}
@@ -0,0 +1,353 @@
+package gr.uoa.di.thanos.botcraft.game;
+
+import gr.uoa.di.thanos.botcraft.geometry.Intersections;
+
+import java.util.Objects;
+
+/**
+ * A hierarchy of minimum and maximum altitudes over the terrain of a map (a maximum mipmap quadtree), for ray casting against it (picking, line of sight, camera collision). Level 0 bounds the surface of each tile as rendered (each tile being a fan of eight triangles around its center, with vertices averaging the altitudes of the tiles they lie between) and each level above bounds blocks of two by two cells of the level below. Rays descend the hierarchy front to back, skipping every cell they pass entirely above (or below), so only the few tiles near the point hit are tested against their triangles. Coordinates are those of the rendered map: x is the longitude, y is the altitude and z is minus the latitude. Queries allocate nothing, so a height pyramid must not be queried by multiple threads concurrently.
+ *
+ * @author thanos
+ */
+public class HeightPyramid {
+	private static final int[] TRIANGLES = {7, 4, 8, 8, 4, 5, 5, 4, 2, 2, 4, 1, 1, 4, 0, 0, 4, 3, 3, 4, 6, 6, 4, 7}; // vertices of the 3 x 3 grid of a tile, southwest first
+	private static final int GRID = 3;
+	private static final int CHILDREN = 4;
+	private static final float EPSILON = 1.0e-4f;
+
+	private final Map map;
+	private final int latitudinalSize;
+	private final int longitudinalSize;
+	private final float[] altitudes;
+	private final int[] rows;
+	private final int[] columns;
+	private final float[][] minimums;
+	private final float[][] maximums;
+	private final int[] stackLevels;
+	private final int[] stackRows;
+	private final int[] stackColumns;
+	private final float[] childEnters;
+	private final int[] childRows;
+	private final int[] childColumns;
+	private final float[] vertexXs;
+	private final float[] vertexYs;
+	private final float[] vertexZs;
+	private int hitLatitude;
+	private int hitLongitude;
+
+	/**
+	 * Construct a new height pyramid.
+	 *
+	 * @param map
+	 *            the map whose terrain to index
+	 */
+	public HeightPyramid(final Map map) {
+		this.map = Objects.requireNonNull(map, "Map must not be null");
+		latitudinalSize = map.getLatitudinalSize();
+		longitudinalSize = map.getLongitudinalSize();
+		altitudes = new float[latitudinalSize * longitudinalSize];
+		for (int latitude = 0; latitude < latitudinalSize; latitude++) {
+			for (int longitude = 0; longitude < longitudinalSize; longitude++) {
+				altitudes[latitude * longitudinalSize + longitude] = map.getTile(latitude, longitude).getAltitude();
+			}
+		}
+		int levels = 1;
+		while ((Math.max(latitudinalSize, longitudinalSize) - 1) >> (levels - 1) > 0) {
+			levels++;
+		}
+		rows = new int[levels];
+		columns = new int[levels];
+		minimums = new float[levels][];
+		maximums = new float[levels][];
+		for (int level = 0; level < levels; level++) {
+			rows[level] = ((latitudinalSize - 1) >> level) + 1;
+			columns[level] = ((longitudinalSize - 1) >> level) + 1;
+			minimums[level] = new float[rows[level] * columns[level]];
+			maximums[level] = new float[rows[level] * columns[level]];
+		}
+		stackLevels = new int[(CHILDREN - 1) * levels + 1]; // each cell popped pushes at most four children, one level down
+		stackRows = new int[stackLevels.length];
+		stackColumns = new int[stackLevels.length];
+		childEnters = new float[CHILDREN];
+		childRows = new int[CHILDREN];
+		childColumns = new int[CHILDREN];
+		vertexXs = new float[GRID * GRID];
+		vertexYs = new float[GRID * GRID];
+		vertexZs = new float[GRID * GRID];
+		update(0, 0, latitudinalSize - 1, longitudinalSize - 1);
+	}
+
+	/**
+	 * Get the map whose terrain is indexed.
+	 *
+	 * @return the map whose terrain is indexed
+	 */
+	public Map getMap() {
+		return map;
+	}
+
+	/**
+	 * Update the height pyramid after the altitude of a tile has changed. Only the cells affected are recomputed, a few per level.
+	 *
+	 * @param latitude
+	 *            the latitude of the tile changed
+	 * @param longitude
+	 *            the longitude of the tile changed
+	 */
+	public void update(final int latitude, final int longitude) {
+		if ((latitude < 0) || (latitude >= latitudinalSize)) {
+			throw new IllegalArgumentException("Latitude must be between 0 and " + (latitudinalSize - 1));
+		}
+		if ((longitude < 0) || (longitude >= longitudinalSize)) {
+			throw new IllegalArgumentException("Longitude must be between 0 and " + (longitudinalSize - 1));
+		}
+		altitudes[latitude * longitudinalSize + longitude] = map.getTile(latitude, longitude).getAltitude();
+		// vertices of a tile average the altitudes of its tiles and of one more tile on each side
+		update(Math.max(latitude - 1, 0), Math.max(longitude - 1, 0), Math.min(latitude + 1, latitudinalSize - 1), Math.min(longitude + 1, longitudinalSize - 1));
+	}
+
+	/**
+	 * Get the altitude of the terrain at a point.
+	 *
+	 * @param latitude
+	 *            the latitude of the point (clamped to the map)
+	 * @param longitude
+	 *            the longitude of the point (clamped to the map)
+	 * @return the altitude of the terrain at the given point
+	 */
+	public float getAltitude(final float latitude, final float longitude) {
+		final float x = Math.max(0.0f, Math.min(longitude, longitudinalSize));
+		final float z = -Math.max(0.0f, Math.min(latitude, latitudinalSize));
+		final float top = maximums[maximums.length - 1][0] + 1.0f;
+		final float distance = intersect(x, top, z, 0.0f, -1.0f, 0.0f, 0.0f, Float.POSITIVE_INFINITY);
+		return Float.isNaN(distance) ? minimums[minimums.length - 1][0] : (top - distance);
+	}
+
+	/**
+	 * Pick the tile a ray hits first (e.g. the tile under the mouse pointer).
+	 *
+	 * @param originX
+	 *            the x coordinate of the origin of the ray
+	 * @param originY
+	 *            the y coordinate of the origin of the ray
+	 * @param originZ
+	 *            the z coordinate of the origin of the ray
+	 * @param directionX
+	 *            the x component of the direction of the ray
+	 * @param directionY
+	 *            the y component of the direction of the ray
+	 * @param directionZ
+	 *            the z component of the direction of the ray
+	 * @param tile
+	 *            the array to write the latitude and the longitude of the tile hit to
+	 * @return <code>true</code> if the ray hits the terrain, <code>false</code> otherwise
+	 */
+	public boolean pick(final float originX, final float originY, final float originZ, final float directionX, final float directionY, final float directionZ, final int[] tile) {
+		Objects.requireNonNull(tile, "Tile must not be null");
+		if (tile.length < 2) {
+			throw new IllegalArgumentException("Tile must have room for a latitude and a longitude");
+		}
+		if (Float.isNaN(intersect(originX, originY, originZ, directionX, directionY, directionZ, 0.0f, Float.POSITIVE_INFINITY))) {
+			return false;
+		}
+		tile[0] = hitLatitude;
+		tile[1] = hitLongitude;
+		return true;
+	}
+
+	/**
+	 * Check whether a point is visible from another point, that is whether the segment between them does not hit the terrain. Hits at the very ends of the segment (e.g. of units standing on the terrain) are ignored.
+	 *
+	 * @param fromX
+	 *            the x coordinate of the first point
+	 * @param fromY
+	 *            the y coordinate of the first point
+	 * @param fromZ
+	 *            the z coordinate of the first point
+	 * @param toX
+	 *            the x coordinate of the second point
+	 * @param toY
+	 *            the y coordinate of the second point
+	 * @param toZ
+	 *            the z coordinate of the second point
+	 * @return <code>true</code> if each point is visible from the other, <code>false</code> otherwise
+	 */
+	public boolean isVisible(final float fromX, final float fromY, final float fromZ, final float toX, final float toY, final float toZ) {
+		return Float.isNaN(intersect(fromX, fromY, fromZ, toX - fromX, toY - fromY, toZ - fromZ, EPSILON, 1.0f - EPSILON));
+	}
+
+	/**
+	 * Intersect a ray with the terrain.
+	 *
+	 * @param originX
+	 *            the x coordinate of the origin of the ray
+	 * @param originY
+	 *            the y coordinate of the origin of the ray
+	 * @param originZ
+	 *            the z coordinate of the origin of the ray
+	 * @param directionX
+	 *            the x component of the direction of the ray
+	 * @param directionY
+	 *            the y component of the direction of the ray
+	 * @param directionZ
+	 *            the z component of the direction of the ray
+	 * @param minDistance
+	 *            the minimum distance along the ray to consider (in multiples of its direction)
+	 * @param maxDistance
+	 *            the maximum distance along the ray to consider (in multiples of its direction)
+	 * @return the distance along the ray where it first hits the terrain (in multiples of its direction) or NaN if it does not hit the terrain between the given distances
+	 */
+	public float intersect(final float originX, final float originY, final float originZ, final float directionX, final float directionY, final float directionZ, final float minDistance, final float maxDistance) {
+		if ((directionX == 0.0f) && (directionY == 0.0f) && (directionZ == 0.0f)) {
+			throw new IllegalArgumentException("Direction must not have zero length");
+		}
+		int top = 0;
+		stackLevels[top] = rows.length - 1;
+		stackRows[top] = 0;
+		stackColumns[top] = 0;
+		top++;
+		while (top > 0) { // depth first, nearest child first, so the first tile hit is the nearest
+			top--;
+			final int level = stackLevels[top];
+			final int row = stackRows[top];
+			final int column = stackColumns[top];
+			if (level == 0) {
+				final float distance = intersectTile(originX, originY, originZ, directionX, directionY, directionZ, row, column, minDistance, maxDistance);
+				if (!Float.isNaN(distance)) {
+					hitLatitude = row;
+					hitLongitude = column;
+					return distance;
+				}
+				continue;
+			}
+			int children = 0;
+			for (int childRow = 2 * row; childRow < Math.min(2 * row + 2, rows[level - 1]); childRow++) {
+				for (int childColumn = 2 * column; childColumn < Math.min(2 * column + 2, columns[level - 1]); childColumn++) {
+					final float enter = enter(originX, originY, originZ, directionX, directionY, directionZ, level - 1, childRow, childColumn, minDistance, maxDistance);
+					if (Float.isNaN(enter)) {
+						continue;
+					}
+					int i = children++;
+					for (; (i > 0) && (childEnters[i - 1] < enter); i--) { // sorted farthest first
+						childEnters[i] = childEnters[i - 1];
+						childRows[i] = childRows[i - 1];
+						childColumns[i] = childColumns[i - 1];
+					}
+					childEnters[i] = enter;
+					childRows[i] = childRow;
+					childColumns[i] = childColumn;
+				}
+			}
+			for (int i = 0; i < children; i++) { // farthest pushed first, so nearest popped first
+				stackLevels[top] = level - 1;
+				stackRows[top] = childRows[i];
+				stackColumns[top] = childColumns[i];
+				top++;
+			}
+		}
+		return Float.NaN;
+	}
+
+	private float enter(final float originX, final float originY, final float originZ, final float directionX, final float directionY, final float directionZ, final int level, final int row, final int column, final float minDistance, final float maxDistance) { // distance where the ray enters the bounds of a cell or NaN if it misses them
+		final float minX = column << level;
+		final float maxX = Math.min((column + 1) << level, longitudinalSize);
+		final float minZ = -Math.min((row + 1) << level, latitudinalSize);
+		final float maxZ = -(row << level);
+		final float minY = minimums[level][row * columns[level] + column];
+		final float maxY = maximums[level][row * columns[level] + column];
+		final float enter = Intersections.intersectRayBox(originX, originY, originZ, directionX, directionY, directionZ, minX, minY, minZ, maxX, maxY, maxZ);
+		if (Float.isNaN(enter) || (enter > maxDistance)) {
+			return Float.NaN;
+		}
+		final float exit = exit(originX, originY, originZ, directionX, directionY, directionZ, minX, minY, minZ, maxX, maxY, maxZ);
+		return (exit < minDistance) ? Float.NaN : enter;
+	}
+
+	private static float exit(final float originX, final float originY, final float originZ, final float directionX, final float directionY, final float directionZ, final float minX, final float minY, final float minZ, final float maxX, final float maxY, final float maxZ) { // distance where a ray hitting a box leaves it
+		float exit = Float.POSITIVE_INFINITY;
+		if (directionX != 0.0f) {
+			exit = Math.min(exit, Math.max((minX - originX) / directionX, (maxX - originX) / directionX));
+		}
+		if (directionY != 0.0f) {
+			exit = Math.min(exit, Math.max((minY - originY) / directionY, (maxY - originY) / directionY));
+		}
+		if (directionZ != 0.0f) {
+			exit = Math.min(exit, Math.max((minZ - originZ) / directionZ, (maxZ - originZ) / directionZ));
+		}
+		return exit;
+	}
+
+	private float intersectTile(final float originX, final float originY, final float originZ, final float directionX, final float directionY, final float directionZ, final int latitude, final int longitude, final float minDistance, final float maxDistance) {
+		for (int vertex = 0; vertex < GRID * GRID; vertex++) {
+			final int lat = 2 * latitude + vertex / GRID;
+			final int lng = 2 * longitude + vertex % GRID;
+			vertexXs[vertex] = lng / 2.0f;
+			vertexYs[vertex] = getVertexAltitude(lat, lng);
+			vertexZs[vertex] = -lat / 2.0f;
+		}
+		float nearest = Float.NaN;
+		for (int i = 0; i < TRIANGLES.length; i += 3) {
+			final int a = TRIANGLES[i];
+			final int b = TRIANGLES[i + 1];
+			final int c = TRIANGLES[i + 2];
+			final float distance = Intersections.intersectRayTriangle(originX, originY, originZ, directionX, directionY, directionZ, vertexXs[a], vertexYs[a], vertexZs[a], vertexXs[b], vertexYs[b], vertexZs[b], vertexXs[c], vertexYs[c], vertexZs[c]);
+			if ((distance >= minDistance) && (distance <= maxDistance) && !(distance >= nearest)) { // false for NaN
+				nearest = distance;
+			}
+		}
+		return nearest;
+	}
+
+	private void update(final int firstLatitude, final int firstLongitude, final int lastLatitude, final int lastLongitude) {
+		for (int latitude = firstLatitude; latitude <= lastLatitude; latitude++) {
+			for (int longitude = firstLongitude; longitude <= lastLongitude; longitude++) {
+				float minimum = Float.POSITIVE_INFINITY;
+				float maximum = Float.NEGATIVE_INFINITY;
+				for (int vertex = 0; vertex < GRID * GRID; vertex++) { // triangles lie between their vertices
+					final float altitude = getVertexAltitude(2 * latitude + vertex / GRID, 2 * longitude + vertex % GRID);
+					minimum = Math.min(minimum, altitude);
+					maximum = Math.max(maximum, altitude);
+				}
+				minimums[0][latitude * columns[0] + longitude] = minimum;
+				maximums[0][latitude * columns[0] + longitude] = maximum;
+			}
+		}
+		for (int level = 1; level < rows.length; level++) {
+			for (int row = firstLatitude >> level; row <= lastLatitude >> level; row++) {
+				for (int column = firstLongitude >> level; column <= lastLongitude >> level; column++) {
+					float minimum = Float.POSITIVE_INFINITY;
+					float maximum = Float.NEGATIVE_INFINITY;
+					for (int childRow = 2 * row; childRow < Math.min(2 * row + 2, rows[level - 1]); childRow++) {
+						for (int childColumn = 2 * column; childColumn < Math.min(2 * column + 2, columns[level - 1]); childColumn++) {
+							minimum = Math.min(minimum, minimums[level - 1][childRow * columns[level - 1] + childColumn]);
+							maximum = Math.max(maximum, maximums[level - 1][childRow * columns[level - 1] + childColumn]);
+						}
+					}
+					minimums[level][row * columns[level] + column] = minimum;
+					maximums[level][row * columns[level] + column] = maximum;
+				}
+			}
+		}
+	}
+
+	private float getVertexAltitude(final int lat, final int lng) { // vertex rows and columns are twice as many as the tiles plus one, as in the CL program
+		final int latitude = (lat - 1) / 2;
+		final int latitudeNorth = lat / 2;
+		final int latitudeSouth = lat / 2 - 1;
+		final int longitude = (lng - 1) / 2;
+		final int longitudeEast = lng / 2;
+		final int longitudeWest = lng / 2 - 1;
+		if ((lat % 2 == 0) && (lng % 2 == 0)) { // vertex between four tiles both latitudinally and longitudinally
+			return (getAltitude(latitudeNorth, longitudeEast) + getAltitude(latitudeSouth, longitudeEast) + getAltitude(latitudeSouth, longitudeWest) + getAltitude(latitudeNorth, longitudeWest)) / 4.0f;
+		} else if (lat % 2 == 0) { // vertex between two tiles latitudinally
+			return (getAltitude(latitudeNorth, longitude) + getAltitude(latitudeSouth, longitude)) / 2.0f;
+		} else if (lng % 2 == 0) { // vertex between two tiles longitudinally
+			return (getAltitude(latitude, longitudeEast) + getAltitude(latitude, longitudeWest)) / 2.0f;
+		}
+		return getAltitude(latitude, longitude); // vertex in the center of a tile
+	}
+
+	private float getAltitude(final int latitude, final int longitude) { // tiles outside the map are clamped to its edges
+		return altitudes[Math.max(0, Math.min(latitude, latitudinalSize - 1)) * longitudinalSize + Math.max(0, Math.min(longitude, longitudinalSize - 1))];
+	}
+}
@@ -0,0 +1,331 @@
+package gr.uoa.di.thanos.botcraft.game;
+
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Indexes answering statistics of rectangular regions of a map (e.g. building footprints) in constant time: the mean altitude and the number of tiles of each terrain, from summed area tables, and the minimum and maximum altitude, from two dimensional sparse tables of blocks whose sides are powers of two chosen independently along each axis. Sparse tables are kept for blocks up to 16 tiles along each axis (25 tables of the size of the map for each of the minimum and maximum), so minimum and maximum queries take constant time for regions up to 32 tiles along each axis, whatever their aspect ratio, and time proportional to their area divided by 256 for larger regions. Indexes are built in parallel and updated incrementally after the tiles of a rectangle are changed.
+ *
+ * @author thanos
+ */
+public class MapStatistics {
+	private interface Body {
+		void run(int first, int last);
+	}
+
+	private static class Split extends RecursiveAction {
+		private static final long serialVersionUID = 0L;
+
+		private final Body body;
+		private final int first;
+		private final int last;
+		private final int grain;
+
+		private Split(final Body body, final int first, final int last, final int grain) {
+			this.body = body;
+			this.first = first;
+			this.last = last;
+			this.grain = grain;
+		}
+
+		@Override
+		protected void compute() {
+			if (last - first <= grain) {
+				body.run(first, last);
+			} else {
+				final int middle = (first + last) / 2;
+				invokeAll(new Split(body, first, middle, grain), new Split(body, middle, last, grain));
+			}
+		}
+	}
+
+	private static final int MAX_LEVEL = 4; // blocks of up to 16 tiles along each axis
+	private static final int MIN_TASK_TILES = 4096; // smaller tasks are not worth forking
+
+	private final Map map;
+	private final ForkJoinPool pool;
+	private final int latitudinalSize;
+	private final int longitudinalSize;
+	private final float[] altitudes;
+	private final byte[] terrains;
+	private final double[] altitudeSums;
+	private final int[][] terrainCounts;
+	private final float[][][] minimums; // by latitudinal and longitudinal level
+	private final float[][][] maximums; // by latitudinal and longitudinal level
+
+	/**
+	 * Construct new statistics of a map.
+	 *
+	 * @param map
+	 *            the map whose tiles to index
+	 * @param pool
+	 *            the pool to build and update the indexes in
+	 */
+	public MapStatistics(final Map map, final ForkJoinPool pool) {
+		this.map = Objects.requireNonNull(map, "Map must not be null");
+		this.pool = Objects.requireNonNull(pool, "Pool must not be null");
+		latitudinalSize = map.getLatitudinalSize();
+		longitudinalSize = map.getLongitudinalSize();
+		altitudes = new float[latitudinalSize * longitudinalSize];
+		terrains = new byte[latitudinalSize * longitudinalSize];
+		// summed area tables have an extra row and column of zeros, so that sums never need bounds checks
+		altitudeSums = new double[(latitudinalSize + 1) * (longitudinalSize + 1)];
+		terrainCounts = new int[Terrain.values().length][(latitudinalSize + 1) * (longitudinalSize + 1)];
+		final int latitudinalLevels = levels(latitudinalSize);
+		final int longitudinalLevels = levels(longitudinalSize);
+		minimums = new float[latitudinalLevels + 1][longitudinalLevels + 1][];
+		maximums = new float[latitudinalLevels + 1][longitudinalLevels + 1][];
+		for (int latitudinalLevel = 0; latitudinalLevel <= latitudinalLevels; latitudinalLevel++) {
+			for (int longitudinalLevel = 0; longitudinalLevel <= longitudinalLevels; longitudinalLevel++) {
+				minimums[latitudinalLevel][longitudinalLevel] = ((latitudinalLevel == 0) && (longitudinalLevel == 0)) ? altitudes : new float[latitudinalSize * longitudinalSize];
+				maximums[latitudinalLevel][longitudinalLevel] = ((latitudinalLevel == 0) && (longitudinalLevel == 0)) ? altitudes : new float[latitudinalSize * longitudinalSize];
+			}
+		}
+		update(0, 0, latitudinalSize, longitudinalSize);
+	}
+
+	/**
+	 * Get the map whose tiles are indexed.
+	 *
+	 * @return the map whose tiles are indexed
+	 */
+	public Map getMap() {
+		return map;
+	}
+
+	/**
+	 * Update the indexes after the tiles of a rectangle have changed. Summed area tables are updated from the changed rectangle to the end of the map and sparse tables only around the changed rectangle.
+	 *
+	 * @param latitude
+	 *            the latitude of the first tile changed
+	 * @param longitude
+	 *            the longitude of the first tile changed
+	 * @param latitudinalSize
+	 *            the latitudinal size of the rectangle changed
+	 * @param longitudinalSize
+	 *            the longitudinal size of the rectangle changed
+	 */
+	public void update(final int latitude, final int longitude, final int latitudinalSize, final int longitudinalSize) {
+		checkRegion(latitude, longitude, latitudinalSize, longitudinalSize);
+		pool.invoke(new Split(new Body() {
+			@Override
+			public void run(final int first, final int last) {
+				for (int lat = first; lat < last; lat++) {
+					for (int lng = longitude; lng < longitude + longitudinalSize; lng++) {
+						final Tile tile = map.getTile(lat, lng);
+						altitudes[lat * MapStatistics.this.longitudinalSize + lng] = tile.getAltitude();
+						terrains[lat * MapStatistics.this.longitudinalSize + lng] = (byte) tile.getTerrain().ordinal();
+					}
+				}
+			}
+		}, latitude, latitude + latitudinalSize, grain(longitudinalSize)));
+		updateSums(latitude, longitude);
+		// each level is built from the previous one along one axis, so levels are updated in order
+		for (int latitudinalLevel = 0; latitudinalLevel < minimums.length; latitudinalLevel++) {
+			for (int longitudinalLevel = (latitudinalLevel == 0) ? 1 : 0; longitudinalLevel < minimums[latitudinalLevel].length; longitudinalLevel++) {
+				updateBlocks(latitudinalLevel, longitudinalLevel, latitude, longitude, latitudinalSize, longitudinalSize);
+			}
+		}
+	}
+
+	/**
+	 * Get the mean altitude of the tiles of a region.
+	 *
+	 * @param latitude
+	 *            the latitude of the first tile of the region
+	 * @param longitude
+	 *            the longitude of the first tile of the region
+	 * @param latitudinalSize
+	 *            the latitudinal size of the region
+	 * @param longitudinalSize
+	 *            the longitudinal size of the region
+	 * @return the mean altitude of the tiles of the region
+	 */
+	public float getMeanAltitude(final int latitude, final int longitude, final int latitudinalSize, final int longitudinalSize) {
+		checkRegion(latitude, longitude, latitudinalSize, longitudinalSize);
+		final int width = this.longitudinalSize + 1;
+		final int north = (latitude + latitudinalSize) * width;
+		final int south = latitude * width;
+		final double sum = altitudeSums[north + longitude + longitudinalSize] - altitudeSums[south + longitude + longitudinalSize] - altitudeSums[north + longitude] + altitudeSums[south + longitude];
+		return (float) (sum / ((long) latitudinalSize * longitudinalSize));
+	}
+
+	/**
+	 * Get the number of tiles of a terrain in a region.
+	 *
+	 * @param terrain
+	 *            the terrain to count
+	 * @param latitude
+	 *            the latitude of the first tile of the region
+	 * @param longitude
+	 *            the longitude of the first tile of the region
+	 * @param latitudinalSize
+	 *            the latitudinal size of the region
+	 * @param longitudinalSize
+	 *            the longitudinal size of the region
+	 * @return the number of tiles of the given terrain in the region
+	 */
+	public int getTerrainCount(final Terrain terrain, final int latitude, final int longitude, final int latitudinalSize, final int longitudinalSize) {
+		Objects.requireNonNull(terrain, "Terrain must not be null");
+		checkRegion(latitude, longitude, latitudinalSize, longitudinalSize);
+		final int[] counts = terrainCounts[terrain.ordinal()];
+		final int width = this.longitudinalSize + 1;
+		final int north = (latitude + latitudinalSize) * width;
+		final int south = latitude * width;
+		return counts[north + longitude + longitudinalSize] - counts[south + longitude + longitudinalSize] - counts[north + longitude] + counts[south + longitude];
+	}
+
+	/**
+	 * Get the minimum altitude of the tiles of a region.
+	 *
+	 * @param latitude
+	 *            the latitude of the first tile of the region
+	 * @param longitude
+	 *            the longitude of the first tile of the region
+	 * @param latitudinalSize
+	 *            the latitudinal size of the region
+	 * @param longitudinalSize
+	 *            the longitudinal size of the region
+	 * @return the minimum altitude of the tiles of the region
+	 */
+	public float getMinimumAltitude(final int latitude, final int longitude, final int latitudinalSize, final int longitudinalSize) {
+		return query(minimums, true, latitude, longitude, latitudinalSize, longitudinalSize);
+	}
+
+	/**
+	 * Get the maximum altitude of the tiles of a region.
+	 *
+	 * @param latitude
+	 *            the latitude of the first tile of the region
+	 * @param longitude
+	 *            the longitude of the first tile of the region
+	 * @param latitudinalSize
+	 *            the latitudinal size of the region
+	 * @param longitudinalSize
+	 *            the longitudinal size of the region
+	 * @return the maximum altitude of the tiles of the region
+	 */
+	public float getMaximumAltitude(final int latitude, final int longitude, final int latitudinalSize, final int longitudinalSize) {
+		return query(maximums, false, latitude, longitude, latitudinalSize, longitudinalSize);
+	}
+
+	private static int levels(final int size) { // levels of blocks fitting in the given size, up to the maximum level
+		int levels = 0;
+		while ((levels < MAX_LEVEL) && ((2 << levels) <= size)) {
+			levels++;
+		}
+		return levels;
+	}
+
+	private int grain(final int rowLength) { // rows per task
+		return Math.max(1, MIN_TASK_TILES / Math.max(rowLength, 1));
+	}
+
+	private void checkRegion(final int latitude, final int longitude, final int latitudinalSize, final int longitudinalSize) {
+		if ((latitudinalSize <= 0) || (longitudinalSize <= 0)) {
+			throw new IllegalArgumentException("Region size must be positive");
+		}
+		if ((latitude < 0) || (latitude + latitudinalSize > this.latitudinalSize)) {
+			throw new IllegalArgumentException("Region latitudes must be between 0 and " + (this.latitudinalSize - 1));
+		}
+		if ((longitude < 0) || (longitude + longitudinalSize > this.longitudinalSize)) {
+			throw new IllegalArgumentException("Region longitudes must be between 0 and " + (this.longitudinalSize - 1));
+		}
+	}
+
+	private void updateSums(final int latitude, final int longitude) {
+		final int width = longitudinalSize + 1;
+		// first, rows from the changed one onwards hold row prefix sums from the changed column onwards (columns before it have not changed)
+		pool.invoke(new Split(new Body() {
+			@Override
+			public void run(final int first, final int last) {
+				for (int lat = first; lat < last; lat++) {
+					final int row = (lat + 1) * width;
+					double altitudeSum = altitudeSums[row + longitude] - altitudeSums[row - width + longitude];
+					for (int lng = longitude; lng < longitudinalSize; lng++) {
+						altitudeSum += altitudes[lat * longitudinalSize + lng];
+						altitudeSums[row + lng + 1] = altitudeSum;
+					}
+					for (int terrain = 0; terrain < terrainCounts.length; terrain++) {
+						final int[] counts = terrainCounts[terrain];
+						int count = counts[row + longitude] - counts[row - width + longitude];
+						for (int lng = longitude; lng < longitudinalSize; lng++) {
+							count += (terrains[lat * longitudinalSize + lng] == terrain) ? 1 : 0;
+							counts[row + lng + 1] = count;
+						}
+					}
+				}
+			}
+		}, latitude, latitudinalSize, grain(longitudinalSize - longitude)));
+		// then, bands of columns accumulate the row prefix sums down the rows
+		pool.invoke(new Split(new Body() {
+			@Override
+			public void run(final int first, final int last) {
+				for (int lat = latitude + 1; lat <= latitudinalSize; lat++) {
+					final int row = lat * width;
+					for (int column = first; column < last; column++) {
+						altitudeSums[row + column] += altitudeSums[row - width + column];
+					}
+					for (final int[] counts : terrainCounts) {
+						for (int column = first; column < last; column++) {
+							counts[row + column] += counts[row - width + column];
+						}
+					}
+				}
+			}
+		}, longitude + 1, longitudinalSize + 1, grain(latitudinalSize - latitude)));
+	}
+
+	private void updateBlocks(final int latitudinalLevel, final int longitudinalLevel, final int latitude, final int longitude, final int latitudinalSize, final int longitudinalSize) {
+		// blocks of this level overlapping the changed rectangle, each the union of two blocks of the previous level along one axis
+		final int blockLatitudinalSize = 1 << latitudinalLevel;
+		final int blockLongitudinalSize = 1 << longitudinalLevel;
+		final int firstLongitude = Math.max(longitude - blockLongitudinalSize + 1, 0);
+		final int lastLongitude = Math.min(longitude + longitudinalSize, this.longitudinalSize - blockLongitudinalSize + 1);
+		final boolean longitudinal = longitudinalLevel > 0;
+		final int offset = longitudinal ? blockLongitudinalSize / 2 : blockLatitudinalSize / 2 * this.longitudinalSize; // of the second block of the previous level
+		final float[] lowerMinimums = longitudinal ? minimums[latitudinalLevel][longitudinalLevel - 1] : minimums[latitudinalLevel - 1][longitudinalLevel];
+		final float[] lowerMaximums = longitudinal ? maximums[latitudinalLevel][longitudinalLevel - 1] : maximums[latitudinalLevel - 1][longitudinalLevel];
+		final float[] levelMinimums = minimums[latitudinalLevel][longitudinalLevel];
+		final float[] levelMaximums = maximums[latitudinalLevel][longitudinalLevel];
+		pool.invoke(new Split(new Body() {
+			@Override
+			public void run(final int first, final int last) {
+				for (int lat = first; lat < last; lat++) {
+					for (int lng = firstLongitude; lng < lastLongitude; lng++) {
+						final int southwest = lat * MapStatistics.this.longitudinalSize + lng;
+						levelMinimums[southwest] = Math.min(lowerMinimums[southwest], lowerMinimums[southwest + offset]);
+						levelMaximums[southwest] = Math.max(lowerMaximums[southwest], lowerMaximums[southwest + offset]);
+					}
+				}
+			}
+		}, Math.max(latitude - blockLatitudinalSize + 1, 0), Math.min(latitude + latitudinalSize, this.latitudinalSize - blockLatitudinalSize + 1), grain(lastLongitude - firstLongitude)));
+	}
+
+	private float query(final float[][][] blocks, final boolean minimum, final int latitude, final int longitude, final int latitudinalSize, final int longitudinalSize) {
+		checkRegion(latitude, longitude, latitudinalSize, longitudinalSize);
+		final int latitudinalLevel = Math.min(blocks.length - 1, 31 - Integer.numberOfLeadingZeros(latitudinalSize));
+		final int longitudinalLevel = Math.min(blocks[latitudinalLevel].length - 1, 31 - Integer.numberOfLeadingZeros(longitudinalSize));
+		final int blockLatitudinalSize = 1 << latitudinalLevel;
+		final int blockLongitudinalSize = 1 << longitudinalLevel;
+		final int lastLatitude = latitude + latitudinalSize - blockLatitudinalSize;
+		final int lastLongitude = longitude + longitudinalSize - blockLongitudinalSize;
+		final float[] values = blocks[latitudinalLevel][longitudinalLevel];
+		float result = minimum ? Float.POSITIVE_INFINITY : Float.NEGATIVE_INFINITY;
+		// blocks may overlap, which does not affect minimums and maximums
+		for (int lat = latitude;; lat = Math.min(lat + blockLatitudinalSize, lastLatitude)) {
+			for (int lng = longitude;; lng = Math.min(lng + blockLongitudinalSize, lastLongitude)) {
+				final float value = values[lat * this.longitudinalSize + lng];
+				result = minimum ? Math.min(result, value) : Math.max(result, value);
+				if (lng == lastLongitude) {
+					break;
+				}
+			}
+			if (lat == lastLatitude) {
+				break;
+			}
+		}
+		return result;
+	}
+}
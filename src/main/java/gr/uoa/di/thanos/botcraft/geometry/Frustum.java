@@ -0,0 +1,251 @@
+package gr.uoa.di.thanos.botcraft.geometry;
+
+import java.nio.FloatBuffer;
+import java.util.Objects;
+
+/**
+ * Class representing a mutable view frustum as six planes (left, right, bottom, top, near and far), extracted from a combined projection, view and model transformation. Each plane is stored as the coefficients <code>a</code>, <code>b</code>, <code>c</code> and <code>d</code> of <code>a * x + b * y + c * z + d = 0</code>, normalized so that <code>a * x + b * y + c * z + d</code> is the signed distance of a point from the plane, positive inside the frustum. Tests are conservative: bounds near a corner of the frustum may be reported as intersecting it while being outside, but bounds intersecting it are never reported as outside. Nothing is allocated, so frustums can be reused on per frame paths.
+ *
+ * @author thanos
+ */
+public class Frustum {
+	private static final int PLANES = 6;
+	private static final int PLANE_SIZE = 4;
+	private static final int SIZE = 4;
+
+	private final float[] planes;
+
+	/**
+	 * Construct a new frustum containing everything.
+	 */
+	public Frustum() {
+		planes = new float[PLANES * PLANE_SIZE];
+		for (int plane = 0; plane < PLANES; plane++) {
+			planes[plane * PLANE_SIZE + 3] = Float.POSITIVE_INFINITY;
+		}
+	}
+
+	/**
+	 * Get the array containing the planes of this frustum, in the order left, right, bottom, top, near and far, four coefficients per plane. The array is not copied, so changes to this frustum are visible through it.
+	 *
+	 * @return the array containing the planes of this frustum
+	 */
+	public float[] getPlanes() {
+		return planes;
+	}
+
+	/**
+	 * Set this frustum to the frustum of a transformation.
+	 *
+	 * @param transformation
+	 *            the combined projection, view and model transformation (e.g. as produced by {@link Matrix4f#perspectiveProjection(float, float, float, float)})
+	 * @return this frustum
+	 */
+	public Frustum set(final Matrix4f transformation) {
+		Objects.requireNonNull(transformation, "Transformation must not be null");
+		final float[] m = transformation.getElements();
+		for (int plane = 0; plane < PLANES; plane++) { // plane 2 * i is row 3 plus row i, plane 2 * i + 1 is row 3 minus row i
+			final float sign = ((plane & 1) == 0) ? 1.0f : -1.0f;
+			final int row = plane / 2;
+			setPlane(plane, m[12] + sign * m[row * SIZE], m[13] + sign * m[row * SIZE + 1], m[14] + sign * m[row * SIZE + 2], m[15] + sign * m[row * SIZE + 3]);
+		}
+		return this;
+	}
+
+	/**
+	 * Set this frustum to the frustum of a transformation.
+	 *
+	 * @param transformation
+	 *            the combined projection, view and model transformation (e.g. as produced by {@link Matrix#perspectiveProjection(float, float, float, float)})
+	 * @return this frustum
+	 */
+	public Frustum set(final Matrix transformation) {
+		Objects.requireNonNull(transformation, "Transformation must not be null");
+		final FloatBuffer m = transformation.getBuffer();
+		for (int plane = 0; plane < PLANES; plane++) {
+			final float sign = ((plane & 1) == 0) ? 1.0f : -1.0f;
+			final int row = plane / 2;
+			setPlane(plane, m.get(12) + sign * m.get(row * SIZE), m.get(13) + sign * m.get(row * SIZE + 1), m.get(14) + sign * m.get(row * SIZE + 2), m.get(15) + sign * m.get(row * SIZE + 3));
+		}
+		return this;
+	}
+
+	/**
+	 * Check whether a point is inside this frustum.
+	 *
+	 * @param x
+	 *            the x coordinate of the point
+	 * @param y
+	 *            the y coordinate of the point
+	 * @param z
+	 *            the z coordinate of the point
+	 * @return <code>true</code> if the point is inside this frustum, <code>false</code> otherwise
+	 */
+	public boolean contains(final float x, final float y, final float z) {
+		return intersectsSphere(x, y, z, 0.0f);
+	}
+
+	/**
+	 * Check whether a sphere intersects this frustum.
+	 *
+	 * @param x
+	 *            the x coordinate of the center of the sphere
+	 * @param y
+	 *            the y coordinate of the center of the sphere
+	 * @param z
+	 *            the z coordinate of the center of the sphere
+	 * @param radius
+	 *            the radius of the sphere
+	 * @return <code>true</code> if the sphere intersects this frustum, <code>false</code> otherwise
+	 */
+	public boolean intersectsSphere(final float x, final float y, final float z, final float radius) {
+		for (int plane = 0; plane < PLANES; plane++) {
+			final int p = plane * PLANE_SIZE;
+			if (planes[p] * x + planes[p + 1] * y + planes[p + 2] * z + planes[p + 3] < -radius) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Check whether an axis aligned bounding box intersects this frustum.
+	 *
+	 * @param minX
+	 *            the minimum x coordinate of the box
+	 * @param minY
+	 *            the minimum y coordinate of the box
+	 * @param minZ
+	 *            the minimum z coordinate of the box
+	 * @param maxX
+	 *            the maximum x coordinate of the box
+	 * @param maxY
+	 *            the maximum y coordinate of the box
+	 * @param maxZ
+	 *            the maximum z coordinate of the box
+	 * @return <code>true</code> if the box intersects this frustum, <code>false</code> otherwise
+	 */
+	public boolean intersectsBox(final float minX, final float minY, final float minZ, final float maxX, final float maxY, final float maxZ) {
+		for (int plane = 0; plane < PLANES; plane++) {
+			final int p = plane * PLANE_SIZE;
+			// the corner of the box furthest along the normal of the plane is the last to leave it
+			final float x = (planes[p] >= 0.0f) ? maxX : minX;
+			final float y = (planes[p + 1] >= 0.0f) ? maxY : minY;
+			final float z = (planes[p + 2] >= 0.0f) ? maxZ : minZ;
+			if (planes[p] * x + planes[p + 1] * y + planes[p + 2] * z + planes[p + 3] < 0.0f) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Check whether spheres packed as structures of arrays intersect this frustum.
+	 *
+	 * @param xs
+	 *            the x coordinates of the centers of the spheres
+	 * @param ys
+	 *            the y coordinates of the centers of the spheres
+	 * @param zs
+	 *            the z coordinates of the centers of the spheres
+	 * @param radii
+	 *            the radii of the spheres
+	 * @param results
+	 *            the array to write whether each sphere intersects this frustum to
+	 * @param offset
+	 *            the index of the first sphere
+	 * @param count
+	 *            the number of spheres
+	 * @return the number of spheres intersecting this frustum
+	 */
+	public int intersectsSpheres(final float[] xs, final float[] ys, final float[] zs, final float[] radii, final boolean[] results, final int offset, final int count) {
+		VectorArrays.checkRange(offset, count, xs, ys, zs);
+		VectorArrays.checkRange(radii, offset, count);
+		checkRange(results, offset, count);
+		for (int i = offset; i < offset + count; i++) {
+			results[i] = true;
+		}
+		for (int plane = 0; plane < PLANES; plane++) { // one plane at a time, so that the inner loop has no branches
+			final int p = plane * PLANE_SIZE;
+			final float a = planes[p];
+			final float b = planes[p + 1];
+			final float c = planes[p + 2];
+			final float d = planes[p + 3];
+			for (int i = offset; i < offset + count; i++) {
+				results[i] &= a * xs[i] + b * ys[i] + c * zs[i] + d >= -radii[i];
+			}
+		}
+		return count(results, offset, count);
+	}
+
+	/**
+	 * Check whether axis aligned bounding boxes packed as structures of arrays intersect this frustum.
+	 *
+	 * @param minXs
+	 *            the minimum x coordinates of the boxes
+	 * @param minYs
+	 *            the minimum y coordinates of the boxes
+	 * @param minZs
+	 *            the minimum z coordinates of the boxes
+	 * @param maxXs
+	 *            the maximum x coordinates of the boxes
+	 * @param maxYs
+	 *            the maximum y coordinates of the boxes
+	 * @param maxZs
+	 *            the maximum z coordinates of the boxes
+	 * @param results
+	 *            the array to write whether each box intersects this frustum to
+	 * @param offset
+	 *            the index of the first box
+	 * @param count
+	 *            the number of boxes
+	 * @return the number of boxes intersecting this frustum
+	 */
+	public int intersectsBoxes(final float[] minXs, final float[] minYs, final float[] minZs, final float[] maxXs, final float[] maxYs, final float[] maxZs, final boolean[] results, final int offset, final int count) {
+		VectorArrays.checkRange(offset, count, minXs, minYs, minZs);
+		VectorArrays.checkRange(offset, count, maxXs, maxYs, maxZs);
+		checkRange(results, offset, count);
+		for (int i = offset; i < offset + count; i++) {
+			results[i] = true;
+		}
+		for (int plane = 0; plane < PLANES; plane++) { // one plane at a time, so that the corners tested are selected once per plane
+			final int p = plane * PLANE_SIZE;
+			final float a = planes[p];
+			final float b = planes[p + 1];
+			final float c = planes[p + 2];
+			final float d = planes[p + 3];
+			final float[] xs = (a >= 0.0f) ? maxXs : minXs;
+			final float[] ys = (b >= 0.0f) ? maxYs : minYs;
+			final float[] zs = (c >= 0.0f) ? maxZs : minZs;
+			for (int i = offset; i < offset + count; i++) {
+				results[i] &= a * xs[i] + b * ys[i] + c * zs[i] + d >= 0.0f;
+			}
+		}
+		return count(results, offset, count);
+	}
+
+	private static void checkRange(final boolean[] results, final int offset, final int count) {
+		Objects.requireNonNull(results, "Results must not be null");
+		if ((offset < 0) || (count < 0) || (offset + count > results.length)) {
+			throw new IllegalArgumentException("Offset and count must be within the arrays");
+		}
+	}
+
+	private static int count(final boolean[] results, final int offset, final int count) {
+		int intersecting = 0;
+		for (int i = offset; i < offset + count; i++) {
+			intersecting += results[i] ? 1 : 0;
+		}
+		return intersecting;
+	}
+
+	private void setPlane(final int plane, final float a, final float b, final float c, final float d) {
+		final float length = (float) Math.sqrt(a * a + b * b + c * c);
+		final float scale = (length == 0.0f) ? 1.0f : (1.0f / length); // degenerate planes (e.g. an infinite far plane) are kept as is
+		final int p = plane * PLANE_SIZE;
+		planes[p] = a * scale;
+		planes[p + 1] = b * scale;
+		planes[p + 2] = c * scale;
+		planes[p + 3] = d * scale;
+	}
+}
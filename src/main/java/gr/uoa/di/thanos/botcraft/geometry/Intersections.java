@@ -0,0 +1,260 @@
+package gr.uoa.di.thanos.botcraft.geometry;
+
+/**
+ * Intersections of rays (e.g. for mouse picking) with axis aligned bounding boxes and triangles, both one at a time and in bulk, on bounds and triangles packed as structures of arrays. Rays are given by an origin and a direction, which need not be normalized; distances along a ray are measured in multiples of its direction. Nothing is allocated.
+ *
+ * @author thanos
+ */
+public class Intersections {
+	private static final float EPSILON = 1.0e-7f;
+
+	private Intersections() {
+	}
+
+	/**
+	 * Intersect a ray with an axis aligned bounding box.
+	 *
+	 * @param originX
+	 *            the x coordinate of the origin of the ray
+	 * @param originY
+	 *            the y coordinate of the origin of the ray
+	 * @param originZ
+	 *            the z coordinate of the origin of the ray
+	 * @param directionX
+	 *            the x component of the direction of the ray
+	 * @param directionY
+	 *            the y component of the direction of the ray
+	 * @param directionZ
+	 *            the z component of the direction of the ray
+	 * @param minX
+	 *            the minimum x coordinate of the box
+	 * @param minY
+	 *            the minimum y coordinate of the box
+	 * @param minZ
+	 *            the minimum z coordinate of the box
+	 * @param maxX
+	 *            the maximum x coordinate of the box
+	 * @param maxY
+	 *            the maximum y coordinate of the box
+	 * @param maxZ
+	 *            the maximum z coordinate of the box
+	 * @return the distance along the ray where it enters the box (zero if the origin is inside the box) or NaN if the ray misses the box
+	 */
+	public static float intersectRayBox(final float originX, final float originY, final float originZ, final float directionX, final float directionY, final float directionZ, final float minX, final float minY, final float minZ, final float maxX, final float maxY, final float maxZ) {
+		// slab method: the ray is inside the box where it is inside all three slabs
+		float near = 0.0f;
+		float far = Float.POSITIVE_INFINITY;
+		if (directionX == 0.0f) {
+			if ((originX < minX) || (originX > maxX)) {
+				return Float.NaN;
+			}
+		} else {
+			final float inverse = 1.0f / directionX;
+			final float t0 = (minX - originX) * inverse;
+			final float t1 = (maxX - originX) * inverse;
+			near = Math.max(near, Math.min(t0, t1));
+			far = Math.min(far, Math.max(t0, t1));
+		}
+		if (directionY == 0.0f) {
+			if ((originY < minY) || (originY > maxY)) {
+				return Float.NaN;
+			}
+		} else {
+			final float inverse = 1.0f / directionY;
+			final float t0 = (minY - originY) * inverse;
+			final float t1 = (maxY - originY) * inverse;
+			near = Math.max(near, Math.min(t0, t1));
+			far = Math.min(far, Math.max(t0, t1));
+		}
+		if (directionZ == 0.0f) {
+			if ((originZ < minZ) || (originZ > maxZ)) {
+				return Float.NaN;
+			}
+		} else {
+			final float inverse = 1.0f / directionZ;
+			final float t0 = (minZ - originZ) * inverse;
+			final float t1 = (maxZ - originZ) * inverse;
+			near = Math.max(near, Math.min(t0, t1));
+			far = Math.min(far, Math.max(t0, t1));
+		}
+		return (near <= far) ? near : Float.NaN;
+	}
+
+	/**
+	 * Intersect a ray with a triangle (from either side).
+	 *
+	 * @param originX
+	 *            the x coordinate of the origin of the ray
+	 * @param originY
+	 *            the y coordinate of the origin of the ray
+	 * @param originZ
+	 *            the z coordinate of the origin of the ray
+	 * @param directionX
+	 *            the x component of the direction of the ray
+	 * @param directionY
+	 *            the y component of the direction of the ray
+	 * @param directionZ
+	 *            the z component of the direction of the ray
+	 * @param x0
+	 *            the x coordinate of the first vertex of the triangle
+	 * @param y0
+	 *            the y coordinate of the first vertex of the triangle
+	 * @param z0
+	 *            the z coordinate of the first vertex of the triangle
+	 * @param x1
+	 *            the x coordinate of the second vertex of the triangle
+	 * @param y1
+	 *            the y coordinate of the second vertex of the triangle
+	 * @param z1
+	 *            the z coordinate of the second vertex of the triangle
+	 * @param x2
+	 *            the x coordinate of the third vertex of the triangle
+	 * @param y2
+	 *            the y coordinate of the third vertex of the triangle
+	 * @param z2
+	 *            the z coordinate of the third vertex of the triangle
+	 * @return the distance along the ray where it hits the triangle or NaN if the ray misses the triangle
+	 */
+	public static float intersectRayTriangle(final float originX, final float originY, final float originZ, final float directionX, final float directionY, final float directionZ, final float x0, final float y0, final float z0, final float x1, final float y1, final float z1, final float x2, final float y2, final float z2) {
+		// Moller-Trumbore: solve origin + t * direction = v0 + u * (v1 - v0) + v * (v2 - v0) by Cramer's rule
+		final float edge1X = x1 - x0;
+		final float edge1Y = y1 - y0;
+		final float edge1Z = z1 - z0;
+		final float edge2X = x2 - x0;
+		final float edge2Y = y2 - y0;
+		final float edge2Z = z2 - z0;
+		final float pX = directionY * edge2Z - directionZ * edge2Y;
+		final float pY = directionZ * edge2X - directionX * edge2Z;
+		final float pZ = directionX * edge2Y - directionY * edge2X;
+		final float determinant = edge1X * pX + edge1Y * pY + edge1Z * pZ;
+		if (Math.abs(determinant) < EPSILON) { // ray parallel to the triangle
+			return Float.NaN;
+		}
+		final float inverse = 1.0f / determinant;
+		final float sX = originX - x0;
+		final float sY = originY - y0;
+		final float sZ = originZ - z0;
+		final float u = (sX * pX + sY * pY + sZ * pZ) * inverse;
+		if ((u < 0.0f) || (u > 1.0f)) {
+			return Float.NaN;
+		}
+		final float qX = sY * edge1Z - sZ * edge1Y;
+		final float qY = sZ * edge1X - sX * edge1Z;
+		final float qZ = sX * edge1Y - sY * edge1X;
+		final float v = (directionX * qX + directionY * qY + directionZ * qZ) * inverse;
+		if ((v < 0.0f) || (u + v > 1.0f)) {
+			return Float.NaN;
+		}
+		final float t = (edge2X * qX + edge2Y * qY + edge2Z * qZ) * inverse;
+		return (t >= 0.0f) ? t : Float.NaN;
+	}
+
+	/**
+	 * Intersect a ray with axis aligned bounding boxes packed as structures of arrays.
+	 *
+	 * @param originX
+	 *            the x coordinate of the origin of the ray
+	 * @param originY
+	 *            the y coordinate of the origin of the ray
+	 * @param originZ
+	 *            the z coordinate of the origin of the ray
+	 * @param directionX
+	 *            the x component of the direction of the ray
+	 * @param directionY
+	 *            the y component of the direction of the ray
+	 * @param directionZ
+	 *            the z component of the direction of the ray
+	 * @param minXs
+	 *            the minimum x coordinates of the boxes
+	 * @param minYs
+	 *            the minimum y coordinates of the boxes
+	 * @param minZs
+	 *            the minimum z coordinates of the boxes
+	 * @param maxXs
+	 *            the maximum x coordinates of the boxes
+	 * @param maxYs
+	 *            the maximum y coordinates of the boxes
+	 * @param maxZs
+	 *            the maximum z coordinates of the boxes
+	 * @param results
+	 *            the array to write the distance along the ray where it enters each box (or NaN if it misses the box) to
+	 * @param offset
+	 *            the index of the first box
+	 * @param count
+	 *            the number of boxes
+	 * @return the index of the nearest box hit or <code>-1</code> if the ray misses all boxes
+	 */
+	public static int intersectRayBoxes(final float originX, final float originY, final float originZ, final float directionX, final float directionY, final float directionZ, final float[] minXs, final float[] minYs, final float[] minZs, final float[] maxXs, final float[] maxYs, final float[] maxZs, final float[] results, final int offset, final int count) {
+		VectorArrays.checkRange(offset, count, minXs, minYs, minZs);
+		VectorArrays.checkRange(offset, count, maxXs, maxYs, maxZs);
+		VectorArrays.checkRange(results, offset, count);
+		for (int i = offset; i < offset + count; i++) {
+			results[i] = intersectRayBox(originX, originY, originZ, directionX, directionY, directionZ, minXs[i], minYs[i], minZs[i], maxXs[i], maxYs[i], maxZs[i]);
+		}
+		return nearest(results, offset, count);
+	}
+
+	/**
+	 * Intersect a ray with triangles packed as structures of arrays (from either side).
+	 *
+	 * @param originX
+	 *            the x coordinate of the origin of the ray
+	 * @param originY
+	 *            the y coordinate of the origin of the ray
+	 * @param originZ
+	 *            the z coordinate of the origin of the ray
+	 * @param directionX
+	 *            the x component of the direction of the ray
+	 * @param directionY
+	 *            the y component of the direction of the ray
+	 * @param directionZ
+	 *            the z component of the direction of the ray
+	 * @param x0s
+	 *            the x coordinates of the first vertices of the triangles
+	 * @param y0s
+	 *            the y coordinates of the first vertices of the triangles
+	 * @param z0s
+	 *            the z coordinates of the first vertices of the triangles
+	 * @param x1s
+	 *            the x coordinates of the second vertices of the triangles
+	 * @param y1s
+	 *            the y coordinates of the second vertices of the triangles
+	 * @param z1s
+	 *            the z coordinates of the second vertices of the triangles
+	 * @param x2s
+	 *            the x coordinates of the third vertices of the triangles
+	 * @param y2s
+	 *            the y coordinates of the third vertices of the triangles
+	 * @param z2s
+	 *            the z coordinates of the third vertices of the triangles
+	 * @param results
+	 *            the array to write the distance along the ray where it hits each triangle (or NaN if it misses the triangle) to
+	 * @param offset
+	 *            the index of the first triangle
+	 * @param count
+	 *            the number of triangles
+	 * @return the index of the nearest triangle hit or <code>-1</code> if the ray misses all triangles
+	 */
+	public static int intersectRayTriangles(final float originX, final float originY, final float originZ, final float directionX, final float directionY, final float directionZ, final float[] x0s, final float[] y0s, final float[] z0s, final float[] x1s, final float[] y1s, final float[] z1s, final float[] x2s, final float[] y2s, final float[] z2s, final float[] results, final int offset, final int count) {
+		VectorArrays.checkRange(offset, count, x0s, y0s, z0s);
+		VectorArrays.checkRange(offset, count, x1s, y1s, z1s);
+		VectorArrays.checkRange(offset, count, x2s, y2s, z2s);
+		VectorArrays.checkRange(results, offset, count);
+		for (int i = offset; i < offset + count; i++) {
+			results[i] = intersectRayTriangle(originX, originY, originZ, directionX, directionY, directionZ, x0s[i], y0s[i], z0s[i], x1s[i], y1s[i], z1s[i], x2s[i], y2s[i], z2s[i]);
+		}
+		return nearest(results, offset, count);
+	}
+
+	private static int nearest(final float[] distances, final int offset, final int count) {
+		int nearest = -1;
+		float nearestDistance = Float.POSITIVE_INFINITY;
+		for (int i = offset; i < offset + count; i++) {
+			if (distances[i] < nearestDistance) { // false for NaN
+				nearest = i;
+				nearestDistance = distances[i];
+			}
+		}
+		return nearest;
+	}
+}
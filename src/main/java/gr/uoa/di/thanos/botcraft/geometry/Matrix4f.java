@@ -0,0 +1,391 @@
+package gr.uoa.di.thanos.botcraft.geometry;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Class representing a mutable 4 x 4 matrix for transformations with homogenous coordinates, stored in row major order. Unlike {@link Matrix}, operations write their result into an existing matrix (usually this one) instead of allocating a new one, so matrices can be reused on per frame paths without producing garbage. All operations are unrolled and may be chained.
+ * 
+ * @author thanos
+ */
+public class Matrix4f {
+	private static final int SIZE = 4;
+	private static final String FORMAT = "\u23a1%1$ ,12.3f %2$ ,12.3f %3$ ,12.3f %4$ ,12.3f\u23a4\n\u23a2%5$ ,12.3f %6$ ,12.3f %7$ ,12.3f %8$ ,12.3f\u23a5\n\u23a2%9$ ,12.3f %10$ ,12.3f %11$ ,12.3f %12$ ,12.3f\u23a5\n\u23a3%13$ ,12.3f %14$ ,12.3f %15$ ,12.3f %16$ ,12.3f\u23a6";
+
+	private final float[] elements;
+
+	/**
+	 * Construct a new identity matrix.
+	 */
+	public Matrix4f() {
+		elements = new float[SIZE * SIZE];
+		identity();
+	}
+
+	/**
+	 * Construct a new copy of a matrix.
+	 * 
+	 * @param matrix
+	 *            the matrix to copy
+	 */
+	public Matrix4f(final Matrix4f matrix) {
+		elements = new float[SIZE * SIZE];
+		set(matrix);
+	}
+
+	/**
+	 * Get the array containing the elements of this matrix, in row major order. The array is not copied, so changes to this matrix are visible through it.
+	 * 
+	 * @return the array containing the elements of this matrix
+	 */
+	public float[] getElements() {
+		return elements;
+	}
+
+	/**
+	 * Get an element of this matrix.
+	 * 
+	 * @param row
+	 *            the row of the element
+	 * @param column
+	 *            the column of the element
+	 * @return the element of this matrix at the given row and column
+	 */
+	public float get(final MatrixComponent row, final MatrixComponent column) {
+		return elements[row.ordinal() * SIZE + column.ordinal()];
+	}
+
+	/**
+	 * Set this matrix to the identity matrix.
+	 * 
+	 * @return this matrix
+	 */
+	public Matrix4f identity() {
+		return set(1.0f, 0.0f, 0.0f, 0.0f, 0.0f, 1.0f, 0.0f, 0.0f, 0.0f, 0.0f, 1.0f, 0.0f, 0.0f, 0.0f, 0.0f, 1.0f);
+	}
+
+	/**
+	 * Set this matrix to a copy of another matrix.
+	 * 
+	 * @param matrix
+	 *            the matrix to copy
+	 * @return this matrix
+	 */
+	public Matrix4f set(final Matrix4f matrix) {
+		System.arraycopy(matrix.elements, 0, elements, 0, SIZE * SIZE);
+		return this;
+	}
+
+	/**
+	 * Set this matrix to a copy of 16 elements of an array, in row major order.
+	 * 
+	 * @param elements
+	 *            the array to copy the elements from
+	 * @param offset
+	 *            the index of the first element in the array
+	 * @return this matrix
+	 */
+	public Matrix4f set(final float[] elements, final int offset) {
+		Objects.requireNonNull(elements, "Elements must not be null");
+		if ((offset < 0) || (offset + SIZE * SIZE > elements.length)) {
+			throw new IllegalArgumentException("Offset must be between 0 and " + (elements.length - SIZE * SIZE));
+		}
+		System.arraycopy(elements, offset, this.elements, 0, SIZE * SIZE);
+		return this;
+	}
+
+	/**
+	 * Set this matrix to the product of two matrices. Either matrix may be this matrix.
+	 * 
+	 * @param left
+	 *            the matrix to multiply
+	 * @param right
+	 *            the matrix to multiply by
+	 * @return this matrix
+	 */
+	public Matrix4f multiply(final Matrix4f left, final Matrix4f right) {
+		final float l00 = left.elements[0];
+		final float l01 = left.elements[1];
+		final float l02 = left.elements[2];
+		final float l03 = left.elements[3];
+		final float l10 = left.elements[4];
+		final float l11 = left.elements[5];
+		final float l12 = left.elements[6];
+		final float l13 = left.elements[7];
+		final float l20 = left.elements[8];
+		final float l21 = left.elements[9];
+		final float l22 = left.elements[10];
+		final float l23 = left.elements[11];
+		final float l30 = left.elements[12];
+		final float l31 = left.elements[13];
+		final float l32 = left.elements[14];
+		final float l33 = left.elements[15];
+		final float r00 = right.elements[0];
+		final float r01 = right.elements[1];
+		final float r02 = right.elements[2];
+		final float r03 = right.elements[3];
+		final float r10 = right.elements[4];
+		final float r11 = right.elements[5];
+		final float r12 = right.elements[6];
+		final float r13 = right.elements[7];
+		final float r20 = right.elements[8];
+		final float r21 = right.elements[9];
+		final float r22 = right.elements[10];
+		final float r23 = right.elements[11];
+		final float r30 = right.elements[12];
+		final float r31 = right.elements[13];
+		final float r32 = right.elements[14];
+		final float r33 = right.elements[15];
+		final float m00 = l00 * r00 + l01 * r10 + l02 * r20 + l03 * r30;
+		final float m01 = l00 * r01 + l01 * r11 + l02 * r21 + l03 * r31;
+		final float m02 = l00 * r02 + l01 * r12 + l02 * r22 + l03 * r32;
+		final float m03 = l00 * r03 + l01 * r13 + l02 * r23 + l03 * r33;
+		final float m10 = l10 * r00 + l11 * r10 + l12 * r20 + l13 * r30;
+		final float m11 = l10 * r01 + l11 * r11 + l12 * r21 + l13 * r31;
+		final float m12 = l10 * r02 + l11 * r12 + l12 * r22 + l13 * r32;
+		final float m13 = l10 * r03 + l11 * r13 + l12 * r23 + l13 * r33;
+		final float m20 = l20 * r00 + l21 * r10 + l22 * r20 + l23 * r30;
+		final float m21 = l20 * r01 + l21 * r11 + l22 * r21 + l23 * r31;
+		final float m22 = l20 * r02 + l21 * r12 + l22 * r22 + l23 * r32;
+		final float m23 = l20 * r03 + l21 * r13 + l22 * r23 + l23 * r33;
+		final float m30 = l30 * r00 + l31 * r10 + l32 * r20 + l33 * r30;
+		final float m31 = l30 * r01 + l31 * r11 + l32 * r21 + l33 * r31;
+		final float m32 = l30 * r02 + l31 * r12 + l32 * r22 + l33 * r32;
+		final float m33 = l30 * r03 + l31 * r13 + l32 * r23 + l33 * r33;
+		return set(m00, m01, m02, m03, m10, m11, m12, m13, m20, m21, m22, m23, m30, m31, m32, m33);
+	}
+
+	/**
+	 * Set this matrix to a translation matrix.
+	 * 
+	 * @param x
+	 *            the x component of the vector to translate by
+	 * @param y
+	 *            the y component of the vector to translate by
+	 * @param z
+	 *            the z component of the vector to translate by
+	 * @return this matrix
+	 */
+	public Matrix4f translation(final float x, final float y, final float z) {
+		return set(1.0f, 0.0f, 0.0f, x, 0.0f, 1.0f, 0.0f, y, 0.0f, 0.0f, 1.0f, z, 0.0f, 0.0f, 0.0f, 1.0f);
+	}
+
+	/**
+	 * Multiply this matrix by a translation matrix, so that the translation is applied before this transformation.
+	 * 
+	 * @param x
+	 *            the x component of the vector to translate by
+	 * @param y
+	 *            the y component of the vector to translate by
+	 * @param z
+	 *            the z component of the vector to translate by
+	 * @return this matrix
+	 */
+	public Matrix4f translate(final float x, final float y, final float z) {
+		elements[3] += elements[0] * x + elements[1] * y + elements[2] * z;
+		elements[7] += elements[4] * x + elements[5] * y + elements[6] * z;
+		elements[11] += elements[8] * x + elements[9] * y + elements[10] * z;
+		elements[15] += elements[12] * x + elements[13] * y + elements[14] * z;
+		return this;
+	}
+
+	/**
+	 * Multiply this matrix by a scaling matrix, so that the scaling is applied before this transformation.
+	 * 
+	 * @param x
+	 *            the x scaling factor
+	 * @param y
+	 *            the y scaling factor
+	 * @param z
+	 *            the z scaling factor
+	 * @return this matrix
+	 */
+	public Matrix4f scale(final float x, final float y, final float z) {
+		for (int row = 0; row < SIZE; row++) {
+			elements[row * SIZE] *= x;
+			elements[row * SIZE + 1] *= y;
+			elements[row * SIZE + 2] *= z;
+		}
+		return this;
+	}
+
+	/**
+	 * Set this matrix to a rotation matrix.
+	 * 
+	 * @param angle
+	 *            the angle to rotate by (must be in radians)
+	 * @param x
+	 *            the x component of the vector specifying the direction around which to rotate
+	 * @param y
+	 *            the y component of the vector specifying the direction around which to rotate
+	 * @param z
+	 *            the z component of the vector specifying the direction around which to rotate
+	 * @return this matrix
+	 */
+	public Matrix4f rotation(final float angle, final float x, final float y, final float z) {
+		return identity().rotate(angle, x, y, z);
+	}
+
+	/**
+	 * Multiply this matrix by a rotation matrix, so that the rotation is applied before this transformation.
+	 * 
+	 * @param angle
+	 *            the angle to rotate by (must be in radians)
+	 * @param x
+	 *            the x component of the vector specifying the direction around which to rotate
+	 * @param y
+	 *            the y component of the vector specifying the direction around which to rotate
+	 * @param z
+	 *            the z component of the vector specifying the direction around which to rotate
+	 * @return this matrix
+	 */
+	public Matrix4f rotate(final float angle, final float x, final float y, final float z) {
+		final float length = (float) Math.sqrt(x * x + y * y + z * z);
+		if (length == 0.0f) {
+			throw new IllegalArgumentException("Vector must not have zero length");
+		}
+		final float sin = (float) Math.sin(angle);
+		final float cos = (float) Math.cos(angle);
+		final float dCos = 1.0f - cos;
+		final float nX = x / length;
+		final float nY = y / length;
+		final float nZ = z / length;
+		final float xSin = nX * sin;
+		final float ySin = nY * sin;
+		final float zSin = nZ * sin;
+		final float xYDCos = nX * nY * dCos;
+		final float xZDCos = nX * nZ * dCos;
+		final float yZDCos = nY * nZ * dCos;
+		final float r00 = nX * nX * dCos + cos;
+		final float r01 = xYDCos - zSin;
+		final float r02 = xZDCos + ySin;
+		final float r10 = xYDCos + zSin;
+		final float r11 = nY * nY * dCos + cos;
+		final float r12 = yZDCos - xSin;
+		final float r20 = xZDCos - ySin;
+		final float r21 = yZDCos + xSin;
+		final float r22 = nZ * nZ * dCos + cos;
+		final float m00 = elements[0];
+		final float m01 = elements[1];
+		final float m02 = elements[2];
+		final float m10 = elements[4];
+		final float m11 = elements[5];
+		final float m12 = elements[6];
+		final float m20 = elements[8];
+		final float m21 = elements[9];
+		final float m22 = elements[10];
+		final float m30 = elements[12];
+		final float m31 = elements[13];
+		final float m32 = elements[14];
+		elements[0] = m00 * r00 + m01 * r10 + m02 * r20;
+		elements[1] = m00 * r01 + m01 * r11 + m02 * r21;
+		elements[2] = m00 * r02 + m01 * r12 + m02 * r22;
+		elements[4] = m10 * r00 + m11 * r10 + m12 * r20;
+		elements[5] = m10 * r01 + m11 * r11 + m12 * r21;
+		elements[6] = m10 * r02 + m11 * r12 + m12 * r22;
+		elements[8] = m20 * r00 + m21 * r10 + m22 * r20;
+		elements[9] = m20 * r01 + m21 * r11 + m22 * r21;
+		elements[10] = m20 * r02 + m21 * r12 + m22 * r22;
+		elements[12] = m30 * r00 + m31 * r10 + m32 * r20;
+		elements[13] = m30 * r01 + m31 * r11 + m32 * r21;
+		elements[14] = m30 * r02 + m31 * r12 + m32 * r22;
+		return this;
+	}
+
+	/**
+	 * Set this matrix to a perspective projection matrix.
+	 * 
+	 * @param left
+	 *            position of the left plane of the perspective projection along the x axis
+	 * @param right
+	 *            the position of the right plane of the perspective projection along the x axis
+	 * @param bottom
+	 *            the position of the bottom plane of the perspective projection along the y axis
+	 * @param top
+	 *            the position of the top plane of the perspective projection along the y axis
+	 * @param near
+	 *            the position of the near plane of the perspective projection along the z axis
+	 * @param far
+	 *            the position of the far plane of the perspective projection along the z axis
+	 * @return this matrix
+	 */
+	public Matrix4f perspectiveProjection(final float left, final float right, final float bottom, final float top, final float near, final float far) {
+		if (left >= right) {
+			throw new IllegalArgumentException("Left must be less than right");
+		}
+		if (bottom >= top) {
+			throw new IllegalArgumentException("Bottom must be less than top");
+		}
+		if (near <= 0.0f) {
+			throw new IllegalArgumentException("Near must be positive");
+		}
+		if (far <= 0.0f) {
+			throw new IllegalArgumentException("Far must be positive");
+		}
+		if (near >= far) {
+			throw new IllegalArgumentException("Near must be less than far");
+		}
+		final float dX = right - left;
+		final float dY = top - bottom;
+		final float dZ = near - far;
+		return set(2.0f * near / dX, 0.0f, (right + left) / dX, 0.0f, 0.0f, 2.0f * near / dY, (top + bottom) / dY, 0.0f, 0.0f, 0.0f, (near + far) / dZ, 2.0f * near * far / dZ, 0.0f, 0.0f, -1.0f, 0.0f);
+	}
+
+	/**
+	 * Set this matrix to a perspective projection matrix.
+	 * 
+	 * @param fieldOfViewX
+	 *            the field of view angle along the x axis (must be in radians)
+	 * @param fieldOfViewY
+	 *            the field of view angle along the y axis (must be in radians)
+	 * @param near
+	 *            the position of the near plane of the perspective projection along the z axis
+	 * @param far
+	 *            the position of the far plane of the perspective projection along the z axis
+	 * @return this matrix
+	 */
+	public Matrix4f perspectiveProjection(final float fieldOfViewX, final float fieldOfViewY, final float near, final float far) {
+		final float x = ((float) Math.tan(fieldOfViewX / 2.0f)) * near;
+		final float y = ((float) Math.tan(fieldOfViewY / 2.0f)) * near;
+		return perspectiveProjection(-x, x, -y, y, near, far);
+	}
+
+	@Override
+	public boolean equals(final Object object) {
+		return (object instanceof Matrix4f) && Arrays.equals(elements, ((Matrix4f) object).elements);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(elements);
+	}
+
+	@Override
+	public String toString() {
+		final Object[] arguments = new Object[elements.length]; // elements are primitives so boxing is needed
+		for (int i = 0; i < elements.length; i++) {
+			arguments[i] = elements[i];
+		}
+		return String.format(FORMAT, arguments);
+	}
+
+	private Matrix4f set(final float m00, final float m01, final float m02, final float m03, final float m10, final float m11, final float m12, final float m13, final float m20, final float m21, final float m22, final float m23, final float m30, final float m31, final float m32, final float m33) {
+		elements[0] = m00;
+		elements[1] = m01;
+		elements[2] = m02;
+		elements[3] = m03;
+		elements[4] = m10;
+		elements[5] = m11;
+		elements[6] = m12;
+		elements[7] = m13;
+		elements[8] = m20;
+		elements[9] = m21;
+		elements[10] = m22;
+		elements[11] = m23;
+		elements[12] = m30;
+		elements[13] = m31;
+		elements[14] = m32;
+		elements[15] = m33;
+		return this;
+	}
+}
@@ -0,0 +1,466 @@
+package gr.uoa.di.thanos.botcraft.geometry;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.xml.bind.JAXBElement;
+
+import org.khronos.collada.InstanceWithExtra;
+import org.khronos.collada.Node;
+import org.khronos.collada.Rotate;
+import org.khronos.collada.TargetableFloat3;
+
+/**
+ * A hierarchy of transformations, each one relative to its parent. Each node has a local transformation, either composed of a translation, a rotation (stored as a unit quaternion) and a scaling or given explicitly as a matrix, and a world transformation, which is the world transformation of its parent multiplied by its local transformation. Nodes are stored in flat arrays, parents before children (a parent must exist before its children are added), so world transformations are updated in a single linear pass starting from the first node changed. Changing a local transformation only marks the node dirty; world transformations are recomputed lazily, the first time they are requested afterwards, and only for dirty nodes and their descendants. Once clean, nodes that do not change (e.g. static props) cost nothing per frame.
+ *
+ * @author thanos
+ */
+public class TransformHierarchy {
+	private static final int NONE = -1;
+	private static final int MATRIX_SIZE = 16;
+	private static final int TRANSLATION_SIZE = 3;
+	private static final int ROTATION_SIZE = 4;
+	private static final int SCALE_SIZE = 3;
+	private static final int DEFAULT_CAPACITY = 16;
+	private static final String TRANSLATE = "translate";
+	private static final String SCALE = "scale";
+	private static final String URL_PREFIX = "#";
+
+	private int[] parents;
+	private float[] translations;
+	private float[] rotations;
+	private float[] scales;
+	private float[] localMatrices;
+	private float[] worldMatrices;
+	private boolean[] explicit;
+	private boolean[] dirty;
+	private int[] updates;
+	private int size;
+	private int firstDirty;
+	private int update;
+
+	/**
+	 * Construct a new empty transform hierarchy.
+	 */
+	public TransformHierarchy() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Construct a new empty transform hierarchy.
+	 *
+	 * @param capacity
+	 *            the initial number of nodes the hierarchy can hold (it grows as needed)
+	 */
+	public TransformHierarchy(final int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity must be positive");
+		}
+		parents = new int[capacity];
+		translations = new float[capacity * TRANSLATION_SIZE];
+		rotations = new float[capacity * ROTATION_SIZE];
+		scales = new float[capacity * SCALE_SIZE];
+		localMatrices = new float[capacity * MATRIX_SIZE];
+		worldMatrices = new float[capacity * MATRIX_SIZE];
+		explicit = new boolean[capacity];
+		dirty = new boolean[capacity];
+		updates = new int[capacity];
+		size = 0;
+		firstDirty = 0;
+		update = 0;
+	}
+
+	/**
+	 * Get the number of nodes in this hierarchy.
+	 *
+	 * @return the number of nodes in this hierarchy
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Get the parent of a node.
+	 *
+	 * @param node
+	 *            the node
+	 * @return the parent of the node or <code>-1</code> if the node is a root
+	 */
+	public int getParent(final int node) {
+		checkNode(node);
+		return parents[node];
+	}
+
+	/**
+	 * Check whether any world transformations need to be recomputed.
+	 *
+	 * @return <code>true</code> if any node has changed since the last update, <code>false</code> otherwise
+	 */
+	public boolean isDirty() {
+		return firstDirty < size;
+	}
+
+	/**
+	 * Add a node with the identity as its local transformation.
+	 *
+	 * @param parent
+	 *            the parent of the node (must already exist) or <code>-1</code> to add a root
+	 * @return the node added
+	 */
+	public int add(final int parent) {
+		if (parent != NONE) {
+			checkNode(parent);
+		}
+		if (size == parents.length) {
+			grow();
+		}
+		final int node = size++;
+		parents[node] = parent;
+		Arrays.fill(translations, node * TRANSLATION_SIZE, (node + 1) * TRANSLATION_SIZE, 0.0f);
+		Arrays.fill(rotations, node * ROTATION_SIZE, (node + 1) * ROTATION_SIZE - 1, 0.0f);
+		rotations[(node + 1) * ROTATION_SIZE - 1] = 1.0f;
+		Arrays.fill(scales, node * SCALE_SIZE, (node + 1) * SCALE_SIZE, 1.0f);
+		explicit[node] = false;
+		markDirty(node);
+		return node;
+	}
+
+	/**
+	 * Add a COLLADA node and all its descendants, both nested and instantiated. The transformation elements of each node (<code>matrix</code>, <code>translate</code>, <code>rotate</code> and <code>scale</code>) are composed in document order into its local matrix.
+	 *
+	 * @param parent
+	 *            the parent of the node (must already exist) or <code>-1</code> to add a root
+	 * @param node
+	 *            the COLLADA node to add
+	 * @param library
+	 *            the COLLADA nodes that may be instantiated, by ID (e.g. the contents of <code>library_nodes</code>)
+	 * @return the node added
+	 */
+	public int add(final int parent, final Node node, final Map<String, Node> library) {
+		Objects.requireNonNull(node, "Node must not be null");
+		Objects.requireNonNull(library, "Library must not be null");
+		final Matrix4f local = new Matrix4f();
+		final Matrix4f matrix = new Matrix4f();
+		final float[] elements = new float[MATRIX_SIZE];
+		for (final Object transformation : node.getLookatOrMatrixOrRotate()) {
+			if (transformation instanceof org.khronos.collada.Matrix) {
+				final List<Double> values = ((org.khronos.collada.Matrix) transformation).getValue();
+				if (values.size() != MATRIX_SIZE) {
+					throw new IllegalArgumentException("Matrix of node " + node.getId() + " must have " + MATRIX_SIZE + " elements");
+				}
+				for (int i = 0; i < MATRIX_SIZE; i++) {
+					elements[i] = values.get(i).floatValue();
+				}
+				local.multiply(local, matrix.set(elements, 0)); // COLLADA matrices are row major as well
+			} else if (transformation instanceof Rotate) {
+				final List<Double> values = ((Rotate) transformation).getValue();
+				local.rotate((float) Math.toRadians(values.get(3)), values.get(0).floatValue(), values.get(1).floatValue(), values.get(2).floatValue());
+			} else if ((transformation instanceof JAXBElement) && (((JAXBElement<?>) transformation).getValue() instanceof TargetableFloat3)) {
+				final String name = ((JAXBElement<?>) transformation).getName().getLocalPart();
+				final List<Double> values = ((TargetableFloat3) ((JAXBElement<?>) transformation).getValue()).getValue();
+				if (TRANSLATE.equals(name)) {
+					local.translate(values.get(0).floatValue(), values.get(1).floatValue(), values.get(2).floatValue());
+				} else if (SCALE.equals(name)) {
+					local.scale(values.get(0).floatValue(), values.get(1).floatValue(), values.get(2).floatValue());
+				} else {
+					throw new IllegalArgumentException("Unsupported transformation " + name + " of node " + node.getId());
+				}
+			} else {
+				throw new IllegalArgumentException("Unsupported transformation " + transformation.getClass().getSimpleName() + " of node " + node.getId());
+			}
+		}
+		final int added = add(parent);
+		setLocalMatrix(added, local);
+		for (final Node child : node.getNode()) {
+			add(added, child, library);
+		}
+		for (final InstanceWithExtra instance : node.getInstanceNode()) {
+			final String url = instance.getUrl();
+			final Node instantiated = (url == null) ? null : library.get(url.startsWith(URL_PREFIX) ? url.substring(URL_PREFIX.length()) : url);
+			if (instantiated == null) {
+				throw new IllegalArgumentException("Node " + url + " instantiated by node " + node.getId() + " does not exist");
+			}
+			add(added, instantiated, library);
+		}
+		return added;
+	}
+
+	/**
+	 * Set the translation of the local transformation of a node. If the local transformation of the node was given explicitly as a matrix, rotation and scaling are reset to the identity.
+	 *
+	 * @param node
+	 *            the node
+	 * @param x
+	 *            the x component of the translation
+	 * @param y
+	 *            the y component of the translation
+	 * @param z
+	 *            the z component of the translation
+	 */
+	public void setTranslation(final int node, final float x, final float y, final float z) {
+		checkNode(node);
+		final int r = node * ROTATION_SIZE;
+		final int s = node * SCALE_SIZE;
+		setTRS(node, x, y, z, rotations[r], rotations[r + 1], rotations[r + 2], rotations[r + 3], scales[s], scales[s + 1], scales[s + 2]);
+	}
+
+	/**
+	 * Set the rotation of the local transformation of a node as a rotation around an axis. If the local transformation of the node was given explicitly as a matrix, translation and scaling are reset to the identity.
+	 *
+	 * @param node
+	 *            the node
+	 * @param angle
+	 *            the angle to rotate by (must be in radians)
+	 * @param x
+	 *            the x component of the vector specifying the direction around which to rotate
+	 * @param y
+	 *            the y component of the vector specifying the direction around which to rotate
+	 * @param z
+	 *            the z component of the vector specifying the direction around which to rotate
+	 */
+	public void setRotation(final int node, final float angle, final float x, final float y, final float z) {
+		final float length = (float) Math.sqrt(x * x + y * y + z * z);
+		if (length == 0.0f) {
+			throw new IllegalArgumentException("Vector must not have zero length");
+		}
+		final float sin = (float) Math.sin(angle / 2.0f) / length;
+		setQuaternion(node, x * sin, y * sin, z * sin, (float) Math.cos(angle / 2.0f));
+	}
+
+	/**
+	 * Set the rotation of the local transformation of a node as a quaternion. The quaternion is normalized. If the local transformation of the node was given explicitly as a matrix, translation and scaling are reset to the identity.
+	 *
+	 * @param node
+	 *            the node
+	 * @param x
+	 *            the x component of the quaternion
+	 * @param y
+	 *            the y component of the quaternion
+	 * @param z
+	 *            the z component of the quaternion
+	 * @param w
+	 *            the w (scalar) component of the quaternion
+	 */
+	public void setQuaternion(final int node, final float x, final float y, final float z, final float w) {
+		checkNode(node);
+		final float length = (float) Math.sqrt(x * x + y * y + z * z + w * w);
+		if (length == 0.0f) {
+			throw new IllegalArgumentException("Quaternion must not have zero length");
+		}
+		final int t = node * TRANSLATION_SIZE;
+		final int s = node * SCALE_SIZE;
+		setTRS(node, translations[t], translations[t + 1], translations[t + 2], x / length, y / length, z / length, w / length, scales[s], scales[s + 1], scales[s + 2]);
+	}
+
+	/**
+	 * Set the scaling of the local transformation of a node. If the local transformation of the node was given explicitly as a matrix, translation and rotation are reset to the identity.
+	 *
+	 * @param node
+	 *            the node
+	 * @param x
+	 *            the x scaling factor
+	 * @param y
+	 *            the y scaling factor
+	 * @param z
+	 *            the z scaling factor
+	 */
+	public void setScale(final int node, final float x, final float y, final float z) {
+		checkNode(node);
+		final int t = node * TRANSLATION_SIZE;
+		final int r = node * ROTATION_SIZE;
+		setTRS(node, translations[t], translations[t + 1], translations[t + 2], rotations[r], rotations[r + 1], rotations[r + 2], rotations[r + 3], x, y, z);
+	}
+
+	/**
+	 * Set the local transformation of a node explicitly as a matrix (e.g. a transformation that cannot be decomposed into translation, rotation and scaling).
+	 *
+	 * @param node
+	 *            the node
+	 * @param matrix
+	 *            the local transformation of the node
+	 */
+	public void setLocalMatrix(final int node, final Matrix4f matrix) {
+		checkNode(node);
+		Objects.requireNonNull(matrix, "Matrix must not be null");
+		if (explicit[node] && equals(localMatrices, node * MATRIX_SIZE, matrix.getElements())) {
+			return; // unchanged
+		}
+		explicit[node] = true;
+		System.arraycopy(matrix.getElements(), 0, localMatrices, node * MATRIX_SIZE, MATRIX_SIZE);
+		Arrays.fill(translations, node * TRANSLATION_SIZE, (node + 1) * TRANSLATION_SIZE, 0.0f);
+		Arrays.fill(rotations, node * ROTATION_SIZE, (node + 1) * ROTATION_SIZE - 1, 0.0f);
+		rotations[(node + 1) * ROTATION_SIZE - 1] = 1.0f;
+		Arrays.fill(scales, node * SCALE_SIZE, (node + 1) * SCALE_SIZE, 1.0f);
+		markDirty(node);
+	}
+
+	/**
+	 * Get the local transformation of a node.
+	 *
+	 * @param node
+	 *            the node
+	 * @param destination
+	 *            the matrix to store the local transformation of the node into
+	 * @return the destination matrix
+	 */
+	public Matrix4f getLocalMatrix(final int node, final Matrix4f destination) {
+		checkNode(node);
+		Objects.requireNonNull(destination, "Destination must not be null");
+		update();
+		return destination.set(localMatrices, node * MATRIX_SIZE);
+	}
+
+	/**
+	 * Get the world transformation of a node, updating world transformations if needed.
+	 *
+	 * @param node
+	 *            the node
+	 * @param destination
+	 *            the matrix to store the world transformation of the node into
+	 * @return the destination matrix
+	 */
+	public Matrix4f getWorldMatrix(final int node, final Matrix4f destination) {
+		checkNode(node);
+		Objects.requireNonNull(destination, "Destination must not be null");
+		update();
+		return destination.set(worldMatrices, node * MATRIX_SIZE);
+	}
+
+	/**
+	 * Get the world transformations of all nodes, updating them if needed. The world transformation of each node occupies 16 consecutive elements (in row major order), starting at 16 times the node, so the array can be uploaded as is (e.g. as an array of uniform matrices). The array is not copied and is replaced when the hierarchy grows.
+	 *
+	 * @return the array containing the world transformations of all nodes
+	 */
+	public float[] getWorldMatrices() {
+		update();
+		return worldMatrices;
+	}
+
+	/**
+	 * Recompute the world transformations of all dirty nodes and their descendants, in a single pass over the nodes starting from the first node changed. Nothing is done if no node has changed since the last update.
+	 */
+	public void update() {
+		if (firstDirty >= size) {
+			return;
+		}
+		update++;
+		for (int node = firstDirty; node < size; node++) {
+			final int parent = parents[node];
+			final boolean parentUpdated = (parent != NONE) && (updates[parent] == update);
+			if (!(dirty[node] || parentUpdated)) {
+				continue;
+			}
+			if (dirty[node]) {
+				updateLocal(node);
+			}
+			if (parent == NONE) {
+				System.arraycopy(localMatrices, node * MATRIX_SIZE, worldMatrices, node * MATRIX_SIZE, MATRIX_SIZE);
+			} else {
+				multiply(worldMatrices, parent * MATRIX_SIZE, localMatrices, node * MATRIX_SIZE, worldMatrices, node * MATRIX_SIZE);
+			}
+			updates[node] = update;
+		}
+		firstDirty = size;
+	}
+
+	private static boolean equals(final float[] array, final int offset, final float[] elements) {
+		for (int i = 0; i < elements.length; i++) {
+			if (array[offset + i] != elements[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static void multiply(final float[] left, final int leftOffset, final float[] right, final int rightOffset, final float[] result, final int resultOffset) {
+		for (int row = 0; row < 4; row++) {
+			final float l0 = left[leftOffset + row * 4];
+			final float l1 = left[leftOffset + row * 4 + 1];
+			final float l2 = left[leftOffset + row * 4 + 2];
+			final float l3 = left[leftOffset + row * 4 + 3];
+			for (int column = 0; column < 4; column++) {
+				result[resultOffset + row * 4 + column] = l0 * right[rightOffset + column] + l1 * right[rightOffset + 4 + column] + l2 * right[rightOffset + 8 + column] + l3 * right[rightOffset + 12 + column];
+			}
+		}
+	}
+
+	private void checkNode(final int node) {
+		if ((node < 0) || (node >= size)) {
+			throw new IllegalArgumentException("Node must be between 0 and " + (size - 1));
+		}
+	}
+
+	private void grow() {
+		final int capacity = parents.length * 2;
+		parents = Arrays.copyOf(parents, capacity);
+		translations = Arrays.copyOf(translations, capacity * TRANSLATION_SIZE);
+		rotations = Arrays.copyOf(rotations, capacity * ROTATION_SIZE);
+		scales = Arrays.copyOf(scales, capacity * SCALE_SIZE);
+		localMatrices = Arrays.copyOf(localMatrices, capacity * MATRIX_SIZE);
+		worldMatrices = Arrays.copyOf(worldMatrices, capacity * MATRIX_SIZE);
+		explicit = Arrays.copyOf(explicit, capacity);
+		dirty = Arrays.copyOf(dirty, capacity);
+		updates = Arrays.copyOf(updates, capacity);
+	}
+
+	private void setTRS(final int node, final float tX, final float tY, final float tZ, final float rX, final float rY, final float rZ, final float rW, final float sX, final float sY, final float sZ) {
+		final int t = node * TRANSLATION_SIZE;
+		final int r = node * ROTATION_SIZE;
+		final int s = node * SCALE_SIZE;
+		if ((!explicit[node]) && (translations[t] == tX) && (translations[t + 1] == tY) && (translations[t + 2] == tZ) && (rotations[r] == rX) && (rotations[r + 1] == rY) && (rotations[r + 2] == rZ) && (rotations[r + 3] == rW) && (scales[s] == sX) && (scales[s + 1] == sY) && (scales[s + 2] == sZ)) {
+			return; // unchanged, so setting the same transformation every frame costs nothing
+		}
+		explicit[node] = false;
+		translations[t] = tX;
+		translations[t + 1] = tY;
+		translations[t + 2] = tZ;
+		rotations[r] = rX;
+		rotations[r + 1] = rY;
+		rotations[r + 2] = rZ;
+		rotations[r + 3] = rW;
+		scales[s] = sX;
+		scales[s + 1] = sY;
+		scales[s + 2] = sZ;
+		markDirty(node);
+	}
+
+	private void markDirty(final int node) {
+		dirty[node] = true;
+		firstDirty = Math.min(firstDirty, node);
+	}
+
+	private void updateLocal(final int node) {
+		if (!explicit[node]) {
+			final int t = node * TRANSLATION_SIZE;
+			final int r = node * ROTATION_SIZE;
+			final int s = node * SCALE_SIZE;
+			final int m = node * MATRIX_SIZE;
+			final float x = rotations[r];
+			final float y = rotations[r + 1];
+			final float z = rotations[r + 2];
+			final float w = rotations[r + 3];
+			final float sX = scales[s];
+			final float sY = scales[s + 1];
+			final float sZ = scales[s + 2];
+			localMatrices[m] = (1.0f - 2.0f * (y * y + z * z)) * sX;
+			localMatrices[m + 1] = 2.0f * (x * y - z * w) * sY;
+			localMatrices[m + 2] = 2.0f * (x * z + y * w) * sZ;
+			localMatrices[m + 3] = translations[t];
+			localMatrices[m + 4] = 2.0f * (x * y + z * w) * sX;
+			localMatrices[m + 5] = (1.0f - 2.0f * (x * x + z * z)) * sY;
+			localMatrices[m + 6] = 2.0f * (y * z - x * w) * sZ;
+			localMatrices[m + 7] = translations[t + 1];
+			localMatrices[m + 8] = 2.0f * (x * z - y * w) * sX;
+			localMatrices[m + 9] = 2.0f * (y * z + x * w) * sY;
+			localMatrices[m + 10] = (1.0f - 2.0f * (x * x + y * y)) * sZ;
+			localMatrices[m + 11] = translations[t + 2];
+			localMatrices[m + 12] = 0.0f;
+			localMatrices[m + 13] = 0.0f;
+			localMatrices[m + 14] = 0.0f;
+			localMatrices[m + 15] = 1.0f;
+		}
+		dirty[node] = false;
+	}
+}
@@ -0,0 +1,206 @@
+package gr.uoa.di.thanos.botcraft.geometry;
+
+/**
+ * Class representing a mutable 3D vector. Unlike {@link Vector}, operations write their result into an existing vector (usually this one) instead of allocating a new one, so vectors can be reused on per frame paths without producing garbage. Operations may be chained.
+ * 
+ * @author thanos
+ */
+public class Vector3f {
+	private static final String FORMAT = "(%1$ ,12.3f, %2$ ,12.3f, %3$ ,12.3f)";
+
+	private float x;
+	private float y;
+	private float z;
+
+	/**
+	 * Construct a new zero vector.
+	 */
+	public Vector3f() {
+		this(0.0f, 0.0f, 0.0f);
+	}
+
+	/**
+	 * Construct a new 3D vector.
+	 * 
+	 * @param x
+	 *            the x component of this vector
+	 * @param y
+	 *            the y component of this vector
+	 * @param z
+	 *            the z component of this vector
+	 */
+	public Vector3f(final float x, final float y, final float z) {
+		set(x, y, z);
+	}
+
+	/**
+	 * Get the x component of this vector.
+	 * 
+	 * @return the x component of this vector
+	 */
+	public float getX() {
+		return x;
+	}
+
+	/**
+	 * Get the y component of this vector.
+	 * 
+	 * @return the y component of this vector
+	 */
+	public float getY() {
+		return y;
+	}
+
+	/**
+	 * Get the z component of this vector.
+	 * 
+	 * @return the z component of this vector
+	 */
+	public float getZ() {
+		return z;
+	}
+
+	/**
+	 * Set the components of this vector.
+	 * 
+	 * @param x
+	 *            the x component of this vector
+	 * @param y
+	 *            the y component of this vector
+	 * @param z
+	 *            the z component of this vector
+	 * @return this vector
+	 */
+	public Vector3f set(final float x, final float y, final float z) {
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		return this;
+	}
+
+	/**
+	 * Set this vector to a copy of another vector.
+	 * 
+	 * @param vector
+	 *            the vector to copy
+	 * @return this vector
+	 */
+	public Vector3f set(final Vector3f vector) {
+		return set(vector.x, vector.y, vector.z);
+	}
+
+	/**
+	 * Set this vector to the product of a vector by a scalar.
+	 * 
+	 * @param vector
+	 *            the vector to multiply (may be this vector)
+	 * @param scalar
+	 *            the scalar to multiply by
+	 * @return this vector
+	 */
+	public Vector3f multiply(final Vector3f vector, final float scalar) {
+		return set(scalar * vector.x, scalar * vector.y, scalar * vector.z);
+	}
+
+	/**
+	 * Set this vector to the sum of two vectors.
+	 * 
+	 * @param left
+	 *            the vector to add to (may be this vector)
+	 * @param right
+	 *            the vector to add (may be this vector)
+	 * @return this vector
+	 */
+	public Vector3f add(final Vector3f left, final Vector3f right) {
+		return set(left.x + right.x, left.y + right.y, left.z + right.z);
+	}
+
+	/**
+	 * Set this vector to the difference of two vectors.
+	 * 
+	 * @param left
+	 *            the vector to subtract from (may be this vector)
+	 * @param right
+	 *            the vector to subtract (may be this vector)
+	 * @return this vector
+	 */
+	public Vector3f subtract(final Vector3f left, final Vector3f right) {
+		return set(left.x - right.x, left.y - right.y, left.z - right.z);
+	}
+
+	/**
+	 * Set this vector to the cross product of two vectors.
+	 * 
+	 * @param left
+	 *            the vector to multiply (may be this vector)
+	 * @param right
+	 *            the vector to multiply by (may be this vector)
+	 * @return this vector
+	 */
+	public Vector3f cross(final Vector3f left, final Vector3f right) {
+		return set(left.y * right.z - left.z * right.y, left.z * right.x - left.x * right.z, left.x * right.y - left.y * right.x);
+	}
+
+	/**
+	 * Set this vector to the transformation of a point (a vector with homogenous w component of 1) by a matrix, divided by the w component of the result.
+	 * 
+	 * @param matrix
+	 *            the matrix to transform by
+	 * @param point
+	 *            the point to transform (may be this vector)
+	 * @return this vector
+	 */
+	public Vector3f transform(final Matrix4f matrix, final Vector3f point) {
+		final float[] m = matrix.getElements();
+		final float w = m[12] * point.x + m[13] * point.y + m[14] * point.z + m[15];
+		return set((m[0] * point.x + m[1] * point.y + m[2] * point.z + m[3]) / w, (m[4] * point.x + m[5] * point.y + m[6] * point.z + m[7]) / w, (m[8] * point.x + m[9] * point.y + m[10] * point.z + m[11]) / w);
+	}
+
+	/**
+	 * Calculate the dot product of this vector by another vector.
+	 * 
+	 * @param vector
+	 *            the vector to multiply by
+	 * @return the dot product of this vector by the given vector
+	 */
+	public float dot(final Vector3f vector) {
+		return x * vector.x + y * vector.y + z * vector.z;
+	}
+
+	/**
+	 * Calculate the length of this vector.
+	 * 
+	 * @return the length of this vector
+	 */
+	public float length() {
+		return (float) Math.sqrt(dot(this));
+	}
+
+	/**
+	 * Normalize this vector (must not have zero length).
+	 * 
+	 * @return this vector
+	 */
+	public Vector3f normalize() {
+		final float length = length();
+		if (length == 0.0f) {
+			throw new IllegalStateException("Can not normalize a vector with zero length");
+		}
+		return multiply(this, 1.0f / length);
+	}
+
+	@Override
+	public boolean equals(final Object object) {
+		return (object instanceof Vector3f) && (x == ((Vector3f) object).x) && (y == ((Vector3f) object).y) && (z == ((Vector3f) object).z);
+	}
+
+	@Override
+	public int hashCode() {
+		return Float.floatToIntBits(x) + Float.floatToIntBits(y) + Float.floatToIntBits(z);
+	}
+
+	@Override
+	public String toString() {
+		return String.format(FORMAT, x, y, z);
+	}
+}
@@ -0,0 +1,279 @@
+package gr.uoa.di.thanos.botcraft.geometry;
+
+import java.util.Objects;
+
+/**
+ * Bulk operations on 3D vectors packed as structures of arrays: one array per component, the i-th vector consisting of the i-th element of each array. Each operation is a single loop over consecutive elements without branches or allocations, which the JIT compiler can unroll and vectorize, so large batches (e.g. all units of a map) are processed much faster than with {@link Vector} and {@link Matrix}, which allocate per operation. Results may be written over the inputs.
+ * 
+ * @author thanos
+ */
+public class VectorArrays {
+	private VectorArrays() {
+	}
+
+	/**
+	 * Transform points (vectors with homogenous w component of 1) by a matrix, keeping the w component of the results (e.g. for clipping).
+	 * 
+	 * @param matrix
+	 *            the matrix to transform by
+	 * @param xs
+	 *            the x components of the points
+	 * @param ys
+	 *            the y components of the points
+	 * @param zs
+	 *            the z components of the points
+	 * @param resultXs
+	 *            the array to write the x components of the results to
+	 * @param resultYs
+	 *            the array to write the y components of the results to
+	 * @param resultZs
+	 *            the array to write the z components of the results to
+	 * @param resultWs
+	 *            the array to write the w components of the results to
+	 * @param offset
+	 *            the index of the first point
+	 * @param count
+	 *            the number of points
+	 */
+	public static void transform(final Matrix4f matrix, final float[] xs, final float[] ys, final float[] zs, final float[] resultXs, final float[] resultYs, final float[] resultZs, final float[] resultWs, final int offset, final int count) {
+		Objects.requireNonNull(matrix, "Matrix must not be null");
+		checkRange(offset, count, xs, ys, zs);
+		checkRange(offset, count, resultXs, resultYs, resultZs);
+		checkRange(resultWs, offset, count);
+		final float[] m = matrix.getElements();
+		final float m00 = m[0];
+		final float m01 = m[1];
+		final float m02 = m[2];
+		final float m03 = m[3];
+		final float m10 = m[4];
+		final float m11 = m[5];
+		final float m12 = m[6];
+		final float m13 = m[7];
+		final float m20 = m[8];
+		final float m21 = m[9];
+		final float m22 = m[10];
+		final float m23 = m[11];
+		final float m30 = m[12];
+		final float m31 = m[13];
+		final float m32 = m[14];
+		final float m33 = m[15];
+		for (int i = offset; i < offset + count; i++) {
+			final float x = xs[i];
+			final float y = ys[i];
+			final float z = zs[i];
+			resultXs[i] = m00 * x + m01 * y + m02 * z + m03;
+			resultYs[i] = m10 * x + m11 * y + m12 * z + m13;
+			resultZs[i] = m20 * x + m21 * y + m22 * z + m23;
+			resultWs[i] = m30 * x + m31 * y + m32 * z + m33;
+		}
+	}
+
+	/**
+	 * Transform points (vectors with homogenous w component of 1) by a matrix, dividing the results by their w component (e.g. for projection).
+	 * 
+	 * @param matrix
+	 *            the matrix to transform by
+	 * @param xs
+	 *            the x components of the points
+	 * @param ys
+	 *            the y components of the points
+	 * @param zs
+	 *            the z components of the points
+	 * @param resultXs
+	 *            the array to write the x components of the results to
+	 * @param resultYs
+	 *            the array to write the y components of the results to
+	 * @param resultZs
+	 *            the array to write the z components of the results to
+	 * @param offset
+	 *            the index of the first point
+	 * @param count
+	 *            the number of points
+	 */
+	public static void transformPoints(final Matrix4f matrix, final float[] xs, final float[] ys, final float[] zs, final float[] resultXs, final float[] resultYs, final float[] resultZs, final int offset, final int count) {
+		Objects.requireNonNull(matrix, "Matrix must not be null");
+		checkRange(offset, count, xs, ys, zs);
+		checkRange(offset, count, resultXs, resultYs, resultZs);
+		final float[] m = matrix.getElements();
+		final float m00 = m[0];
+		final float m01 = m[1];
+		final float m02 = m[2];
+		final float m03 = m[3];
+		final float m10 = m[4];
+		final float m11 = m[5];
+		final float m12 = m[6];
+		final float m13 = m[7];
+		final float m20 = m[8];
+		final float m21 = m[9];
+		final float m22 = m[10];
+		final float m23 = m[11];
+		final float m30 = m[12];
+		final float m31 = m[13];
+		final float m32 = m[14];
+		final float m33 = m[15];
+		for (int i = offset; i < offset + count; i++) {
+			final float x = xs[i];
+			final float y = ys[i];
+			final float z = zs[i];
+			final float w = 1.0f / (m30 * x + m31 * y + m32 * z + m33);
+			resultXs[i] = (m00 * x + m01 * y + m02 * z + m03) * w;
+			resultYs[i] = (m10 * x + m11 * y + m12 * z + m13) * w;
+			resultZs[i] = (m20 * x + m21 * y + m22 * z + m23) * w;
+		}
+	}
+
+	/**
+	 * Normalize vectors. Vectors with zero length are normalized to zero vectors.
+	 * 
+	 * @param xs
+	 *            the x components of the vectors
+	 * @param ys
+	 *            the y components of the vectors
+	 * @param zs
+	 *            the z components of the vectors
+	 * @param resultXs
+	 *            the array to write the x components of the results to
+	 * @param resultYs
+	 *            the array to write the y components of the results to
+	 * @param resultZs
+	 *            the array to write the z components of the results to
+	 * @param offset
+	 *            the index of the first vector
+	 * @param count
+	 *            the number of vectors
+	 */
+	public static void normalize(final float[] xs, final float[] ys, final float[] zs, final float[] resultXs, final float[] resultYs, final float[] resultZs, final int offset, final int count) {
+		checkRange(offset, count, xs, ys, zs);
+		checkRange(offset, count, resultXs, resultYs, resultZs);
+		for (int i = offset; i < offset + count; i++) {
+			final float x = xs[i];
+			final float y = ys[i];
+			final float z = zs[i];
+			final float length = 1.0f / (float) Math.sqrt(Math.max(x * x + y * y + z * z, Float.MIN_NORMAL)); // no branch for zero vectors
+			resultXs[i] = x * length;
+			resultYs[i] = y * length;
+			resultZs[i] = z * length;
+		}
+	}
+
+	/**
+	 * Calculate the dot products of pairs of vectors.
+	 * 
+	 * @param xs
+	 *            the x components of the first vectors
+	 * @param ys
+	 *            the y components of the first vectors
+	 * @param zs
+	 *            the z components of the first vectors
+	 * @param otherXs
+	 *            the x components of the second vectors
+	 * @param otherYs
+	 *            the y components of the second vectors
+	 * @param otherZs
+	 *            the z components of the second vectors
+	 * @param results
+	 *            the array to write the dot products to
+	 * @param offset
+	 *            the index of the first pair
+	 * @param count
+	 *            the number of pairs
+	 */
+	public static void dot(final float[] xs, final float[] ys, final float[] zs, final float[] otherXs, final float[] otherYs, final float[] otherZs, final float[] results, final int offset, final int count) {
+		checkRange(offset, count, xs, ys, zs);
+		checkRange(offset, count, otherXs, otherYs, otherZs);
+		checkRange(results, offset, count);
+		for (int i = offset; i < offset + count; i++) {
+			results[i] = xs[i] * otherXs[i] + ys[i] * otherYs[i] + zs[i] * otherZs[i];
+		}
+	}
+
+	/**
+	 * Calculate the cross products of pairs of vectors.
+	 * 
+	 * @param xs
+	 *            the x components of the first vectors
+	 * @param ys
+	 *            the y components of the first vectors
+	 * @param zs
+	 *            the z components of the first vectors
+	 * @param otherXs
+	 *            the x components of the second vectors
+	 * @param otherYs
+	 *            the y components of the second vectors
+	 * @param otherZs
+	 *            the z components of the second vectors
+	 * @param resultXs
+	 *            the array to write the x components of the cross products to
+	 * @param resultYs
+	 *            the array to write the y components of the cross products to
+	 * @param resultZs
+	 *            the array to write the z components of the cross products to
+	 * @param offset
+	 *            the index of the first pair
+	 * @param count
+	 *            the number of pairs
+	 */
+	public static void cross(final float[] xs, final float[] ys, final float[] zs, final float[] otherXs, final float[] otherYs, final float[] otherZs, final float[] resultXs, final float[] resultYs, final float[] resultZs, final int offset, final int count) {
+		checkRange(offset, count, xs, ys, zs);
+		checkRange(offset, count, otherXs, otherYs, otherZs);
+		checkRange(offset, count, resultXs, resultYs, resultZs);
+		for (int i = offset; i < offset + count; i++) {
+			final float x = xs[i];
+			final float y = ys[i];
+			final float z = zs[i];
+			final float otherX = otherXs[i];
+			final float otherY = otherYs[i];
+			final float otherZ = otherZs[i];
+			resultXs[i] = y * otherZ - z * otherY;
+			resultYs[i] = z * otherX - x * otherZ;
+			resultZs[i] = x * otherY - y * otherX;
+		}
+	}
+
+	/**
+	 * Calculate the distances between pairs of points.
+	 * 
+	 * @param xs
+	 *            the x components of the first points
+	 * @param ys
+	 *            the y components of the first points
+	 * @param zs
+	 *            the z components of the first points
+	 * @param otherXs
+	 *            the x components of the second points
+	 * @param otherYs
+	 *            the y components of the second points
+	 * @param otherZs
+	 *            the z components of the second points
+	 * @param results
+	 *            the array to write the distances to
+	 * @param offset
+	 *            the index of the first pair
+	 * @param count
+	 *            the number of pairs
+	 */
+	public static void distance(final float[] xs, final float[] ys, final float[] zs, final float[] otherXs, final float[] otherYs, final float[] otherZs, final float[] results, final int offset, final int count) {
+		checkRange(offset, count, xs, ys, zs);
+		checkRange(offset, count, otherXs, otherYs, otherZs);
+		checkRange(results, offset, count);
+		for (int i = offset; i < offset + count; i++) {
+			final float dX = otherXs[i] - xs[i];
+			final float dY = otherYs[i] - ys[i];
+			final float dZ = otherZs[i] - zs[i];
+			results[i] = (float) Math.sqrt(dX * dX + dY * dY + dZ * dZ);
+		}
+	}
+
+	static void checkRange(final int offset, final int count, final float[] xs, final float[] ys, final float[] zs) {
+		checkRange(xs, offset, count);
+		checkRange(ys, offset, count);
+		checkRange(zs, offset, count);
+	}
+
+	static void checkRange(final float[] array, final int offset, final int count) { // checked before the loops, so that nothing is written on errors
+		Objects.requireNonNull(array, "Arrays must not be null");
+		if ((offset < 0) || (count < 0) || (offset + count > array.length)) {
+			throw new IllegalArgumentException("Offset and count must be within the arrays");
+		}
+	}
+}
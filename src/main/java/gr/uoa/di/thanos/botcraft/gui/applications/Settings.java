@@ -2,14 +2,18 @@ package gr.uoa.di.thanos.botcraft.gui.applications;
 
 import gr.uoa.di.thanos.botcraft.etc.configuration.Configuration;
 import gr.uoa.di.thanos.botcraft.etc.configuration.KeyboardControl;
+import gr.uoa.di.thanos.botcraft.gui.components.AntialiasingListCellRenderer;
 import gr.uoa.di.thanos.botcraft.gui.components.ClDeviceListCellRenderer;
 import gr.uoa.di.thanos.botcraft.gui.components.ClPlatformListCellRenderer;
+import gr.uoa.di.thanos.botcraft.gui.components.ComputeBackendListCellRenderer;
 import gr.uoa.di.thanos.botcraft.gui.components.DisplayModeListCellRenderer;
 import gr.uoa.di.thanos.botcraft.gui.components.KeyboardControlField;
 import gr.uoa.di.thanos.botcraft.gui.components.LanguageListCellRenderer;
 import gr.uoa.di.thanos.botcraft.gui.components.ScreenListCellRenderer;
 import gr.uoa.di.thanos.botcraft.gui.components.SimpleListCellRenderer;
+import gr.uoa.di.thanos.botcraft.renderers.AntialiasingType;
 import gr.uoa.di.thanos.botcraft.renderers.ColorComponent;
+import gr.uoa.di.thanos.botcraft.renderers.ComputeBackendType;
 
 import java.awt.DisplayMode;
 import java.awt.FlowLayout;
@@ -52,16 +56,19 @@ public class Settings extends Application implements ActionListener, ChangeListe
 	private static final long serialVersionUID = 0L;
 	private static final String FRAME_BUFFER_BITS = "frameBuffer_%1$s_Bits";
 	private static final String ADVANCED = "advanced";
+	private static final String ANTIALIASING = "antialiasing";
 	private static final String ARE_YOU_SURE_YOU_WANT_TO_RESET_SETTINGS_ANY_UNSAVED_CHANGES_WILL_BE_LOST = "areYouSureYouWantToResetSettingsAnyUnsavedChangesWillBeLost";
 	private static final String ARE_YOU_SURE_YOU_WANT_TO_RESTORE_DEFAULT_SETTINGS = "areYouSureYouWantToRestoreDefaultSettings";
 	private static final String BOTCRAFT_SETTINGS = "botcraftSettings";
 	private static final String CHANGING_LANGUAGE_REQUIRES_RESTART_TO_TAKE_EFFECT_DO_YOU_WANT_TO_RESTART_NOW = "changingLanguageRequiresRestartToTakeEffectDoYouWantToRestartNow";
+	private static final String COMPUTE_BACKEND = "computeBackend";
 	private static final String CONTROLS = "controls";
 	private static final String DEPTH_BUFFER_BITS = "depthBufferBits";
 	private static final String DISPLAY_FULL_SCREEN = "displayFullScreen";
 	private static final String DISPLAY_MODE = "displayMode";
 	private static final String ENABLE_DOUBLE_BUFFERING = "enableDoubleBuffering";
 	private static final String ENABLE_HARDWARE_ACCELERATION = "enableHardwareAcceleration";
+	private static final String ENABLE_MULTIPLE_OPEN_CL_DEVICES = "enableMultipleOpenClDevices";
 	private static final String ERROR_RESTORING_DEFAULT_SETTINGS = "errorRestoringDefaultSettings";
 	private static final String ERROR_RESTORING_DEFAULT_SETTINGS_MESSAGE = "errorRestoringDefaultSettings";
 	private static final String ERROR_SAVING_SETTINGS = "errorSavingSettings";
@@ -81,6 +88,7 @@ public class Settings extends Application implements ActionListener, ChangeListe
 	private static final String SAVE = "save";
 	private static final String SAVE_SETTINGS = "saveSettings";
 	private static final String SCREEN = "screen";
+	private static final String TERRAIN_MEMORY_BUDGET = "terrainMemoryBudget";
 	private static final String VIDEO = "video";
 	private static final String WOULD_YOU_LIKE_TO_SAVE_YOUR_CHANGES_BEFORE_EXITING = "wouldYouLikeToSaveYourChangesBeforeExiting";
 	private static final Logger LOGGER = Logger.getLogger(Settings.class.getName());
@@ -95,9 +103,13 @@ public class Settings extends Application implements ActionListener, ChangeListe
 	private final JCheckBox doubleBuffered;
 	private final JSpinner[] frameBufferBits;
 	private final JSpinner depthBufferBits;
+	private final JComboBox<AntialiasingType> antialiasings;
 	private final JSpinner sampleBuffers;
+	private final JSpinner terrainMemoryBudget;
 	private final JComboBox<CLPlatform> clPlatforms;
 	private final JComboBox<CLDevice> clDevices;
+	private final JCheckBox multipleClDevices;
+	private final JComboBox<ComputeBackendType> computeBackends;
 	private final JButton save;
 	private final JButton reset;
 	private final JButton restoreDefaults;
@@ -144,9 +156,13 @@ public class Settings extends Application implements ActionListener, ChangeListe
 			frameBufferBits[colorComponent.ordinal()] = addSpinner(advanced, String.format(FRAME_BUFFER_BITS, colorComponent.toString()), 1, Configuration.getMaxFrameBufferBits(configuration.getScreen(), colorComponent), configuration.getFrameBufferBits(colorComponent));
 		}
 		depthBufferBits = addSpinner(advanced, DEPTH_BUFFER_BITS, 1, Configuration.MAX_DEPTH_BUFFER_BITS, configuration.getDepthBufferBits());
+		antialiasings = addComboBox(advanced, ANTIALIASING, AntialiasingType.values(), configuration.getAntialiasing(), true, new AntialiasingListCellRenderer(configuration));
 		sampleBuffers = addSpinner(advanced, SAMPLE_BUFFERS, 0, Configuration.MAX_SAMPLE_BUFFERS, configuration.getSampleBuffers());
+		terrainMemoryBudget = addSpinner(advanced, TERRAIN_MEMORY_BUDGET, Configuration.MIN_TERRAIN_MEMORY_BUDGET, Configuration.MAX_TERRAIN_MEMORY_BUDGET, configuration.getTerrainMemoryBudget());
 		clPlatforms = addComboBox(advanced, OPEN_CL_PLATFORM, CLPlatform.listCLPlatforms(), configuration.getClPlatform(), true, new ClPlatformListCellRenderer(configuration));
 		clDevices = addComboBox(advanced, OPEN_CL_DEVICE, configuration.getClPlatform().listCLDevices(), configuration.getClDevice(), true, new ClDeviceListCellRenderer(configuration));
+		multipleClDevices = addCheckBox(advanced, ENABLE_MULTIPLE_OPEN_CL_DEVICES, configuration.isMultipleClDevices(), true);
+		computeBackends = addComboBox(advanced, COMPUTE_BACKEND, ComputeBackendType.values(), configuration.getComputeBackend(), true, new ComputeBackendListCellRenderer(configuration));
 		add(tabbedPane);
 		final JPanel buttons = new JPanel();
 		buttons.setLayout(new FlowLayout());
@@ -299,7 +315,7 @@ public class Settings extends Application implements ActionListener, ChangeListe
 	}
 
 	private boolean isSaveRequired() {
-		if (!(get(languages).equals(configuration.getLanguage()) && get(screens).equals(configuration.getScreen()) && get(displayModes).equals(configuration.getDisplayMode()) && (get(framesPerSecond) == configuration.getFramesPerSecond()) && (fullScreen.isSelected() == configuration.isFullScreen()) && (hardwareAccelerated.isSelected() == configuration.isHardwareAccelerated()) && (doubleBuffered.isSelected() == configuration.isDoubleBuffered()) && (get(depthBufferBits) == configuration.getDepthBufferBits()) && (get(sampleBuffers) == configuration.getSampleBuffers()) && get(clPlatforms).equals(configuration.getClPlatform()) && get(clDevices).equals(configuration.getClDevice()))) { // any non-control setting has been modified
+		if (!(get(languages).equals(configuration.getLanguage()) && get(screens).equals(configuration.getScreen()) && get(displayModes).equals(configuration.getDisplayMode()) && (get(framesPerSecond) == configuration.getFramesPerSecond()) && (fullScreen.isSelected() == configuration.isFullScreen()) && (hardwareAccelerated.isSelected() == configuration.isHardwareAccelerated()) && (doubleBuffered.isSelected() == configuration.isDoubleBuffered()) && (get(depthBufferBits) == configuration.getDepthBufferBits()) && get(antialiasings).equals(configuration.getAntialiasing()) && (get(sampleBuffers) == configuration.getSampleBuffers()) && (get(terrainMemoryBudget) == configuration.getTerrainMemoryBudget()) && get(clPlatforms).equals(configuration.getClPlatform()) && get(clDevices).equals(configuration.getClDevice()) && (multipleClDevices.isSelected() == configuration.isMultipleClDevices()) && get(computeBackends).equals(configuration.getComputeBackend()))) { // any non-control setting has been modified
 			return true;
 		}
 		for (final KeyboardControl control : KeyboardControl.values()) {
@@ -402,9 +418,13 @@ public class Settings extends Application implements ActionListener, ChangeListe
 				configuration.setFrameBufferBits(colorComponent, get(frameBufferBits[colorComponent.ordinal()]));
 			}
 			configuration.setDepthBufferBits(get(depthBufferBits));
+			configuration.setAntialiasing(get(antialiasings));
 			configuration.setSampleBuffers(get(sampleBuffers));
+			configuration.setTerrainMemoryBudget(get(terrainMemoryBudget));
 			configuration.setClPlatform(get(clPlatforms));
 			configuration.setClDevice(get(clDevices));
+			configuration.setMultipleClDevices(multipleClDevices.isSelected());
+			configuration.setComputeBackend(get(computeBackends));
 			stateChanged(null); // update save and reset
 			return restartRequired;
 		} catch (final BackingStoreException e) {
@@ -426,8 +446,12 @@ public class Settings extends Application implements ActionListener, ChangeListe
 		updateDoubleBuffered(configuration.getScreen());
 		updateFrameBufferBits(configuration.getScreen());
 		depthBufferBits.setValue(configuration.getDepthBufferBits());
+		antialiasings.setSelectedItem(configuration.getAntialiasing());
 		sampleBuffers.setValue(configuration.getSampleBuffers());
+		terrainMemoryBudget.setValue(configuration.getTerrainMemoryBudget());
 		clPlatforms.setSelectedItem(configuration.getClPlatform());
 		updateClDevices(get(clPlatforms)); // saved OpenCL device will be selected
+		multipleClDevices.setSelected(configuration.isMultipleClDevices());
+		computeBackends.setSelectedItem(configuration.getComputeBackend());
 	}
 }
@@ -0,0 +1,32 @@
+package gr.uoa.di.thanos.botcraft.gui.components;
+
+import gr.uoa.di.thanos.botcraft.etc.configuration.Configuration;
+import gr.uoa.di.thanos.botcraft.renderers.AntialiasingType;
+
+import java.util.Objects;
+
+/**
+ * Simple list cell renderer for antialiasing types.
+ * 
+ * @author thanos
+ */
+public class AntialiasingListCellRenderer extends SimpleListCellRenderer<AntialiasingType> {
+	private final Configuration configuration;
+
+	/**
+	 * Construct a new antialiasing list cell renderer.
+	 * 
+	 * @param configuration
+	 *            the configuration to use for localization
+	 */
+	public AntialiasingListCellRenderer(final Configuration configuration) {
+		Objects.requireNonNull(configuration, "Configuration must not be null");
+		this.configuration = configuration;
+	}
+
+	@Override
+	protected String item2String(final AntialiasingType antialiasing) {
+		Objects.requireNonNull(antialiasing, "Antialiasing must not be null");
+		return configuration.format(antialiasing.toString());
+	}
+}
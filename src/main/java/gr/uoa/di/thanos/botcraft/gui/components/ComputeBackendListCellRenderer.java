@@ -0,0 +1,32 @@
+package gr.uoa.di.thanos.botcraft.gui.components;
+
+import gr.uoa.di.thanos.botcraft.etc.configuration.Configuration;
+import gr.uoa.di.thanos.botcraft.renderers.ComputeBackendType;
+
+import java.util.Objects;
+
+/**
+ * Simple list cell renderer for compute backends.
+ * 
+ * @author thanos
+ */
+public class ComputeBackendListCellRenderer extends SimpleListCellRenderer<ComputeBackendType> {
+	private final Configuration configuration;
+
+	/**
+	 * Construct a new compute backend list cell renderer.
+	 * 
+	 * @param configuration
+	 *            the configuration to use for localization
+	 */
+	public ComputeBackendListCellRenderer(final Configuration configuration) {
+		Objects.requireNonNull(configuration, "Configuration must not be null");
+		this.configuration = configuration;
+	}
+
+	@Override
+	protected String item2String(final ComputeBackendType computeBackend) {
+		Objects.requireNonNull(computeBackend, "Compute backend must not be null");
+		return configuration.format(computeBackend.toString());
+	}
+}
@@ -2,14 +2,26 @@ package gr.uoa.di.thanos.botcraft.gui.components;
 
 import gr.uoa.di.thanos.botcraft.etc.configuration.Configuration;
 import gr.uoa.di.thanos.botcraft.etc.configuration.KeyboardControl;
+import gr.uoa.di.thanos.botcraft.game.GameLoop;
 import gr.uoa.di.thanos.botcraft.game.Map;
-import gr.uoa.di.thanos.botcraft.geometry.Matrix;
-import gr.uoa.di.thanos.botcraft.geometry.Vector;
+import gr.uoa.di.thanos.botcraft.geometry.Matrix4f;
+import gr.uoa.di.thanos.botcraft.geometry.TransformHierarchy;
+import gr.uoa.di.thanos.botcraft.input.InputAction;
+import gr.uoa.di.thanos.botcraft.input.InputQueue;
+import gr.uoa.di.thanos.botcraft.input.KeyBindings;
+import gr.uoa.di.thanos.botcraft.profiling.Profiler;
+import gr.uoa.di.thanos.botcraft.profiling.Span;
+import gr.uoa.di.thanos.botcraft.renderers.AntialiasingType;
 import gr.uoa.di.thanos.botcraft.renderers.ColorComponent;
-import gr.uoa.di.thanos.botcraft.renderers.CubeRenderer;
-import gr.uoa.di.thanos.botcraft.renderers.MapRenderer;
+import gr.uoa.di.thanos.botcraft.renderers.FrameGovernor;
+import gr.uoa.di.thanos.botcraft.renderers.FxaaPass;
+import gr.uoa.di.thanos.botcraft.renderers.MapScene;
+import gr.uoa.di.thanos.botcraft.renderers.PostProcessChain;
 import gr.uoa.di.thanos.botcraft.renderers.RendererException;
+import gr.uoa.di.thanos.botcraft.renderers.ResourceLoader;
+import gr.uoa.di.thanos.botcraft.renderers.ScaledFramebuffer;
 
+import java.awt.EventQueue;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
@@ -18,7 +30,6 @@ import java.awt.event.MouseMotionListener;
 import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
 import java.util.Objects;
-import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -32,7 +43,11 @@ import com.jogamp.opengl.GLProfile;
 import com.jogamp.opengl.awt.GLCanvas;
 import com.jogamp.opengl.util.FPSAnimator;
 
-public class MapPanel extends GLCanvas implements GLEventListener, KeyListener, MouseListener, MouseMotionListener, MouseWheelListener {
+public class MapPanel extends GLCanvas implements GameLoop.Simulation, InputQueue.Handler, GLEventListener, KeyListener, MouseListener, MouseMotionListener, MouseWheelListener {
+	private enum CameraState { // components of the snapshots of the camera
+		LATITUDE, LONGITUDE, ALTITUDE, AZIMUTH, ELEVATION, DISTANCE;
+	}
+
 	private static final long serialVersionUID = 0L;
 	private static final float AZIMUTH_MIN = 0.0f;
 	private static final float AZIMUTH_MAX = 2.0f * ((float) Math.PI);
@@ -44,6 +59,10 @@ public class MapPanel extends GLCanvas implements GLEventListener, KeyListener,
 	private static final float ROTATION_SPEED = ((float) Math.PI) / 4.0f; // TODO use configuration
 	private static final float ZOOMING_SPEED = 5.0f; // TODO use configuration
 	private static final int SCROLL_PADDING = 10; // TODO use configuration
+	private static final int TICKS_PER_SECOND = 60; // TODO use configuration
+	private static final int MAX_CATCH_UP_TICKS = 5;
+	private static final int INPUT_QUEUE_CAPACITY = 1024;
+	private static final float DIAGONAL_SCROLLING_SPEED = ((float) Math.pow(2.0f, 1 / 2.0f)) / 2.0f * SCROLLING_SPEED;
 	private static final float FIELD_OF_VIEW_X = 114.0f * (float) Math.PI / 180.0f; // 114 degrees in rads
 	private static final float FIELD_OF_VIEW_Y = 135.0f * (float) Math.PI / 180.0f; // 135 degrees in rads
 	private static final Logger LOGGER = Logger.getLogger(MapPanel.class.getName());
@@ -51,8 +70,23 @@ public class MapPanel extends GLCanvas implements GLEventListener, KeyListener,
 	private final Configuration configuration;
 	private final Map map;
 	private final FPSAnimator animator;
-	private CubeRenderer cubeRenderer;
-	private MapRenderer mapRenderer;
+	private final GameLoop loop;
+	private final float[] previousState;
+	private final float[] currentState;
+	private final KeyBindings bindings;
+	private final InputQueue inputs;
+	private final TransformHierarchy camera;
+	private final int cameraDistance;
+	private final int cameraElevation;
+	private final int cameraAzimuth;
+	private final int cameraPosition;
+	private final Matrix4f transformation;
+	private ResourceLoader loader;
+	private MapScene scene;
+	private ScaledFramebuffer framebuffer;
+	private PostProcessChain postProcessing;
+	private FrameGovernor governor;
+	private int framesPerSecond; // last frame rate requested from the animator
 	private float latitude;
 	private float longitude;
 	private float altitude;
@@ -64,7 +98,8 @@ public class MapPanel extends GLCanvas implements GLEventListener, KeyListener,
 	private float azimuthialSpeed;
 	private float elevationalSpeed;
 	private float distantialSpeed;
-	private long time;
+	private float scrollingAnteriorSpeed; // last scrolling speeds queued by the event dispatch thread
+	private float scrollingLateralSpeed;
 
 	private static GLCapabilities configuration2Capabilities(final Configuration configuration) {
 		Objects.requireNonNull(configuration, "Configuration must not be null");
@@ -80,8 +115,7 @@ public class MapPanel extends GLCanvas implements GLEventListener, KeyListener,
 		capabilities.setBlueBits(configuration.getFrameBufferBits(ColorComponent.BLUE));
 		capabilities.setAlphaBits(configuration.getFrameBufferBits(ColorComponent.ALPHA));
 		capabilities.setDepthBits(configuration.getDepthBufferBits());
-		capabilities.setSampleBuffers(configuration.getSampleBuffers() > 0);
-		capabilities.setNumSamples(configuration.getSampleBuffers());
+		capabilities.setSampleBuffers(false); // multisampling is only done in the scaled framebuffer, since it cannot be blitted to a multisampled window
 		LOGGER.info("Attempting to initialize OpenGL with profile " + profile.getName() + ", " + capabilities2String(capabilities));
 		return capabilities;
 	}
@@ -100,6 +134,15 @@ public class MapPanel extends GLCanvas implements GLEventListener, KeyListener,
 		this.configuration = configuration;
 		this.map = map;
 		animator = new FPSAnimator(this, configuration.getFramesPerSecond());
+		framesPerSecond = configuration.getFramesPerSecond();
+		camera = new TransformHierarchy();
+		final int projection = camera.add(-1);
+		camera.setLocalMatrix(projection, new Matrix4f().perspectiveProjection(FIELD_OF_VIEW_X, FIELD_OF_VIEW_Y, DISTANCE_MIN, DISTANCE_MAX + (float) Math.sqrt(Math.pow(map.getLatitudinalSize(), 2.0f) + Math.pow(map.getLongitudinalSize(), 2.0f))));
+		cameraDistance = camera.add(projection);
+		cameraElevation = camera.add(cameraDistance);
+		cameraAzimuth = camera.add(cameraElevation);
+		cameraPosition = camera.add(cameraAzimuth);
+		transformation = new Matrix4f();
 		latitude = 0.0f;
 		longitude = 0.0f;
 		altitude = 0.0f;
@@ -111,18 +154,27 @@ public class MapPanel extends GLCanvas implements GLEventListener, KeyListener,
 		azimuthialSpeed = 0.0f;
 		elevationalSpeed = 0.0f;
 		distantialSpeed = 0.0f;
-		time = System.nanoTime();
+		scrollingAnteriorSpeed = 0.0f;
+		scrollingLateralSpeed = 0.0f;
+		bindings = new KeyBindings(configuration); // preferences are read once here, not per event
+		inputs = new InputQueue(INPUT_QUEUE_CAPACITY);
+		previousState = new float[CameraState.values().length];
+		currentState = new float[CameraState.values().length];
+		storeState(currentState);
+		loop = new GameLoop(this, currentState, TICKS_PER_SECOND, MAX_CATCH_UP_TICKS);
 		addGLEventListener(this);
 		addKeyListener(this);
 		addMouseListener(this);
 		addMouseMotionListener(this);
 		addMouseWheelListener(this);
+		Profiler.register();
 	}
 
 	@Override
-	public void display(final GLAutoDrawable drawable) {
-		final long now = System.nanoTime();
-		final float dt = (now - time) / (float) TimeUnit.NANOSECONDS.convert(1L, TimeUnit.SECONDS); // dt in fractional seconds
+	public void tick(final float dt, final float[] state) {
+		final long inputStart = Profiler.begin();
+		inputs.drain(this); // input queued since the last tick applies to this tick
+		Profiler.end(Span.INPUT, inputStart);
 		latitude += (((float) Math.cos(azimuth)) * anteriorSpeed - ((float) Math.sin(azimuth)) * lateralSpeed) * dt;
 		latitude = (latitude < 0.0f) ? 0.0f : ((latitude > map.getLatitudinalSize()) ? map.getLatitudinalSize() : latitude);
 		longitude += (((float) Math.sin(azimuth)) * anteriorSpeed + ((float) Math.cos(azimuth)) * lateralSpeed) * dt;
@@ -134,40 +186,224 @@ public class MapPanel extends GLCanvas implements GLEventListener, KeyListener,
 		elevation = (elevation < ELEVATION_MIN) ? ELEVATION_MIN : ((elevation > ELEVATION_MAX) ? ELEVATION_MAX : elevation);
 		distance += distantialSpeed * dt;
 		distance = (distance < DISTANCE_MIN) ? DISTANCE_MIN : ((distance > DISTANCE_MAX) ? DISTANCE_MAX : distance);
+		storeState(state);
+	}
+
+	@Override
+	public void handle(final InputAction action, final KeyboardControl control, final float x, final float y) {
+		switch (action) {
+		case PRESS:
+			switch (control) {
+			case MOVE_FORWARD:
+				anteriorSpeed = SCROLLING_SPEED;
+				break;
+			case MOVE_BACKWARD:
+				anteriorSpeed = -SCROLLING_SPEED;
+				break;
+			case MOVE_LEFT:
+				lateralSpeed = -SCROLLING_SPEED;
+				break;
+			case MOVE_RIGHT:
+				lateralSpeed = SCROLLING_SPEED;
+				break;
+			case MOVE_FORWARD_LEFT:
+				anteriorSpeed = DIAGONAL_SCROLLING_SPEED;
+				lateralSpeed = -DIAGONAL_SCROLLING_SPEED;
+				break;
+			case MOVE_FORWARD_RIGHT:
+				anteriorSpeed = DIAGONAL_SCROLLING_SPEED;
+				lateralSpeed = DIAGONAL_SCROLLING_SPEED;
+				break;
+			case MOVE_BACKWARD_LEFT:
+				anteriorSpeed = -DIAGONAL_SCROLLING_SPEED;
+				lateralSpeed = -DIAGONAL_SCROLLING_SPEED;
+				break;
+			case MOVE_BACKWARD_RIGHT:
+				anteriorSpeed = -DIAGONAL_SCROLLING_SPEED;
+				lateralSpeed = DIAGONAL_SCROLLING_SPEED;
+				break;
+			case TURN_LEFT:
+				azimuthialSpeed = -ROTATION_SPEED;
+				break;
+			case TURN_RIGHT:
+				azimuthialSpeed = ROTATION_SPEED;
+				break;
+			case PITCH_UP:
+				elevationalSpeed = ROTATION_SPEED;
+				break;
+			case PITCH_DOWN:
+				elevationalSpeed = -ROTATION_SPEED;
+				break;
+			case ZOOM_OUT:
+				distantialSpeed = ZOOMING_SPEED;
+				break;
+			case ZOOM_IN:
+				distantialSpeed = -ZOOMING_SPEED;
+				break;
+			default:
+				break;
+			}
+			break;
+		case RELEASE:
+			switch (control) {
+			case MOVE_FORWARD:
+			case MOVE_BACKWARD:
+			case MOVE_LEFT:
+			case MOVE_RIGHT:
+			case MOVE_FORWARD_LEFT:
+			case MOVE_FORWARD_RIGHT:
+			case MOVE_BACKWARD_LEFT:
+			case MOVE_BACKWARD_RIGHT:
+				anteriorSpeed = 0.0f;
+				lateralSpeed = 0.0f;
+				break;
+			case TURN_LEFT:
+			case TURN_RIGHT:
+				azimuthialSpeed = 0.0f;
+				break;
+			case PITCH_UP:
+			case PITCH_DOWN:
+				elevationalSpeed = 0.0f;
+				break;
+			case ZOOM_OUT:
+			case ZOOM_IN:
+				distantialSpeed = 0.0f;
+				break;
+			default:
+				break;
+			}
+			break;
+		case SCROLL:
+			anteriorSpeed = x;
+			lateralSpeed = y;
+			break;
+		case ZOOM:
+			distance -= x / 10.0f; // TODO use configuration
+			distance = (distance < DISTANCE_MIN) ? DISTANCE_MIN : ((distance > DISTANCE_MAX) ? DISTANCE_MAX : distance);
+			break;
+		}
+	}
+
+	@Override
+	public void display(final GLAutoDrawable drawable) {
+		if (loop.getFailure() != null) { // stops the animator, instead of rendering a frozen simulation
+			throw new IllegalStateException("Simulation has failed", loop.getFailure());
+		}
+		final long frameStart = Profiler.begin();
+		final float alpha = loop.getStates(previousState, currentState);
+		float azimuthDifference = currentState[CameraState.AZIMUTH.ordinal()] - previousState[CameraState.AZIMUTH.ordinal()];
+		azimuthDifference += (azimuthDifference > Math.PI) ? -AZIMUTH_MAX : ((azimuthDifference < -Math.PI) ? AZIMUTH_MAX : 0.0f); // the short way round when wrapping
 		final GL3 gl = drawable.getGL().getGL3();
-		gl.glClearColor(0.0f, 0.0f, 0.0f, 1.0f); // opaque black
-		gl.glClear(GL3.GL_COLOR_BUFFER_BIT | GL3.GL_DEPTH_BUFFER_BIT);
-		cubeRenderer.render(gl, projection().multiply(view()));
-		mapRenderer.render(gl, projection().multiply(view()));
+		if (scene != null) {
+			// camera fields belong to the simulation, so the interpolated snapshots are rendered instead
+			final long cameraStart = Profiler.begin();
+			camera.setTranslation(cameraDistance, 0.0f, 0.0f, -interpolate(CameraState.DISTANCE, alpha));
+			camera.setRotation(cameraElevation, interpolate(CameraState.ELEVATION, alpha), 1.0f, 0.0f, 0.0f);
+			camera.setRotation(cameraAzimuth, previousState[CameraState.AZIMUTH.ordinal()] + alpha * azimuthDifference, 0.0f, 1.0f, 0.0f);
+			camera.setTranslation(cameraPosition, -interpolate(CameraState.LONGITUDE, alpha), -interpolate(CameraState.ALTITUDE, alpha), interpolate(CameraState.LATITUDE, alpha));
+			final Matrix4f world = camera.getWorldMatrix(cameraPosition, transformation); // recomputed only when the camera has moved
+			Profiler.end(Span.CAMERA, cameraStart);
+			final int width = drawable.getSurfaceWidth();
+			final int height = drawable.getSurfaceHeight();
+			governor.begin(gl);
+			if ((postProcessing != null) && (width > 0) && (height > 0)) {
+				try {
+					postProcessing.resize(gl, width, height);
+					postProcessing.bind(gl);
+				} catch (final RendererException e) {
+					LOGGER.log(Level.WARNING, "Error resizing post processing chain, rendering without post processing", e);
+					postProcessing.dispose(gl);
+					postProcessing = null;
+				}
+			}
+			if ((framebuffer != null) && (width > 0) && (height > 0)) {
+				try {
+					framebuffer.resize(gl, Math.max(1, Math.round(width * governor.getScale())), Math.max(1, Math.round(height * governor.getScale())), governor.getSamples());
+					framebuffer.bind(gl);
+				} catch (final RendererException e) {
+					LOGGER.log(Level.WARNING, "Error resizing scaled framebuffer, rendering at full size", e);
+					if ((configuration.getSampleBuffers() > 0) && (postProcessing == null)) { // the window is never multisampled and FXAA is not enabled
+						LOGGER.warning("Antialiasing disabled, since multisampling requires the scaled framebuffer");
+					}
+					framebuffer.dispose(gl);
+					framebuffer = null;
+				}
+			}
+			scene.render(gl, world);
+			if ((width > 0) && (height > 0)) {
+				if (framebuffer != null) {
+					framebuffer.blit(gl, (postProcessing == null) ? 0 : postProcessing.getFramebuffer(), width, height);
+				}
+				if (postProcessing != null) {
+					postProcessing.render(gl);
+				}
+			}
+			governor.end(gl);
+			pace(governor.getFramesPerSecond());
+		}
+		final long swapStart = Profiler.begin();
 		swapBuffers();
-		time = now;
+		Profiler.end(Span.SWAP_BUFFERS, swapStart);
 		gl.glFlush();
+		Profiler.end(Span.FRAME, frameStart);
 	}
 
 	@Override
 	public void dispose(final GLAutoDrawable drawable) {
 		animator.stop();
-		final GL3 gl = drawable.getGL().getGL3();
-		cubeRenderer.dispose(gl);
-		mapRenderer.dispose(gl);
+		loop.close();
+		if (loader != null) {
+			loader.close(); // wait for pending uploads before disposing the resources they create
+		}
+		if (governor != null) {
+			governor.dispose(drawable.getGL().getGL3());
+		}
+		if (framebuffer != null) {
+			framebuffer.dispose(drawable.getGL().getGL3());
+		}
+		if (postProcessing != null) {
+			postProcessing.dispose(drawable.getGL().getGL3());
+		}
+		if (scene != null) {
+			scene.dispose(drawable.getGL().getGL3());
+		}
+		Profiler.log();
 	}
 
 	@Override
 	public void init(final GLAutoDrawable drawable) {
 		final GL3 gl = new DebugGL3(drawable.getGL().getGL3());
 		drawable.setGL(gl);
-		gl.glEnable(GL3.GL_DEPTH_TEST);
-		gl.glEnable(GL3.GL_CULL_FACE);
-		gl.glEnable(GL3.GL_MULTISAMPLE);
 		try {
-			cubeRenderer = new CubeRenderer(gl);
-			mapRenderer = new MapRenderer(gl, configuration, map);
+			loader = new ResourceLoader(drawable);
+			scene = new MapScene(gl, configuration, map, loader);
+			framebuffer = new ScaledFramebuffer(gl);
+			if (configuration.getAntialiasing() == AntialiasingType.FXAA) { // instead of multisampling
+				postProcessing = new PostProcessChain(gl);
+				try {
+					postProcessing.add(new FxaaPass(gl));
+				} catch (final RendererException e) {
+					LOGGER.log(Level.WARNING, "Error initializing FXAA, falling back to multisampling", e);
+					postProcessing.dispose(gl);
+					postProcessing = null;
+				}
+			}
+			governor = new FrameGovernor(gl, configuration.getFramesPerSecond(), (postProcessing == null) ? Math.min(configuration.getSampleBuffers(), framebuffer.getMaxSamples()) : 0);
 		} catch (final RendererException e) {
-			LOGGER.log(Level.WARNING, "Error initializing cube renderer", e); // TODO do something worse
+			LOGGER.log(Level.WARNING, "Error initializing map scene", e); // TODO do something worse
+			if (loader != null) {
+				loader.close(); // wait for pending uploads before disposing the resources they create
+				loader = null;
+			}
+			if (scene != null) {
+				scene.dispose(gl);
+				scene = null;
+			}
 		}
 		// altitude = mapRenderer.getAltitude(latitude, longitude);
 		LOGGER.info("Initialized OpenGL with profile " + getGLProfile().getName() + ", " + capabilities2String(getChosenGLCapabilities()));
 		animator.start();
+		loop.start();
 	}
 
 	@Override
@@ -176,58 +412,25 @@ public class MapPanel extends GLCanvas implements GLEventListener, KeyListener,
 
 	@Override
 	public void keyPressed(final KeyEvent event) {
-		if (eventsMatch(event, KeyboardControl.MOVE_FORWARD)) {
-			anteriorSpeed = SCROLLING_SPEED;
-		} else if (eventsMatch(event, KeyboardControl.MOVE_BACKWARD)) {
-			anteriorSpeed = -SCROLLING_SPEED;
-		} else if (eventsMatch(event, KeyboardControl.MOVE_LEFT)) {
-			lateralSpeed = -SCROLLING_SPEED;
-		} else if (eventsMatch(event, KeyboardControl.MOVE_RIGHT)) {
-			lateralSpeed = SCROLLING_SPEED;
-		} else if (eventsMatch(event, KeyboardControl.MOVE_FORWARD_LEFT)) {
-			anteriorSpeed = ((float) Math.pow(2.0f, 1 / 2.0f)) / 2.0f * SCROLLING_SPEED;
-			lateralSpeed = -((float) Math.pow(2.0f, 1 / 2.0f)) / 2.0f * SCROLLING_SPEED;
-		} else if (eventsMatch(event, KeyboardControl.MOVE_FORWARD_RIGHT)) {
-			anteriorSpeed = ((float) Math.pow(2.0f, 1 / 2.0f)) / 2.0f * SCROLLING_SPEED;
-			lateralSpeed = ((float) Math.pow(2.0f, 1 / 2.0f)) / 2.0f * SCROLLING_SPEED;
-		} else if (eventsMatch(event, KeyboardControl.MOVE_BACKWARD_LEFT)) {
-			anteriorSpeed = -((float) Math.pow(2.0f, 1 / 2.0f)) / 2.0f * SCROLLING_SPEED;
-			lateralSpeed = -((float) Math.pow(2.0f, 1 / 2.0f)) / 2.0f * SCROLLING_SPEED;
-		} else if (eventsMatch(event, KeyboardControl.MOVE_BACKWARD_RIGHT)) {
-			anteriorSpeed = -((float) Math.pow(2.0f, 1 / 2.0f)) / 2.0f * SCROLLING_SPEED;
-			lateralSpeed = ((float) Math.pow(2.0f, 1 / 2.0f)) / 2.0f * SCROLLING_SPEED;
-		} else if (eventsMatch(event, KeyboardControl.TURN_LEFT)) {
-			azimuthialSpeed = -ROTATION_SPEED;
-		} else if (eventsMatch(event, KeyboardControl.TURN_RIGHT)) {
-			azimuthialSpeed = ROTATION_SPEED;
-		} else if (eventsMatch(event, KeyboardControl.PITCH_UP)) {
-			elevationalSpeed = ROTATION_SPEED;
-		} else if (eventsMatch(event, KeyboardControl.PITCH_DOWN)) {
-			elevationalSpeed = -ROTATION_SPEED;
-		} else if (eventsMatch(event, KeyboardControl.ZOOM_OUT)) {
-			distantialSpeed = ZOOMING_SPEED;
-		} else if (eventsMatch(event, KeyboardControl.ZOOM_IN)) {
-			distantialSpeed = -ZOOMING_SPEED;
-		} else if (eventsMatch(event, KeyboardControl.PAUSE_RESUME)) {
+		final KeyboardControl control = bindings.get(event);
+		if (control == KeyboardControl.PAUSE_RESUME) { // handled here, since a paused simulation drains no input
 			if (animator.isPaused()) {
 				animator.resume();
+				loop.setPaused(false);
 			} else {
 				animator.pause();
+				loop.setPaused(true);
 			}
+		} else if (control != null) {
+			inputs.offer(InputAction.PRESS, control, 0.0f, 0.0f);
 		}
 	}
 
 	@Override
 	public void keyReleased(final KeyEvent event) {
-		if (eventsMatch(event, KeyboardControl.MOVE_FORWARD, KeyboardControl.MOVE_BACKWARD, KeyboardControl.MOVE_LEFT, KeyboardControl.MOVE_RIGHT, KeyboardControl.MOVE_FORWARD_LEFT, KeyboardControl.MOVE_FORWARD_RIGHT, KeyboardControl.MOVE_BACKWARD_LEFT, KeyboardControl.MOVE_BACKWARD_RIGHT)) {
-			anteriorSpeed = 0.0f;
-			lateralSpeed = 0.0f;
-		} else if (eventsMatch(event, KeyboardControl.TURN_LEFT, KeyboardControl.TURN_RIGHT)) {
-			azimuthialSpeed = 0.0f;
-		} else if (eventsMatch(event, KeyboardControl.PITCH_UP, KeyboardControl.PITCH_DOWN)) {
-			elevationalSpeed = 0.0f;
-		} else if (eventsMatch(event, KeyboardControl.ZOOM_OUT, KeyboardControl.ZOOM_IN)) {
-			distantialSpeed = 0.0f;
+		final KeyboardControl control = bindings.get(event);
+		if ((control != null) && (control != KeyboardControl.PAUSE_RESUME)) {
+			inputs.offer(InputAction.RELEASE, control, 0.0f, 0.0f);
 		}
 	}
 
@@ -249,18 +452,20 @@ public class MapPanel extends GLCanvas implements GLEventListener, KeyListener,
 
 	@Override
 	public void mouseMoved(final MouseEvent event) {
+		float anteriorSpeed = 0.0f;
+		float lateralSpeed = 0.0f;
 		if ((event.getX() < SCROLL_PADDING) && (event.getY() < SCROLL_PADDING)) {
-			anteriorSpeed = ((float) Math.pow(2.0f, 1 / 2.0f)) / 2.0f * SCROLLING_SPEED;
-			lateralSpeed = -((float) Math.pow(2.0f, 1 / 2.0f)) / 2.0f * SCROLLING_SPEED;
+			anteriorSpeed = DIAGONAL_SCROLLING_SPEED;
+			lateralSpeed = -DIAGONAL_SCROLLING_SPEED;
 		} else if ((event.getX() >= getWidth() - SCROLL_PADDING) && (event.getY() < SCROLL_PADDING)) {
-			anteriorSpeed = ((float) Math.pow(2.0f, 1 / 2.0f)) / 2.0f * SCROLLING_SPEED;
-			lateralSpeed = ((float) Math.pow(2.0f, 1 / 2.0f)) / 2.0f * SCROLLING_SPEED;
+			anteriorSpeed = DIAGONAL_SCROLLING_SPEED;
+			lateralSpeed = DIAGONAL_SCROLLING_SPEED;
 		} else if ((event.getX() < SCROLL_PADDING) && (event.getY() >= getHeight() - SCROLL_PADDING)) {
-			anteriorSpeed = -((float) Math.pow(2.0f, 1 / 2.0f)) / 2.0f * SCROLLING_SPEED;
-			lateralSpeed = -((float) Math.pow(2.0f, 1 / 2.0f)) / 2.0f * SCROLLING_SPEED;
+			anteriorSpeed = -DIAGONAL_SCROLLING_SPEED;
+			lateralSpeed = -DIAGONAL_SCROLLING_SPEED;
 		} else if ((event.getX() >= getWidth() - SCROLL_PADDING) && (event.getY() >= getHeight() - SCROLL_PADDING)) {
-			anteriorSpeed = -((float) Math.pow(2.0f, 1 / 2.0f)) / 2.0f * SCROLLING_SPEED;
-			lateralSpeed = ((float) Math.pow(2.0f, 1 / 2.0f)) / 2.0f * SCROLLING_SPEED;
+			anteriorSpeed = -DIAGONAL_SCROLLING_SPEED;
+			lateralSpeed = DIAGONAL_SCROLLING_SPEED;
 		} else if (event.getX() < SCROLL_PADDING) {
 			lateralSpeed = -SCROLLING_SPEED;
 		} else if (event.getX() >= getWidth() - SCROLL_PADDING) {
@@ -269,12 +474,12 @@ public class MapPanel extends GLCanvas implements GLEventListener, KeyListener,
 			anteriorSpeed = SCROLLING_SPEED;
 		} else if (event.getY() >= getHeight() - SCROLL_PADDING) {
 			anteriorSpeed = -SCROLLING_SPEED;
-		} else {
-			anteriorSpeed = 0.0f;
-			lateralSpeed = 0.0f;
-
-			System.out.println("x: " + event.getX() + ", width: " + getWidth());
-			System.out.println("y: " + event.getY() + ", height: " + getHeight());
+		}
+		if ((anteriorSpeed != scrollingAnteriorSpeed) || (lateralSpeed != scrollingLateralSpeed)) { // queued only when changed, not on every move
+			if (inputs.offer(InputAction.SCROLL, null, anteriorSpeed, lateralSpeed)) {
+				scrollingAnteriorSpeed = anteriorSpeed;
+				scrollingLateralSpeed = lateralSpeed;
+			}
 		}
 	}
 
@@ -288,8 +493,7 @@ public class MapPanel extends GLCanvas implements GLEventListener, KeyListener,
 
 	@Override
 	public void mouseWheelMoved(final MouseWheelEvent event) {
-		distance -= event.getPreciseWheelRotation() / 10.0f; // TODO use configuration
-		distance = (distance < DISTANCE_MIN) ? DISTANCE_MIN : ((distance > DISTANCE_MAX) ? DISTANCE_MAX : distance);
+		inputs.offer(InputAction.ZOOM, null, (float) event.getPreciseWheelRotation(), 0.0f);
 	}
 
 	@Override
@@ -298,26 +502,36 @@ public class MapPanel extends GLCanvas implements GLEventListener, KeyListener,
 		gl.glViewport(0, 0, width, height);
 	}
 
-	private Matrix projection() {
-		return Matrix.perspectiveProjection(FIELD_OF_VIEW_X, FIELD_OF_VIEW_Y, DISTANCE_MIN, DISTANCE_MAX + (float) Math.sqrt(Math.pow(map.getLatitudinalSize(), 2.0f) + Math.pow(map.getLongitudinalSize(), 2.0f)));
-
-	}
-
-	private Matrix view() {
-		return Matrix.translation(new Vector(0.0f, 0.0f, -distance)).multiply(Matrix.rotation(elevation, Vector.I).multiply(Matrix.rotation(azimuth, Vector.J).multiply(Matrix.translation(new Vector(-longitude, -altitude, latitude)))));
+	private void pace(final int framesPerSecond) {
+		if (framesPerSecond != this.framesPerSecond) {
+			this.framesPerSecond = framesPerSecond;
+			EventQueue.invokeLater(new Runnable() { // the animator cannot be restarted from its own thread
+				@Override
+				public void run() {
+					if (animator.isStarted()) {
+						final boolean paused = animator.isPaused();
+						animator.stop();
+						animator.setFPS(framesPerSecond);
+						animator.start();
+						if (paused) {
+							animator.pause();
+						}
+					}
+				}
+			});
+		}
 	}
 
-	private boolean eventsMatch(final KeyEvent event, final KeyboardControl control) {
-		final KeyEvent controlEvent = configuration.getKeyEvent(control);
-		return (controlEvent == null) ? false : ((event.getKeyCode() == controlEvent.getKeyCode()) && (event.getKeyLocation() == controlEvent.getKeyLocation()) && (event.getModifiersEx() == controlEvent.getModifiersEx()));
+	private void storeState(final float[] state) {
+		state[CameraState.LATITUDE.ordinal()] = latitude;
+		state[CameraState.LONGITUDE.ordinal()] = longitude;
+		state[CameraState.ALTITUDE.ordinal()] = altitude;
+		state[CameraState.AZIMUTH.ordinal()] = azimuth;
+		state[CameraState.ELEVATION.ordinal()] = elevation;
+		state[CameraState.DISTANCE.ordinal()] = distance;
 	}
 
-	private boolean eventsMatch(final KeyEvent event, final KeyboardControl... controls) {
-		for (final KeyboardControl control : controls) {
-			if (eventsMatch(event, control)) {
-				return true;
-			}
-		}
-		return false;
+	private float interpolate(final CameraState component, final float alpha) {
+		return previousState[component.ordinal()] + alpha * (currentState[component.ordinal()] - previousState[component.ordinal()]);
 	}
 }
@@ -0,0 +1,28 @@
+package gr.uoa.di.thanos.botcraft.input;
+
+/**
+ * Enumeration representing the kinds of input action records passed from the event dispatch thread to the simulation.
+ * 
+ * @author thanos
+ */
+public enum InputAction {
+	/**
+	 * A keyboard control was pressed.
+	 */
+	PRESS,
+
+	/**
+	 * A keyboard control was released.
+	 */
+	RELEASE,
+
+	/**
+	 * The pointer moved to or away from an edge of the view, changing the scrolling speed (anterior speed in x and lateral speed in y).
+	 */
+	SCROLL,
+
+	/**
+	 * The mouse wheel was rotated (rotation in x).
+	 */
+	ZOOM;
+}
@@ -0,0 +1,124 @@
+package gr.uoa.di.thanos.botcraft.input;
+
+import gr.uoa.di.thanos.botcraft.etc.configuration.KeyboardControl;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * A lock free single producer, single consumer ring buffer of input action records, passing input from the event dispatch thread (the producer) to the simulation (the consumer), which applies all records queued at the start of each tick. Records are stored in parallel arrays, so queuing and draining allocate nothing. Records offered while the queue is full are dropped.
+ * 
+ * @author thanos
+ */
+public class InputQueue {
+	/**
+	 * A handler of the input action records drained from a queue.
+	 * 
+	 * @author thanos
+	 */
+	public interface Handler {
+		/**
+		 * Handle an input action record.
+		 * 
+		 * @param action
+		 *            the action
+		 * @param control
+		 *            the keyboard control of the action or <code>null</code> if the action is not a keyboard one
+		 * @param x
+		 *            the first value of the action
+		 * @param y
+		 *            the second value of the action
+		 */
+		void handle(InputAction action, KeyboardControl control, float x, float y);
+	}
+
+	private static final InputAction[] ACTIONS = InputAction.values();
+	private static final KeyboardControl[] CONTROLS = KeyboardControl.values();
+	private static final int NO_CONTROL = -1;
+	private static final Logger LOGGER = Logger.getLogger(InputQueue.class.getName());
+
+	private final int mask;
+	private final byte[] actions;
+	private final byte[] controls;
+	private final float[] xs;
+	private final float[] ys;
+	private final AtomicLong head; // next record to drain, written by the consumer only
+	private final AtomicLong tail; // next record to offer, written by the producer only
+	private long cachedHead; // read by the producer only, to avoid reading the head of the consumer on every offer
+	private long dropped;
+
+	/**
+	 * Construct a new input queue.
+	 * 
+	 * @param capacity
+	 *            the number of records the queue can hold (must be a power of two)
+	 */
+	public InputQueue(final int capacity) {
+		if ((capacity <= 0) || ((capacity & (capacity - 1)) != 0)) {
+			throw new IllegalArgumentException("Capacity must be a positive power of two");
+		}
+		mask = capacity - 1;
+		actions = new byte[capacity];
+		controls = new byte[capacity];
+		xs = new float[capacity];
+		ys = new float[capacity];
+		head = new AtomicLong(0L);
+		tail = new AtomicLong(0L);
+		cachedHead = 0L;
+		dropped = 0L;
+	}
+
+	/**
+	 * Offer an input action record. Must only be called by the producer thread.
+	 * 
+	 * @param action
+	 *            the action
+	 * @param control
+	 *            the keyboard control of the action or <code>null</code> if the action is not a keyboard one
+	 * @param x
+	 *            the first value of the action
+	 * @param y
+	 *            the second value of the action
+	 * @return <code>true</code> if the record was queued, <code>false</code> if the queue was full and the record was dropped
+	 */
+	public boolean offer(final InputAction action, final KeyboardControl control, final float x, final float y) {
+		Objects.requireNonNull(action, "Action must not be null");
+		final long tail = this.tail.get();
+		if (tail - cachedHead > mask) {
+			cachedHead = head.get();
+			if (tail - cachedHead > mask) {
+				if (dropped++ == 0L) {
+					LOGGER.warning("Input queue full, dropping input");
+				}
+				return false;
+			}
+		}
+		final int slot = (int) tail & mask;
+		actions[slot] = (byte) action.ordinal();
+		controls[slot] = (byte) ((control == null) ? NO_CONTROL : control.ordinal());
+		xs[slot] = x;
+		ys[slot] = y;
+		this.tail.lazySet(tail + 1L); // publishes the record written above
+		return true;
+	}
+
+	/**
+	 * Drain all queued input action records, in the order offered. Must only be called by the consumer thread.
+	 * 
+	 * @param handler
+	 *            the handler to pass each record to
+	 * @return the number of records drained
+	 */
+	public int drain(final Handler handler) {
+		Objects.requireNonNull(handler, "Handler must not be null");
+		final long head = this.head.get();
+		final long tail = this.tail.get();
+		for (long record = head; record < tail; record++) {
+			final int slot = (int) record & mask;
+			handler.handle(ACTIONS[actions[slot]], (controls[slot] == NO_CONTROL) ? null : CONTROLS[controls[slot]], xs[slot], ys[slot]);
+		}
+		this.head.lazySet(tail); // frees the slots drained
+		return (int) (tail - head);
+	}
+}
@@ -0,0 +1,86 @@
+package gr.uoa.di.thanos.botcraft.input;
+
+import gr.uoa.di.thanos.botcraft.etc.configuration.Configuration;
+import gr.uoa.di.thanos.botcraft.etc.configuration.KeyboardControl;
+
+import java.awt.event.KeyEvent;
+import java.util.Objects;
+
+/**
+ * Keyboard bindings compiled from a configuration into an open addressing table keyed by key code, location and modifiers, so that looking up the control of a key event is a few array reads, without reading preferences or allocating. Bindings are compiled once; a configuration changed afterwards needs new bindings.
+ * 
+ * @author thanos
+ */
+public class KeyBindings {
+	private static final long EMPTY = -1L;
+	private static final int LOCATION_SHIFT = 24;
+	private static final int CODE_SHIFT = 32;
+	private static final int MODIFIERS_MASK = (1 << LOCATION_SHIFT) - 1;
+
+	private final long[] keys;
+	private final KeyboardControl[] controls;
+	private final int mask;
+
+	private static long key(final int code, final int location, final int modifiers) {
+		return (((long) code) << CODE_SHIFT) | (((long) location) << LOCATION_SHIFT) | (modifiers & MODIFIERS_MASK);
+	}
+
+	/**
+	 * Compile the keyboard bindings of a configuration.
+	 * 
+	 * @param configuration
+	 *            the configuration to compile the bindings of
+	 */
+	public KeyBindings(final Configuration configuration) {
+		Objects.requireNonNull(configuration, "Configuration must not be null");
+		int capacity = 1;
+		while (capacity < 2 * KeyboardControl.values().length) { // at most half full
+			capacity *= 2;
+		}
+		keys = new long[capacity];
+		controls = new KeyboardControl[capacity];
+		mask = capacity - 1;
+		for (int i = 0; i < capacity; i++) {
+			keys[i] = EMPTY;
+		}
+		for (final KeyboardControl control : KeyboardControl.values()) {
+			final KeyEvent event = configuration.getKeyEvent(control);
+			if (event == null) {
+				continue;
+			}
+			final long key = key(event.getKeyCode(), event.getKeyLocation(), event.getModifiersEx());
+			int slot = slot(key);
+			while ((keys[slot] != EMPTY) && (keys[slot] != key)) {
+				slot = (slot + 1) & mask;
+			}
+			if (keys[slot] == EMPTY) { // the first control bound to a key wins
+				keys[slot] = key;
+				controls[slot] = control;
+			}
+		}
+	}
+
+	/**
+	 * Get the keyboard control bound to a key event.
+	 * 
+	 * @param event
+	 *            the key event
+	 * @return the keyboard control bound to the key, location and modifiers of the event or <code>null</code> if none is bound
+	 */
+	public KeyboardControl get(final KeyEvent event) {
+		Objects.requireNonNull(event, "Event must not be null");
+		final long key = key(event.getKeyCode(), event.getKeyLocation(), event.getModifiersEx());
+		for (int slot = slot(key);; slot = (slot + 1) & mask) {
+			if (keys[slot] == key) {
+				return controls[slot];
+			} else if (keys[slot] == EMPTY) {
+				return null;
+			}
+		}
+	}
+
+	private int slot(final long key) {
+		final long hash = key * 0x9e3779b97f4a7c15L; // Fibonacci hashing spreads codes differing in a few bits
+		return (int) (hash >>> CODE_SHIFT) & mask;
+	}
+}
@@ -0,0 +1,128 @@
+package gr.uoa.di.thanos.botcraft.profiling;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations with logarithmic buckets, each power of two split into 16 linear sub-buckets (as in HDR histograms), so that any duration from a nanosecond to about half an hour is recorded with a relative error of at most 1/16 in constant space. Recording is lock free and allocates nothing, so it can be done from any thread on hot paths. Statistics read while recording may be off by the durations being recorded.
+ *
+ * @author thanos
+ */
+public class Histogram {
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int MAX_MAGNITUDE = 40; // highest bit of the longest duration recorded
+	private static final long MAX_VALUE = (1L << (MAX_MAGNITUDE + 1)) - 1L;
+	private static final int BUCKETS = (MAX_MAGNITUDE - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts;
+	private final AtomicLong count;
+	private final AtomicLong total;
+	private final AtomicLong max;
+
+	private static int getBucket(final long value) {
+		final long clamped = (value < 0L) ? 0L : ((value > MAX_VALUE) ? MAX_VALUE : value);
+		final int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(clamped) - SUB_BUCKET_BITS); // values below 32 are recorded exactly
+		return shift * SUB_BUCKETS + (int) (clamped >>> shift);
+	}
+
+	private static long getLowestValue(final int bucket) {
+		if (bucket < 2 * SUB_BUCKETS) {
+			return bucket;
+		}
+		final int shift = bucket / SUB_BUCKETS - 1;
+		return ((long) (bucket - shift * SUB_BUCKETS)) << shift;
+	}
+
+	/**
+	 * Construct a new empty histogram.
+	 */
+	public Histogram() {
+		counts = new AtomicLongArray(BUCKETS);
+		count = new AtomicLong(0L);
+		total = new AtomicLong(0L);
+		max = new AtomicLong(0L);
+	}
+
+	/**
+	 * Record a duration.
+	 *
+	 * @param duration
+	 *            the duration to record in nanoseconds
+	 */
+	public void record(final long duration) {
+		counts.incrementAndGet(getBucket(duration));
+		count.incrementAndGet();
+		total.addAndGet(duration);
+		long currentMax = max.get();
+		while ((duration > currentMax) && (!max.compareAndSet(currentMax, duration))) {
+			currentMax = max.get();
+		}
+	}
+
+	/**
+	 * Get the number of durations recorded.
+	 *
+	 * @return the number of durations recorded
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * Get the mean of the durations recorded.
+	 *
+	 * @return the mean of the durations recorded in nanoseconds or <code>0</code> if none have been recorded
+	 */
+	public double getMean() {
+		final long count = this.count.get();
+		return (count == 0L) ? 0.0 : (total.get() / (double) count);
+	}
+
+	/**
+	 * Get the longest duration recorded.
+	 *
+	 * @return the longest duration recorded in nanoseconds or <code>0</code> if none have been recorded
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Get a percentile of the durations recorded.
+	 *
+	 * @param percentile
+	 *            the percentile to get (between 0 and 100)
+	 * @return the highest duration in the bucket of the percentile in nanoseconds (so at most 1/16 above the actual percentile) or <code>0</code> if none have been recorded
+	 */
+	public long getPercentile(final double percentile) {
+		if ((percentile < 0.0) || (percentile > 100.0)) {
+			throw new IllegalArgumentException("Percentile must be between 0 and 100");
+		}
+		final long count = this.count.get();
+		if (count == 0L) {
+			return 0L;
+		}
+		final long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0 * count));
+		long cumulative = 0L;
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			cumulative += counts.get(bucket);
+			if (cumulative >= rank) {
+				return Math.min(getLowestValue(bucket + 1) - 1L, max.get());
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * Clear all durations recorded.
+	 */
+	public void reset() {
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			counts.set(bucket, 0L);
+		}
+		count.set(0L);
+		total.set(0L);
+		max.set(0L);
+	}
+}
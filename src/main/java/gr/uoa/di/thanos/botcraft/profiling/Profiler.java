@@ -0,0 +1,173 @@
+package gr.uoa.di.thanos.botcraft.profiling;
+
+import java.lang.management.ManagementFactory;
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * A profiler measuring spans of CPU time (e.g. a tick of the simulation or the rendering of a frame) into a histogram per span. Spans are measured by calling {@link #begin()} at their start and {@link #end(Span, long)} at their end, which costs two calls to {@link System#nanoTime()} and a few atomic increments and allocates nothing, so spans can stay in place in production. The statistics are available through this class and through JMX (see {@link ProfilerMXBean}).
+ *
+ * @author thanos
+ */
+public class Profiler {
+	private static class Bean implements ProfilerMXBean {
+		@Override
+		public boolean isEnabled() {
+			return Profiler.isEnabled();
+		}
+
+		@Override
+		public void setEnabled(final boolean enabled) {
+			Profiler.setEnabled(enabled);
+		}
+
+		@Override
+		public SpanStatistics[] getStatistics() {
+			final SpanStatistics[] statistics = new SpanStatistics[SPANS.length];
+			for (final Span span : SPANS) {
+				statistics[span.ordinal()] = Profiler.getStatistics(span);
+			}
+			return statistics;
+		}
+
+		@Override
+		public void reset() {
+			Profiler.reset();
+		}
+	}
+
+	private static final String OBJECT_NAME = "gr.uoa.di.thanos.botcraft:type=Profiler";
+	private static final Span[] SPANS = Span.values(); // values() copies an array on each call
+	private static final Histogram[] HISTOGRAMS = new Histogram[SPANS.length];
+	private static final Logger LOGGER = Logger.getLogger(Profiler.class.getName());
+	private static volatile boolean enabled = true;
+	private static boolean registered = false;
+
+	static {
+		for (final Span span : SPANS) {
+			HISTOGRAMS[span.ordinal()] = new Histogram();
+		}
+	}
+
+	private Profiler() {
+	}
+
+	/**
+	 * Register the profiler with the platform MBean server. Registering more than once has no effect.
+	 */
+	public static synchronized void register() {
+		if (registered) {
+			return;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName(OBJECT_NAME));
+			registered = true;
+			LOGGER.info("Registered profiler as " + OBJECT_NAME);
+		} catch (final JMException e) {
+			LOGGER.log(Level.WARNING, "Error registering profiler", e);
+		}
+	}
+
+	/**
+	 * Check whether spans are being measured.
+	 *
+	 * @return <code>true</code> if spans are being measured, <code>false</code> otherwise
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Start or stop measuring spans.
+	 *
+	 * @param enabled
+	 *            <code>true</code> to start measuring spans, <code>false</code> to stop
+	 */
+	public static void setEnabled(final boolean enabled) {
+		Profiler.enabled = enabled;
+	}
+
+	/**
+	 * Begin a span.
+	 *
+	 * @return the start of the span, to pass to {@link #end(Span, long)}
+	 */
+	public static long begin() {
+		return enabled ? System.nanoTime() : 0L;
+	}
+
+	/**
+	 * End a span, recording its duration.
+	 *
+	 * @param span
+	 *            the span to end
+	 * @param start
+	 *            the start of the span, as returned by {@link #begin()}
+	 */
+	public static void end(final Span span, final long start) {
+		if (start != 0L) { // not measured if begun while disabled
+			HISTOGRAMS[span.ordinal()].record(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Record the duration of a span measured by the caller.
+	 *
+	 * @param span
+	 *            the span to record
+	 * @param duration
+	 *            the duration of the span in nanoseconds
+	 */
+	public static void record(final Span span, final long duration) {
+		if (enabled) {
+			HISTOGRAMS[span.ordinal()].record(duration);
+		}
+	}
+
+	/**
+	 * Get the histogram of the durations of a span.
+	 *
+	 * @param span
+	 *            the span
+	 * @return the histogram of the durations of the span
+	 */
+	public static Histogram getHistogram(final Span span) {
+		return HISTOGRAMS[Objects.requireNonNull(span, "Span must not be null").ordinal()];
+	}
+
+	/**
+	 * Get the statistics of the durations of a span.
+	 *
+	 * @param span
+	 *            the span
+	 * @return the statistics of the durations of the span
+	 */
+	public static SpanStatistics getStatistics(final Span span) {
+		final Histogram histogram = getHistogram(span);
+		return new SpanStatistics(span.name(), histogram.getCount(), histogram.getMean(), histogram.getPercentile(50.0), histogram.getPercentile(90.0), histogram.getPercentile(99.0), histogram.getPercentile(99.9), histogram.getMax());
+	}
+
+	/**
+	 * Log the statistics of all spans measured.
+	 */
+	public static void log() {
+		for (final Span span : SPANS) {
+			if (HISTOGRAMS[span.ordinal()].getCount() > 0L) {
+				LOGGER.info(getStatistics(span).toString());
+			}
+		}
+	}
+
+	/**
+	 * Clear the durations of all spans measured so far.
+	 */
+	public static void reset() {
+		for (final Histogram histogram : HISTOGRAMS) {
+			histogram.reset();
+		}
+	}
+}
@@ -0,0 +1,35 @@
+package gr.uoa.di.thanos.botcraft.profiling;
+
+/**
+ * Management interface of the profiler, registered with the platform MBean server (e.g. for JConsole or VisualVM) as <code>gr.uoa.di.thanos.botcraft:type=Profiler</code>.
+ *
+ * @author thanos
+ */
+public interface ProfilerMXBean {
+	/**
+	 * Check whether spans are being measured.
+	 *
+	 * @return <code>true</code> if spans are being measured, <code>false</code> otherwise
+	 */
+	boolean isEnabled();
+
+	/**
+	 * Start or stop measuring spans.
+	 *
+	 * @param enabled
+	 *            <code>true</code> to start measuring spans, <code>false</code> to stop
+	 */
+	void setEnabled(boolean enabled);
+
+	/**
+	 * Get the statistics of all spans measured since the last reset.
+	 *
+	 * @return the statistics of all spans, in the order of {@link Span}
+	 */
+	SpanStatistics[] getStatistics();
+
+	/**
+	 * Clear the durations of all spans measured so far (e.g. before reproducing a stutter).
+	 */
+	void reset();
+}
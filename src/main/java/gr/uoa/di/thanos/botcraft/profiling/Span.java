@@ -0,0 +1,63 @@
+package gr.uoa.di.thanos.botcraft.profiling;
+
+/**
+ * Enumeration representing the spans of CPU time measured by the profiler.
+ *
+ * @author thanos
+ */
+public enum Span {
+	/**
+	 * A whole frame, from the start of rendering to the swap of buffers.
+	 */
+	FRAME,
+
+	/**
+	 * Draining the input queued for a tick of the simulation.
+	 */
+	INPUT,
+
+	/**
+	 * A tick of the simulation, including input.
+	 */
+	TICK,
+
+	/**
+	 * Building the camera transformation of a frame.
+	 */
+	CAMERA,
+
+	/**
+	 * Issuing the commands rendering the cube.
+	 */
+	RENDER_CUBE,
+
+	/**
+	 * Issuing the commands rendering the map, including any calculation of streamed chunks.
+	 */
+	RENDER_MAP,
+
+	/**
+	 * Issuing the commands of the post processing passes.
+	 */
+	RENDER_POST_PROCESSING,
+
+	/**
+	 * Enqueuing a single OpenCL kernel invocation.
+	 */
+	EXECUTE_KERNEL,
+
+	/**
+	 * Enqueuing a batch of OpenCL kernel invocations of a compute pipeline.
+	 */
+	SUBMIT_PIPELINE,
+
+	/**
+	 * Waiting for a batch of a compute pipeline to complete before rendering its results.
+	 */
+	AWAIT_PIPELINE,
+
+	/**
+	 * Swapping buffers, including any wait for the GPU or the display.
+	 */
+	SWAP_BUFFERS;
+}
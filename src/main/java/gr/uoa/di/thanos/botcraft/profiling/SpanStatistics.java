@@ -0,0 +1,132 @@
+package gr.uoa.di.thanos.botcraft.profiling;
+
+import java.beans.ConstructorProperties;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable statistics of the durations of a span, as exposed through JMX.
+ *
+ * @author thanos
+ */
+public class SpanStatistics {
+	private static final double NANOSECONDS_PER_MILLISECOND = TimeUnit.NANOSECONDS.convert(1L, TimeUnit.MILLISECONDS);
+
+	private final String span;
+	private final long count;
+	private final double mean;
+	private final long median;
+	private final long percentile90;
+	private final long percentile99;
+	private final long percentile999;
+	private final long max;
+
+	/**
+	 * Construct new span statistics.
+	 *
+	 * @param span
+	 *            the name of the span
+	 * @param count
+	 *            the number of durations recorded
+	 * @param mean
+	 *            the mean duration in nanoseconds
+	 * @param median
+	 *            the median duration in nanoseconds
+	 * @param percentile90
+	 *            the 90th percentile of the durations in nanoseconds
+	 * @param percentile99
+	 *            the 99th percentile of the durations in nanoseconds
+	 * @param percentile999
+	 *            the 99.9th percentile of the durations in nanoseconds
+	 * @param max
+	 *            the longest duration in nanoseconds
+	 */
+	@ConstructorProperties({"span", "count", "mean", "median", "percentile90", "percentile99", "percentile999", "max"})
+	public SpanStatistics(final String span, final long count, final double mean, final long median, final long percentile90, final long percentile99, final long percentile999, final long max) {
+		this.span = Objects.requireNonNull(span, "Span must not be null");
+		this.count = count;
+		this.mean = mean;
+		this.median = median;
+		this.percentile90 = percentile90;
+		this.percentile99 = percentile99;
+		this.percentile999 = percentile999;
+		this.max = max;
+	}
+
+	/**
+	 * Get the name of the span.
+	 *
+	 * @return the name of the span
+	 */
+	public String getSpan() {
+		return span;
+	}
+
+	/**
+	 * Get the number of durations recorded.
+	 *
+	 * @return the number of durations recorded
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Get the mean duration.
+	 *
+	 * @return the mean duration in nanoseconds
+	 */
+	public double getMean() {
+		return mean;
+	}
+
+	/**
+	 * Get the median duration.
+	 *
+	 * @return the median duration in nanoseconds
+	 */
+	public long getMedian() {
+		return median;
+	}
+
+	/**
+	 * Get the 90th percentile of the durations.
+	 *
+	 * @return the 90th percentile of the durations in nanoseconds
+	 */
+	public long getPercentile90() {
+		return percentile90;
+	}
+
+	/**
+	 * Get the 99th percentile of the durations.
+	 *
+	 * @return the 99th percentile of the durations in nanoseconds
+	 */
+	public long getPercentile99() {
+		return percentile99;
+	}
+
+	/**
+	 * Get the 99.9th percentile of the durations.
+	 *
+	 * @return the 99.9th percentile of the durations in nanoseconds
+	 */
+	public long getPercentile999() {
+		return percentile999;
+	}
+
+	/**
+	 * Get the longest duration.
+	 *
+	 * @return the longest duration in nanoseconds
+	 */
+	public long getMax() {
+		return max;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%1$s: %2$d times, mean %3$.3f ms, median %4$.3f ms, 90%% %5$.3f ms, 99%% %6$.3f ms, 99.9%% %7$.3f ms, max %8$.3f ms", span, count, mean / NANOSECONDS_PER_MILLISECOND, median / NANOSECONDS_PER_MILLISECOND, percentile90 / NANOSECONDS_PER_MILLISECOND, percentile99 / NANOSECONDS_PER_MILLISECOND, percentile999 / NANOSECONDS_PER_MILLISECOND, max / NANOSECONDS_PER_MILLISECOND);
+	}
+}
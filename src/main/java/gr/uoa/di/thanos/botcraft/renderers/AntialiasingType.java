@@ -0,0 +1,18 @@
+package gr.uoa.di.thanos.botcraft.renderers;
+
+/**
+ * Enumeration representing types of antialiasing.
+ * 
+ * @author thanos
+ */
+public enum AntialiasingType {
+	/**
+	 * Multisampling, with the number of sample buffers configured.
+	 */
+	MSAA,
+
+	/**
+	 * Fast approximate antialiasing, as a post processing pass.
+	 */
+	FXAA
+}
@@ -1,24 +1,41 @@
 package gr.uoa.di.thanos.botcraft.renderers;
 
 import gr.uoa.di.thanos.botcraft.etc.configuration.Configuration;
+import gr.uoa.di.thanos.botcraft.profiling.Profiler;
+import gr.uoa.di.thanos.botcraft.profiling.Span;
 
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.Buffer;
+import java.nio.FloatBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.prefs.BackingStoreException;
 
 import com.jogamp.common.nio.Buffers;
 import com.jogamp.common.nio.PointerBuffer;
 import com.jogamp.opencl.CLBuffer;
 import com.jogamp.opencl.CLCommandQueue;
+import com.jogamp.opencl.CLContext;
 import com.jogamp.opencl.CLDevice;
+import com.jogamp.opencl.CLEvent;
+import com.jogamp.opencl.CLEventList;
 import com.jogamp.opencl.CLException;
 import com.jogamp.opencl.CLKernel;
 import com.jogamp.opencl.CLMemory;
+import com.jogamp.opencl.CLPlatform;
 import com.jogamp.opencl.CLProgram;
 import com.jogamp.opencl.gl.CLGLBuffer;
+import com.jogamp.opencl.llb.CL;
 import com.jogamp.opencl.gl.CLGLContext;
 import com.jogamp.opengl.GL;
 import com.jogamp.opengl.GL3;
@@ -30,7 +47,7 @@ import com.jogamp.opengl.GL3;
  */
 public class CalculatingRenderer extends Renderer {
 	/**
-	 * Object oriented wrapper of an OpenGL vertex buffer whose data will be calculated using OpenCL.
+	 * Object oriented wrapper of an OpenGL vertex buffer whose data will be calculated using OpenCL. The vertex buffer is shared with OpenCL once it is set as an argument of a kernel, so it is never shared if calculated on the host.
 	 * 
 	 * @author thanos
 	 * @param <T>
@@ -57,26 +74,1089 @@ public class CalculatingRenderer extends Renderer {
 
 		@Override
 		protected void dispose(final GL3 gl) {
-			buffer.release();
+			unshare();
 			super.dispose(gl);
 		}
 
+		private CLGLBuffer<?> share() { // shared with OpenCL once a kernel calculates into it
+			checkCompute();
+			if (buffer == null) {
+				buffer = context.createFromGLBuffer(vertexBuffer, calculateTotalElements(triangles, elements), CLMemory.Mem.WRITE_ONLY);
+				sharedVertexBuffers.add(this);
+			}
+			return buffer;
+		}
+
+		private void unshare() {
+			if (buffer != null) {
+				buffer.release();
+				buffer = null;
+			}
+		}
+	}
+
+	/**
+	 * An OpenCL buffer whose data is written by the host and only read by kernels. Changes to the host data are tracked as dirty ranges, and only dirty ranges are written to the device before kernels use the buffer, so clean buffers are not transferred at all. Host data must not be modified while a write of the buffer may still be in progress.
+	 * 
+	 * @author thanos
+	 */
+	protected class ManagedBuffer {
+		private final CLBuffer<?> buffer;
+		private final int size;
+		private final int[] dirtyOffsets;
+		private final int[] dirtyEnds;
+		private int dirtyRanges;
+
+		/**
+		 * Construct a new managed buffer. The whole buffer is initially dirty.
+		 * 
+		 * @param buffer
+		 *            the OpenCL buffer to manage (must have host data)
+		 */
+		protected ManagedBuffer(final CLBuffer<?> buffer) {
+			Objects.requireNonNull(buffer, "Buffer must not be null");
+			Objects.requireNonNull(buffer.getBuffer(), "Buffer must have host data");
+			this.buffer = buffer;
+			size = buffer.getNIOSize() / buffer.getElementSize();
+			dirtyOffsets = new int[MAX_DIRTY_RANGES];
+			dirtyEnds = new int[MAX_DIRTY_RANGES];
+			invalidate();
+		}
+
+		/**
+		 * Get the OpenCL buffer managed.
+		 * 
+		 * @return the OpenCL buffer managed
+		 */
+		protected CLBuffer<?> getBuffer() {
+			return buffer;
+		}
+
+		/**
+		 * Mark the whole host data as changed.
+		 */
+		protected void invalidate() {
+			dirtyOffsets[0] = 0;
+			dirtyEnds[0] = size;
+			dirtyRanges = 1;
+		}
+
+		/**
+		 * Mark a range of the host data as changed. Overlapping and adjacent ranges are merged and, once too many disjoint ranges have been marked, all of them are merged into one.
+		 * 
+		 * @param offset
+		 *            the offset of the first element changed
+		 * @param length
+		 *            the number of elements changed
+		 */
+		protected void invalidate(final int offset, final int length) {
+			if ((offset < 0) || (length < 0) || (offset + length > size)) {
+				throw new IllegalArgumentException("Range must be within 0 and " + size);
+			}
+			int start = offset;
+			int end = offset + length;
+			if (start == end) {
+				return;
+			}
+			int ranges = 0;
+			for (int i = 0; i < dirtyRanges; i++) {
+				if ((dirtyEnds[i] < start) || (dirtyOffsets[i] > end)) { // disjoint and not adjacent, keep
+					dirtyOffsets[ranges] = dirtyOffsets[i];
+					dirtyEnds[ranges] = dirtyEnds[i];
+					ranges++;
+				} else { // merge
+					start = Math.min(start, dirtyOffsets[i]);
+					end = Math.max(end, dirtyEnds[i]);
+				}
+			}
+			if (ranges == MAX_DIRTY_RANGES) {
+				for (int i = 0; i < ranges; i++) {
+					start = Math.min(start, dirtyOffsets[i]);
+					end = Math.max(end, dirtyEnds[i]);
+				}
+				ranges = 0;
+			}
+			dirtyOffsets[ranges] = start;
+			dirtyEnds[ranges] = end;
+			dirtyRanges = ranges + 1;
+		}
+
+		/**
+		 * Change an element of the host data of a buffer of floats and mark it as changed.
+		 * 
+		 * @param index
+		 *            the index of the element to change
+		 * @param value
+		 *            the new value of the element
+		 */
+		protected void put(final int index, final float value) {
+			if (!(buffer.getBuffer() instanceof FloatBuffer)) {
+				throw new IllegalStateException("Buffer must be a buffer of floats");
+			}
+			((FloatBuffer) buffer.getBuffer()).put(index, value);
+			invalidate(index, 1);
+		}
+
+		/**
+		 * Check whether any host data has changed since the last write to the device.
+		 * 
+		 * @return <code>true</code> if any host data has changed, <code>false</code> otherwise
+		 */
+		protected boolean isDirty() {
+			return dirtyRanges > 0;
+		}
+
+		/**
+		 * Release this managed buffer.
+		 */
+		protected void release() {
+			buffer.release();
+		}
+
+		private void write(final CLCommandQueue queue) {
+			final Buffer host = buffer.getBuffer();
+			try {
+				for (int i = 0; i < dirtyRanges; i++) {
+					host.position(dirtyOffsets[i]); // host pointer passed is at the buffer position
+					CLException.checkForError(CLPlatform.getLowLevelCLInterface().clEnqueueWriteBuffer(queue.ID, buffer.ID, CL.CL_FALSE, ((long) dirtyOffsets[i]) * buffer.getElementSize(), ((long) (dirtyEnds[i] - dirtyOffsets[i])) * buffer.getElementSize(), host, 0, null, null), "Error writing buffer range");
+				}
+			} finally {
+				host.rewind();
+			}
+			dirtyRanges = 0;
+		}
+	}
+
+	/**
+	 * A local memory kernel argument, whose size depends on the local work sizes.
+	 * 
+	 * @author thanos
+	 */
+	protected interface LocalMemory {
+		/**
+		 * Get the size of this local memory.
+		 * 
+		 * @param localWorkSizes
+		 *            the local work sizes of the kernel (one per dimension)
+		 * @return the size of this local memory in bytes
+		 */
+		int getSize(PointerBuffer localWorkSizes);
+	}
+
+	/**
+	 * Access of a kernel to an OpenCL memory argument, used to derive the dependencies between the commands of a {@link ComputePipeline}.
+	 * 
+	 * @author thanos
+	 */
+	protected static enum Access {
+		/**
+		 * The kernel only reads the memory argument.
+		 */
+		READ,
+
+		/**
+		 * The kernel only writes the memory argument.
+		 */
+		WRITE,
+
+		/**
+		 * The kernel both reads and writes the memory argument.
+		 */
+		READ_WRITE;
+
+		private static Access of(final CLMemory<?> memory) {
+			return memory.isReadOnly() ? READ : (memory.isWriteOnly() ? WRITE : READ_WRITE);
+		}
+
+		private boolean reads() {
+			return this != WRITE;
+		}
+
+		private boolean writes() {
+			return this != READ;
+		}
+	}
+
+	/**
+	 * A prepared invocation of an OpenCL kernel. Offset and work size buffers are allocated once and local work sizes are calculated once per kernel and dimensions, so executing a prepared invocation repeatedly does not allocate. Arguments are set by index with typed setters and are retained by the kernel between executions. Each kernel should be driven by a single prepared invocation.
+	 * <p>
+	 * Local work sizes are tuned on the first execution of a kernel on a device, by timing candidate local work sizes with OpenCL profiling events, and the fastest candidate is stored in the configuration so that later runs start tuned. Candidates are bounded by the range of work items, so local work sizes are stored per range (rounded up to powers of two) and tuned again when a kernel is executed over a larger range than the one it was tuned on. Tuning executes the kernel repeatedly, so kernels must produce the same results when executed more than once with the same arguments.
+	 * 
+	 * @author thanos
+	 */
+	protected class KernelInvocation {
+		private final String name;
+		private final CLKernel kernel;
+		private final int dimensions;
+		private final String key;
+		private final long[] sizes;
+		private final PointerBuffer offsets;
+		private final PointerBuffer globalWorkSizes;
+		private final PointerBuffer localWorkSizes;
+		private final ManagedBuffer[] writes;
+		private final CLGLBuffer<?>[] glObjects;
+		private final CLMemory<?>[] memories;
+		private final Access[] accesses;
+		private final LocalMemory[] localMemories;
+		private PointerBuffer glObjectIds;
+
+		/**
+		 * Construct a new prepared kernel invocation.
+		 * 
+		 * @param kernel
+		 *            the name of the kernel to invoke
+		 * @param dimensions
+		 *            the dimensions of the kernel to invoke
+		 */
+		protected KernelInvocation(final String kernel, final int dimensions) {
+			Objects.requireNonNull(kernel, "Kernel must not be null");
+			checkCompute();
+			if (!kernels.containsKey(kernel)) {
+				throw new IllegalArgumentException("Kernel " + kernel + " does not exist");
+			}
+			if (dimensions <= 0) {
+				throw new IllegalArgumentException("Dimensions must be positive");
+			}
+			if (dimensions > maxWorkItemSizes.length) {
+				throw new IllegalArgumentException("Dimensions must be at most " + maxWorkItemSizes.length);
+			}
+			this.name = kernel;
+			this.kernel = kernels.get(kernel);
+			this.dimensions = dimensions;
+			key = kernel + LOCAL_WORK_SIZES_SEPARATOR + dimensions;
+			sizes = new long[dimensions];
+			offsets = PointerBuffer.allocateDirect(dimensions);
+			globalWorkSizes = PointerBuffer.allocateDirect(dimensions);
+			localWorkSizes = getLocalWorkSizes(kernel, dimensions);
+			writes = new ManagedBuffer[this.kernel.numArgs];
+			glObjects = new CLGLBuffer<?>[this.kernel.numArgs];
+			memories = new CLMemory<?>[this.kernel.numArgs];
+			accesses = new Access[this.kernel.numArgs];
+			localMemories = new LocalMemory[this.kernel.numArgs];
+			glObjectIds = null;
+		}
+
+		/**
+		 * Set an integer argument.
+		 * 
+		 * @param index
+		 *            the index of the argument
+		 * @param value
+		 *            the value of the argument
+		 * @return this invocation
+		 */
+		protected KernelInvocation setArgument(final int index, final int value) {
+			clear(index);
+			kernel.setArg(index, value);
+			return this;
+		}
+
+		/**
+		 * Set a float argument.
+		 * 
+		 * @param index
+		 *            the index of the argument
+		 * @param value
+		 *            the value of the argument
+		 * @return this invocation
+		 */
+		protected KernelInvocation setArgument(final int index, final float value) {
+			clear(index);
+			kernel.setArg(index, value);
+			return this;
+		}
+
+		/**
+		 * Set an OpenCL memory argument, deriving the access of the kernel from the flags of the memory. Host data of the memory is not written to the device (see {@link #setArgument(int, ManagedBuffer)}).
+		 * 
+		 * @param index
+		 *            the index of the argument
+		 * @param memory
+		 *            the value of the argument
+		 * @return this invocation
+		 */
+		protected KernelInvocation setArgument(final int index, final CLMemory<?> memory) {
+			Objects.requireNonNull(memory, "Memory must not be null");
+			return setArgument(index, memory, Access.of(memory));
+		}
+
+		/**
+		 * Set an OpenCL memory argument. Host data of the memory is not written to the device (see {@link #setArgument(int, ManagedBuffer)}).
+		 * 
+		 * @param index
+		 *            the index of the argument
+		 * @param memory
+		 *            the value of the argument
+		 * @param access
+		 *            the access of the kernel to the argument
+		 * @return this invocation
+		 */
+		protected KernelInvocation setArgument(final int index, final CLMemory<?> memory, final Access access) {
+			Objects.requireNonNull(memory, "Memory must not be null");
+			Objects.requireNonNull(access, "Access must not be null");
+			clear(index);
+			memories[index] = memory;
+			accesses[index] = access;
+			kernel.setArg(index, memory);
+			return this;
+		}
+
+		/**
+		 * Set a managed buffer argument, which the kernel only reads. Dirty ranges of the managed buffer are written to the device before each execution.
+		 * 
+		 * @param index
+		 *            the index of the argument
+		 * @param managedBuffer
+		 *            the value of the argument
+		 * @return this invocation
+		 */
+		protected KernelInvocation setArgument(final int index, final ManagedBuffer managedBuffer) {
+			Objects.requireNonNull(managedBuffer, "Managed buffer must not be null");
+			setArgument(index, managedBuffer.buffer, Access.READ);
+			writes[index] = managedBuffer;
+			return this;
+		}
+
+		/**
+		 * Set a local memory argument. Its size is calculated again whenever the local work sizes change.
+		 * 
+		 * @param index
+		 *            the index of the argument
+		 * @param localMemory
+		 *            the value of the argument
+		 * @return this invocation
+		 */
+		protected KernelInvocation setArgument(final int index, final LocalMemory localMemory) {
+			Objects.requireNonNull(localMemory, "Local memory must not be null");
+			clear(index);
+			localMemories[index] = localMemory;
+			kernel.setNullArg(index, localMemory.getSize(localWorkSizes));
+			return this;
+		}
+
+		/**
+		 * Set a calculating vertex buffer argument. The vertex buffer is acquired from OpenGL before and released after each execution.
+		 * 
+		 * @param index
+		 *            the index of the argument
+		 * @param vertexBuffer
+		 *            the value of the argument
+		 * @return this invocation
+		 */
+		protected KernelInvocation setArgument(final int index, final CalculatingVertexBuffer<?> vertexBuffer) {
+			Objects.requireNonNull(vertexBuffer, "Vertex buffer must not be null");
+			clear(index);
+			glObjects[index] = vertexBuffer.share();
+			glObjectIds = null;
+			memories[index] = glObjects[index];
+			accesses[index] = Access.WRITE;
+			kernel.setArg(index, glObjects[index]);
+			return this;
+		}
+
+		/**
+		 * Set the range of work items of a dimension.
+		 * 
+		 * @param dimension
+		 *            the dimension
+		 * @param offset
+		 *            the offset used to calculate the global ID of a work item
+		 * @param size
+		 *            the number of work items that will execute the kernel
+		 * @return this invocation
+		 */
+		protected KernelInvocation setRange(final int dimension, final int offset, final int size) {
+			if ((dimension < 0) || (dimension >= dimensions)) {
+				throw new IllegalArgumentException("Dimension must be between 0 and " + (dimensions - 1));
+			}
+			if (size <= 0) {
+				throw new IllegalArgumentException("Size must be positive");
+			}
+			offsets.put(dimension, offset);
+			sizes[dimension] = size;
+			globalWorkSizes.put(dimension, roundUp(size, localWorkSizes.get(dimension)));
+			return this;
+		}
+
+		/**
+		 * Execute this invocation.
+		 */
+		protected void execute() {
+			final long start = Profiler.begin();
+			prepare();
+			for (final ManagedBuffer write : writes) {
+				if (write != null) {
+					write.write(queue);
+				}
+			}
+			final PointerBuffer ids = getGlObjectIds();
+			if (ids.capacity() > 0) {
+				queue.putAcquireGLObjects(ids.rewind(), null, null);
+			}
+			queue.putNDRangeKernel(kernel, dimensions, offsets, globalWorkSizes, localWorkSizes);
+			if (ids.capacity() > 0) {
+				queue.putReleaseGLObjects(ids.rewind(), null, null);
+			}
+			queue.flush();
+			Profiler.end(Span.EXECUTE_KERNEL, start);
+		}
+
+		/**
+		 * Profile this invocation, executing it repeatedly with its current arguments and range.
+		 * 
+		 * @param runs
+		 *            the number of times to execute this invocation
+		 * @return the minimum time spent on the device by an execution in nanoseconds
+		 */
+		protected long profile(final int runs) {
+			if (runs <= 0) {
+				throw new IllegalArgumentException("Runs must be positive");
+			}
+			prepare();
+			final PointerBuffer ids = getGlObjectIds();
+			queue.finish();
+			final CLCommandQueue profilingQueue = device.createCommandQueue(CLCommandQueue.Mode.PROFILING_MODE);
+			try {
+				for (final ManagedBuffer write : writes) {
+					if (write != null) {
+						write.write(profilingQueue);
+					}
+				}
+				if (ids.capacity() > 0) {
+					profilingQueue.putAcquireGLObjects(ids.rewind(), null, null);
+				}
+				final long time = time(profilingQueue, globalWorkSizes, localWorkSizes, runs);
+				if (ids.capacity() > 0) {
+					profilingQueue.putReleaseGLObjects(ids.rewind(), null, null);
+				}
+				profilingQueue.finish();
+				return time;
+			} finally {
+				profilingQueue.release();
+			}
+		}
+
 		@Override
-		protected void initialize(final GL3 gl) {
-			super.initialize(gl);
-			buffer = context.createFromGLBuffer(vertexBuffer, calculateTotalElements(triangles, elements), CLMemory.Mem.WRITE_ONLY);
+		public String toString() {
+			return name;
+		}
+
+		private void prepare() {
+			final long[] tunedRanges = tuned.get(key);
+			if (tunedRanges != null) {
+				boolean larger = false;
+				for (int i = 0; i < dimensions; i++) {
+					larger |= getTuningRange(i) > tunedRanges[i];
+				}
+				if (!larger) {
+					return;
+				}
+			}
+			final long[] ranges = new long[dimensions];
+			for (int i = 0; i < dimensions; i++) {
+				ranges[i] = getTuningRange(i);
+			}
+			if (!restore(ranges)) {
+				tune(ranges);
+			}
+		}
+
+		private long getTuningRange(final int dimension) { // no point in local work sizes larger than the range rounded up to a power of two
+			return Math.max(1L, Math.min(maxWorkItemSizes[dimension], Long.highestOneBit(sizes[dimension] - 1L) << 1));
+		}
+
+		private boolean restore(final long[] ranges) { // local work sizes tuned on the same ranges by an earlier run
+			final long[] storedLocalWorkSizes = configuration.getClLocalWorkSizes(device, name, ranges);
+			if (storedLocalWorkSizes == null) {
+				return false;
+			}
+			long workGroupSize = 1L;
+			for (int i = 0; i < dimensions; i++) {
+				if (storedLocalWorkSizes[i] > maxWorkItemSizes[i]) {
+					return false;
+				}
+				workGroupSize *= storedLocalWorkSizes[i];
+			}
+			if (workGroupSize > Math.min(maxWorkGroupSize, kernel.getWorkGroupSize(device))) {
+				return false;
+			}
+			tuned.put(key, ranges);
+			use(storedLocalWorkSizes);
+			return true;
+		}
+
+		private void use(final long[] localWorkSizes) {
+			for (int i = 0; i < dimensions; i++) {
+				this.localWorkSizes.put(i, localWorkSizes[i]);
+				globalWorkSizes.put(i, roundUp(sizes[i], localWorkSizes[i]));
+			}
+			setLocalMemories(this.localWorkSizes);
+		}
+
+		private void tune(final long[] ranges) {
+			for (int i = 0; i < dimensions; i++) {
+				if (sizes[i] == 0L) {
+					throw new IllegalStateException("Range of dimension " + i + " has not been set");
+				}
+			}
+			final long maxWorkGroupSize = Math.min(CalculatingRenderer.this.maxWorkGroupSize, kernel.getWorkGroupSize(device));
+			final List<long[]> candidates = new ArrayList<long[]>();
+			addCandidates(candidates, ranges, new long[dimensions], 0, maxWorkGroupSize);
+			final PointerBuffer candidateLocalWorkSizes = PointerBuffer.allocateDirect(dimensions);
+			final PointerBuffer candidateGlobalWorkSizes = PointerBuffer.allocateDirect(dimensions);
+			final PointerBuffer ids = getGlObjectIds();
+			long[] best = null;
+			long bestTime = Long.MAX_VALUE;
+			queue.finish(); // inputs of this kernel may still be calculated by previous executions
+			final CLCommandQueue profilingQueue = device.createCommandQueue(CLCommandQueue.Mode.PROFILING_MODE);
+			try {
+				for (final ManagedBuffer write : writes) {
+					if (write != null) {
+						write.write(profilingQueue);
+					}
+				}
+				if (ids.capacity() > 0) {
+					profilingQueue.putAcquireGLObjects(ids.rewind(), null, null);
+				}
+				for (final long[] candidate : candidates) {
+					for (int i = 0; i < dimensions; i++) {
+						candidateLocalWorkSizes.put(i, candidate[i]);
+						candidateGlobalWorkSizes.put(i, roundUp(sizes[i], candidate[i]));
+					}
+					try {
+						setLocalMemories(candidateLocalWorkSizes);
+						final long time = time(profilingQueue, candidateGlobalWorkSizes, candidateLocalWorkSizes, TUNING_RUNS);
+						if (time < bestTime) {
+							best = candidate;
+							bestTime = time;
+						}
+					} catch (final CLException e) { // some candidates may exceed resource limits of the kernel
+						profilingQueue.finish();
+					}
+				}
+				if (ids.capacity() > 0) {
+					profilingQueue.putReleaseGLObjects(ids.rewind(), null, null);
+				}
+				profilingQueue.finish();
+			} catch (final CLException e) {
+				LOGGER.log(Level.WARNING, "Error tuning local work sizes of kernel " + name + ", keeping default local work sizes", e);
+				best = null;
+			} finally {
+				profilingQueue.release();
+			}
+			tuned.put(key, ranges);
+			if (best == null) {
+				setLocalMemories(localWorkSizes);
+			} else {
+				use(best);
+				LOGGER.info("Tuned local work sizes of kernel " + name + " on device " + device.getName() + " for ranges " + Arrays.toString(ranges) + " to " + Arrays.toString(best) + " out of " + candidates.size() + " candidates");
+				try {
+					configuration.setClLocalWorkSizes(device, name, ranges, best);
+				} catch (final BackingStoreException e) {
+					LOGGER.log(Level.WARNING, "Error storing local work sizes of kernel " + name, e);
+				}
+			}
+		}
+
+		private long time(final CLCommandQueue profilingQueue, final PointerBuffer globalWorkSizes, final PointerBuffer localWorkSizes, final int runs) {
+			final CLEventList events = new CLEventList(runs);
+			try {
+				profilingQueue.putNDRangeKernel(kernel, dimensions, offsets, globalWorkSizes, localWorkSizes); // warm up
+				for (int i = 0; i < runs; i++) {
+					profilingQueue.putNDRangeKernel(kernel, dimensions, offsets, globalWorkSizes, localWorkSizes, events);
+				}
+				profilingQueue.finish();
+				long time = Long.MAX_VALUE;
+				for (final CLEvent event : events) {
+					time = Math.min(time, event.getProfilingInfo(CLEvent.ProfilingCommand.END) - event.getProfilingInfo(CLEvent.ProfilingCommand.START));
+				}
+				return time;
+			} finally {
+				events.release();
+			}
+		}
+
+		private void setLocalMemories(final PointerBuffer localWorkSizes) {
+			for (int i = 0; i < localMemories.length; i++) {
+				if (localMemories[i] != null) {
+					kernel.setNullArg(i, localMemories[i].getSize(localWorkSizes));
+				}
+			}
+		}
+
+		private void addCandidates(final List<long[]> candidates, final long[] ranges, final long[] candidate, final int dimension, final long maxWorkGroupSize) {
+			if (dimension == dimensions) {
+				candidates.add(candidate.clone());
+				return;
+			}
+			for (long localWorkSize = 1L; (localWorkSize <= ranges[dimension]) && (localWorkSize <= maxWorkGroupSize); localWorkSize <<= 1) {
+				candidate[dimension] = localWorkSize;
+				addCandidates(candidates, ranges, candidate, dimension + 1, maxWorkGroupSize / localWorkSize);
+			}
+		}
+
+		private void clear(final int index) {
+			if ((index < 0) || (index >= writes.length)) {
+				throw new IllegalArgumentException("Index must be between 0 and " + (writes.length - 1));
+			}
+			writes[index] = null;
+			memories[index] = null;
+			accesses[index] = null;
+			localMemories[index] = null;
+			if (glObjects[index] != null) {
+				glObjects[index] = null;
+				glObjectIds = null;
+			}
+		}
+
+		private PointerBuffer getGlObjectIds() {
+			if (glObjectIds == null) { // rebuilt only when vertex buffer arguments change
+				int count = 0;
+				for (final CLGLBuffer<?> glObject : glObjects) {
+					count += (glObject == null) ? 0 : 1;
+				}
+				glObjectIds = PointerBuffer.allocateDirect(count);
+				for (final CLGLBuffer<?> glObject : glObjects) {
+					if (glObject != null) {
+						glObjectIds.put(glObject.getID());
+					}
+				}
+			}
+			return glObjectIds;
+		}
+	}
+
+	/**
+	 * An asynchronous compute pipeline submitting a batch of prepared kernel invocations at once. Dependencies between the commands of a batch are derived once, from the memory arguments each kernel reads and writes, and are expressed as OpenCL event wait lists, so that on devices supporting out of order execution independent commands may run concurrently. Dirty ranges of managed buffers are written once per batch and OpenGL shared buffers are acquired and released once per batch.
+	 * <p>
+	 * A batch is submitted without waiting for it, typically right after the OpenGL draw calls of a frame, so that OpenCL calculations for the next frame overlap OpenGL rendering of the current one, and awaited right before the OpenGL draw calls that need its results. On devices supporting <code>cl_khr_gl_event</code>, acquiring shared buffers synchronizes implicitly with the OpenGL context current on the submitting thread, otherwise OpenGL is finished before acquiring. When <code>GL_ARB_cl_event</code> is supported, OpenGL waits for a batch on the GPU, otherwise the host waits for the batch to complete.
+	 * 
+	 * @author thanos
+	 */
+	protected class ComputePipeline {
+		private final KernelInvocation[] invocations;
+		private final ManagedBuffer[] writes;
+		private final PointerBuffer glObjectIds;
+		private final int[][] dependencies;
+		private final int[] releaseDependencies;
+		private final int commands;
+		private final CLCommandQueue commandQueue;
+		private final boolean implicitGlSynchronization;
+		private CLEventList events;
+
+		/**
+		 * Construct a new compute pipeline.
+		 * 
+		 * @param invocations
+		 *            the prepared kernel invocations to submit in each batch, in program order (arguments must have been set)
+		 */
+		protected ComputePipeline(final KernelInvocation... invocations) {
+			Objects.requireNonNull(invocations, "Invocations must not be null");
+			if (invocations.length == 0) {
+				throw new IllegalArgumentException("Invocations must not be empty");
+			}
+			checkCompute();
+			this.invocations = invocations.clone();
+			final List<ManagedBuffer> writes = new ArrayList<ManagedBuffer>();
+			final List<CLGLBuffer<?>> glObjects = new ArrayList<CLGLBuffer<?>>();
+			for (final KernelInvocation invocation : this.invocations) {
+				Objects.requireNonNull(invocation, "Invocation must not be null");
+				for (final ManagedBuffer write : invocation.writes) {
+					if ((write != null) && (!writes.contains(write))) {
+						writes.add(write);
+					}
+				}
+				for (final CLGLBuffer<?> glObject : invocation.glObjects) {
+					if ((glObject != null) && (!glObjects.contains(glObject))) {
+						glObjects.add(glObject);
+					}
+				}
+			}
+			this.writes = writes.toArray(new ManagedBuffer[writes.size()]);
+			glObjectIds = PointerBuffer.allocateDirect(glObjects.size());
+			for (final CLGLBuffer<?> glObject : glObjects) {
+				glObjectIds.put(glObject.getID());
+			}
+			// commands of a batch are the writes, the acquire (if any), the kernels and the release (if any) in this order
+			final int acquire = glObjects.isEmpty() ? -1 : this.writes.length;
+			final int firstKernel = this.writes.length + (glObjects.isEmpty() ? 0 : 1);
+			final java.util.Map<CLMemory<?>, Integer> writers = new HashMap<CLMemory<?>, Integer>();
+			final java.util.Map<CLMemory<?>, Set<Integer>> readers = new HashMap<CLMemory<?>, Set<Integer>>();
+			for (int i = 0; i < this.writes.length; i++) {
+				writers.put(this.writes[i].buffer, i);
+			}
+			for (final CLGLBuffer<?> glObject : glObjects) {
+				writers.put(glObject, acquire);
+			}
+			dependencies = new int[this.invocations.length][];
+			final Set<Integer> releaseDependencies = new TreeSet<Integer>();
+			for (int i = 0; i < this.invocations.length; i++) {
+				final Set<Integer> dependencies = new TreeSet<Integer>();
+				final KernelInvocation invocation = this.invocations[i];
+				for (int j = 0; j < invocation.memories.length; j++) {
+					final CLMemory<?> memory = invocation.memories[j];
+					if (memory == null) {
+						continue;
+					}
+					if (writers.containsKey(memory)) { // read after write and write after write
+						dependencies.add(writers.get(memory));
+					}
+					if (invocation.accesses[j].writes()) {
+						if (readers.containsKey(memory)) { // write after read
+							dependencies.addAll(readers.get(memory));
+						}
+						writers.put(memory, firstKernel + i);
+						readers.remove(memory);
+					} else {
+						if (!readers.containsKey(memory)) {
+							readers.put(memory, new TreeSet<Integer>());
+						}
+						readers.get(memory).add(firstKernel + i);
+					}
+					if (glObjects.contains(memory)) {
+						releaseDependencies.add(firstKernel + i);
+					}
+				}
+				this.dependencies[i] = toArray(dependencies);
+			}
+			this.releaseDependencies = toArray(releaseDependencies);
+			commands = firstKernel + this.invocations.length + (glObjects.isEmpty() ? 0 : 1);
+			commandQueue = compute.borrowQueue(true);
+			implicitGlSynchronization = device.isExtensionAvailable(CL_KHR_GL_EVENT);
+			events = null;
+			LOGGER.info("Created compute pipeline of " + commands + " commands (" + (commandQueue.isOutOfOrderModeEnabled() ? "out of order" : "in order") + " execution, " + (implicitGlSynchronization ? "implicit" : "explicit") + " OpenGL synchronization)");
+		}
+
+		/**
+		 * Submit a batch of this pipeline without waiting for it to complete. Any batch previously submitted must have completed (which is waited for if needed).
+		 * 
+		 * @param gl
+		 *            the OpenGL context current on this thread
+		 */
+		protected void submit(final GL3 gl) {
+			Objects.requireNonNull(gl, "OpenGL must not be null");
+			final long start = Profiler.begin();
+			finish();
+			for (final KernelInvocation invocation : invocations) {
+				invocation.prepare();
+			}
+			if ((glObjectIds.capacity() > 0) && (!implicitGlSynchronization)) {
+				gl.glFinish(); // OpenGL must not use shared buffers while they are acquired
+			}
+			if (commandQueue.isOutOfOrderModeEnabled()) {
+				commandQueue.putBarrier(); // commands of a batch may not overlap commands of the previous batch that were not waited for
+			}
+			events = new CLEventList(commands);
+			for (final ManagedBuffer write : writes) {
+				write.write(commandQueue);
+				commandQueue.putMarker(events); // event of the (possibly empty) write, completing once all its ranges have been written
+			}
+			if (glObjectIds.capacity() > 0) {
+				commandQueue.putAcquireGLObjects(glObjectIds.rewind(), null, events);
+			}
+			for (int i = 0; i < invocations.length; i++) {
+				final KernelInvocation invocation = invocations[i];
+				commandQueue.putNDRangeKernel(invocation.kernel, invocation.dimensions, invocation.offsets, invocation.globalWorkSizes, invocation.localWorkSizes, getCondition(dependencies[i]), events);
+			}
+			if (glObjectIds.capacity() > 0) {
+				commandQueue.putReleaseGLObjects(glObjectIds.rewind(), getCondition(releaseDependencies), events);
+			}
+			commandQueue.flush();
+			Profiler.end(Span.SUBMIT_PIPELINE, start);
+		}
+
+		/**
+		 * Make the OpenGL commands issued after this call wait for the last batch submitted to complete.
+		 * 
+		 * @param gl
+		 *            the OpenGL context current on this thread
+		 */
+		protected void await(final GL3 gl) {
+			Objects.requireNonNull(gl, "OpenGL must not be null");
+			if (events == null) {
+				return;
+			}
+			final long start = Profiler.begin();
+			if ((glObjectIds.capacity() > 0) && gl.isExtensionAvailable(GL_ARB_CL_EVENT)) {
+				final long sync = gl.glCreateSyncFromCLeventARB(context.ID, events.getEvent(events.size() - 1).ID, 0); // last command is the release
+				gl.glWaitSync(sync, 0, GL3.GL_TIMEOUT_IGNORED); // wait on the GPU, the sync keeps a reference to the event
+				gl.glDeleteSync(sync);
+				events.release();
+				events = null;
+			} else {
+				finish();
+			}
+			Profiler.end(Span.AWAIT_PIPELINE, start);
+		}
+
+		/**
+		 * Dispose this pipeline.
+		 */
+		protected void dispose() {
+			finish();
+			compute.returnQueue(commandQueue);
+		}
+
+		/**
+		 * Wait on the host for the last batch submitted to complete.
+		 */
+		protected void finish() {
+			if (events != null) {
+				events.waitForEvents();
+				events.release();
+				events = null;
+			}
+		}
+
+		private CLEventList getCondition(final int[] dependencies) {
+			if ((dependencies.length == 0) || (!commandQueue.isOutOfOrderModeEnabled())) {
+				return null; // in order execution already respects all dependencies
+			}
+			final CLEvent[] condition = new CLEvent[dependencies.length];
+			for (int i = 0; i < dependencies.length; i++) {
+				condition[i] = events.getEvent(dependencies[i]);
+			}
+			return new CLEventList(condition);
+		}
+	}
+
+	/**
+	 * An OpenCL device helping the device of a calculating renderer with calculations. A helper device has an OpenCL context of its own, not shared with OpenGL, so kernels executed on it write to buffers of its own, whose host data is read back to be written to OpenGL vertex buffers by the renderer. Kernels are executed on a profiling command queue, so that the time spent on the device by each execution is measured for scheduling.
+	 * 
+	 * @author thanos
+	 */
+	protected class HelperDevice {
+		private final CLDevice device;
+		private final CLContext context;
+		private final java.util.Map<String, CLKernel> kernels;
+		private final java.util.Map<CLKernel, PointerBuffer> localWorkSizes;
+		private final CLCommandQueue queue;
+		private CLEventList events;
+
+		/**
+		 * Construct a new helper device, compiling the program of the renderer for it.
+		 * 
+		 * @param device
+		 *            the OpenCL device to use
+		 * @param programDefinitions
+		 *            the definitions to include in the program source code (using <code>#define</code>)
+		 * @throws RendererException
+		 *             if any errors occur
+		 */
+		protected HelperDevice(final CLDevice device, final Map<String, String> programDefinitions) throws RendererException {
+			Objects.requireNonNull(device, "Device must not be null");
+			Objects.requireNonNull(programDefinitions, "Program definitions must not be null");
+			this.device = device;
+			context = CLContext.create(device);
+			try {
+				final CLProgram program = context.createProgram(loadProgram(programName, programDefinitions));
+				try {
+					program.build(device);
+				} catch (final CLException.CLBuildProgramFailureException e) {
+					throw new RendererException("Error compiling CL program " + programName + " for helper device " + device.getName(), program.getBuildLog(device));
+				}
+				if (program.getBuildStatus(device) == CLProgram.Status.BUILD_ERROR) {
+					throw new RendererException("Error compiling CL program " + programName + " for helper device " + device.getName(), program.getBuildLog(device));
+				}
+				kernels = program.createCLKernels();
+				queue = device.createCommandQueue(CLCommandQueue.Mode.PROFILING_MODE);
+			} catch (final RendererException | CLException e) {
+				context.release(); // releases the program as well
+				throw e;
+			}
+			localWorkSizes = new HashMap<CLKernel, PointerBuffer>();
+			events = null;
+			LOGGER.info("Created helper device " + device.getName());
+		}
+
+		/**
+		 * Get the OpenCL device of this helper device.
+		 * 
+		 * @return the OpenCL device of this helper device
+		 */
+		protected CLDevice getDevice() {
+			return device;
+		}
+
+		/**
+		 * Get a kernel of the program compiled for this helper device.
+		 * 
+		 * @param kernel
+		 *            the name of the kernel
+		 * @return the kernel
+		 */
+		protected CLKernel getKernel(final String kernel) {
+			Objects.requireNonNull(kernel, "Kernel must not be null");
+			if (!kernels.containsKey(kernel)) {
+				throw new IllegalArgumentException("Kernel " + kernel + " does not exist");
+			}
+			return kernels.get(kernel);
+		}
+
+		/**
+		 * Get the local work sizes used for a kernel on this helper device. Local work sizes are not tuned on helper devices; the largest work group supported by the kernel is spread evenly across dimensions.
+		 * 
+		 * @param kernel
+		 *            the kernel
+		 * @param dimensions
+		 *            the dimensions of the kernel
+		 * @return the local work sizes of the kernel (one per dimension)
+		 */
+		protected PointerBuffer getLocalWorkSizes(final CLKernel kernel, final int dimensions) {
+			Objects.requireNonNull(kernel, "Kernel must not be null");
+			if (dimensions <= 0) {
+				throw new IllegalArgumentException("Dimensions must be positive");
+			}
+			PointerBuffer localWorkSizes = this.localWorkSizes.get(kernel);
+			if (localWorkSizes == null) {
+				final long maxWorkGroupSize = Math.min(device.getMaxWorkGroupSize(), kernel.getWorkGroupSize(device));
+				final int[] maxWorkItemSizes = device.getMaxWorkItemSizes();
+				final long[] sizes = new long[dimensions];
+				Arrays.fill(sizes, 1L);
+				long workGroupSize = 1L;
+				for (boolean grown = true; grown;) {
+					grown = false;
+					for (int i = 0; i < dimensions; i++) {
+						if ((workGroupSize * 2L <= maxWorkGroupSize) && (sizes[i] * 2L <= ((i < maxWorkItemSizes.length) ? maxWorkItemSizes[i] : 1L))) {
+							sizes[i] *= 2L;
+							workGroupSize *= 2L;
+							grown = true;
+						}
+					}
+				}
+				localWorkSizes = PointerBuffer.allocateDirect(dimensions);
+				for (int i = 0; i < dimensions; i++) {
+					localWorkSizes.put(i, sizes[i]);
+				}
+				this.localWorkSizes.put(kernel, localWorkSizes);
+			}
+			return localWorkSizes;
+		}
+
+		/**
+		 * Allocate a buffer of floats on this helper device, with direct host data to read results into.
+		 * 
+		 * @param size
+		 *            the number of floats of the buffer
+		 * @return the buffer allocated
+		 */
+		protected CLBuffer<FloatBuffer> allocate(final int size) {
+			if (size <= 0) {
+				throw new IllegalArgumentException("Size must be positive");
+			}
+			return context.createFloatBuffer(size, CLMemory.Mem.READ_WRITE);
+		}
+
+		/**
+		 * Copy a managed buffer of floats to this helper device. The copy is a managed buffer of its own, so changes to the host data of the original must be applied to the copy as well.
+		 * 
+		 * @param managedBuffer
+		 *            the managed buffer to copy
+		 * @return the copy, whose host data is initially dirty
+		 */
+		protected ManagedBuffer copy(final ManagedBuffer managedBuffer) {
+			Objects.requireNonNull(managedBuffer, "Managed buffer must not be null");
+			if (!(managedBuffer.buffer.getBuffer() instanceof FloatBuffer)) {
+				throw new IllegalStateException("Buffer must be a buffer of floats");
+			}
+			final CLBuffer<FloatBuffer> copy = context.createFloatBuffer(managedBuffer.size, CLMemory.Mem.READ_ONLY);
+			copy.getBuffer().put(((FloatBuffer) managedBuffer.buffer.getBuffer()).duplicate()).rewind();
+			return new ManagedBuffer(copy);
+		}
+
+		/**
+		 * Submit a kernel execution without waiting for it to complete. Dirty ranges of managed buffers are written before the execution and buffers are read back to their host data after it. Any execution previously submitted must have completed (which is waited for if needed).
+		 * 
+		 * @param kernel
+		 *            the kernel to execute (arguments must have been set)
+		 * @param offsets
+		 *            the offsets of the global IDs of work items (one per dimension)
+		 * @param sizes
+		 *            the numbers of work items (one per dimension)
+		 * @param writes
+		 *            the managed buffers the kernel reads
+		 * @param reads
+		 *            the buffers to read back after the kernel
+		 */
+		protected void submit(final CLKernel kernel, final int[] offsets, final int[] sizes, final ManagedBuffer[] writes, final CLBuffer<?>[] reads) {
+			Objects.requireNonNull(kernel, "Kernel must not be null");
+			Objects.requireNonNull(offsets, "Offsets must not be null");
+			Objects.requireNonNull(sizes, "Sizes must not be null");
+			Objects.requireNonNull(writes, "Writes must not be null");
+			Objects.requireNonNull(reads, "Reads must not be null");
+			if (offsets.length != sizes.length) {
+				throw new IllegalArgumentException("Offsets and sizes must have the same dimensions");
+			}
+			finish();
+			final PointerBuffer localWorkSizes = getLocalWorkSizes(kernel, sizes.length);
+			final PointerBuffer globalOffsets = PointerBuffer.allocateDirect(sizes.length);
+			final PointerBuffer globalWorkSizes = PointerBuffer.allocateDirect(sizes.length);
+			for (int i = 0; i < sizes.length; i++) {
+				globalOffsets.put(i, offsets[i]);
+				globalWorkSizes.put(i, roundUp(sizes[i], localWorkSizes.get(i)));
+			}
+			for (final ManagedBuffer write : writes) {
+				write.write(queue);
+			}
+			events = new CLEventList(1 + reads.length);
+			queue.putNDRangeKernel(kernel, sizes.length, globalOffsets, globalWorkSizes, localWorkSizes, null, events);
+			for (final CLBuffer<?> read : reads) {
+				queue.putReadBuffer(read, false, null, events);
+			}
+			queue.flush();
+		}
+
+		/**
+		 * Wait on the host for the last execution submitted to complete, including reading back its results.
+		 * 
+		 * @return the time spent on the device by the kernel and reading back its results in nanoseconds (or 0 if nothing was submitted)
+		 */
+		protected long finish() {
+			if (events == null) {
+				return 0L;
+			}
+			queue.finish();
+			try {
+				return events.getEvent(events.size() - 1).getProfilingInfo(CLEvent.ProfilingCommand.END) - events.getEvent(0).getProfilingInfo(CLEvent.ProfilingCommand.START);
+			} finally {
+				events.release();
+				events = null;
+			}
+		}
+
+		/**
+		 * Release this helper device and all OpenCL resources created on it.
+		 */
+		protected void release() {
+			finish();
+			queue.release();
+			context.release();
 		}
 	}
 
 	private static final String DEFINITION = "#define %1$s %2$s\n";
 	private static final int BUFFER_SIZE = 1024;
+	private static final char LOCAL_WORK_SIZES_SEPARATOR = '/';
+	private static final int TUNING_RUNS = 3;
+	private static final int MAX_DIRTY_RANGES = 8;
+	private static final String CL_KHR_GL_EVENT = "cl_khr_gl_event";
+	private static final String GL_ARB_CL_EVENT = "GL_ARB_cl_event";
 	private static final Logger LOGGER = Logger.getLogger(CalculatingRenderer.class.getName());
 
-	private final CLDevice device;
-	private final CLGLContext context;
-	private final CLProgram program;
-	private final java.util.Map<String, CLKernel> kernels;
-	private final CLCommandQueue queue;
+	private final String programName;
+	private final Map<String, String> programDefinitions;
+	private final Configuration configuration;
+	private final Map<String, PointerBuffer> localWorkSizes;
+	private final Map<String, long[]> tuned; // ranges local work sizes were tuned on, by kernel and dimensions
+	private final List<CalculatingVertexBuffer<?>> sharedVertexBuffers;
+	private ComputeContext compute;
+	private CLDevice device;
+	private CLGLContext context;
+	private CLProgram program;
+	private java.util.Map<String, CLKernel> kernels;
+	private CLCommandQueue queue;
+	private long[] maxWorkItemSizes;
+	private long maxWorkGroupSize;
 
 	private static String loadProgram(final String program, final Map<String, String> definitions) throws RendererException {
 		try (final InputStreamReader reader = new InputStreamReader(CalculatingRenderer.class.getResourceAsStream(program), StandardCharsets.UTF_8)) {
@@ -95,12 +1175,18 @@ public class CalculatingRenderer extends Renderer {
 		}
 	}
 
-	private static PointerBuffer intArray2PointerBuffer(final int[] data) {
-		final PointerBuffer buffer = PointerBuffer.allocateDirect(data.length);
-		for (int i = 0; i < data.length; i++) {
-			buffer.put(i, data[i]);
+	private static int[] toArray(final Set<Integer> integers) {
+		final int[] array = new int[integers.size()];
+		int i = 0;
+		for (final int integer : integers) {
+			array[i++] = integer;
 		}
-		return buffer;
+		return array;
+	}
+
+	private static long roundUp(final long size, final long localWorkSize) {
+		final long remainder = size % localWorkSize;
+		return (remainder == 0L) ? size : (size - remainder + localWorkSize);
 	}
 
 	private static long calculateWorkGroupSize(final PointerBuffer localWorkSizes) {
@@ -112,7 +1198,7 @@ public class CalculatingRenderer extends Renderer {
 	}
 
 	/**
-	 * Construct a new calculating renderer.
+	 * Construct a new calculating renderer. No OpenCL resources are acquired until {@link #acquireCompute(GL3)} is called, so renderers calculating on the host never set up OpenCL.
 	 * 
 	 * @param gl
 	 *            the OpenGL context to use
@@ -135,45 +1221,101 @@ public class CalculatingRenderer extends Renderer {
 	 */
 	protected CalculatingRenderer(final GL3 gl, final String vertexShader, final Map<String, String> vertexShaderDefinitions, final String fragmentShader, final Map<String, String> fragmentShaderDefinitions, final Configuration configuration, final String program, final Map<String, String> programDefinitions) throws RendererException {
 		super(gl, vertexShader, vertexShaderDefinitions, fragmentShader, fragmentShaderDefinitions);
-		Objects.requireNonNull(configuration, "Configuration must not be null");
-		Objects.requireNonNull(program, "Program must not be null");
-		if (program.isEmpty()) {
-			throw new IllegalArgumentException("Program must not be empty");
-		}
-		Objects.requireNonNull(programDefinitions, "Program definitions must not be null");
-		device = configuration.getClDevice();
-		context = CLGLContext.create(gl.getContext(), device);
-		this.program = context.createProgram(loadProgram(program, programDefinitions));
-		LOGGER.info("Loaded CL program " + program);
 		try {
-			this.program.build(device);
-			if (this.program.getBuildStatus(device) == CLProgram.Status.BUILD_ERROR) {
-				final String buildLog = this.program.getBuildLog(device);
-				this.program.release();
-				context.release();
-				throw new RendererException("Error compiling CL program " + program, buildLog);
-			}
-			LOGGER.info("Compiled CL program " + program);
-			kernels = this.program.createCLKernels();
-			queue = device.createCommandQueue();
-		} catch (final CLException.CLBuildProgramFailureException e) {
-			final String buildLog = this.program.getBuildLog(device);
-			this.program.release();
-			context.release();
-			throw new RendererException("Error compiling CL program " + program, buildLog);
+			Objects.requireNonNull(configuration, "Configuration must not be null");
+			Objects.requireNonNull(program, "Program must not be null");
+			if (program.isEmpty()) {
+				throw new IllegalArgumentException("Program must not be empty");
+			}
+			Objects.requireNonNull(programDefinitions, "Program definitions must not be null");
+		} catch (final RuntimeException e) {
+			super.dispose(gl); // releases the GLSL program acquired
+			throw e;
 		}
+		programName = program;
+		this.programDefinitions = new HashMap<String, String>(programDefinitions);
+		this.configuration = configuration;
+		localWorkSizes = new HashMap<String, PointerBuffer>();
+		tuned = new HashMap<String, long[]>();
+		sharedVertexBuffers = new ArrayList<CalculatingVertexBuffer<?>>();
+		compute = null;
 	}
 
 	@Override
 	public void dispose(final GL3 gl) {
 		Objects.requireNonNull(gl, "OpenGL must not be null");
-		queue.release();
+		releaseCompute();
+		super.dispose(gl);
+	}
+
+	/**
+	 * Acquire the OpenCL context shared with OpenGL and compile the CL program of this renderer, unless already acquired. Contexts and programs are shared with other renderers (see {@link ComputeContext}).
+	 * 
+	 * @param gl
+	 *            the OpenGL context to use
+	 * @throws RendererException
+	 *             if any errors occur
+	 */
+	protected void acquireCompute(final GL3 gl) throws RendererException {
+		Objects.requireNonNull(gl, "OpenGL must not be null");
+		if (compute != null) {
+			return;
+		}
+		final ComputeContext compute = ComputeContext.acquire(gl.getContext(), configuration.getClDevice());
+		try {
+			program = compute.acquireProgram(programName, loadProgram(programName, programDefinitions));
+		} catch (final RendererException | RuntimeException e) {
+			compute.release();
+			throw e;
+		}
+		device = compute.getDevice();
+		context = compute.getContext();
+		kernels = program.createCLKernels();
+		queue = compute.borrowQueue(false);
+		final int[] maxWorkItemSizes = device.getMaxWorkItemSizes();
+		this.maxWorkItemSizes = new long[Math.min(maxWorkItemSizes.length, device.getMaxWorkItemDimensions())];
+		for (int i = 0; i < this.maxWorkItemSizes.length; i++) {
+			this.maxWorkItemSizes[i] = maxWorkItemSizes[i];
+		}
+		maxWorkGroupSize = device.getMaxWorkGroupSize();
+		this.compute = compute;
+	}
+
+	/**
+	 * Release the OpenCL resources acquired by {@link #acquireCompute(GL3)}, including vertex buffers shared with OpenCL. Kernel invocations and compute pipelines created before must not be used afterwards. Releasing more than once has no effect.
+	 */
+	protected void releaseCompute() {
+		if (compute == null) {
+			return;
+		}
+		for (final CalculatingVertexBuffer<?> sharedVertexBuffer : sharedVertexBuffers) {
+			sharedVertexBuffer.unshare();
+		}
+		sharedVertexBuffers.clear();
+		compute.returnQueue(queue);
 		for (final CLKernel kernel : kernels.values()) {
 			kernel.release();
 		}
-		program.release();
-		context.release();
-		super.dispose(gl);
+		compute.releaseProgram(program);
+		compute.release(); // context is released by the last renderer sharing it
+		localWorkSizes.clear();
+		tuned.clear();
+		compute = null;
+		device = null;
+		context = null;
+		program = null;
+		kernels = null;
+		queue = null;
+	}
+
+	/**
+	 * Get the compute context shared by this renderer.
+	 * 
+	 * @return the compute context shared by this renderer
+	 */
+	protected ComputeContext getComputeContext() {
+		checkCompute();
+		return compute;
 	}
 
 	/**
@@ -190,6 +1332,7 @@ public class CalculatingRenderer extends Renderer {
 			throw new IllegalArgumentException("Size must be positive");
 		}
 		Objects.requireNonNull(type, "Type must not be null");
+		checkCompute();
 		if (Float.class.isAssignableFrom(type)) {
 			return context.createFloatBuffer(size, CLMemory.Mem.USE_BUFFER, CLMemory.Mem.READ_WRITE);
 		} else if (Integer.class.isAssignableFrom(type)) {
@@ -213,6 +1356,7 @@ public class CalculatingRenderer extends Renderer {
 		if (data.length == 0) {
 			throw new IllegalArgumentException("Data must not be empty");
 		}
+		checkCompute();
 		if (Float.class.isAssignableFrom(data.getClass().getComponentType())) {
 			return context.createBuffer(Buffers.newDirectFloatBuffer(objectArray2PrimitiveArray(new Float[0].getClass().cast(data))), CLMemory.Mem.USE_BUFFER, CLMemory.Mem.READ_ONLY);
 		} else if (Integer.class.isAssignableFrom(data.getClass().getComponentType())) {
@@ -222,89 +1366,27 @@ public class CalculatingRenderer extends Renderer {
 		}
 	}
 
-	/**
-	 * Execute an OpenCL kernel.
-	 * 
-	 * @param kernel
-	 *            the kernel to execute
-	 * @param dimensions
-	 *            the dimensions of the kernel to execute
-	 * @param offsets
-	 *            the offsets used to calculate the global ID of a work item (one for each dimension)
-	 * @param sizes
-	 *            the numbers of work items that will execute the kernel (one for each dimension)
-	 * @param arguments
-	 *            the arguments to pass to the kernel (must be either a {@link Float}, an {@link Integer}, a {@link CLMemory} or a {@link CalculatingVertexBuffer})
-	 */
-	protected void executeKernel(final String kernel, final int dimensions, final int offsets[], final int sizes[], final Object... arguments) {
-		Objects.requireNonNull(kernel, "Kernel must not be null");
-		if (kernel.isEmpty()) {
-			throw new IllegalArgumentException("Kernel must not be empty");
-		}
-		if (dimensions <= 0) {
-			throw new IllegalArgumentException("Dimensions must be positive");
-		}
-		if (dimensions > device.getMaxWorkItemDimensions()) {
-			throw new IllegalArgumentException("Dimensions must at most " + device.getMaxWorkItemDimensions());
-		}
-		Objects.requireNonNull(offsets, "Offsets must not be null");
-		if (offsets.length < dimensions) {
-			throw new IllegalArgumentException("Offsets size must be " + dimensions);
-		}
-		Objects.requireNonNull(sizes, "Sizes must not be null");
-		if (sizes.length < dimensions) {
-			throw new IllegalArgumentException("Sizes size must be " + dimensions);
-		}
-		for (int i = 0; i < arguments.length; i++) {
-			if ((!Float.class.isInstance(arguments[i])) && (!Integer.class.isInstance(arguments[i])) && (!CLMemory.class.isInstance(arguments[i])) && (!CalculatingVertexBuffer.class.isInstance(arguments[i]))) {
-				throw new IllegalStateException("Argument " + i + " must be either  a " + Float.class.getName() + ", an " + Integer.class.getName() + ", a " + CLMemory.class.getName() + " or a " + CalculatingVertexBuffer.class.getName());
-			}
-			if ((CLBuffer.class.isInstance(arguments[i])) && (CLBuffer.class.cast(arguments[i]).isReadOnly())) {
-				queue.putWriteBuffer(CLBuffer.class.cast(arguments[i]), false);
-			}
-			if (CalculatingVertexBuffer.class.isInstance(arguments[i])) {
-				queue.putAcquireGLObject(CalculatingVertexBuffer.class.cast(arguments[i]).buffer);
-			}
-		}
-		kernels.get(kernel).rewind();
-		for (final Object argument : arguments) {
-			if (Float.class.isInstance(argument)) {
-				kernels.get(kernel).putArg(Float.class.cast(argument));
-			} else if (Integer.class.isInstance(argument)) {
-				kernels.get(kernel).putArg(Integer.class.cast(argument));
-			} else if (CLMemory.class.isInstance(argument)) {
-				kernels.get(kernel).putArg(CLMemory.class.cast(argument));
-			} else if (CalculatingVertexBuffer.class.isInstance(argument)) {
-				kernels.get(kernel).putArg(CalculatingVertexBuffer.class.cast(argument).buffer);
-			}
+	private void checkCompute() {
+		if (compute == null) {
+			throw new IllegalStateException("Compute has not been acquired");
 		}
-		queue.putNDRangeKernel(kernels.get(kernel), dimensions, intArray2PointerBuffer(offsets), calculateGlobalWorkSizes(dimensions, sizes), calculateLocalWorkSizes(dimensions));
-		for (final Object argument : arguments) {
-			if (CalculatingVertexBuffer.class.isInstance(argument)) {
-				queue.putReleaseGLObject(CalculatingVertexBuffer.class.cast(argument).buffer);
-			}
-		}
-		queue.flush();
 	}
 
-	private PointerBuffer calculateLocalWorkSizes(final int dimensions) {
-		final PointerBuffer localWorkSizes = PointerBuffer.allocateDirect(dimensions);
-		for (int i = 0; i < dimensions; i++) {
-			localWorkSizes.put(i, device.getMaxWorkItemSizes()[i]);
-		}
-		for (int i = 0; calculateWorkGroupSize(localWorkSizes) > device.getMaxWorkGroupSize(); i++) {
-			localWorkSizes.put(i % dimensions, localWorkSizes.get(i % dimensions) / 2);
+	private PointerBuffer getLocalWorkSizes(final String kernel, final int dimensions) {
+		final String key = kernel + LOCAL_WORK_SIZES_SEPARATOR + dimensions;
+		PointerBuffer localWorkSizes = this.localWorkSizes.get(key);
+		if (localWorkSizes == null) {
+			localWorkSizes = PointerBuffer.allocateDirect(dimensions);
+			final long maxWorkGroupSize = Math.min(this.maxWorkGroupSize, kernels.get(kernel).getWorkGroupSize(device));
+			// until tuned (or restored from the configuration) on the first execution, the largest work group is spread across dimensions
+			for (int i = 0; i < dimensions; i++) {
+				localWorkSizes.put(i, maxWorkItemSizes[i]);
+			}
+			for (int i = 0; calculateWorkGroupSize(localWorkSizes) > maxWorkGroupSize; i++) {
+				localWorkSizes.put(i % dimensions, Math.max(1L, localWorkSizes.get(i % dimensions) / 2));
+			}
+			this.localWorkSizes.put(key, localWorkSizes);
 		}
 		return localWorkSizes;
 	}
-
-	private PointerBuffer calculateGlobalWorkSizes(final int dimensions, final int[] sizes) {
-		final PointerBuffer localWorkSizes = calculateLocalWorkSizes(dimensions);
-		final PointerBuffer globalWorkSizes = PointerBuffer.allocateDirect(dimensions);
-		for (int i = 0; i < dimensions; i++) {
-			final long remainder = sizes[i] % localWorkSizes.get(i);
-			globalWorkSizes.put(i, (remainder == 0L) ? sizes[i] : (sizes[i] - remainder + localWorkSizes.get(i)));
-		}
-		return globalWorkSizes;
-	}
 }
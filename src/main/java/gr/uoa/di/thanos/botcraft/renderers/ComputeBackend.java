@@ -0,0 +1,84 @@
+package gr.uoa.di.thanos.botcraft.renderers;
+
+import com.jogamp.opengl.GL3;
+
+/**
+ * A backend performing the calculations renderers need, either on an OpenCL device or on the host. Backends calculate into OpenGL vertex buffers given at construction, so renderers only talk to this interface whichever backend is selected. Calculations are submitted without waiting for them and awaited right before the OpenGL draw calls that need their results, so that they overlap the draw calls of a frame. Calculations needed by future renderers (e.g. visibility or pathfinding) are to be added as methods of this interface.
+ * 
+ * @author thanos
+ */
+public interface ComputeBackend {
+	/**
+	 * Get the name of this backend.
+	 * 
+	 * @return the name of this backend (used in messages)
+	 */
+	String getName();
+
+	/**
+	 * Change the altitude of a tile of the map whose terrain is calculated. The change is taken into account by calculations submitted afterwards.
+	 * 
+	 * @param latitude
+	 *            the latitude of the tile
+	 * @param longitude
+	 *            the longitude of the tile
+	 * @param altitude
+	 *            the new altitude of the tile
+	 */
+	void setAltitude(int latitude, int longitude, float altitude);
+
+	/**
+	 * Submit the calculation of the vertex buffers of the terrain of a range of tiles of a chunk of the map, like the <code>calculateVertexBuffers</code> kernel does, without waiting for it to complete. The vertices of each tile of the chunk are stored contiguously, tiles in row major order within the chunk: eight triangles per tile (one per direction, north first, clockwise) of three vertices each. Only the vertices of the tiles of the range are written. Any calculation previously submitted is awaited first.
+	 * 
+	 * @param gl
+	 *            the OpenGL context current on this thread
+	 * @param chunkLatitude
+	 *            the latitude of the first tile of the chunk
+	 * @param chunkLongitude
+	 *            the longitude of the first tile of the chunk
+	 * @param chunkLatitudinalSize
+	 *            the latitudinal size of the chunk
+	 * @param chunkLongitudinalSize
+	 *            the longitudinal size of the chunk
+	 * @param latitude
+	 *            the latitude of the first tile of the range (within the chunk)
+	 * @param longitude
+	 *            the longitude of the first tile of the range (within the chunk)
+	 * @param latitudinalSize
+	 *            the latitudinal size of the range
+	 * @param longitudinalSize
+	 *            the longitudinal size of the range
+	 */
+	void calculateTerrain(GL3 gl, int chunkLatitude, int chunkLongitude, int chunkLatitudinalSize, int chunkLongitudinalSize, int latitude, int longitude, int latitudinalSize, int longitudinalSize);
+
+	/**
+	 * Make the OpenGL commands issued after this call wait for the last calculation submitted to complete.
+	 * 
+	 * @param gl
+	 *            the OpenGL context current on this thread
+	 */
+	void await(GL3 gl);
+
+	/**
+	 * Profile the calculation of the terrain of a chunk of the map, executing it repeatedly.
+	 * 
+	 * @param gl
+	 *            the OpenGL context current on this thread
+	 * @param chunkLatitudinalSize
+	 *            the latitudinal size of the chunk, whose first tile is the first tile of the map
+	 * @param chunkLongitudinalSize
+	 *            the longitudinal size of the chunk, whose first tile is the first tile of the map
+	 * @param runs
+	 *            the number of times to execute each calculation
+	 * @return the minimum time spent by an execution of each calculation in nanoseconds, by calculation name
+	 */
+	java.util.Map<String, Long> profile(GL3 gl, int chunkLatitudinalSize, int chunkLongitudinalSize, int runs);
+
+	/**
+	 * Dispose this backend, waiting for any calculation submitted to complete.
+	 * 
+	 * @param gl
+	 *            the OpenGL context to use
+	 */
+	void dispose(GL3 gl);
+}
@@ -0,0 +1,28 @@
+package gr.uoa.di.thanos.botcraft.renderers;
+
+/**
+ * Enumeration representing types of compute backends calculating for renderers.
+ * 
+ * @author thanos
+ */
+public enum ComputeBackendType {
+	/**
+	 * The fastest backend, measured end to end the first time a map is rendered with an OpenCL device on a host and then stored in the configuration.
+	 */
+	AUTO,
+
+	/**
+	 * OpenCL on the OpenCL device selected, calculating directly into buffers shared with OpenGL.
+	 */
+	OPEN_CL,
+
+	/**
+	 * Java, calculating each tile independently on all processors.
+	 */
+	JAVA_PARALLEL,
+
+	/**
+	 * Java, calculating each pass over whole rows of flat arrays on all processors.
+	 */
+	JAVA_VECTORIZED
+}
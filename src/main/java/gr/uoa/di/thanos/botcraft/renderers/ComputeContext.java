@@ -0,0 +1,293 @@
+package gr.uoa.di.thanos.botcraft.renderers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.logging.Logger;
+
+import com.jogamp.opencl.CLBuffer;
+import com.jogamp.opencl.CLCommandQueue;
+import com.jogamp.opencl.CLDevice;
+import com.jogamp.opencl.CLException;
+import com.jogamp.opencl.CLProgram;
+import com.jogamp.opencl.gl.CLGLContext;
+import com.jogamp.opengl.GLContext;
+
+/**
+ * An OpenCL context shared with OpenGL, shared by all calculating renderers using the same OpenGL context and OpenCL device. Besides the OpenCL context itself, it owns a cache of compiled program variants (by source, including definitions), a pool of in order and out of order command queues and a registry of buffers shared between renderers. Compute contexts are reference counted: each renderer acquires a compute context once and releases it once, and the last release releases all OpenCL resources owned by it.
+ *
+ * @author thanos
+ */
+public class ComputeContext {
+	/**
+	 * A factory creating a shared buffer the first time it is acquired.
+	 *
+	 * @author thanos
+	 */
+	public interface BufferFactory {
+		/**
+		 * Create the buffer.
+		 *
+		 * @param context
+		 *            the OpenCL context to create the buffer in
+		 * @return the buffer created
+		 */
+		CLBuffer<?> create(CLGLContext context);
+	}
+
+	private static class SharedBuffer {
+		private final CLBuffer<?> buffer;
+		private int references;
+
+		private SharedBuffer(final CLBuffer<?> buffer) {
+			this.buffer = buffer;
+			references = 0;
+		}
+	}
+
+	private static class SharedBufferKey {
+		private final Object owner;
+		private final String name;
+
+		private SharedBufferKey(final Object owner, final String name) {
+			this.owner = owner;
+			this.name = name;
+		}
+
+		@Override
+		public boolean equals(final Object object) {
+			return (object instanceof SharedBufferKey) && (((SharedBufferKey) object).owner == owner) && ((SharedBufferKey) object).name.equals(name);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(owner) + name.hashCode();
+		}
+	}
+
+	private static final List<ComputeContext> CONTEXTS = new ArrayList<ComputeContext>();
+	private static final int MAX_IDLE_PROGRAMS = 8;
+	private static final Logger LOGGER = Logger.getLogger(ComputeContext.class.getName());
+
+	private final GLContext glContext;
+	private final CLDevice device;
+	private final CLGLContext context;
+	private final VariantCache<CLGLContext, String, CLProgram> programs;
+	private final Deque<CLCommandQueue> inOrderQueues;
+	private final Deque<CLCommandQueue> outOfOrderQueues;
+	private final List<CLCommandQueue> queues;
+	private final Map<SharedBufferKey, SharedBuffer> buffers;
+	private int references;
+
+	/**
+	 * Acquire the compute context of an OpenGL context and an OpenCL device, creating it if needed.
+	 *
+	 * @param glContext
+	 *            the OpenGL context to share
+	 * @param device
+	 *            the OpenCL device to use
+	 * @return the compute context of the given OpenGL context and OpenCL device
+	 */
+	public static synchronized ComputeContext acquire(final GLContext glContext, final CLDevice device) {
+		Objects.requireNonNull(glContext, "OpenGL context must not be null");
+		Objects.requireNonNull(device, "Device must not be null");
+		for (final ComputeContext context : CONTEXTS) {
+			if ((context.glContext == glContext) && context.device.equals(device)) {
+				context.references++;
+				return context;
+			}
+		}
+		final ComputeContext context = new ComputeContext(glContext, device);
+		context.references++;
+		CONTEXTS.add(context);
+		return context;
+	}
+
+	private ComputeContext(final GLContext glContext, final CLDevice device) {
+		this.glContext = glContext;
+		this.device = device;
+		context = CLGLContext.create(glContext, device);
+		programs = new VariantCache<CLGLContext, String, CLProgram>(MAX_IDLE_PROGRAMS) {
+			@Override
+			protected CLProgram compile(final CLGLContext context, final String name, final String source) throws RendererException {
+				final CLProgram program = context.createProgram(source);
+				LOGGER.info("Loaded CL program " + name);
+				try {
+					program.build(ComputeContext.this.device);
+					if (program.getBuildStatus(ComputeContext.this.device) == CLProgram.Status.BUILD_ERROR) {
+						final String buildLog = program.getBuildLog(ComputeContext.this.device);
+						program.release();
+						throw new RendererException("Error compiling CL program " + name, buildLog);
+					}
+				} catch (final CLException.CLBuildProgramFailureException e) {
+					final String buildLog = program.getBuildLog(ComputeContext.this.device);
+					program.release();
+					throw new RendererException("Error compiling CL program " + name, buildLog);
+				}
+				LOGGER.info("Compiled CL program " + name);
+				return program;
+			}
+
+			@Override
+			protected void destroy(final CLGLContext context, final CLProgram program) {
+				program.release();
+			}
+		};
+		inOrderQueues = new ArrayDeque<CLCommandQueue>();
+		outOfOrderQueues = new ArrayDeque<CLCommandQueue>();
+		queues = new ArrayList<CLCommandQueue>();
+		buffers = new HashMap<SharedBufferKey, SharedBuffer>();
+		references = 0;
+		LOGGER.info("Created compute context on device " + device.getName());
+	}
+
+	/**
+	 * Get the OpenCL device of this compute context.
+	 *
+	 * @return the OpenCL device of this compute context
+	 */
+	public CLDevice getDevice() {
+		return device;
+	}
+
+	/**
+	 * Get the OpenCL context of this compute context.
+	 *
+	 * @return the OpenCL context of this compute context
+	 */
+	public CLGLContext getContext() {
+		return context;
+	}
+
+	/**
+	 * Acquire a program variant compiled for the device of this compute context. Each distinct source (including definitions) is compiled once and kept for a while after its last release.
+	 *
+	 * @param name
+	 *            the name of the program (used in messages)
+	 * @param source
+	 *            the source code of the program
+	 * @return the program compiled (to be released with {@link #releaseProgram(CLProgram)})
+	 * @throws RendererException
+	 *             if any errors occur
+	 */
+	public CLProgram acquireProgram(final String name, final String source) throws RendererException {
+		return programs.acquire(context, name, source);
+	}
+
+	/**
+	 * Release a program variant acquired from this compute context.
+	 *
+	 * @param program
+	 *            the program to release
+	 */
+	public void releaseProgram(final CLProgram program) {
+		programs.release(context, program);
+	}
+
+	/**
+	 * Borrow a command queue from the pool of this compute context.
+	 *
+	 * @param outOfOrder
+	 *            <code>true</code> to borrow an out of order command queue (if supported by the device), <code>false</code> to borrow an in order one
+	 * @return the command queue borrowed (to be returned with {@link #returnQueue(CLCommandQueue)})
+	 */
+	public synchronized CLCommandQueue borrowQueue(final boolean outOfOrder) {
+		final boolean outOfOrderSupported = outOfOrder && device.getQueueProperties().contains(CLCommandQueue.Mode.OUT_OF_ORDER_MODE);
+		final Deque<CLCommandQueue> idle = outOfOrderSupported ? outOfOrderQueues : inOrderQueues;
+		if (!idle.isEmpty()) {
+			return idle.pop();
+		}
+		final CLCommandQueue queue = outOfOrderSupported ? device.createCommandQueue(CLCommandQueue.Mode.OUT_OF_ORDER_MODE) : device.createCommandQueue();
+		queues.add(queue);
+		return queue;
+	}
+
+	/**
+	 * Return a command queue borrowed from the pool of this compute context, after waiting for all its commands to complete.
+	 *
+	 * @param queue
+	 *            the command queue to return
+	 */
+	public synchronized void returnQueue(final CLCommandQueue queue) {
+		Objects.requireNonNull(queue, "Queue must not be null");
+		if (!queues.contains(queue)) {
+			throw new IllegalArgumentException("Queue was not borrowed from this compute context");
+		}
+		queue.finish();
+		(queue.isOutOfOrderModeEnabled() ? outOfOrderQueues : inOrderQueues).push(queue);
+	}
+
+	/**
+	 * Acquire a buffer shared between renderers, creating it if needed. Shared buffers are identified by an owner (compared by identity, e.g. the map whose data the buffer contains) and a name.
+	 *
+	 * @param owner
+	 *            the owner of the buffer
+	 * @param name
+	 *            the name of the buffer
+	 * @param factory
+	 *            the factory to create the buffer with if it does not exist
+	 * @return the shared buffer (to be released with {@link #releaseBuffer(Object, String)})
+	 */
+	public synchronized CLBuffer<?> acquireBuffer(final Object owner, final String name, final BufferFactory factory) {
+		Objects.requireNonNull(owner, "Owner must not be null");
+		Objects.requireNonNull(name, "Name must not be null");
+		Objects.requireNonNull(factory, "Factory must not be null");
+		final SharedBufferKey key = new SharedBufferKey(owner, name);
+		SharedBuffer buffer = buffers.get(key);
+		if (buffer == null) {
+			buffer = new SharedBuffer(factory.create(context));
+			buffers.put(key, buffer);
+		}
+		buffer.references++;
+		return buffer.buffer;
+	}
+
+	/**
+	 * Release a buffer shared between renderers. The last release releases the buffer.
+	 *
+	 * @param owner
+	 *            the owner of the buffer
+	 * @param name
+	 *            the name of the buffer
+	 */
+	public synchronized void releaseBuffer(final Object owner, final String name) {
+		Objects.requireNonNull(owner, "Owner must not be null");
+		Objects.requireNonNull(name, "Name must not be null");
+		final SharedBufferKey key = new SharedBufferKey(owner, name);
+		final SharedBuffer buffer = buffers.get(key);
+		if (buffer == null) {
+			throw new IllegalArgumentException("Buffer " + name + " has not been acquired");
+		}
+		if (--buffer.references == 0) {
+			buffers.remove(key);
+			buffer.buffer.release();
+		}
+	}
+
+	/**
+	 * Release this compute context. The last release releases all OpenCL resources owned by this compute context.
+	 */
+	public void release() {
+		synchronized (ComputeContext.class) {
+			if (--references > 0) {
+				return;
+			}
+			CONTEXTS.remove(this);
+		}
+		synchronized (this) {
+			for (final CLCommandQueue queue : queues) {
+				queue.release();
+			}
+			for (final SharedBuffer buffer : buffers.values()) {
+				buffer.buffer.release();
+			}
+			programs.clear(context);
+			context.release();
+		}
+		LOGGER.info("Released compute context on device " + device.getName());
+	}
+}
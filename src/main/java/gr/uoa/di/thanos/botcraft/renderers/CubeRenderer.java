@@ -1,6 +1,6 @@
 package gr.uoa.di.thanos.botcraft.renderers;
 
-import gr.uoa.di.thanos.botcraft.geometry.Matrix;
+import gr.uoa.di.thanos.botcraft.geometry.Matrix4f;
 
 import java.util.Collections;
 
@@ -50,7 +50,7 @@ public class CubeRenderer extends Renderer {
 	 * @param transformation
 	 *            the combined projection, view and model transformation to use
 	 */
-	public void render(final GL3 gl, final Matrix transformation) {
+	public void render(final GL3 gl, final Matrix4f transformation) {
 		render(gl);
 		bind(gl, TRANSFORMATION, transformation);
 		vertexArray.render(gl);
@@ -0,0 +1,104 @@
+package gr.uoa.di.thanos.botcraft.renderers;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Scheduler partitioning a range of work across several devices in proportion to their measured throughput. Throughput of each device is an exponential moving average of the work completed per nanosecond, so that partitions follow changes in the load of the devices without reacting to single outliers. Devices that have not been measured yet are assumed as fast as the slowest device measured.
+ *
+ * @author thanos
+ */
+public class DeviceScheduler {
+	private static final double SMOOTHING = 0.25;
+
+	private final double[] throughputs;
+
+	/**
+	 * Construct a new device scheduler.
+	 *
+	 * @param devices
+	 *            the number of devices to schedule (the first one being the primary device)
+	 */
+	public DeviceScheduler(final int devices) {
+		if (devices <= 0) {
+			throw new IllegalArgumentException("Devices must be positive");
+		}
+		throughputs = new double[devices];
+	}
+
+	/**
+	 * Get the number of devices scheduled.
+	 *
+	 * @return the number of devices scheduled
+	 */
+	public int getDevices() {
+		return throughputs.length;
+	}
+
+	/**
+	 * Record a measurement of the throughput of a device.
+	 *
+	 * @param device
+	 *            the index of the device
+	 * @param work
+	 *            the work completed
+	 * @param time
+	 *            the time spent to complete the work in nanoseconds
+	 */
+	public void record(final int device, final long work, final long time) {
+		if ((device < 0) || (device >= throughputs.length)) {
+			throw new IllegalArgumentException("Device must be between 0 and " + (throughputs.length - 1));
+		}
+		if ((work <= 0L) || (time <= 0L)) {
+			return; // nothing measured
+		}
+		final double throughput = work / (double) time;
+		throughputs[device] = (throughputs[device] == 0.0) ? throughput : ((1.0 - SMOOTHING) * throughputs[device] + SMOOTHING * throughput);
+	}
+
+	/**
+	 * Partition a range of work across the devices in proportion to their throughput. The primary device gets at least one unit of work and any work the other devices cannot take.
+	 *
+	 * @param size
+	 *            the size of the range to partition
+	 * @param limits
+	 *            the maximum work each device can take (one per device, the limit of the primary device is ignored)
+	 * @return the work of each device (one per device)
+	 */
+	public int[] partition(final int size, final int[] limits) {
+		Objects.requireNonNull(limits, "Limits must not be null");
+		if (size <= 0) {
+			throw new IllegalArgumentException("Size must be positive");
+		}
+		if (limits.length != throughputs.length) {
+			throw new IllegalArgumentException("Limits must contain one limit per device");
+		}
+		double slowest = Double.MAX_VALUE;
+		for (final double throughput : throughputs) {
+			if (throughput > 0.0) {
+				slowest = Math.min(slowest, throughput);
+			}
+		}
+		if (slowest == Double.MAX_VALUE) {
+			slowest = 1.0; // nothing measured, split evenly
+		}
+		double total = 0.0;
+		for (final double throughput : throughputs) {
+			total += (throughput > 0.0) ? throughput : slowest;
+		}
+		final int[] partition = new int[throughputs.length];
+		int remaining = size - 1; // at least one unit for the primary device
+		for (int i = 1; i < throughputs.length; i++) {
+			final double throughput = (throughputs[i] > 0.0) ? throughputs[i] : slowest;
+			partition[i] = Math.max(0, Math.min(Math.min((int) (size * throughput / total), limits[i]), remaining));
+			remaining -= partition[i];
+		}
+		partition[0] = remaining + 1;
+		return partition;
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(throughputs);
+	}
+}
@@ -0,0 +1,208 @@
+package gr.uoa.di.thanos.botcraft.renderers;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import com.jogamp.common.util.VersionNumber;
+import com.jogamp.opengl.GL3;
+
+/**
+ * A governor trading image quality for frame rate. The time the GPU spends on each frame is measured with timer queries, read back a few frames later so that the CPU never waits for the GPU, and smoothed. Whenever it exceeds the budget of a frame, quality is lowered one step: first the resolution scale, down to half the window size, then the number of samples per pixel, and finally the frame rate, to half the target (a steady lower rate stutters less than missing the target rate). Whenever it is well within budget, quality is raised again in the reverse order. After each step, the governor waits a number of frames for the measurements to settle.
+ *
+ * @author thanos
+ */
+public class FrameGovernor {
+	private static final String TIMER_QUERY_EXTENSION = "GL_ARB_timer_query";
+	private static final VersionNumber TIMER_QUERY_VERSION = new VersionNumber(3, 3, 0);
+	private static final int QUERIES = 4; // frames the GPU may lag behind before timing is skipped
+	private static final float MIN_SCALE = 0.5f;
+	private static final float MAX_SCALE = 1.0f;
+	private static final float SCALE_STEP = 0.05f;
+	private static final float SMOOTHING = 0.1f;
+	private static final float LOWERING_THRESHOLD = 0.9f; // fraction of the budget above which quality is lowered
+	private static final float RAISING_THRESHOLD = 0.6f; // fraction of the budget below which quality is raised
+	private static final int SETTLING_FRAMES = 30;
+	private static final Logger LOGGER = Logger.getLogger(FrameGovernor.class.getName());
+
+	private final boolean timed;
+	private final int[] queries;
+	private final int[] available;
+	private final long[] result;
+	private final int targetFramesPerSecond;
+	private final int maxSamples;
+	private long startedFrames;
+	private long finishedFrames;
+	private boolean querying;
+	private float frameTime;
+	private int settlingFrames;
+	private float scale;
+	private int samples;
+	private int framesPerSecond;
+
+	/**
+	 * Construct a new frame governor starting at full quality. If timer queries are not supported, quality is never lowered.
+	 *
+	 * @param gl
+	 *            the OpenGL context to use
+	 * @param targetFramesPerSecond
+	 *            the frame rate to hold
+	 * @param maxSamples
+	 *            the maximum number of samples per pixel (<code>0</code> for no multisampling)
+	 */
+	public FrameGovernor(final GL3 gl, final int targetFramesPerSecond, final int maxSamples) {
+		Objects.requireNonNull(gl, "OpenGL must not be null");
+		if (targetFramesPerSecond <= 0) {
+			throw new IllegalArgumentException("Target frames per second must be positive");
+		}
+		if (maxSamples < 0) {
+			throw new IllegalArgumentException("Max samples must be non negative");
+		}
+		timed = gl.isExtensionAvailable(TIMER_QUERY_EXTENSION) || (gl.getContext().getGLVersionNumber().compareTo(TIMER_QUERY_VERSION) >= 0);
+		queries = new int[QUERIES];
+		available = new int[1];
+		result = new long[1];
+		if (timed) {
+			gl.glGenQueries(QUERIES, queries, 0);
+		} else {
+			LOGGER.warning("Timer queries not supported, frame governor disabled");
+		}
+		this.targetFramesPerSecond = targetFramesPerSecond;
+		this.maxSamples = maxSamples;
+		startedFrames = 0L;
+		finishedFrames = 0L;
+		querying = false;
+		frameTime = -1.0f;
+		settlingFrames = SETTLING_FRAMES;
+		scale = MAX_SCALE;
+		samples = maxSamples;
+		framesPerSecond = targetFramesPerSecond;
+	}
+
+	/**
+	 * Dispose this frame governor.
+	 *
+	 * @param gl
+	 *            the OpenGL context to use
+	 */
+	public void dispose(final GL3 gl) {
+		Objects.requireNonNull(gl, "OpenGL must not be null");
+		if (timed) {
+			gl.glDeleteQueries(QUERIES, queries, 0);
+		}
+	}
+
+	/**
+	 * Get the resolution scale to render the next frame at.
+	 *
+	 * @return the resolution scale, between 0.5 and 1
+	 */
+	public float getScale() {
+		return scale;
+	}
+
+	/**
+	 * Get the number of samples per pixel to render the next frame with.
+	 *
+	 * @return the number of samples per pixel (<code>0</code> for no multisampling)
+	 */
+	public int getSamples() {
+		return samples;
+	}
+
+	/**
+	 * Get the frame rate to render at.
+	 *
+	 * @return the frame rate to render at, either the target frame rate or half of it
+	 */
+	public int getFramesPerSecond() {
+		return framesPerSecond;
+	}
+
+	/**
+	 * Get the smoothed time spent by the GPU on a frame at the current quality.
+	 *
+	 * @return the smoothed time spent by the GPU on a frame in nanoseconds or a negative value if not measured yet
+	 */
+	public float getFrameTime() {
+		return frameTime;
+	}
+
+	/**
+	 * Begin timing a frame. Must be followed by {@link #end(GL3)} once all commands of the frame have been issued.
+	 *
+	 * @param gl
+	 *            the OpenGL context to use
+	 */
+	public void begin(final GL3 gl) {
+		Objects.requireNonNull(gl, "OpenGL must not be null");
+		querying = timed && (startedFrames - finishedFrames < QUERIES);
+		if (querying) {
+			gl.glBeginQuery(GL3.GL_TIME_ELAPSED, queries[(int) (startedFrames % QUERIES)]);
+		}
+	}
+
+	/**
+	 * End timing a frame and adapt quality to the timings of previous frames that are available.
+	 *
+	 * @param gl
+	 *            the OpenGL context to use
+	 */
+	public void end(final GL3 gl) {
+		Objects.requireNonNull(gl, "OpenGL must not be null");
+		if (querying) {
+			gl.glEndQuery(GL3.GL_TIME_ELAPSED);
+			startedFrames++;
+			querying = false;
+		}
+		while (finishedFrames < startedFrames) { // oldest first, stopping at the first one still pending
+			final int query = queries[(int) (finishedFrames % QUERIES)];
+			gl.glGetQueryObjectiv(query, GL3.GL_QUERY_RESULT_AVAILABLE, available, 0);
+			if (available[0] == GL3.GL_FALSE) {
+				break;
+			}
+			gl.glGetQueryObjectui64v(query, GL3.GL_QUERY_RESULT, result, 0);
+			finishedFrames++;
+			adapt(result[0]);
+		}
+	}
+
+	private void adapt(final long time) {
+		frameTime = (frameTime < 0.0f) ? time : (frameTime + SMOOTHING * (time - frameTime));
+		if (settlingFrames > 0) {
+			settlingFrames--;
+			return;
+		}
+		final float budget = TimeUnit.NANOSECONDS.convert(1L, TimeUnit.SECONDS) / (float) framesPerSecond;
+		final float targetBudget = TimeUnit.NANOSECONDS.convert(1L, TimeUnit.SECONDS) / (float) targetFramesPerSecond;
+		if (frameTime > LOWERING_THRESHOLD * budget) {
+			if (scale > MIN_SCALE) {
+				scale = Math.max(MIN_SCALE, scale - SCALE_STEP);
+			} else if (samples > 0) {
+				samples = (samples > 2) ? (samples / 2) : 0;
+			} else if (framesPerSecond == targetFramesPerSecond) {
+				framesPerSecond = Math.max(1, targetFramesPerSecond / 2);
+			} else {
+				return;
+			}
+		} else if (frameTime < RAISING_THRESHOLD * budget) {
+			if (framesPerSecond < targetFramesPerSecond) {
+				if (frameTime >= RAISING_THRESHOLD * targetBudget) { // would not hold the target frame rate
+					return;
+				}
+				framesPerSecond = targetFramesPerSecond;
+			} else if (samples < maxSamples) {
+				samples = (samples == 0) ? Math.min(2, maxSamples) : Math.min(2 * samples, maxSamples);
+			} else if (scale < MAX_SCALE) {
+				scale = Math.min(MAX_SCALE, scale + SCALE_STEP);
+			} else {
+				return;
+			}
+		} else {
+			return;
+		}
+		LOGGER.fine("Frame time " + (frameTime / TimeUnit.NANOSECONDS.convert(1L, TimeUnit.MILLISECONDS)) + " ms, rendering at scale " + scale + " with " + samples + " samples at " + framesPerSecond + " frames per second");
+		frameTime = -1.0f; // measure the new quality afresh
+		settlingFrames = SETTLING_FRAMES;
+	}
+}
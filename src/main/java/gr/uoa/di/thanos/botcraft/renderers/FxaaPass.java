@@ -0,0 +1,37 @@
+package gr.uoa.di.thanos.botcraft.renderers;
+
+import java.util.HashMap;
+
+import com.jogamp.opengl.GL3;
+
+/**
+ * A post processing pass smoothing edges by fast approximate antialiasing (FXAA). Edges are detected from the contrast of the luma of each pixel with its diagonal neighbours and blurred along their direction, at the cost of a few texture samples per pixel regardless of the complexity of the scene, which is far cheaper than multisampling on fill rate bound GPUs.
+ *
+ * @author thanos
+ */
+public class FxaaPass extends PostProcessPass {
+	private static final String FRAGMENT_SHADER = "/gr/uoa/di/thanos/botcraft/shaders/Fxaa.frag";
+	private static final java.util.Map<String, String> FRAGMENT_SHADER_DEFINITIONS = new HashMap<String, String>() {
+		private static final long serialVersionUID = 0L;
+
+		{
+			put("FXAA_EDGE_THRESHOLD", "0.125"); // minimum contrast relative to the maximum luma to be an edge
+			put("FXAA_EDGE_THRESHOLD_MIN", "0.0625"); // minimum contrast to be an edge, so that dark areas are left alone
+			put("FXAA_REDUCE_MUL", "0.125");
+			put("FXAA_REDUCE_MIN", "0.0078125");
+			put("FXAA_SPAN_MAX", "8.0"); // maximum length of the blur in pixels
+		}
+	};
+
+	/**
+	 * Construct a new FXAA pass.
+	 *
+	 * @param gl
+	 *            the OpenGL context to use
+	 * @throws RendererException
+	 *             if any errors occur
+	 */
+	public FxaaPass(final GL3 gl) throws RendererException {
+		super(gl, FRAGMENT_SHADER, FRAGMENT_SHADER_DEFINITIONS);
+	}
+}
@@ -0,0 +1,533 @@
+package gr.uoa.di.thanos.botcraft.renderers;
+
+import gr.uoa.di.thanos.botcraft.game.Map;
+
+import java.nio.FloatBuffer;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import com.jogamp.common.nio.Buffers;
+import com.jogamp.opengl.GL3;
+
+/**
+ * A compute backend calculating in Java on all processors. Ranges of tiles are split into bands of rows calculated in parallel by a fork join pool into host buffers, and subclasses calculate each band. Calculations are submitted to the pool without waiting for them and uploaded to the vertex buffers of the backend when awaited, so that they overlap the draw calls of a frame like OpenCL calculations do. The arithmetic is the one of the OpenCL kernels, so all backends calculate the same vertices.
+ * 
+ * @author thanos
+ */
+public abstract class JavaComputeBackend implements ComputeBackend {
+	/**
+	 * A range of tiles of the terrain of a map to calculate, as a chunk of its own.
+	 * 
+	 * @author thanos
+	 */
+	protected static class TerrainChunk {
+		/**
+		 * Vertices of the triangles of a tile (one triangle per direction, north first, clockwise), by index of the vertex within the tile: southwest 0, south 1, southeast 2, west 3, center 4, east 5, northwest 6, north 7, northeast 8.
+		 */
+		private static final int[] TRIANGLES = {7, 4, 8, 8, 4, 5, 5, 4, 2, 2, 4, 1, 1, 4, 0, 0, 4, 3, 3, 4, 6, 6, 4, 7};
+
+		private final int latitudinalSize;
+		private final int longitudinalSize;
+		private final float[] altitudes;
+		private final int latitude;
+		private final int longitude;
+		private final int chunkLatitudinalSize;
+		private final int chunkLongitudinalSize;
+		private final FloatBuffer positions;
+		private final FloatBuffer normals;
+		private final FloatBuffer textures;
+
+		private TerrainChunk(final int latitudinalSize, final int longitudinalSize, final float[] altitudes, final int latitude, final int longitude, final int chunkLatitudinalSize, final int chunkLongitudinalSize, final FloatBuffer positions, final FloatBuffer normals, final FloatBuffer textures) {
+			this.latitudinalSize = latitudinalSize;
+			this.longitudinalSize = longitudinalSize;
+			this.altitudes = altitudes;
+			this.latitude = latitude;
+			this.longitude = longitude;
+			this.chunkLatitudinalSize = chunkLatitudinalSize;
+			this.chunkLongitudinalSize = chunkLongitudinalSize;
+			this.positions = positions;
+			this.normals = normals;
+			this.textures = textures;
+		}
+
+		/**
+		 * Get the latitudinal size of the map.
+		 * 
+		 * @return the latitudinal size of the map
+		 */
+		protected int getMapLatitudinalSize() {
+			return latitudinalSize;
+		}
+
+		/**
+		 * Get the longitudinal size of the map.
+		 * 
+		 * @return the longitudinal size of the map
+		 */
+		protected int getMapLongitudinalSize() {
+			return longitudinalSize;
+		}
+
+		/**
+		 * Get the latitude of the first tile of this chunk.
+		 * 
+		 * @return the latitude of the first tile of this chunk
+		 */
+		protected int getLatitude() {
+			return latitude;
+		}
+
+		/**
+		 * Get the longitude of the first tile of this chunk.
+		 * 
+		 * @return the longitude of the first tile of this chunk
+		 */
+		protected int getLongitude() {
+			return longitude;
+		}
+
+		/**
+		 * Get the longitudinal size of this chunk.
+		 * 
+		 * @return the longitudinal size of this chunk
+		 */
+		protected int getLongitudinalSize() {
+			return chunkLongitudinalSize;
+		}
+
+		/**
+		 * Get the x coordinate of the vertices of a vertex column. Vertex columns are twice as many as the tile columns plus one and columns outside the map are clamped to its edges.
+		 * 
+		 * @param lng
+		 *            the vertex column
+		 * @return the x coordinate of the vertices of the given vertex column
+		 */
+		protected float getVertexX(final int lng) {
+			return clamp(lng, 2 * longitudinalSize) / 2.0f;
+		}
+
+		/**
+		 * Get the z coordinate of the vertices of a vertex row. Vertex rows are twice as many as the tile rows plus one and rows outside the map are clamped to its edges.
+		 * 
+		 * @param lat
+		 *            the vertex row
+		 * @return the z coordinate of the vertices of the given vertex row
+		 */
+		protected float getVertexZ(final int lat) {
+			return -clamp(lat, 2 * latitudinalSize) / 2.0f;
+		}
+
+		/**
+		 * Get the altitude (y coordinate) of a vertex, averaging the altitudes of the tiles it lies between.
+		 * 
+		 * @param lat
+		 *            the vertex row
+		 * @param lng
+		 *            the vertex column
+		 * @return the altitude of the given vertex
+		 */
+		protected float getVertexAltitude(int lat, int lng) {
+			lat = clamp(lat, 2 * latitudinalSize);
+			lng = clamp(lng, 2 * longitudinalSize);
+			final int latitude = (lat - 1) / 2;
+			final int latitudeNorth = lat / 2;
+			final int latitudeSouth = lat / 2 - 1;
+			final int longitude = (lng - 1) / 2;
+			final int longitudeEast = lng / 2;
+			final int longitudeWest = lng / 2 - 1;
+			if ((lat % 2 == 0) && (lng % 2 == 0)) { // vertex between four tiles both latitudinally and longitudinally
+				return (getAltitude(latitudeNorth, longitudeEast) + getAltitude(latitudeSouth, longitudeEast) + getAltitude(latitudeSouth, longitudeWest) + getAltitude(latitudeNorth, longitudeWest)) / 4.0f;
+			} else if (lat % 2 == 0) { // vertex between two tiles latitudinally
+				return (getAltitude(latitudeNorth, longitude) + getAltitude(latitudeSouth, longitude)) / 2.0f;
+			} else if (lng % 2 == 0) { // vertex between two tiles longitudinally
+				return (getAltitude(latitude, longitudeEast) + getAltitude(latitude, longitudeWest)) / 2.0f;
+			} else { // vertex in the center of the tile
+				return getAltitude(latitude, longitude);
+			}
+		}
+
+		/**
+		 * Copy the altitudes of a window of tiles to an array. Tiles outside the map are clamped to its edges.
+		 * 
+		 * @param latitude
+		 *            the latitude of the first tile of the window
+		 * @param longitude
+		 *            the longitude of the first tile of the window (the window must overlap the map longitudinally)
+		 * @param latitudinalSize
+		 *            the latitudinal size of the window
+		 * @param longitudinalSize
+		 *            the longitudinal size of the window
+		 * @param altitudes
+		 *            the array to copy the altitudes to, in row major order
+		 */
+		protected void getAltitudes(final int latitude, final int longitude, final int latitudinalSize, final int longitudinalSize, final float[] altitudes) {
+			final int first = Math.max(longitude, 0);
+			final int last = Math.min(longitude + longitudinalSize, this.longitudinalSize);
+			for (int i = 0; i < latitudinalSize; i++) {
+				final int row = clamp(latitude + i, this.latitudinalSize - 1) * this.longitudinalSize;
+				for (int j = 0; j < first - longitude; j++) {
+					altitudes[i * longitudinalSize + j] = this.altitudes[row];
+				}
+				System.arraycopy(this.altitudes, row + first, altitudes, i * longitudinalSize + first - longitude, last - first);
+				for (int j = last - longitude; j < longitudinalSize; j++) {
+					altitudes[i * longitudinalSize + j] = this.altitudes[row + this.longitudinalSize - 1];
+				}
+			}
+		}
+
+		/**
+		 * Store the triangles of a tile of this chunk.
+		 * 
+		 * @param tile
+		 *            the index of the tile within this chunk
+		 * @param xs
+		 *            the x coordinates of the positions of the vertices
+		 * @param ys
+		 *            the y coordinates of the positions of the vertices
+		 * @param zs
+		 *            the z coordinates of the positions of the vertices
+		 * @param nxs
+		 *            the x coordinates of the normals of the vertices
+		 * @param nys
+		 *            the y coordinates of the normals of the vertices
+		 * @param nzs
+		 *            the z coordinates of the normals of the vertices
+		 * @param southwest
+		 *            the index of the southwest vertex of the tile in the arrays of vertices
+		 * @param stride
+		 *            the distance between vertex rows in the arrays of vertices
+		 */
+		protected void storeTile(final int tile, final float[] xs, final float[] ys, final float[] zs, final float[] nxs, final float[] nys, final float[] nzs, final int southwest, final int stride) {
+			int vertex = tile * TRIANGLES.length;
+			for (final int triangleVertex : TRIANGLES) {
+				final int index = southwest + (triangleVertex / 3) * stride + (triangleVertex % 3);
+				positions.put(vertex * POSITION_COMPONENTS, xs[index]).put(vertex * POSITION_COMPONENTS + 1, ys[index]).put(vertex * POSITION_COMPONENTS + 2, zs[index]);
+				normals.put(vertex * NORMAL_COMPONENTS, nxs[index]).put(vertex * NORMAL_COMPONENTS + 1, nys[index]).put(vertex * NORMAL_COMPONENTS + 2, nzs[index]);
+				textures.put(vertex * TEXTURE_COMPONENTS, xs[index]).put(vertex * TEXTURE_COMPONENTS + 1, -zs[index]); // textures repeat once per tile
+				vertex++;
+			}
+		}
+
+		private float getAltitude(final int latitude, final int longitude) { // tiles outside the map are clamped to its edges
+			return altitudes[clamp(latitude, latitudinalSize - 1) * longitudinalSize + clamp(longitude, longitudinalSize - 1)];
+		}
+	}
+
+	private class Band extends RecursiveAction {
+		private static final long serialVersionUID = 0L;
+
+		private final TerrainChunk chunk;
+		private final int firstRow;
+		private final int lastRow;
+
+		private Band(final TerrainChunk chunk, final int firstRow, final int lastRow) {
+			this.chunk = chunk;
+			this.firstRow = firstRow;
+			this.lastRow = lastRow;
+		}
+
+		@Override
+		protected void compute() {
+			if ((lastRow - firstRow == 1) || ((lastRow - firstRow) * chunk.chunkLongitudinalSize <= MIN_BAND_TILES)) {
+				calculateTerrain(chunk, firstRow, lastRow);
+			} else {
+				final int middleRow = (firstRow + lastRow) / 2;
+				invokeAll(new Band(chunk, firstRow, middleRow), new Band(chunk, middleRow, lastRow));
+			}
+		}
+	}
+
+	private static final int MIN_BAND_TILES = 1024; // smaller bands are not worth a task
+	private static final int VERTICES_PER_TILE = TerrainChunk.TRIANGLES.length;
+	private static final int POSITION_COMPONENTS = 3;
+	private static final int NORMAL_COMPONENTS = 3;
+	private static final int TEXTURE_COMPONENTS = 2;
+
+	private final int latitudinalSize;
+	private final int longitudinalSize;
+	private final float[] altitudes;
+	private final int maxTiles;
+	private final int position;
+	private final int normal;
+	private final int texture;
+	private final FloatBuffer positions;
+	private final FloatBuffer normals;
+	private final FloatBuffer textures;
+	private final ForkJoinPool pool;
+	private ForkJoinTask<?> pending;
+	private int firstTile;
+	private int stride;
+	private int latitudinalRange;
+	private int longitudinalRange;
+
+	/**
+	 * Clamp a vertex or tile index to the map.
+	 * 
+	 * @param index
+	 *            the index
+	 * @param max
+	 *            the maximum index
+	 * @return the index clamped between 0 and the given maximum index
+	 */
+	protected static int clamp(final int index, final int max) {
+		return (index < 0) ? 0 : ((index > max) ? max : index);
+	}
+
+	/**
+	 * Calculate the normal of a vertex, like the OpenCL kernels do. Vertices shared by four faces (between two tiles) average the normals of four faces, all others the normals of eight faces. Neighbors of the vertex must be calculated already.
+	 * 
+	 * @param xs
+	 *            the x coordinates of the positions of the vertices
+	 * @param ys
+	 *            the y coordinates of the positions of the vertices
+	 * @param zs
+	 *            the z coordinates of the positions of the vertices
+	 * @param vertex
+	 *            the index of the vertex in the arrays of vertices
+	 * @param stride
+	 *            the distance between vertex rows in the arrays of vertices
+	 * @param fourFaces
+	 *            <code>true</code> if the vertex is shared by four faces, <code>false</code> if by eight faces
+	 * @param nxs
+	 *            the x coordinates of the normals of the vertices
+	 * @param nys
+	 *            the y coordinates of the normals of the vertices
+	 * @param nzs
+	 *            the z coordinates of the normals of the vertices
+	 */
+	protected static void calculateNormal(final float[] xs, final float[] ys, final float[] zs, final int vertex, final int stride, final boolean fourFaces, final float[] nxs, final float[] nys, final float[] nzs) {
+		final int north = stride;
+		final int northeast = stride + 1;
+		final int east = 1;
+		final int southeast = -stride + 1;
+		final int south = -stride;
+		final int southwest = -stride - 1;
+		final int west = -1;
+		final int northwest = stride - 1;
+		nxs[vertex] = 0.0f;
+		nys[vertex] = 0.0f;
+		nzs[vertex] = 0.0f;
+		if (fourFaces) { // only the faces averaged are calculated, the other ones are not needed
+			addFaceNormal(xs, ys, zs, vertex, east, north, nxs, nys, nzs);
+			addFaceNormal(xs, ys, zs, vertex, south, east, nxs, nys, nzs);
+			addFaceNormal(xs, ys, zs, vertex, west, south, nxs, nys, nzs);
+			addFaceNormal(xs, ys, zs, vertex, north, west, nxs, nys, nzs);
+		} else {
+			addFaceNormal(xs, ys, zs, vertex, northeast, north, nxs, nys, nzs);
+			addFaceNormal(xs, ys, zs, vertex, east, northeast, nxs, nys, nzs);
+			addFaceNormal(xs, ys, zs, vertex, southeast, east, nxs, nys, nzs);
+			addFaceNormal(xs, ys, zs, vertex, south, southeast, nxs, nys, nzs);
+			addFaceNormal(xs, ys, zs, vertex, southwest, south, nxs, nys, nzs);
+			addFaceNormal(xs, ys, zs, vertex, west, southwest, nxs, nys, nzs);
+			addFaceNormal(xs, ys, zs, vertex, northwest, west, nxs, nys, nzs);
+			addFaceNormal(xs, ys, zs, vertex, north, northwest, nxs, nys, nzs);
+		}
+		normalize(vertex, nxs, nys, nzs);
+	}
+
+	/**
+	 * Add the normal of a face to the normal of a vertex of the face.
+	 * 
+	 * @param xs
+	 *            the x coordinates of the positions of the vertices
+	 * @param ys
+	 *            the y coordinates of the positions of the vertices
+	 * @param zs
+	 *            the z coordinates of the positions of the vertices
+	 * @param vertex
+	 *            the index of the vertex in the arrays of vertices
+	 * @param first
+	 *            the offset of the first other vertex of the face from the vertex in the arrays of vertices
+	 * @param second
+	 *            the offset of the second other vertex of the face from the vertex in the arrays of vertices (counterclockwise from the first one)
+	 * @param nxs
+	 *            the x coordinates of the normals of the vertices
+	 * @param nys
+	 *            the y coordinates of the normals of the vertices
+	 * @param nzs
+	 *            the z coordinates of the normals of the vertices
+	 */
+	protected static void addFaceNormal(final float[] xs, final float[] ys, final float[] zs, final int vertex, final int first, final int second, final float[] nxs, final float[] nys, final float[] nzs) {
+		final float ax = xs[vertex + first] - xs[vertex];
+		final float ay = ys[vertex + first] - ys[vertex];
+		final float az = zs[vertex + first] - zs[vertex];
+		final float bx = xs[vertex + second] - xs[vertex];
+		final float by = ys[vertex + second] - ys[vertex];
+		final float bz = zs[vertex + second] - zs[vertex];
+		final float x = ay * bz - az * by;
+		final float y = az * bx - ax * bz;
+		final float z = ax * by - ay * bx;
+		final float length = Math.max((float) Math.sqrt(x * x + y * y + z * z), Float.MIN_NORMAL); // degenerate faces on the edges of the map add nothing
+		nxs[vertex] += x / length;
+		nys[vertex] += y / length;
+		nzs[vertex] += z / length;
+	}
+
+	/**
+	 * Normalize the sum of the normals of the faces of a vertex.
+	 * 
+	 * @param vertex
+	 *            the index of the vertex in the arrays of normals
+	 * @param nxs
+	 *            the x coordinates of the normals of the vertices
+	 * @param nys
+	 *            the y coordinates of the normals of the vertices
+	 * @param nzs
+	 *            the z coordinates of the normals of the vertices
+	 */
+	protected static void normalize(final int vertex, final float[] nxs, final float[] nys, final float[] nzs) {
+		final float length = Math.max((float) Math.sqrt(nxs[vertex] * nxs[vertex] + nys[vertex] * nys[vertex] + nzs[vertex] * nzs[vertex]), Float.MIN_NORMAL); // averaging does not change the direction
+		nxs[vertex] /= length;
+		nys[vertex] /= length;
+		nzs[vertex] /= length;
+	}
+
+	/**
+	 * Construct a new Java compute backend.
+	 * 
+	 * @param map
+	 *            the map whose terrain to calculate (its altitudes are copied, so changes must be set with {@link #setAltitude(int, int, float)})
+	 * @param maxTiles
+	 *            the maximum number of tiles calculated at once
+	 * @param position
+	 *            the OpenGL vertex buffer to upload the positions of the vertices to
+	 * @param normal
+	 *            the OpenGL vertex buffer to upload the normals of the vertices to
+	 * @param texture
+	 *            the OpenGL vertex buffer to upload the texture coordinates of the vertices to
+	 */
+	protected JavaComputeBackend(final Map map, final int maxTiles, final int position, final int normal, final int texture) {
+		Objects.requireNonNull(map, "Map must not be null");
+		if (maxTiles <= 0) {
+			throw new IllegalArgumentException("Maximum tiles must be positive");
+		}
+		latitudinalSize = map.getLatitudinalSize();
+		longitudinalSize = map.getLongitudinalSize();
+		altitudes = new float[latitudinalSize * longitudinalSize];
+		for (int latitude = 0; latitude < latitudinalSize; latitude++) {
+			for (int longitude = 0; longitude < longitudinalSize; longitude++) {
+				altitudes[latitude * longitudinalSize + longitude] = map.getTile(latitude, longitude).getAltitude();
+			}
+		}
+		this.maxTiles = maxTiles;
+		this.position = position;
+		this.normal = normal;
+		this.texture = texture;
+		positions = Buffers.newDirectFloatBuffer(maxTiles * VERTICES_PER_TILE * POSITION_COMPONENTS);
+		normals = Buffers.newDirectFloatBuffer(maxTiles * VERTICES_PER_TILE * NORMAL_COMPONENTS);
+		textures = Buffers.newDirectFloatBuffer(maxTiles * VERTICES_PER_TILE * TEXTURE_COMPONENTS);
+		pool = new ForkJoinPool();
+		pending = null;
+	}
+
+	@Override
+	public void setAltitude(final int latitude, final int longitude, final float altitude) {
+		if ((latitude < 0) || (latitude >= latitudinalSize)) {
+			throw new IllegalArgumentException("Latitude must be between 0 and " + (latitudinalSize - 1));
+		}
+		if ((longitude < 0) || (longitude >= longitudinalSize)) {
+			throw new IllegalArgumentException("Longitude must be between 0 and " + (longitudinalSize - 1));
+		}
+		if (pending != null) { // altitudes must not change while being read
+			pending.join();
+		}
+		altitudes[latitude * longitudinalSize + longitude] = altitude;
+	}
+
+	@Override
+	public void calculateTerrain(final GL3 gl, final int chunkLatitude, final int chunkLongitude, final int chunkLatitudinalSize, final int chunkLongitudinalSize, final int latitude, final int longitude, final int latitudinalSize, final int longitudinalSize) {
+		Objects.requireNonNull(gl, "OpenGL must not be null");
+		if ((chunkLatitudinalSize <= 0) || (chunkLongitudinalSize <= 0) || (latitudinalSize <= 0) || (longitudinalSize <= 0)) {
+			throw new IllegalArgumentException("Sizes must be positive");
+		}
+		if ((chunkLatitude < 0) || (chunkLatitude + chunkLatitudinalSize > this.latitudinalSize) || (chunkLongitude < 0) || (chunkLongitude + chunkLongitudinalSize > this.longitudinalSize)) {
+			throw new IllegalArgumentException("Chunk must be within the map");
+		}
+		if ((latitude < chunkLatitude) || (latitude + latitudinalSize > chunkLatitude + chunkLatitudinalSize) || (longitude < chunkLongitude) || (longitude + longitudinalSize > chunkLongitude + chunkLongitudinalSize)) {
+			throw new IllegalArgumentException("Range must be within the chunk");
+		}
+		if ((long) latitudinalSize * longitudinalSize > maxTiles) {
+			throw new IllegalArgumentException("Range must be at most " + maxTiles + " tiles");
+		}
+		await(gl); // host buffers are reused
+		pending = pool.submit(new Band(new TerrainChunk(this.latitudinalSize, this.longitudinalSize, altitudes, latitude, longitude, latitudinalSize, longitudinalSize, positions, normals, textures), 0, latitudinalSize));
+		// the range is calculated contiguously and uploaded to its rows within the chunk
+		firstTile = (latitude - chunkLatitude) * chunkLongitudinalSize + longitude - chunkLongitude;
+		stride = chunkLongitudinalSize;
+		latitudinalRange = latitudinalSize;
+		longitudinalRange = longitudinalSize;
+	}
+
+	@Override
+	public void await(final GL3 gl) {
+		Objects.requireNonNull(gl, "OpenGL must not be null");
+		if (pending == null) {
+			return;
+		}
+		try {
+			pending.join();
+			upload(gl, positions, position, POSITION_COMPONENTS);
+			upload(gl, normals, normal, NORMAL_COMPONENTS);
+			upload(gl, textures, texture, TEXTURE_COMPONENTS);
+		} finally {
+			pending = null;
+		}
+	}
+
+	@Override
+	public java.util.Map<String, Long> profile(final GL3 gl, final int chunkLatitudinalSize, final int chunkLongitudinalSize, final int runs) {
+		Objects.requireNonNull(gl, "OpenGL must not be null");
+		if (runs <= 0) {
+			throw new IllegalArgumentException("Runs must be positive");
+		}
+		long time = Long.MAX_VALUE;
+		for (int i = 0; i < runs; i++) { // the first runs also warm up the JIT compiler
+			final long start = System.nanoTime();
+			calculateTerrain(gl, 0, 0, chunkLatitudinalSize, chunkLongitudinalSize, 0, 0, chunkLatitudinalSize, chunkLongitudinalSize);
+			await(gl);
+			gl.glFinish(); // uploads included
+			time = Math.min(time, System.nanoTime() - start);
+		}
+		return Collections.singletonMap(getName(), time);
+	}
+
+	@Override
+	public void dispose(final GL3 gl) {
+		Objects.requireNonNull(gl, "OpenGL must not be null");
+		if (pending != null) {
+			pending.quietlyJoin();
+			pending = null;
+		}
+		pool.shutdown();
+	}
+
+	/**
+	 * Calculate the vertex buffers of a band of rows of a chunk. Bands are calculated concurrently, so implementations must not share mutable state between calls.
+	 * 
+	 * @param chunk
+	 *            the chunk to calculate
+	 * @param firstRow
+	 *            the first row of the band within the chunk (inclusive)
+	 * @param lastRow
+	 *            the last row of the band within the chunk (exclusive)
+	 */
+	protected abstract void calculateTerrain(TerrainChunk chunk, int firstRow, int lastRow);
+
+	private void upload(final GL3 gl, final FloatBuffer source, final int destination, final int components) {
+		final int tileSize = VERTICES_PER_TILE * components; // in floats
+		gl.glBindBuffer(GL3.GL_ARRAY_BUFFER, destination);
+		if (stride == longitudinalRange) { // rows are contiguous
+			gl.glBufferSubData(GL3.GL_ARRAY_BUFFER, (long) firstTile * tileSize * Buffers.SIZEOF_FLOAT, (long) latitudinalRange * longitudinalRange * tileSize * Buffers.SIZEOF_FLOAT, source.rewind());
+		} else {
+			for (int row = 0; row < latitudinalRange; row++) {
+				source.position(row * longitudinalRange * tileSize);
+				gl.glBufferSubData(GL3.GL_ARRAY_BUFFER, (long) (firstTile + row * stride) * tileSize * Buffers.SIZEOF_FLOAT, (long) longitudinalRange * tileSize * Buffers.SIZEOF_FLOAT, source);
+			}
+			source.rewind();
+		}
+		gl.glBindBuffer(GL3.GL_ARRAY_BUFFER, 0);
+	}
+}
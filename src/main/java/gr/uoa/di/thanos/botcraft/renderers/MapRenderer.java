@@ -1,15 +1,32 @@
 package gr.uoa.di.thanos.botcraft.renderers;
 
 import gr.uoa.di.thanos.botcraft.etc.configuration.Configuration;
+import gr.uoa.di.thanos.botcraft.game.HeightPyramid;
 import gr.uoa.di.thanos.botcraft.game.Map;
 import gr.uoa.di.thanos.botcraft.game.Terrain;
-import gr.uoa.di.thanos.botcraft.geometry.Matrix;
+import gr.uoa.di.thanos.botcraft.geometry.Frustum;
+import gr.uoa.di.thanos.botcraft.geometry.Matrix4f;
 
+import java.awt.Color;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.prefs.BackingStoreException;
 
+import com.jogamp.common.nio.Buffers;
+import com.jogamp.common.nio.PointerBuffer;
 import com.jogamp.opencl.CLBuffer;
+import com.jogamp.opencl.CLDevice;
+import com.jogamp.opencl.CLException;
+import com.jogamp.opencl.CLKernel;
+import com.jogamp.opencl.gl.CLGLContext;
 import com.jogamp.opengl.GL3;
 
 /**
@@ -26,6 +43,303 @@ public class MapRenderer extends CalculatingRenderer {
 		NORTH, NORTHEAST, EAST, SOUTHEAST, SOUTH, SOUTHWEST, WEST, NORTHWEST
 	}
 
+	/**
+	 * A chunk of the map streamed into its own vertex buffers.
+	 * 
+	 * @author thanos
+	 */
+	private class Chunk {
+		private final int row;
+		private final int column;
+		private final int latitude;
+		private final int longitude;
+		private final int latitudinalSize;
+		private final int longitudinalSize;
+		private final VertexBuffer<Float> position;
+		private final VertexBuffer<Float> normal;
+		private final VertexBuffer<Float> texture;
+		private final VertexArray vertexArray;
+		private long lastVisibleFrame;
+		private boolean stale;
+
+		private Chunk(final GL3 gl, final int row, final int column) {
+			this.row = row;
+			this.column = column;
+			latitude = row * chunkLatitudinalSize;
+			longitude = column * chunkLongitudinalSize;
+			latitudinalSize = Math.min(chunkLatitudinalSize, map.getLatitudinalSize() - latitude);
+			longitudinalSize = Math.min(chunkLongitudinalSize, map.getLongitudinalSize() - longitude);
+			final int triangles = latitudinalSize * longitudinalSize * Direction.values().length;
+			position = new VertexBuffer<Float>(POSITION, triangles, PositionComponent.values().length, GL3.GL_STATIC_DRAW, Float.class);
+			normal = new VertexBuffer<Float>(NORMAL, triangles, NormalComponent.values().length, GL3.GL_STATIC_DRAW, Float.class);
+			texture = new VertexBuffer<Float>(TEXTURE, triangles, TextureCoordinatesComponent.values().length, GL3.GL_STATIC_DRAW, Float.class);
+			vertexArray = new VertexArray(gl, triangles, position, normal, texture);
+			lastVisibleFrame = frame;
+			stale = false;
+		}
+
+		private void copy(final GL3 gl) { // tiles of a chunk are stored contiguously at the start of the scratch vertex buffers
+			copy(gl, MapRenderer.this.position, position);
+			copy(gl, MapRenderer.this.normal, normal);
+			copy(gl, MapRenderer.this.texture, texture);
+		}
+
+		private void copy(final GL3 gl, final VertexBuffer<Float> source, final VertexBuffer<Float> destination) {
+			gl.glBindBuffer(GL3.GL_COPY_READ_BUFFER, source.vertexBuffer);
+			gl.glBindBuffer(GL3.GL_COPY_WRITE_BUFFER, destination.vertexBuffer);
+			gl.glCopyBufferSubData(GL3.GL_COPY_READ_BUFFER, GL3.GL_COPY_WRITE_BUFFER, 0L, 0L, calculateSize(destination.triangles, destination.elements, Float.class));
+			gl.glBindBuffer(GL3.GL_COPY_READ_BUFFER, 0);
+			gl.glBindBuffer(GL3.GL_COPY_WRITE_BUFFER, 0);
+		}
+
+		private void dispose(final GL3 gl) {
+			vertexArray.dispose(gl);
+		}
+	}
+
+	/**
+	 * A helper device calculating a band of rows of tiles of a chunk into buffers of its own, which are read back and written to the vertex buffers of the chunk.
+	 * 
+	 * @author thanos
+	 */
+	private class Helper {
+		private final HelperDevice device;
+		private final ManagedBuffer altitudes;
+		private final CLKernel kernel;
+		private final CLBuffer<FloatBuffer> position;
+		private final CLBuffer<FloatBuffer> normal;
+		private final CLBuffer<FloatBuffer> texture;
+		private final int maxTiles;
+		private int offset;
+		private int tiles;
+
+		private Helper(final HelperDevice device, final ManagedBuffer altitudes, final int maxTiles) {
+			this.device = device;
+			this.maxTiles = maxTiles;
+			this.altitudes = device.copy(altitudes);
+			kernel = device.getKernel(CALCULATE_VERTEX_BUFFERS);
+			final int vertices = maxTiles * Direction.values().length * TriangleVertex.values().length;
+			position = device.allocate(vertices * PositionComponent.values().length);
+			normal = device.allocate(vertices * NormalComponent.values().length);
+			texture = device.allocate(vertices * TextureCoordinatesComponent.values().length);
+			kernel.setArg(0, map.getLatitudinalSize()).setArg(1, map.getLongitudinalSize()).setArg(2, altitudes.getBuffer()).setArg(3, position).setArg(4, normal).setArg(5, texture);
+			kernel.setNullArg(10, VERTEX_BUFFERS_TILE.getSize(device.getLocalWorkSizes(kernel, Coordinate.values().length)));
+			offset = 0;
+			tiles = 0;
+		}
+
+		private void submit(final int latitude, final int longitude, final int latitudinalSize, final int longitudinalSize, final int offset) { // the band is calculated as a chunk of its own
+			kernel.setArg(6, latitude).setArg(7, longitude).setArg(8, latitudinalSize).setArg(9, longitudinalSize);
+			final int[] offsets = new int[Coordinate.values().length];
+			offsets[Coordinate.LATITUDE.ordinal()] = latitude;
+			offsets[Coordinate.LONGITUDE.ordinal()] = longitude;
+			final int[] sizes = new int[Coordinate.values().length];
+			sizes[Coordinate.LATITUDE.ordinal()] = latitudinalSize;
+			sizes[Coordinate.LONGITUDE.ordinal()] = longitudinalSize;
+			device.submit(kernel, offsets, sizes, new ManagedBuffer[] {altitudes}, new CLBuffer<?>[] {position, normal, texture});
+			this.offset = offset;
+			tiles = latitudinalSize * longitudinalSize;
+		}
+
+		private long gather(final GL3 gl) { // returns the time spent on the device
+			if (tiles == 0) {
+				return 0L;
+			}
+			final long time = device.finish();
+			gather(gl, position, MapRenderer.this.position);
+			gather(gl, normal, MapRenderer.this.normal);
+			gather(gl, texture, MapRenderer.this.texture);
+			tiles = 0;
+			return time;
+		}
+
+		private void gather(final GL3 gl, final CLBuffer<FloatBuffer> source, final VertexBuffer<Float> destination) { // tiles of a band are stored contiguously, after the tiles of the previous bands of the chunk
+			final long tileSize = (long) Direction.values().length * TriangleVertex.values().length * destination.elements * Buffers.SIZEOF_FLOAT;
+			gl.glBindBuffer(GL3.GL_ARRAY_BUFFER, destination.vertexBuffer);
+			gl.glBufferSubData(GL3.GL_ARRAY_BUFFER, offset * tileSize, tiles * tileSize, source.getBuffer().rewind());
+			gl.glBindBuffer(GL3.GL_ARRAY_BUFFER, 0);
+		}
+
+		private void release() {
+			device.release(); // releases all buffers created on the device as well
+		}
+	}
+
+	/**
+	 * The OpenCL compute backend, calculating directly into the vertex buffers of the renderer, which are shared with OpenGL. The OpenCL context is only acquired and the program only compiled when this backend is created. If the configuration enables multiple OpenCL devices, the rows of each chunk are split across the device of the renderer and helper devices, in proportion to their measured throughput.
+	 * 
+	 * @author thanos
+	 */
+	private class OpenClComputeBackend implements ComputeBackend {
+		private final ManagedBuffer altitudes;
+		private final KernelInvocation calculateVertexBuffers;
+		private final ComputePipeline pipeline;
+		private final List<Helper> helpers;
+		private final DeviceScheduler scheduler;
+
+		private OpenClComputeBackend(final GL3 gl, final Configuration configuration) throws RendererException {
+			acquireCompute(gl);
+			try {
+				final Float[] altitudes = new Float[map.getLatitudinalSize() * map.getLongitudinalSize()];
+				for (int latitude = 0; latitude < map.getLatitudinalSize(); latitude++) {
+					for (int longitude = 0; longitude < map.getLongitudinalSize(); longitude++) {
+						altitudes[latitude * map.getLongitudinalSize() + longitude] = map.getTile(latitude, longitude).getAltitude();
+					}
+				}
+				this.altitudes = new ManagedBuffer(getComputeContext().acquireBuffer(map, ALTITUDES, new ComputeContext.BufferFactory() {
+					@Override
+					public CLBuffer<?> create(final CLGLContext context) {
+						return wrapInClBuffer(altitudes);
+					}
+				}));
+				helpers = new ArrayList<Helper>();
+				try {
+					calculateVertexBuffers = new KernelInvocation(CALCULATE_VERTEX_BUFFERS, Coordinate.values().length).setArgument(0, map.getLatitudinalSize()).setArgument(1, map.getLongitudinalSize()).setArgument(2, this.altitudes).setArgument(3, position).setArgument(4, normal).setArgument(5, texture).setArgument(10, VERTEX_BUFFERS_TILE);
+					pipeline = new ComputePipeline(calculateVertexBuffers);
+					final long budget = configuration.getTerrainMemoryBudget() * MEGABYTE;
+					final long altitudesSize = (long) map.getLatitudinalSize() * map.getLongitudinalSize() * Buffers.SIZEOF_FLOAT;
+					final java.util.Map<String, String> helperProgramDefinitions = new HashMap<String, String>(getProgramDefinitions(configuration, map));
+					helperProgramDefinitions.remove(RESIDENT); // helpers calculate bands of chunks
+					for (final CLDevice device : configuration.getHelperClDevices()) {
+						// helpers keep a copy of the altitudes and the buffers of a band, within the terrain memory budget and the memory of the device
+						final long tileSize = calculateVertexBuffersSize(1, 1);
+						final long positionTileSize = tileSize * PositionComponent.values().length / (PositionComponent.values().length + NormalComponent.values().length + TextureCoordinatesComponent.values().length); // largest buffer of a band
+						final long maxTiles = Math.min(Math.min((Math.min(budget, device.getGlobalMemSize()) - altitudesSize) / tileSize, device.getMaxMemAllocSize() / positionTileSize), (long) chunkLatitudinalSize * chunkLongitudinalSize);
+						if ((altitudesSize > device.getMaxMemAllocSize()) || (maxTiles < chunkLongitudinalSize)) { // a band has at least one row
+							LOGGER.info("Not enough memory on helper device " + device.getName() + " for map of " + map.getLatitudinalSize() + " x " + map.getLongitudinalSize() + " tiles");
+							continue;
+						}
+						try {
+							helpers.add(new Helper(new HelperDevice(device, helperProgramDefinitions), this.altitudes, (int) maxTiles));
+						} catch (final RendererException | CLException e) {
+							LOGGER.log(Level.WARNING, "Error creating helper device " + device.getName() + ", not using it", e);
+						}
+					}
+					scheduler = new DeviceScheduler(helpers.size() + 1);
+					if (!helpers.isEmpty()) { // calibrate the device of this renderer, helpers are measured by their first bands
+						setChunk(0, 0, chunkLatitudinalSize, chunkLongitudinalSize);
+						scheduler.record(0, (long) chunkLatitudinalSize * chunkLongitudinalSize, calculateVertexBuffers.profile(1));
+					}
+				} catch (final RuntimeException e) {
+					for (final Helper helper : helpers) {
+						helper.release();
+					}
+					getComputeContext().releaseBuffer(map, ALTITUDES);
+					throw e;
+				}
+			} catch (final RuntimeException e) {
+				releaseCompute();
+				throw e;
+			}
+		}
+
+		@Override
+		public String getName() {
+			return OPEN_CL;
+		}
+
+		@Override
+		public void setAltitude(final int latitude, final int longitude, final float altitude) {
+			altitudes.put(latitude * map.getLongitudinalSize() + longitude, altitude);
+			for (final Helper helper : helpers) {
+				helper.altitudes.put(latitude * map.getLongitudinalSize() + longitude, altitude);
+			}
+		}
+
+		@Override
+		public void calculateTerrain(final GL3 gl, final int chunkLatitude, final int chunkLongitude, final int chunkLatitudinalSize, final int chunkLongitudinalSize, final int latitude, final int longitude, final int latitudinalSize, final int longitudinalSize) {
+			Objects.requireNonNull(gl, "OpenGL must not be null");
+			gather(gl); // bands still calculated by helpers must not overwrite this calculation
+			setChunk(chunkLatitude, chunkLongitude, chunkLatitudinalSize, chunkLongitudinalSize);
+			if (helpers.isEmpty() || (latitudinalSize != chunkLatitudinalSize) || (longitudinalSize != chunkLongitudinalSize)) { // ranges smaller than a chunk are too little work to split across devices
+				setVertexBuffersRange(latitude, longitude, latitudinalSize, longitudinalSize);
+				pipeline.submit(gl);
+				return;
+			}
+			// the device of this renderer calculates the first rows of the chunk, each helper the next band of rows
+			final int[] limits = new int[scheduler.getDevices()];
+			for (int i = 0; i < helpers.size(); i++) {
+				limits[i + 1] = helpers.get(i).maxTiles / longitudinalSize;
+			}
+			final int[] rows = scheduler.partition(latitudinalSize, limits);
+			setVertexBuffersRange(latitude, longitude, rows[0], longitudinalSize);
+			pipeline.submit(gl);
+			int band = rows[0];
+			for (int i = 0; i < helpers.size(); i++) {
+				if (rows[i + 1] > 0) {
+					helpers.get(i).submit(latitude + band, longitude, rows[i + 1], longitudinalSize, band * longitudinalSize);
+					band += rows[i + 1];
+				}
+			}
+		}
+
+		@Override
+		public void await(final GL3 gl) {
+			pipeline.await(gl);
+			gather(gl);
+		}
+
+		@Override
+		public java.util.Map<String, Long> profile(final GL3 gl, final int chunkLatitudinalSize, final int chunkLongitudinalSize, final int runs) { // the fused kernel, the separate kernels materializing positions and normals in global memory and the single pass reference kernel (only unless streaming) by time on the device
+			Objects.requireNonNull(gl, "OpenGL must not be null");
+			pipeline.finish(); // vertex buffers must not be in use
+			gather(gl);
+			setChunk(0, 0, chunkLatitudinalSize, chunkLongitudinalSize);
+			final java.util.Map<String, Long> times = new LinkedHashMap<String, Long>();
+			final long time = calculateVertexBuffers.profile(runs);
+			scheduler.record(0, (long) chunkLatitudinalSize * chunkLongitudinalSize, time);
+			times.put(calculateVertexBuffers.toString(), time);
+			// positions and normals of the vertices of the chunk and one more vertex on each side
+			final int windowLatitudinalSize = Math.min(2 * chunkLatitudinalSize + 2, 2 * map.getLatitudinalSize() + 1);
+			final int windowLongitudinalSize = Math.min(2 * chunkLongitudinalSize + 2, 2 * map.getLongitudinalSize() + 1);
+			final CLBuffer<?> positions = allocate(windowLatitudinalSize * windowLongitudinalSize * PositionComponent.values().length, Float.class);
+			final CLBuffer<?> normals = allocate(windowLatitudinalSize * windowLongitudinalSize * NormalComponent.values().length, Float.class);
+			try {
+				final List<KernelInvocation> invocations = new ArrayList<KernelInvocation>();
+				if (!streaming) { // the reference kernel does not support windows
+					invocations.add(new KernelInvocation(CALCULATE_POSITIONS_AND_NORMALS, Coordinate.values().length).setArgument(0, map.getLatitudinalSize()).setArgument(1, map.getLongitudinalSize()).setArgument(2, altitudes).setArgument(3, positions).setArgument(4, normals).setRange(Coordinate.LATITUDE.ordinal(), 0, windowLatitudinalSize).setRange(Coordinate.LONGITUDE.ordinal(), 0, windowLongitudinalSize));
+				}
+				invocations.add(new KernelInvocation(CALCULATE_POSITIONS, Coordinate.values().length).setArgument(0, map.getLatitudinalSize()).setArgument(1, map.getLongitudinalSize()).setArgument(2, altitudes).setArgument(3, positions, Access.WRITE).setArgument(4, 0).setArgument(5, 0).setArgument(6, windowLatitudinalSize).setArgument(7, windowLongitudinalSize).setArgument(8, ALTITUDES_TILE).setRange(Coordinate.LATITUDE.ordinal(), 0, windowLatitudinalSize).setRange(Coordinate.LONGITUDE.ordinal(), 0, windowLongitudinalSize));
+				invocations.add(new KernelInvocation(CALCULATE_NORMALS, Coordinate.values().length).setArgument(0, map.getLatitudinalSize()).setArgument(1, map.getLongitudinalSize()).setArgument(2, positions, Access.READ).setArgument(3, normals, Access.WRITE).setArgument(4, 0).setArgument(5, 0).setArgument(6, windowLatitudinalSize).setArgument(7, windowLongitudinalSize).setArgument(8, POSITIONS_TILE).setRange(Coordinate.LATITUDE.ordinal(), 0, windowLatitudinalSize).setRange(Coordinate.LONGITUDE.ordinal(), 0, windowLongitudinalSize));
+				invocations.add(new KernelInvocation(LOAD_VERTEX_BUFFERS, Coordinate.values().length).setArgument(0, map.getLatitudinalSize()).setArgument(1, map.getLongitudinalSize()).setArgument(2, positions, Access.READ).setArgument(3, 0).setArgument(4, 0).setArgument(5, windowLatitudinalSize).setArgument(6, windowLongitudinalSize).setArgument(7, position).setArgument(8, 0).setArgument(9, 0).setArgument(10, chunkLatitudinalSize).setArgument(11, chunkLongitudinalSize).setRange(Coordinate.LATITUDE.ordinal(), 0, chunkLatitudinalSize).setRange(Coordinate.LONGITUDE.ordinal(), 0, chunkLongitudinalSize));
+				for (final KernelInvocation invocation : invocations) {
+					times.put(invocation.toString(), invocation.profile(runs));
+				}
+			} finally {
+				positions.release();
+				normals.release();
+			}
+			return times;
+		}
+
+		@Override
+		public void dispose(final GL3 gl) {
+			Objects.requireNonNull(gl, "OpenGL must not be null");
+			pipeline.dispose();
+			for (final Helper helper : helpers) {
+				helper.release();
+			}
+			getComputeContext().releaseBuffer(map, ALTITUDES);
+			releaseCompute();
+		}
+
+		private void gather(final GL3 gl) { // write the bands calculated by helpers to the vertex buffers
+			for (int i = 0; i < helpers.size(); i++) {
+				final long tiles = helpers.get(i).tiles;
+				scheduler.record(i + 1, tiles, helpers.get(i).gather(gl));
+			}
+		}
+
+		private void setChunk(final int latitude, final int longitude, final int latitudinalSize, final int longitudinalSize) {
+			calculateVertexBuffers.setArgument(6, latitude).setArgument(7, longitude).setArgument(8, latitudinalSize).setArgument(9, longitudinalSize);
+			setVertexBuffersRange(latitude, longitude, latitudinalSize, longitudinalSize);
+		}
+
+		private void setVertexBuffersRange(final int latitudinalOffset, final int longitudinalOffset, final int latitudinalSize, final int longitudinalSize) {
+			calculateVertexBuffers.setRange(Coordinate.LATITUDE.ordinal(), latitudinalOffset, latitudinalSize).setRange(Coordinate.LONGITUDE.ordinal(), longitudinalOffset, longitudinalSize);
+		}
+	}
+
 	private static final String VERTEX_SHADER = "/gr/uoa/di/thanos/botcraft/shaders/Map.vert";
 	private static final String FRAGMENT_SHADER = "/gr/uoa/di/thanos/botcraft/shaders/Map.frag";
 	private static final java.util.Map<String, String> FRAGMENT_SHADER_DEFINITIONS = Collections.singletonMap("TERRAINS", Integer.toString(Terrain.values().length));
@@ -47,23 +361,92 @@ public class MapRenderer extends CalculatingRenderer {
 			put("TRIANGLE_VERTICES", Integer.toString(TriangleVertex.values().length));
 		}
 	};
+	private static final String MAP_LATITUDINAL_SIZE = "MAP_LATITUDINAL_SIZE";
+	private static final String MAP_LONGITUDINAL_SIZE = "MAP_LONGITUDINAL_SIZE";
+	private static final String RESIDENT = "RESIDENT";
+	private static final String ALTITUDES = "altitudes";
 	private static final String POSITION = "position";
 	private static final String NORMAL = "normal";
 	private static final String TEXTURE = "texture";
 	private static final String TRANSFORMATION = "transformation";
 	private static final String TERRAINS = "terrains";
 	private static final String CALCULATE_POSITIONS_AND_NORMALS = "calculatePositionsAndNormals";
+	private static final String CALCULATE_POSITIONS = "calculatePositions";
+	private static final String CALCULATE_NORMALS = "calculateNormals";
 	private static final String LOAD_VERTEX_BUFFERS = "loadVertexBuffers";
+	private static final String CALCULATE_VERTEX_BUFFERS = "calculateVertexBuffers";
+	private static final Color PLACEHOLDER = Color.GRAY;
+	private static final int CHUNK_SIZE = 32; // tiles per side of a streamed chunk
+	private static final long MEGABYTE = 1024L * 1024L;
+	private static final int BENCHMARK_RUNS = 3;
+	private static final String OPEN_CL = "OpenCL";
+	private static final Logger LOGGER = Logger.getLogger(MapRenderer.class.getName());
+	private static final LocalMemory ALTITUDES_TILE = new LocalMemory() {
+		@Override
+		public int getSize(final PointerBuffer localWorkSizes) { // tiles covered by the work group and one more tile on each side
+			return (int) ((localWorkSizes.get(Coordinate.LATITUDE.ordinal()) / 2 + 3) * (localWorkSizes.get(Coordinate.LONGITUDE.ordinal()) / 2 + 3)) * Buffers.SIZEOF_FLOAT;
+		}
+	};
+	private static final LocalMemory POSITIONS_TILE = new LocalMemory() {
+		@Override
+		public int getSize(final PointerBuffer localWorkSizes) { // positions covered by the work group and one more position on each side
+			return (int) ((localWorkSizes.get(Coordinate.LATITUDE.ordinal()) + 2) * (localWorkSizes.get(Coordinate.LONGITUDE.ordinal()) + 2)) * PositionComponent.values().length * Buffers.SIZEOF_FLOAT;
+		}
+	};
+	private static final LocalMemory VERTEX_BUFFERS_TILE = new LocalMemory() {
+		@Override
+		public int getSize(final PointerBuffer localWorkSizes) { // tiles covered by the work group and one more tile on each side
+			return (int) ((localWorkSizes.get(Coordinate.LATITUDE.ordinal()) + 2) * (localWorkSizes.get(Coordinate.LONGITUDE.ordinal()) + 2)) * Buffers.SIZEOF_FLOAT;
+		}
+	};
 
 	private final Map map;
 	private final CalculatingVertexBuffer<Float> position;
 	private final CalculatingVertexBuffer<Float> normal;
 	private final CalculatingVertexBuffer<Float> texture;
 	private final VertexArray vertexArray;
-	private final Texture[] terrains;
-	private final CLBuffer<?> altitudes;
-	private final CLBuffer<?> positions;
-	private final CLBuffer<?> normals;
+	private final Texture placeholder;
+	private final List<ResourceLoader.Resource<Texture>> terrains;
+	private final Texture[] boundTerrains;
+	private final ComputeBackend backend;
+	private final boolean streaming;
+	private final int chunkLatitudinalSize;
+	private final int chunkLongitudinalSize;
+	private final int chunkRows;
+	private final int chunkColumns;
+	private final float[] chunkMinXs;
+	private final float[] chunkMaxXs;
+	private final float[] chunkMinAltitudes;
+	private final float[] chunkMaxAltitudes;
+	private final float[] chunkMinZs;
+	private final float[] chunkMaxZs;
+	private final boolean[] visibleChunks;
+	private final Frustum frustum;
+	private final HeightPyramid heights;
+	private final int maxChunks;
+	private final java.util.Map<Integer, Chunk> chunks;
+	private Chunk generating;
+	private long frame;
+
+	private static long calculateVertexBuffersSize(final int latitudinalSize, final int longitudinalSize) { // vertex buffers of a chunk of tiles
+		return (long) latitudinalSize * longitudinalSize * Direction.values().length * TriangleVertex.values().length * (PositionComponent.values().length + NormalComponent.values().length + TextureCoordinatesComponent.values().length) * Buffers.SIZEOF_FLOAT;
+	}
+
+	private static boolean isStreaming(final Configuration configuration, final Map map) { // whether the terrain of the whole map exceeds the terrain memory budget
+		return (long) map.getLatitudinalSize() * map.getLongitudinalSize() * Buffers.SIZEOF_FLOAT + calculateVertexBuffersSize(map.getLatitudinalSize(), map.getLongitudinalSize()) > configuration.getTerrainMemoryBudget() * MEGABYTE;
+	}
+
+	private static java.util.Map<String, String> getProgramDefinitions(final Configuration configuration, final Map map) { // specialize the program for the map, so that index arithmetic is done at compile time
+		Objects.requireNonNull(configuration, "Configuration must not be null");
+		Objects.requireNonNull(map, "Map must not be null");
+		final java.util.Map<String, String> definitions = new HashMap<String, String>(PROGRAM_DEFINITIONS);
+		definitions.put(MAP_LATITUDINAL_SIZE, Integer.toString(map.getLatitudinalSize()));
+		definitions.put(MAP_LONGITUDINAL_SIZE, Integer.toString(map.getLongitudinalSize()));
+		if (!isStreaming(configuration, map)) { // the only chunk is the whole map
+			definitions.put(RESIDENT, Boolean.TRUE.toString());
+		}
+		return definitions;
+	}
 
 	/**
 	 * Construct a new cube renderer.
@@ -78,43 +461,110 @@ public class MapRenderer extends CalculatingRenderer {
 	 *             if any errors occur
 	 */
 	public MapRenderer(final GL3 gl, final Configuration configuration, final Map map) throws RendererException {
-		super(gl, VERTEX_SHADER, Collections.<String, String> emptyMap(), FRAGMENT_SHADER, FRAGMENT_SHADER_DEFINITIONS, configuration, PROGRAM, PROGRAM_DEFINITIONS);
-		Objects.requireNonNull(map, "Map must not be null");
-		this.map = map;
-		final int triangles = map.getLatitudinalSize() * map.getLongitudinalSize() * Direction.values().length;
-		position = new CalculatingVertexBuffer<Float>(POSITION, triangles, PositionComponent.values().length, Float.class);
-		normal = new CalculatingVertexBuffer<Float>(NORMAL, triangles, NormalComponent.values().length, Float.class);
-		texture = new CalculatingVertexBuffer<>(TEXTURE, triangles, TextureCoordinatesComponent.values().length, Float.class);
-		vertexArray = new VertexArray(gl, triangles, new VertexBuffer<?>[] {position, normal, texture});
-		terrains = new Texture[Terrain.values().length];
-		for (int i = 0; i < terrains.length; i++) {
-			terrains[i] = new Texture(gl, Terrain.values()[i].getTexture());
-		}
-		final Float[] altitudes = new Float[map.getLatitudinalSize() * map.getLongitudinalSize()];
-		for (int latitude = 0; latitude < map.getLatitudinalSize(); latitude++) {
-			for (int longitude = 0; longitude < map.getLongitudinalSize(); longitude++) {
-				altitudes[latitude * map.getLongitudinalSize() + longitude] = map.getTile(latitude, longitude).getAltitude();
-			}
-		}
-		this.altitudes = wrapInClBuffer(altitudes);
-		final int latitudinalSize = 2 * map.getLatitudinalSize() + 1;
-		final int longitudinalSize = 2 * map.getLongitudinalSize() + 1;
-		positions = allocate(latitudinalSize * longitudinalSize * PositionComponent.values().length, Float.class);
-		normals = allocate(latitudinalSize * longitudinalSize * NormalComponent.values().length, Float.class);
-		calculatePositionsAndNormals(0, 0, latitudinalSize, longitudinalSize);
-		loadVertexBuffers(0, 0, map.getLatitudinalSize(), map.getLongitudinalSize());
+		this(gl, configuration, map, null);
+	}
+
+	/**
+	 * Construct a new map renderer loading its textures asynchronously. If the terrain of the whole map does not fit in the terrain memory budget of the configuration, the map is streamed: it is calculated chunk by chunk through fixed size scratch buffers into vertex buffers per chunk, which are only created for visible chunks and evicted, least recently visible first, when the budget is exhausted. The terrain is calculated by the compute backend selected by the configuration. The OpenCL backend specializes the CL program for the dimensions of the map (and for the whole map being resident), so variants are compiled per map size and cached, and may split chunks across helper devices; Java backends calculate on the host without setting up OpenCL at all. In auto mode, each backend is measured end to end (calculating the first chunk into the vertex buffers) the first time a map is rendered on the OpenCL device of the configuration, and the fastest one is stored in the configuration for later map renderers.
+	 * 
+	 * @param gl
+	 *            the OpenGL context to use
+	 * @param configuration
+	 *            the configuration to use
+	 * @param map
+	 *            the map to render
+	 * @param loader
+	 *            the resource loader to use for textures (or <code>null</code> to load textures synchronously)
+	 * @throws RendererException
+	 *             if any errors occur
+	 */
+	public MapRenderer(final GL3 gl, final Configuration configuration, final Map map, final ResourceLoader loader) throws RendererException {
+		super(gl, VERTEX_SHADER, Collections.<String, String> emptyMap(), FRAGMENT_SHADER, FRAGMENT_SHADER_DEFINITIONS, configuration, PROGRAM, getProgramDefinitions(configuration, map));
+		try {
+			this.map = map;
+			final long budget = configuration.getTerrainMemoryBudget() * MEGABYTE;
+			final long altitudesSize = (long) map.getLatitudinalSize() * map.getLongitudinalSize() * Buffers.SIZEOF_FLOAT;
+			streaming = isStreaming(configuration, map);
+			chunkLatitudinalSize = streaming ? Math.min(CHUNK_SIZE, map.getLatitudinalSize()) : map.getLatitudinalSize();
+			chunkLongitudinalSize = streaming ? Math.min(CHUNK_SIZE, map.getLongitudinalSize()) : map.getLongitudinalSize();
+			chunkRows = (map.getLatitudinalSize() + chunkLatitudinalSize - 1) / chunkLatitudinalSize;
+			chunkColumns = (map.getLongitudinalSize() + chunkLongitudinalSize - 1) / chunkLongitudinalSize;
+			final long scratchSize = altitudesSize + calculateVertexBuffersSize(chunkLatitudinalSize, chunkLongitudinalSize);
+			maxChunks = streaming ? (int) Math.max(1L, (budget - scratchSize) / calculateVertexBuffersSize(chunkLatitudinalSize, chunkLongitudinalSize)) : 0;
+			chunks = new LinkedHashMap<Integer, Chunk>(16, 0.75f, true); // least recently visible first
+			generating = null;
+			frame = 0L;
+			// in streaming mode these are the scratch vertex buffers of a chunk, otherwise the vertex buffers of the whole map
+			final int triangles = chunkLatitudinalSize * chunkLongitudinalSize * Direction.values().length;
+			position = new CalculatingVertexBuffer<Float>(POSITION, triangles, PositionComponent.values().length, Float.class);
+			normal = new CalculatingVertexBuffer<Float>(NORMAL, triangles, NormalComponent.values().length, Float.class);
+			texture = new CalculatingVertexBuffer<>(TEXTURE, triangles, TextureCoordinatesComponent.values().length, Float.class);
+			vertexArray = new VertexArray(gl, triangles, new VertexBuffer<?>[] {position, normal, texture});
+			final String[] terrainTextures = new String[Terrain.values().length];
+			for (final Terrain terrain : Terrain.values()) {
+				terrainTextures[terrain.ordinal()] = terrain.getTexture();
+			}
+			placeholder = new Texture(gl, TextureData.solid(PLACEHOLDER));
+			terrains = new ArrayList<ResourceLoader.Resource<Texture>>();
+			if (loader == null) {
+				final TextureData[] terrainData = TextureData.load(terrainTextures); // decode in parallel, upload on this thread
+				for (final TextureData data : terrainData) {
+					terrains.add(new ResourceLoader.Resource<Texture>(new Texture(gl, data)));
+				}
+			} else {
+				for (final String terrainTexture : terrainTextures) {
+					terrains.add(loader.loadTexture(this, terrainTexture, placeholder));
+				}
+			}
+			boundTerrains = new Texture[terrains.size()];
+			chunkMinXs = new float[chunkRows * chunkColumns];
+			chunkMaxXs = new float[chunkRows * chunkColumns];
+			chunkMinAltitudes = new float[chunkRows * chunkColumns];
+			chunkMaxAltitudes = new float[chunkRows * chunkColumns];
+			chunkMinZs = new float[chunkRows * chunkColumns];
+			chunkMaxZs = new float[chunkRows * chunkColumns];
+			for (int row = 0; row < chunkRows; row++) {
+				for (int column = 0; column < chunkColumns; column++) {
+					chunkMinXs[row * chunkColumns + column] = column * chunkLongitudinalSize;
+					chunkMaxXs[row * chunkColumns + column] = Math.min((column + 1) * chunkLongitudinalSize, map.getLongitudinalSize());
+					chunkMinZs[row * chunkColumns + column] = -Math.min((row + 1) * chunkLatitudinalSize, map.getLatitudinalSize());
+					chunkMaxZs[row * chunkColumns + column] = -row * chunkLatitudinalSize;
+					updateChunkBounds(row, column);
+				}
+			}
+			visibleChunks = new boolean[chunkRows * chunkColumns];
+			frustum = new Frustum();
+			heights = new HeightPyramid(map);
+			backend = createBackend(gl, configuration, configuration.getComputeBackend());
+			LOGGER.info("Calculating terrain with " + backend.getName() + " compute backend");
+			if (streaming) {
+				LOGGER.info("Streaming map of " + map.getLatitudinalSize() + " x " + map.getLongitudinalSize() + " tiles in chunks of " + chunkLatitudinalSize + " x " + chunkLongitudinalSize + " tiles, at most " + maxChunks + " chunks resident");
+			} else {
+				calculateChunk(gl, 0, 0, map.getLatitudinalSize(), map.getLongitudinalSize()); // awaited by the first render
+			}
+		} catch (final RendererException | RuntimeException e) {
+			super.dispose(gl); // releases the GLSL program (and the CL program, if any) acquired
+			throw e;
+		}
 	}
 
 	@Override
 	public void dispose(final GL3 gl) {
 		Objects.requireNonNull(gl, "OpenGL must not be null");
-		altitudes.release();
-		positions.release();
-		normals.release();
+		backend.dispose(gl);
+		if (generating != null) {
+			generating.dispose(gl);
+		}
+		for (final Chunk chunk : chunks.values()) {
+			chunk.dispose(gl);
+		}
 		vertexArray.dispose(gl);
-		for (final Texture terrain : terrains) {
-			terrain.dispose(gl);
+		for (final ResourceLoader.Resource<Texture> terrain : terrains) {
+			if ((terrain.peek() != null) && (terrain.peek() != placeholder)) {
+				terrain.peek().dispose(gl);
+			}
 		}
+		placeholder.dispose(gl);
 		super.dispose(gl);
 	}
 
@@ -126,36 +576,249 @@ public class MapRenderer extends CalculatingRenderer {
 	 * @param transformation
 	 *            the combined projection, view and model transformation to use
 	 */
-	public void render(final GL3 gl, final Matrix transformation) {
+	public void render(final GL3 gl, final Matrix4f transformation) {
 		Objects.requireNonNull(gl, "OpenGL must not be null");
 		Objects.requireNonNull(transformation, "Transformation must not be null");
 		render(gl);
 		bind(gl, TRANSFORMATION, transformation);
-		bind(gl, TERRAINS, terrains);
-		vertexArray.render(gl);
+		for (int i = 0; i < boundTerrains.length; i++) {
+			boundTerrains[i] = terrains.get(i).get(gl); // placeholder until loaded
+		}
+		bind(gl, TERRAINS, boundTerrains);
+		if (streaming) {
+			renderChunks(gl, transformation);
+		} else {
+			backend.await(gl);
+			vertexArray.render(gl);
+		}
+	}
+
+	/**
+	 * Update the map after the altitude of a tile has changed. Only the changed altitude is written to the compute backend and only the vertices of the affected tiles are calculated again. The calculation is submitted without waiting for it, so it should be called after the draw calls of a frame to overlap with them. When streaming, affected chunks are evicted and calculated again once visible.
+	 * 
+	 * @param gl
+	 *            the OpenGL context to use
+	 * @param latitude
+	 *            the latitude of the tile changed
+	 * @param longitude
+	 *            the longitude of the tile changed
+	 */
+	public void update(final GL3 gl, final int latitude, final int longitude) {
+		Objects.requireNonNull(gl, "OpenGL must not be null");
+		if ((latitude < 0) || (latitude >= map.getLatitudinalSize())) {
+			throw new IllegalArgumentException("Latitude must be between 0 and " + (map.getLatitudinalSize() - 1));
+		}
+		if ((longitude < 0) || (longitude >= map.getLongitudinalSize())) {
+			throw new IllegalArgumentException("Longitude must be between 0 and " + (map.getLongitudinalSize() - 1));
+		}
+		backend.setAltitude(latitude, longitude, map.getTile(latitude, longitude).getAltitude());
+		heights.update(latitude, longitude);
+		if (streaming) {
+			// a tile affects the vertices of the tiles around it
+			for (int row = Math.max(latitude - 1, 0) / chunkLatitudinalSize; row <= Math.min(latitude + 1, map.getLatitudinalSize() - 1) / chunkLatitudinalSize; row++) {
+				for (int column = Math.max(longitude - 1, 0) / chunkLongitudinalSize; column <= Math.min(longitude + 1, map.getLongitudinalSize() - 1) / chunkLongitudinalSize; column++) {
+					updateChunkBounds(row, column);
+					final Chunk chunk = chunks.remove(row * chunkColumns + column);
+					if (chunk != null) {
+						chunk.dispose(gl);
+					}
+					if ((generating != null) && (generating.row == row) && (generating.column == column)) {
+						generating.stale = true;
+					}
+				}
+			}
+			return;
+		}
+		// vertices of a tile depend on the altitudes of the tile and the tiles around it
+		final int latitudinalOffset = Math.max(latitude - 1, 0);
+		final int longitudinalOffset = Math.max(longitude - 1, 0);
+		backend.calculateTerrain(gl, 0, 0, map.getLatitudinalSize(), map.getLongitudinalSize(), latitudinalOffset, longitudinalOffset, Math.min(latitude + 2, map.getLatitudinalSize()) - latitudinalOffset, Math.min(longitude + 2, map.getLongitudinalSize()) - longitudinalOffset);
+	}
+
+	/**
+	 * Profile the calculation of the terrain by the compute backend over a chunk (the whole map unless streaming). The OpenCL backend profiles each terrain kernel by the time spent on the device, comparing the fused kernel calculating the vertex buffers to the separate kernels materializing positions and normals in global memory and to the single pass reference kernel (which is only profiled unless streaming). Java backends are profiled by wall time on the host, including uploading to the vertex buffers.
+	 * 
+	 * @param gl
+	 *            the OpenGL context to use
+	 * @param runs
+	 *            the number of times to execute each calculation
+	 * @return the minimum time spent by an execution of each calculation in nanoseconds, by calculation name
+	 */
+	public java.util.Map<String, Long> profile(final GL3 gl, final int runs) {
+		Objects.requireNonNull(gl, "OpenGL must not be null");
+		backend.await(gl); // scratch vertex buffers must not be in use
+		if (generating != null) {
+			generating.stale = true; // scratch vertex buffers are overwritten
+		}
+		return backend.profile(gl, chunkLatitudinalSize, chunkLongitudinalSize, runs);
+	}
+
+	/**
+	 * Get the height pyramid of the terrain of the map, for picking and line of sight queries. It is kept up to date by {@link #update(GL3, int, int)}.
+	 * 
+	 * @return the height pyramid of the terrain of the map
+	 */
+	public HeightPyramid getHeightPyramid() {
+		return heights;
 	}
 
+	/**
+	 * Get the altitude of the terrain of the map at a point, as rendered.
+	 * 
+	 * @param latitude
+	 *            the latitude of the point
+	 * @param longitude
+	 *            the longitude of the point
+	 * @return the altitude of the terrain at the given point
+	 */
 	public float getAltitude(final float latitude, final float longitude) {
-		return 0.0f; // TODO
+		return heights.getAltitude(latitude, longitude);
 	}
 
-	private void calculatePositionsAndNormals(final int latitudinalOffset, final int longitudinalOffset, final int latitudinalSize, final int longitudinalSize) {
-		final int[] offsets = new int[Coordinate.values().length];
-		offsets[Coordinate.LATITUDE.ordinal()] = latitudinalOffset;
-		offsets[Coordinate.LONGITUDE.ordinal()] = longitudinalOffset;
-		final int[] sizes = new int[Coordinate.values().length];
-		sizes[Coordinate.LATITUDE.ordinal()] = latitudinalSize;
-		sizes[Coordinate.LONGITUDE.ordinal()] = longitudinalSize;
-		executeKernel(CALCULATE_POSITIONS_AND_NORMALS, Coordinate.values().length, offsets, sizes, map.getLatitudinalSize(), map.getLongitudinalSize(), altitudes, positions, normals);
+	private void renderChunks(final GL3 gl, final Matrix4f transformation) {
+		if (generating != null) { // submitted by the previous frame
+			backend.await(gl);
+			if (generating.stale) {
+				generating.dispose(gl);
+			} else {
+				generating.copy(gl);
+				chunks.put(generating.row * chunkColumns + generating.column, generating);
+			}
+			generating = null;
+		}
+		frame++;
+		frustum.set(transformation).intersectsBoxes(chunkMinXs, chunkMinAltitudes, chunkMinZs, chunkMaxXs, chunkMaxAltitudes, chunkMaxZs, visibleChunks, 0, visibleChunks.length);
+		int nearestRow = -1;
+		int nearestColumn = -1;
+		float nearestDistance = Float.POSITIVE_INFINITY;
+		for (int row = 0; row < chunkRows; row++) {
+			for (int column = 0; column < chunkColumns; column++) {
+				if (!visibleChunks[row * chunkColumns + column]) {
+					continue;
+				}
+				final float distance = getChunkDistance(transformation.getElements(), row * chunkColumns + column);
+				final Chunk chunk = chunks.get(row * chunkColumns + column); // marks the chunk as recently visible
+				if (chunk != null) {
+					chunk.lastVisibleFrame = frame;
+					chunk.vertexArray.render(gl);
+				} else if (distance < nearestDistance) {
+					nearestRow = row;
+					nearestColumn = column;
+					nearestDistance = distance;
+				}
+			}
+		}
+		if (nearestRow >= 0) { // calculate the nearest missing chunk, overlapping the draw calls of this frame
+			if (chunks.size() >= maxChunks) {
+				final Iterator<Chunk> leastRecentlyVisible = chunks.values().iterator();
+				final Chunk chunk = leastRecentlyVisible.next();
+				if (chunk.lastVisibleFrame == frame) { // all resident chunks are visible and the budget is exhausted
+					return;
+				}
+				leastRecentlyVisible.remove();
+				chunk.dispose(gl);
+			}
+			generating = new Chunk(gl, nearestRow, nearestColumn);
+			calculateChunk(gl, generating.latitude, generating.longitude, generating.latitudinalSize, generating.longitudinalSize);
+		}
 	}
 
-	private void loadVertexBuffers(final int latitudinalOffset, final int longitudinalOffset, final int latitudinalSize, final int longitudinalSize) {
-		final int[] offsets = new int[Coordinate.values().length];
-		offsets[Coordinate.LATITUDE.ordinal()] = latitudinalOffset;
-		offsets[Coordinate.LONGITUDE.ordinal()] = longitudinalOffset;
-		final int[] sizes = new int[Coordinate.values().length];
-		sizes[Coordinate.LATITUDE.ordinal()] = latitudinalSize;
-		sizes[Coordinate.LONGITUDE.ordinal()] = longitudinalSize;
-		executeKernel(LOAD_VERTEX_BUFFERS, Coordinate.values().length, offsets, sizes, map.getLatitudinalSize(), map.getLongitudinalSize(), positions, position);
+	private float getChunkDistance(final float[] transformation, final int chunk) { // clip space w of the center of the chunk
+		final float x = (chunkMinXs[chunk] + chunkMaxXs[chunk]) / 2.0f;
+		final float y = (chunkMinAltitudes[chunk] + chunkMaxAltitudes[chunk]) / 2.0f;
+		final float z = (chunkMinZs[chunk] + chunkMaxZs[chunk]) / 2.0f;
+		return transformation[12] * x + transformation[13] * y + transformation[14] * z + transformation[15];
 	}
+
+	private void updateChunkBounds(final int row, final int column) {
+		// vertices of a chunk average the altitudes of its tiles and of one more tile on each side
+		float min = Float.POSITIVE_INFINITY;
+		float max = Float.NEGATIVE_INFINITY;
+		for (int latitude = Math.max(row * chunkLatitudinalSize - 1, 0); latitude < Math.min((row + 1) * chunkLatitudinalSize + 1, map.getLatitudinalSize()); latitude++) {
+			for (int longitude = Math.max(column * chunkLongitudinalSize - 1, 0); longitude < Math.min((column + 1) * chunkLongitudinalSize + 1, map.getLongitudinalSize()); longitude++) {
+				final float altitude = map.getTile(latitude, longitude).getAltitude();
+				min = Math.min(min, altitude);
+				max = Math.max(max, altitude);
+			}
+		}
+		chunkMinAltitudes[row * chunkColumns + column] = min;
+		chunkMaxAltitudes[row * chunkColumns + column] = max;
+	}
+
+	private ComputeBackend createBackend(final GL3 gl, final Configuration configuration, final ComputeBackendType type) throws RendererException {
+		switch (type) {
+		case OPEN_CL:
+			return new OpenClComputeBackend(gl, configuration);
+		case JAVA_PARALLEL:
+			return new ParallelComputeBackend(map, chunkLatitudinalSize * chunkLongitudinalSize, position.vertexBuffer, normal.vertexBuffer, texture.vertexBuffer);
+		case JAVA_VECTORIZED:
+			return new VectorizedComputeBackend(map, chunkLatitudinalSize * chunkLongitudinalSize, position.vertexBuffer, normal.vertexBuffer, texture.vertexBuffer);
+		default:
+			return createFastestBackend(gl, configuration);
+		}
+	}
+
+	private ComputeBackend createFastestBackend(final GL3 gl, final Configuration configuration) throws RendererException {
+		final CLDevice device = configuration.getClDevice();
+		final ComputeBackendType fastestType = configuration.getFastestComputeBackend(device);
+		if (fastestType != null) {
+			return createBackend(gl, configuration, fastestType);
+		}
+		ComputeBackendType fastestCandidate = null;
+		ComputeBackend fastest = null;
+		long fastestTime = Long.MAX_VALUE;
+		for (final ComputeBackendType type : ComputeBackendType.values()) {
+			if (type == ComputeBackendType.AUTO) {
+				continue;
+			}
+			ComputeBackend candidate = null;
+			try {
+				candidate = createBackend(gl, configuration, type);
+				final long time = measure(gl, candidate);
+				LOGGER.info(candidate.getName() + " compute backend calculated a chunk of " + chunkLatitudinalSize + " x " + chunkLongitudinalSize + " tiles in " + time + " ns");
+				if (time < fastestTime) {
+					if (fastest != null) {
+						fastest.dispose(gl);
+					}
+					fastestCandidate = type;
+					fastest = candidate;
+					fastestTime = time;
+					candidate = null;
+				}
+			} catch (final RendererException | CLException e) {
+				LOGGER.log(Level.WARNING, "Error measuring " + type + " compute backend, not using it", e);
+			} finally {
+				if (candidate != null) {
+					candidate.dispose(gl);
+				}
+			}
+		}
+		if (fastest == null) {
+			throw new RendererException("No compute backend available");
+		}
+		LOGGER.info("Fastest compute backend is " + fastest.getName());
+		try {
+			configuration.setFastestComputeBackend(device, fastestCandidate);
+		} catch (final BackingStoreException e) {
+			LOGGER.log(Level.WARNING, "Error storing fastest compute backend", e);
+		}
+		return fastest;
+	}
+
+	private long measure(final GL3 gl, final ComputeBackend backend) { // minimum wall time of calculating the first chunk into the vertex buffers, the same measure for all backends
+		long time = Long.MAX_VALUE;
+		for (int i = 0; i < BENCHMARK_RUNS; i++) { // the first runs also tune local work sizes and warm up the JIT compiler
+			final long start = System.nanoTime();
+			backend.calculateTerrain(gl, 0, 0, chunkLatitudinalSize, chunkLongitudinalSize, 0, 0, chunkLatitudinalSize, chunkLongitudinalSize);
+			backend.await(gl);
+			gl.glFinish();
+			time = Math.min(time, System.nanoTime() - start);
+		}
+		return time;
+	}
+
+	private void calculateChunk(final GL3 gl, final int latitude, final int longitude, final int latitudinalSize, final int longitudinalSize) {
+		backend.calculateTerrain(gl, latitude, longitude, latitudinalSize, longitudinalSize, latitude, longitude, latitudinalSize, longitudinalSize);
+	}
+
 }
@@ -0,0 +1,114 @@
+package gr.uoa.di.thanos.botcraft.renderers;
+
+import gr.uoa.di.thanos.botcraft.etc.configuration.Configuration;
+import gr.uoa.di.thanos.botcraft.game.Map;
+import gr.uoa.di.thanos.botcraft.geometry.Matrix4f;
+import gr.uoa.di.thanos.botcraft.profiling.Profiler;
+import gr.uoa.di.thanos.botcraft.profiling.Span;
+
+import java.util.Objects;
+
+import com.jogamp.opengl.GL3;
+
+/**
+ * A scene combining all renderers needed to render a map. The scene is independent of the drawable it renders to, so it can be driven either by an on-screen canvas or by an offscreen drawable.
+ *
+ * @author thanos
+ */
+public class MapScene {
+	private final CubeRenderer cubeRenderer;
+	private final MapRenderer mapRenderer;
+
+	/**
+	 * Construct a new map scene.
+	 *
+	 * @param gl
+	 *            the OpenGL context to use
+	 * @param configuration
+	 *            the configuration to use
+	 * @param map
+	 *            the map to render
+	 * @throws RendererException
+	 *             if any errors occur
+	 */
+	public MapScene(final GL3 gl, final Configuration configuration, final Map map) throws RendererException {
+		this(gl, configuration, map, null);
+	}
+
+	/**
+	 * Construct a new map scene streaming its resources through a resource loader.
+	 *
+	 * @param gl
+	 *            the OpenGL context to use
+	 * @param configuration
+	 *            the configuration to use
+	 * @param map
+	 *            the map to render
+	 * @param loader
+	 *            the resource loader to use (or <code>null</code> to load all resources synchronously)
+	 * @throws RendererException
+	 *             if any errors occur
+	 */
+	public MapScene(final GL3 gl, final Configuration configuration, final Map map, final ResourceLoader loader) throws RendererException {
+		Objects.requireNonNull(gl, "OpenGL must not be null");
+		Objects.requireNonNull(configuration, "Configuration must not be null");
+		Objects.requireNonNull(map, "Map must not be null");
+		gl.glEnable(GL3.GL_DEPTH_TEST);
+		gl.glEnable(GL3.GL_CULL_FACE);
+		gl.glEnable(GL3.GL_MULTISAMPLE);
+		cubeRenderer = new CubeRenderer(gl);
+		try {
+			mapRenderer = new MapRenderer(gl, configuration, map, loader);
+		} catch (final RendererException e) {
+			cubeRenderer.dispose(gl);
+			throw e;
+		}
+	}
+
+	/**
+	 * Dispose this scene.
+	 *
+	 * @param gl
+	 *            the OpenGL context to use
+	 */
+	public void dispose(final GL3 gl) {
+		Objects.requireNonNull(gl, "OpenGL must not be null");
+		cubeRenderer.dispose(gl);
+		mapRenderer.dispose(gl);
+	}
+
+	/**
+	 * Profile the calculations of this scene.
+	 *
+	 * @param gl
+	 *            the OpenGL context to use
+	 * @param runs
+	 *            the number of times to execute each calculation
+	 * @return the minimum time spent by each calculation in nanoseconds, by calculation name
+	 */
+	public java.util.Map<String, Long> profile(final GL3 gl, final int runs) {
+		Objects.requireNonNull(gl, "OpenGL must not be null");
+		return mapRenderer.profile(gl, runs);
+	}
+
+	/**
+	 * Render this scene.
+	 *
+	 * @param gl
+	 *            the OpenGL context to use
+	 * @param transformation
+	 *            the combined projection and view transformation to use
+	 */
+	public void render(final GL3 gl, final Matrix4f transformation) {
+		Objects.requireNonNull(gl, "OpenGL must not be null");
+		Objects.requireNonNull(transformation, "Transformation must not be null");
+		gl.glClearColor(0.0f, 0.0f, 0.0f, 1.0f); // opaque black
+		gl.glClear(GL3.GL_COLOR_BUFFER_BIT | GL3.GL_DEPTH_BUFFER_BIT);
+		final long cubeStart = Profiler.begin();
+		cubeRenderer.render(gl, transformation);
+		Profiler.end(Span.RENDER_CUBE, cubeStart);
+		final long mapStart = Profiler.begin();
+		mapRenderer.render(gl, transformation);
+		Profiler.end(Span.RENDER_MAP, mapStart);
+	}
+}
@@ -0,0 +1,65 @@
+package gr.uoa.di.thanos.botcraft.renderers;
+
+import gr.uoa.di.thanos.botcraft.game.Map;
+
+/**
+ * A Java compute backend calculating each tile independently, the way each work item of the OpenCL kernels does: the positions of the vertices of the tile and one more vertex on each side, then the normals and the triangles of the tile.
+ * 
+ * @author thanos
+ */
+public class ParallelComputeBackend extends JavaComputeBackend {
+	private static final String NAME = "Java parallel";
+	private static final int SIZE = 5; // vertices per side of a tile and one more vertex on each side
+
+	/**
+	 * Construct a new Java parallel compute backend.
+	 * 
+	 * @param map
+	 *            the map whose terrain to calculate
+	 * @param maxTiles
+	 *            the maximum number of tiles calculated at once
+	 * @param position
+	 *            the OpenGL vertex buffer to upload the positions of the vertices to
+	 * @param normal
+	 *            the OpenGL vertex buffer to upload the normals of the vertices to
+	 * @param texture
+	 *            the OpenGL vertex buffer to upload the texture coordinates of the vertices to
+	 */
+	public ParallelComputeBackend(final Map map, final int maxTiles, final int position, final int normal, final int texture) {
+		super(map, maxTiles, position, normal, texture);
+	}
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	protected void calculateTerrain(final TerrainChunk chunk, final int firstRow, final int lastRow) {
+		final float[] xs = new float[SIZE * SIZE];
+		final float[] ys = new float[SIZE * SIZE];
+		final float[] zs = new float[SIZE * SIZE];
+		final float[] nxs = new float[SIZE * SIZE];
+		final float[] nys = new float[SIZE * SIZE];
+		final float[] nzs = new float[SIZE * SIZE];
+		for (int row = firstRow; row < lastRow; row++) {
+			final int lat = 2 * (chunk.getLatitude() + row);
+			for (int column = 0; column < chunk.getLongitudinalSize(); column++) {
+				final int lng = 2 * (chunk.getLongitude() + column);
+				for (int i = 0; i < SIZE; i++) { // vertices lat - 1 to lat + 3 by lng - 1 to lng + 3
+					for (int j = 0; j < SIZE; j++) {
+						xs[i * SIZE + j] = chunk.getVertexX(lng - 1 + j);
+						ys[i * SIZE + j] = chunk.getVertexAltitude(lat - 1 + i, lng - 1 + j);
+						zs[i * SIZE + j] = chunk.getVertexZ(lat - 1 + i);
+					}
+				}
+				for (int i = 1; i < SIZE - 1; i++) { // vertices lat to lat + 2 by lng to lng + 2
+					for (int j = 1; j < SIZE - 1; j++) {
+						calculateNormal(xs, ys, zs, i * SIZE + j, SIZE, (i % 2 == 0) != (j % 2 == 0), nxs, nys, nzs);
+					}
+				}
+				chunk.storeTile(row * chunk.getLongitudinalSize() + column, xs, ys, zs, nxs, nys, nzs, SIZE + 1, SIZE);
+			}
+		}
+	}
+}
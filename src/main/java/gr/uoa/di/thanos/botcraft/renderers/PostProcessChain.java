@@ -0,0 +1,187 @@
+package gr.uoa.di.thanos.botcraft.renderers;
+
+import gr.uoa.di.thanos.botcraft.profiling.Profiler;
+import gr.uoa.di.thanos.botcraft.profiling.Span;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.logging.Logger;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL3;
+
+/**
+ * A chain of post processing passes applied to a rendered frame. The frame is rendered (or blitted) into the framebuffer of the chain, then each pass samples the output of the previous one, ping-ponging between two textures, and the last pass renders into the default framebuffer. The framebuffer of the chain has a depth attachment as well, so that scenes can be rendered into it directly.
+ *
+ * @author thanos
+ */
+public class PostProcessChain {
+	private static final int TARGETS = 2;
+	private static final Logger LOGGER = Logger.getLogger(PostProcessChain.class.getName());
+
+	private final List<PostProcessPass> passes;
+	private final int[] framebuffers;
+	private final int[] textures;
+	private final int depthRenderbuffer;
+	private int width;
+	private int height;
+
+	/**
+	 * Construct a new post processing chain with no passes. The chain has no storage until resized.
+	 *
+	 * @param gl
+	 *            the OpenGL context to use
+	 */
+	public PostProcessChain(final GL3 gl) {
+		Objects.requireNonNull(gl, "OpenGL must not be null");
+		passes = new ArrayList<PostProcessPass>();
+		framebuffers = new int[TARGETS];
+		gl.glGenFramebuffers(TARGETS, framebuffers, 0);
+		textures = new int[TARGETS];
+		gl.glGenTextures(TARGETS, textures, 0);
+		for (final int texture : textures) {
+			gl.glBindTexture(GL.GL_TEXTURE_2D, texture);
+			gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_MIN_FILTER, GL.GL_LINEAR); // passes sample between pixels
+			gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_MAG_FILTER, GL.GL_LINEAR);
+			gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_WRAP_S, GL.GL_CLAMP_TO_EDGE);
+			gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_WRAP_T, GL.GL_CLAMP_TO_EDGE);
+		}
+		gl.glBindTexture(GL.GL_TEXTURE_2D, 0);
+		final IntBuffer depthRenderbufferBuffer = IntBuffer.allocate(1);
+		gl.glGenRenderbuffers(1, depthRenderbufferBuffer);
+		depthRenderbuffer = depthRenderbufferBuffer.get(0);
+		width = 0;
+		height = 0;
+	}
+
+	/**
+	 * Dispose this chain along with its passes.
+	 *
+	 * @param gl
+	 *            the OpenGL context to use
+	 */
+	public void dispose(final GL3 gl) {
+		Objects.requireNonNull(gl, "OpenGL must not be null");
+		for (final PostProcessPass pass : passes) {
+			pass.dispose(gl);
+		}
+		passes.clear();
+		gl.glDeleteFramebuffers(TARGETS, framebuffers, 0);
+		gl.glDeleteTextures(TARGETS, textures, 0);
+		gl.glDeleteRenderbuffers(1, IntBuffer.wrap(new int[] {depthRenderbuffer}));
+	}
+
+	/**
+	 * Append a pass to this chain. The chain takes ownership of the pass and disposes it along with itself.
+	 *
+	 * @param pass
+	 *            the pass to append
+	 */
+	public void add(final PostProcessPass pass) {
+		passes.add(Objects.requireNonNull(pass, "Pass must not be null"));
+	}
+
+	/**
+	 * Check whether this chain has no passes, in which case frames need not be rendered into it.
+	 *
+	 * @return <code>true</code> if this chain has no passes, <code>false</code> otherwise
+	 */
+	public boolean isEmpty() {
+		return passes.isEmpty();
+	}
+
+	/**
+	 * Get the framebuffer to render (or blit) frames into before applying this chain.
+	 *
+	 * @return the OpenGL identifier of the framebuffer to render frames into
+	 */
+	public int getFramebuffer() {
+		return framebuffers[0];
+	}
+
+	/**
+	 * Resize this chain. Nothing is reallocated if the size does not change.
+	 *
+	 * @param gl
+	 *            the OpenGL context to use
+	 * @param width
+	 *            the width of the frames in pixels
+	 * @param height
+	 *            the height of the frames in pixels
+	 * @throws RendererException
+	 *             if the framebuffers are not supported with this size
+	 */
+	public void resize(final GL3 gl, final int width, final int height) throws RendererException {
+		Objects.requireNonNull(gl, "OpenGL must not be null");
+		if (width <= 0) {
+			throw new IllegalArgumentException("Width must be positive");
+		}
+		if (height <= 0) {
+			throw new IllegalArgumentException("Height must be positive");
+		}
+		if ((width == this.width) && (height == this.height)) {
+			return;
+		}
+		gl.glBindRenderbuffer(GL3.GL_RENDERBUFFER, depthRenderbuffer);
+		gl.glRenderbufferStorage(GL3.GL_RENDERBUFFER, GL3.GL_DEPTH_COMPONENT24, width, height);
+		gl.glBindRenderbuffer(GL3.GL_RENDERBUFFER, 0);
+		for (int target = 0; target < TARGETS; target++) {
+			gl.glBindTexture(GL.GL_TEXTURE_2D, textures[target]);
+			gl.glTexImage2D(GL.GL_TEXTURE_2D, 0, GL.GL_RGBA8, width, height, 0, GL.GL_RGBA, GL.GL_UNSIGNED_BYTE, null);
+			gl.glBindFramebuffer(GL3.GL_FRAMEBUFFER, framebuffers[target]);
+			gl.glFramebufferTexture2D(GL3.GL_FRAMEBUFFER, GL3.GL_COLOR_ATTACHMENT0, GL.GL_TEXTURE_2D, textures[target], 0);
+			if (target == 0) {
+				gl.glFramebufferRenderbuffer(GL3.GL_FRAMEBUFFER, GL3.GL_DEPTH_ATTACHMENT, GL3.GL_RENDERBUFFER, depthRenderbuffer);
+			}
+			final int status = gl.glCheckFramebufferStatus(GL3.GL_FRAMEBUFFER);
+			if (status != GL3.GL_FRAMEBUFFER_COMPLETE) {
+				gl.glBindTexture(GL.GL_TEXTURE_2D, 0);
+				gl.glBindFramebuffer(GL3.GL_FRAMEBUFFER, 0);
+				throw new RendererException("Incomplete post processing framebuffer (status 0x" + Integer.toHexString(status) + ")");
+			}
+		}
+		gl.glBindTexture(GL.GL_TEXTURE_2D, 0);
+		gl.glBindFramebuffer(GL3.GL_FRAMEBUFFER, 0);
+		this.width = width;
+		this.height = height;
+		LOGGER.fine("Resized post processing chain to " + width + "x" + height);
+	}
+
+	/**
+	 * Bind the framebuffer of this chain for rendering frames into, setting the viewport to its size.
+	 *
+	 * @param gl
+	 *            the OpenGL context to use
+	 */
+	public void bind(final GL3 gl) {
+		Objects.requireNonNull(gl, "OpenGL must not be null");
+		gl.glBindFramebuffer(GL3.GL_FRAMEBUFFER, framebuffers[0]);
+		gl.glViewport(0, 0, width, height);
+	}
+
+	/**
+	 * Apply the passes of this chain to the frame rendered into its framebuffer, rendering the result into the default framebuffer.
+	 *
+	 * @param gl
+	 *            the OpenGL context to use
+	 */
+	public void render(final GL3 gl) {
+		Objects.requireNonNull(gl, "OpenGL must not be null");
+		if (passes.isEmpty()) {
+			throw new IllegalStateException("Post processing chain has no passes");
+		}
+		final long start = Profiler.begin();
+		gl.glDisable(GL.GL_DEPTH_TEST);
+		gl.glViewport(0, 0, width, height);
+		int source = 0;
+		for (int i = 0; i < passes.size(); i++) {
+			gl.glBindFramebuffer(GL3.GL_FRAMEBUFFER, (i == passes.size() - 1) ? 0 : framebuffers[1 - source]);
+			passes.get(i).render(gl, textures[source], width, height);
+			source = 1 - source;
+		}
+		gl.glEnable(GL.GL_DEPTH_TEST);
+		Profiler.end(Span.RENDER_POST_PROCESSING, start);
+	}
+}
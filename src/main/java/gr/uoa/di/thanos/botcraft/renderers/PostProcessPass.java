@@ -0,0 +1,88 @@
+package gr.uoa.di.thanos.botcraft.renderers;
+
+import java.nio.IntBuffer;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL3;
+
+/**
+ * A renderer drawing a full screen triangle with a GLSL fragment shader sampling the output of the previous pass of a {@link PostProcessChain}. The vertices of the triangle are derived from their indices in the vertex shader, so no vertex buffers are needed. The fragment shader receives the source as the <code>source</code> sampler, the size of a source pixel as the <code>inverseResolution</code> vector and the texture coordinates of the fragment as <code>_textureCoordinates</code>; subclasses may bind more uniforms (e.g. a fog of war or a selection mask) in {@link #prepare(GL3)}.
+ *
+ * @author thanos
+ */
+public class PostProcessPass extends Renderer {
+	private static final String VERTEX_SHADER = "/gr/uoa/di/thanos/botcraft/shaders/PostProcess.vert";
+	private static final String SOURCE = "source";
+	private static final String INVERSE_RESOLUTION = "inverseResolution";
+	private static final int VERTICES = 3;
+
+	private final int vertexArray;
+
+	/**
+	 * Construct a new post processing pass.
+	 *
+	 * @param gl
+	 *            the OpenGL context to use
+	 * @param fragmentShader
+	 *            the GLSL source code resource to use as fragment shader
+	 * @param fragmentShaderDefinitions
+	 *            the definitions to include in the fragment shader source code (using <code>#define</code>)
+	 * @throws RendererException
+	 *             if any errors occur
+	 */
+	public PostProcessPass(final GL3 gl, final String fragmentShader, final Map<String, String> fragmentShaderDefinitions) throws RendererException {
+		super(gl, VERTEX_SHADER, Collections.<String, String> emptyMap(), fragmentShader, fragmentShaderDefinitions);
+		final IntBuffer vertexArrayBuffer = IntBuffer.allocate(1);
+		gl.glGenVertexArrays(1, vertexArrayBuffer); // core profiles draw nothing without a vertex array bound, even an empty one
+		vertexArray = vertexArrayBuffer.get(0);
+	}
+
+	@Override
+	public void dispose(final GL3 gl) {
+		gl.glDeleteVertexArrays(1, IntBuffer.wrap(new int[] {vertexArray}));
+		super.dispose(gl);
+	}
+
+	/**
+	 * Render this pass into the framebuffer bound.
+	 *
+	 * @param gl
+	 *            the OpenGL context to use
+	 * @param source
+	 *            the OpenGL identifier of the texture to sample
+	 * @param width
+	 *            the width of the source in pixels
+	 * @param height
+	 *            the height of the source in pixels
+	 */
+	public void render(final GL3 gl, final int source, final int width, final int height) {
+		Objects.requireNonNull(gl, "OpenGL must not be null");
+		if (width <= 0) {
+			throw new IllegalArgumentException("Width must be positive");
+		}
+		if (height <= 0) {
+			throw new IllegalArgumentException("Height must be positive");
+		}
+		render(gl);
+		bind(gl, SOURCE, 0, source);
+		bind(gl, INVERSE_RESOLUTION, 1.0f / width, 1.0f / height);
+		prepare(gl);
+		gl.glBindVertexArray(vertexArray);
+		gl.glDrawArrays(GL3.GL_TRIANGLES, 0, VERTICES);
+		gl.glBindVertexArray(0);
+		gl.glActiveTexture(GL.GL_TEXTURE0);
+		gl.glBindTexture(GL.GL_TEXTURE_2D, 0);
+	}
+
+	/**
+	 * Bind any additional uniforms of this pass. Called after the program of this pass is in use and before drawing. Does nothing by default.
+	 *
+	 * @param gl
+	 *            the OpenGL context to use
+	 */
+	protected void prepare(final GL3 gl) {
+	}
+}
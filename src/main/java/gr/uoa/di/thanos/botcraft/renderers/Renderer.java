@@ -1,28 +1,26 @@
 package gr.uoa.di.thanos.botcraft.renderers;
 
-import gr.uoa.di.thanos.botcraft.geometry.Matrix;
+import gr.uoa.di.thanos.botcraft.geometry.Matrix4f;
 
-import java.awt.Color;
-import java.awt.image.BufferedImage;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Objects;
 import java.util.logging.Logger;
 
-import javax.imageio.ImageIO;
-
 import com.jogamp.common.nio.Buffers;
 import com.jogamp.opengl.GL;
 import com.jogamp.opengl.GL3;
+import com.jogamp.opengl.GLContext;
 
 /**
- * Base class containing common implementation for for renderers. Each renderer corresponds to a GLSL program consisting of a GLSL vertex shader and a GLSL fragment shader.
+ * Base class containing common implementation for for renderers. Each renderer corresponds to a GLSL program consisting of a GLSL vertex shader and a GLSL fragment shader. Linked programs are cached per OpenGL context by source (including definitions), so that renderers using the same variant share it.
  * 
  * @author thanos
  */
@@ -36,7 +34,7 @@ public abstract class Renderer {
 		private final GL3 gl;
 		private final String name;
 
-		private Shader(final GL3 gl, final int type, final String shader, final Map<String, String> definitions) throws RendererException {
+		private static String load(final String shader, final Map<String, String> definitions) throws RendererException {
 			try (final InputStreamReader reader = new InputStreamReader(Renderer.class.getResourceAsStream(shader), StandardCharsets.UTF_8)) {
 				final StringBuilder source = new StringBuilder(VERSION);
 				for (final Map.Entry<String, String> definition : definitions.entrySet()) {
@@ -47,17 +45,21 @@ public abstract class Renderer {
 				while ((read = reader.read(buffer)) != -1) {
 					source.append(buffer, 0, read);
 				}
-				this.shader = gl.glCreateShader(type);
-				gl.glShaderSource(this.shader, 1, new String[] {source.toString()}, IntBuffer.wrap(new int[] {source.length()}));
 				LOGGER.info("Loaded GLSL shader " + shader);
-				this.gl = gl;
-				this.name = shader;
-				compile();
+				return source.toString();
 			} catch (final IOException e) {
 				throw new RendererException("Error loading GLSL shader " + shader, e);
 			}
 		}
 
+		private Shader(final GL3 gl, final int type, final String shader, final String source) throws RendererException {
+			this.shader = gl.glCreateShader(type);
+			gl.glShaderSource(this.shader, 1, new String[] {source}, IntBuffer.wrap(new int[] {source.length()}));
+			this.gl = gl;
+			this.name = shader;
+			compile();
+		}
+
 		@Override
 		public void close() {
 			gl.glDeleteShader(shader);
@@ -80,14 +82,38 @@ public abstract class Renderer {
 	}
 
 	private static class VertexShader extends Shader {
-		private VertexShader(final GL3 gl, final String shader, final Map<String, String> definitions) throws RendererException {
-			super(gl, GL3.GL_VERTEX_SHADER, shader, definitions);
+		private VertexShader(final GL3 gl, final String shader, final String source) throws RendererException {
+			super(gl, GL3.GL_VERTEX_SHADER, shader, source);
 		}
 	}
 
 	private static class FragmentShader extends Shader {
-		private FragmentShader(final GL3 gl, final String shader, final Map<String, String> definitions) throws RendererException {
-			super(gl, GL3.GL_FRAGMENT_SHADER, shader, definitions);
+		private FragmentShader(final GL3 gl, final String shader, final String source) throws RendererException {
+			super(gl, GL3.GL_FRAGMENT_SHADER, shader, source);
+		}
+	}
+
+	private static class ProgramSource {
+		private final String vertexShader;
+		private final String vertexShaderSource;
+		private final String fragmentShader;
+		private final String fragmentShaderSource;
+
+		private ProgramSource(final String vertexShader, final Map<String, String> vertexShaderDefinitions, final String fragmentShader, final Map<String, String> fragmentShaderDefinitions) throws RendererException {
+			this.vertexShader = vertexShader;
+			vertexShaderSource = Shader.load(vertexShader, vertexShaderDefinitions);
+			this.fragmentShader = fragmentShader;
+			fragmentShaderSource = Shader.load(fragmentShader, fragmentShaderDefinitions);
+		}
+
+		@Override
+		public boolean equals(final Object object) {
+			return (object instanceof ProgramSource) && ((ProgramSource) object).vertexShaderSource.equals(vertexShaderSource) && ((ProgramSource) object).fragmentShaderSource.equals(fragmentShaderSource);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * vertexShaderSource.hashCode() + fragmentShaderSource.hashCode();
 		}
 	}
 
@@ -165,7 +191,7 @@ public abstract class Renderer {
 				vertexBuffer.enable(gl);
 			}
 			// TODO draw less triangles?
-			gl.glDrawArrays(GL3.GL_TRIANGLES, 0, triangles * TriangleVertex.values().length);
+			gl.glDrawArrays(GL3.GL_TRIANGLES, 0, triangles * TRIANGLE_VERTICES);
 			for (final VertexBuffer<?> vertexBuffer : vertexBuffers) {
 				vertexBuffer.disable(gl);
 			}
@@ -322,40 +348,39 @@ public abstract class Renderer {
 		 *             if any errors occur
 		 */
 		protected Texture(final GL3 gl, final String texture) throws RendererException {
+			this(gl, TextureData.load(texture));
+		}
+
+		/**
+		 * Construct a new texture from decoded texture data. All mipmap levels are uploaded directly from the decoded data, which is already in client memory, so staging it through a pixel unpack buffer would only add a copy; uploads are asynchronous when textures are created on the loader thread of a {@link ResourceLoader}.
+		 * 
+		 * @param gl
+		 *            the OpenGL context to use
+		 * @param data
+		 *            the decoded texture data to use
+		 */
+		protected Texture(final GL3 gl, final TextureData data) {
 			Objects.requireNonNull(gl, "OpenGL must not be null");
-			Objects.requireNonNull(texture, "Texture must not be null");
-			if (texture.isEmpty()) {
-				throw new IllegalArgumentException("Texture must not be empty");
-			}
-			try (final InputStream inputStream = getClass().getResourceAsStream(texture)) {
-				final BufferedImage image = ImageIO.read(inputStream);
-				final ByteBuffer pixels = ByteBuffer.allocateDirect(image.getWidth() * image.getHeight() * ColorComponent.values().length);
-				for (int y = 0; y < image.getHeight(); y++) {
-					for (int x = 0; x < image.getWidth(); x++) {
-						final Color color = new Color(image.getRGB(x, y), true);
-						pixels.put((y * image.getWidth() + x) * ColorComponent.values().length + ColorComponent.RED.ordinal(), (byte) (color.getRed() & 0xFF));
-						pixels.put((y * image.getWidth() + x) * ColorComponent.values().length + ColorComponent.GREEN.ordinal(), (byte) (color.getGreen() & 0xFF));
-						pixels.put((y * image.getWidth() + x) * ColorComponent.values().length + ColorComponent.BLUE.ordinal(), (byte) (color.getBlue() & 0xFF));
-						pixels.put((y * image.getWidth() + x) * ColorComponent.values().length + ColorComponent.ALPHA.ordinal(), (byte) (color.getAlpha() & 0xFF));
-					}
-				}
-				final IntBuffer textureBuffer = IntBuffer.allocate(1);
-				gl.glGenTextures(1, textureBuffer);
-				this.texture = textureBuffer.get(0);
-				gl.glBindTexture(GL.GL_TEXTURE_2D, this.texture);
-				gl.glTexStorage2D(GL.GL_TEXTURE_2D, Math.max(Integer.SIZE - Integer.numberOfLeadingZeros(image.getWidth()), Integer.SIZE - Integer.numberOfLeadingZeros(image.getHeight())), GL.GL_RGBA8, image.getWidth(), image.getHeight()); // max(log2(width), log2(height))
-				gl.glTexSubImage2D(GL.GL_TEXTURE_2D, 0, 0, 0, image.getWidth(), image.getHeight(), GL.GL_RGBA, GL.GL_UNSIGNED_BYTE, pixels);
-				gl.glGenerateMipmap(GL.GL_TEXTURE_2D);
-				// TODO set default parameters?
-				// gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_WRAP_S, GL.GL_REPEAT);
-				// gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_WRAP_T, GL.GL_REPEAT);
-				// gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_MAG_FILTER, GL.GL_LINEAR);
-				// gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_MIN_FILTER, GL.GL_LINEAR_MIPMAP_LINEAR);
-				gl.glBindTexture(GL.GL_TEXTURE_2D, 0);
-				LOGGER.info("Loaded OpenGL texture " + texture);
-			} catch (final IOException e) {
-				throw new RendererException("Error loading OpenGL texture " + texture, e);
+			Objects.requireNonNull(data, "Data must not be null");
+			final IntBuffer textureBuffer = IntBuffer.allocate(1);
+			gl.glGenTextures(1, textureBuffer);
+			this.texture = textureBuffer.get(0);
+			gl.glBindTexture(GL.GL_TEXTURE_2D, this.texture);
+			gl.glTexStorage2D(GL.GL_TEXTURE_2D, data.getLevels(), GL.GL_RGBA8, data.getWidth(), data.getHeight());
+			final IntBuffer unpackAlignmentBuffer = IntBuffer.allocate(1);
+			gl.glGetIntegerv(GL.GL_UNPACK_ALIGNMENT, unpackAlignmentBuffer);
+			gl.glPixelStorei(GL.GL_UNPACK_ALIGNMENT, 1);
+			for (int level = 0; level < data.getLevels(); level++) {
+				gl.glTexSubImage2D(GL.GL_TEXTURE_2D, level, 0, 0, data.getWidth(level), data.getHeight(level), GL.GL_RGBA, GL.GL_UNSIGNED_BYTE, data.getPixels(level)); // mipmaps are precomputed so there is no need to generate them
 			}
+			gl.glPixelStorei(GL.GL_UNPACK_ALIGNMENT, unpackAlignmentBuffer.get(0)); // unpack state is shared by all later uploads of the context
+			// TODO set default parameters?
+			// gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_WRAP_S, GL.GL_REPEAT);
+			// gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_WRAP_T, GL.GL_REPEAT);
+			// gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_MAG_FILTER, GL.GL_LINEAR);
+			// gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_MIN_FILTER, GL.GL_LINEAR_MIPMAP_LINEAR);
+			gl.glBindTexture(GL.GL_TEXTURE_2D, 0);
+			LOGGER.info("Loaded OpenGL texture of " + data.getWidth() + " x " + data.getHeight() + " pixels with " + data.getLevels() + " mipmap levels");
 		}
 
 		/**
@@ -390,10 +415,21 @@ public abstract class Renderer {
 		}
 	}
 
+	private static final int MAX_IDLE_PROGRAMS = 8;
+	private static final int TRIANGLE_VERTICES = TriangleVertex.values().length; // values() copies an array on each call
+	private static final int[] TEXTURE_UNITS = new int[32]; // texture units bound to arrays of textures, so binding them allocates nothing
+	private static final java.util.Map<GLContext, VariantCache<GL3, ProgramSource, Integer>> PROGRAMS = new HashMap<GLContext, VariantCache<GL3, ProgramSource, Integer>>();
 	private static final Logger LOGGER = Logger.getLogger(Renderer.class.getName());
 
+	private final VariantCache<GL3, ProgramSource, Integer> programs;
 	private final int program;
 
+	static {
+		for (int i = 0; i < TEXTURE_UNITS.length; i++) {
+			TEXTURE_UNITS[i] = i;
+		}
+	}
+
 	/**
 	 * Convert an array of {@link Float}s to an array of <code>float</code>s.
 	 * 
@@ -559,12 +595,38 @@ public abstract class Renderer {
 		}
 	}
 
-	private static int linkProgram(final GL3 gl, final String vertexShader, final Map<String, String> vertexShaderDefinitions, final String fragmentShader, final Map<String, String> fragmentShaderDefinitions) throws RendererException {
+	private static synchronized VariantCache<GL3, ProgramSource, Integer> getPrograms(final GLContext context) {
+		for (final Iterator<GLContext> iterator = PROGRAMS.keySet().iterator(); iterator.hasNext();) {
+			if (!iterator.next().isCreated()) { // programs of destroyed contexts have been deleted along with them
+				iterator.remove();
+			}
+		}
+		VariantCache<GL3, ProgramSource, Integer> programs = PROGRAMS.get(context);
+		if (programs == null) {
+			programs = new VariantCache<GL3, ProgramSource, Integer>(MAX_IDLE_PROGRAMS) {
+				@Override
+				protected Integer compile(final GL3 gl, final String name, final ProgramSource source) throws RendererException {
+					return linkProgram(gl, source);
+				}
+
+				@Override
+				protected void destroy(final GL3 gl, final Integer program) {
+					gl.glDeleteProgram(program);
+				}
+			};
+			PROGRAMS.put(context, programs);
+		}
+		return programs;
+	}
+
+	private static int linkProgram(final GL3 gl, final ProgramSource source) throws RendererException {
+		final String vertexShader = source.vertexShader;
+		final String fragmentShader = source.fragmentShader;
 		glslVersion(gl);
 		final int program = gl.glCreateProgram();
 		try {
-			try (final VertexShader vert = new VertexShader(gl, vertexShader, vertexShaderDefinitions)) {
-				try (final FragmentShader frag = new FragmentShader(gl, fragmentShader, fragmentShaderDefinitions)) {
+			try (final VertexShader vert = new VertexShader(gl, vertexShader, source.vertexShaderSource)) {
+				try (final FragmentShader frag = new FragmentShader(gl, fragmentShader, source.fragmentShaderSource)) {
 					gl.glAttachShader(program, vert.shader);
 					gl.glAttachShader(program, frag.shader);
 					try {
@@ -624,7 +686,8 @@ public abstract class Renderer {
 			throw new IllegalArgumentException("Fragment shader must not be null");
 		}
 		Objects.requireNonNull(fragmentShaderDefinitions, "Fragment shader definitions must not be null");
-		program = linkProgram(gl, vertexShader, vertexShaderDefinitions, fragmentShader, fragmentShaderDefinitions);
+		programs = getPrograms(gl.getContext());
+		program = programs.acquire(gl, "GLSL program with vertex shader " + vertexShader + " and fragment shader " + fragmentShader, new ProgramSource(vertexShader, vertexShaderDefinitions, fragmentShader, fragmentShaderDefinitions));
 	}
 
 	/**
@@ -634,7 +697,8 @@ public abstract class Renderer {
 	 *            the OpenGL context to use
 	 */
 	protected void dispose(final GL3 gl) {
-		gl.glDeleteProgram(program);
+		Objects.requireNonNull(gl, "OpenGL must not be null");
+		programs.release(gl, program); // deleted once too many idle variants are kept
 	}
 
 	/**
@@ -647,8 +711,42 @@ public abstract class Renderer {
 	 * @param matrix
 	 *            the matrix to bind
 	 */
-	protected void bind(final GL3 gl, final String name, final Matrix matrix) {
-		gl.glUniformMatrix4fv(gl.glGetUniformLocation(program, name), 1, true, matrix.getBuffer());
+	protected void bind(final GL3 gl, final String name, final Matrix4f matrix) {
+		gl.glUniformMatrix4fv(gl.glGetUniformLocation(program, name), 1, true, matrix.getElements(), 0); // row major
+	}
+
+	/**
+	 * Bind a two component vector to a GLSL uniform.
+	 * 
+	 * @param gl
+	 *            the OpenGL context to use
+	 * @param name
+	 *            the name of the GLSL uniform to bind the vector to
+	 * @param x
+	 *            the first component of the vector
+	 * @param y
+	 *            the second component of the vector
+	 */
+	protected void bind(final GL3 gl, final String name, final float x, final float y) {
+		gl.glUniform2f(gl.glGetUniformLocation(program, name), x, y);
+	}
+
+	/**
+	 * Bind an OpenGL texture (e.g. one rendered to) to a GLSL uniform. The texture is left bound to the texture unit, so that it is sampled by the draws that follow.
+	 * 
+	 * @param gl
+	 *            the OpenGL context to use
+	 * @param name
+	 *            the name of the GLSL uniform to bind the texture to
+	 * @param unit
+	 *            the texture unit to bind the texture to
+	 * @param texture
+	 *            the OpenGL identifier of the texture to bind
+	 */
+	protected void bind(final GL3 gl, final String name, final int unit, final int texture) {
+		gl.glActiveTexture(GL.GL_TEXTURE0 + unit);
+		gl.glBindTexture(GL.GL_TEXTURE_2D, texture);
+		gl.glUniform1i(gl.glGetUniformLocation(program, name), unit);
 	}
 
 	/**
@@ -662,13 +760,14 @@ public abstract class Renderer {
 	 *            the array of textures to bind
 	 */
 	protected void bind(final GL3 gl, final String name, final Texture[] textures) {
-		final IntBuffer textureBuffer = IntBuffer.allocate(textures.length);
+		if (textures.length > TEXTURE_UNITS.length) {
+			throw new IllegalArgumentException("Textures must not be more than " + TEXTURE_UNITS.length);
+		}
 		for (int i = 0; i < textures.length; i++) {
 			gl.glActiveTexture(GL.GL_TEXTURE0 + i);
 			gl.glBindTexture(GL.GL_TEXTURE_2D, textures[i].texture);
-			textureBuffer.put(i, i);
 		}
-		gl.glUniform1iv(gl.glGetUniformLocation(program, name), textures.length, textureBuffer);
+		gl.glUniform1iv(gl.glGetUniformLocation(program, name), textures.length, TEXTURE_UNITS, 0);
 		gl.glBindTexture(GL.GL_TEXTURE_2D, 0);
 	}
 
@@ -0,0 +1,256 @@
+package gr.uoa.di.thanos.botcraft.renderers;
+
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.jogamp.opengl.GL3;
+import com.jogamp.opengl.GLAutoDrawable;
+import com.jogamp.opengl.GLCapabilities;
+import com.jogamp.opengl.GLContext;
+import com.jogamp.opengl.GLDrawable;
+import com.jogamp.opengl.GLDrawableFactory;
+import com.jogamp.opengl.GLException;
+
+/**
+ * Loader creating OpenGL resources asynchronously on a background thread with an OpenGL context shared with the render context. Resources are decoded on a pool of worker threads, uploaded on the loader thread and become visible to the render thread once a fence inserted after their upload has been signalled. Until then, a placeholder resource is used.
+ *
+ * @author thanos
+ */
+public class ResourceLoader implements AutoCloseable {
+	/**
+	 * An upload of a resource to OpenGL, executed on the loader thread with the shared OpenGL context current.
+	 *
+	 * @author thanos
+	 * @param <T>
+	 *            the type of the resource to upload
+	 */
+	public interface Upload<T> {
+		/**
+		 * Upload the resource.
+		 *
+		 * @param gl
+		 *            the shared OpenGL context to use
+		 * @return the resource uploaded
+		 * @throws RendererException
+		 *             if any errors occur
+		 */
+		T upload(GL3 gl) throws RendererException;
+	}
+
+	/**
+	 * An OpenGL resource that may still be loading.
+	 *
+	 * @author thanos
+	 * @param <T>
+	 *            the type of the resource
+	 */
+	public static class Resource<T> {
+		private final T placeholder;
+		private volatile T resource;
+		private volatile long fence;
+		private volatile boolean ready;
+
+		/**
+		 * Construct a new resource that is already loaded.
+		 *
+		 * @param resource
+		 *            the resource loaded
+		 */
+		public Resource(final T resource) {
+			Objects.requireNonNull(resource, "Resource must not be null");
+			this.placeholder = resource;
+			this.resource = resource;
+			fence = 0L;
+			ready = true;
+		}
+
+		private Resource(final T placeholder, final boolean ready) {
+			this.placeholder = placeholder;
+			resource = null;
+			fence = 0L;
+			this.ready = ready;
+		}
+
+		/**
+		 * Get this resource if it has been loaded or its placeholder otherwise. Must be called on the render thread.
+		 *
+		 * @param gl
+		 *            the render OpenGL context to use
+		 * @return this resource if its upload has completed, its placeholder otherwise
+		 */
+		public T get(final GL3 gl) {
+			if (ready) {
+				return resource;
+			}
+			final long fence = this.fence; // resource is published before fence
+			if (fence != 0L) {
+				final int status = gl.glClientWaitSync(fence, 0, 0L); // poll without waiting
+				if ((status == GL3.GL_ALREADY_SIGNALED) || (status == GL3.GL_CONDITION_SATISFIED)) {
+					gl.glDeleteSync(fence);
+					this.fence = 0L;
+					ready = true;
+					return resource;
+				}
+			}
+			return placeholder;
+		}
+
+		/**
+		 * Check whether this resource has been loaded, as last observed by {@link #get(GL3)}.
+		 *
+		 * @return <code>true</code> if this resource has been loaded, <code>false</code> otherwise
+		 */
+		public boolean isReady() {
+			return ready;
+		}
+
+		/**
+		 * Get this resource regardless of whether its upload has been signalled. Intended for disposal after the loader has been closed.
+		 *
+		 * @return this resource or <code>null</code> if it has not been uploaded
+		 */
+		public T peek() {
+			return resource;
+		}
+
+		private void publish(final T resource, final long fence) {
+			this.resource = resource;
+			this.fence = fence;
+		}
+	}
+
+	private static final long TERMINATION_TIMEOUT = 10L;
+	private static final Logger LOGGER = Logger.getLogger(ResourceLoader.class.getName());
+
+	private final GLDrawable drawable;
+	private final GLContext context;
+	private final ExecutorService decoder;
+	private final ExecutorService loader;
+
+	/**
+	 * Construct a new resource loader.
+	 *
+	 * @param drawable
+	 *            the render drawable whose OpenGL context to share (must be realized)
+	 * @throws RendererException
+	 *             if any errors occur
+	 */
+	public ResourceLoader(final GLAutoDrawable drawable) throws RendererException {
+		Objects.requireNonNull(drawable, "Drawable must not be null");
+		final GLCapabilities capabilities = new GLCapabilities(drawable.getGLProfile());
+		capabilities.setOnscreen(false);
+		try {
+			this.drawable = GLDrawableFactory.getFactory(drawable.getGLProfile()).createOffscreenDrawable(null, capabilities, null, 1, 1);
+			this.drawable.setRealized(true);
+			context = this.drawable.createContext(drawable.getContext());
+		} catch (final GLException e) {
+			throw new RendererException("Error creating shared OpenGL context", e);
+		}
+		decoder = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		loader = Executors.newSingleThreadExecutor();
+		loader.submit(new Runnable() {
+			@Override
+			public void run() {
+				if (context.makeCurrent() == GLContext.CONTEXT_NOT_CURRENT) {
+					LOGGER.warning("Error making shared OpenGL context current on loader thread");
+				}
+			}
+		});
+		LOGGER.info("Initialized resource loader with shared OpenGL context");
+	}
+
+	@Override
+	public void close() {
+		for (final Runnable decoding : decoder.shutdownNow()) { // pending uploads waiting for these will fail and keep their placeholders
+			((Future<?>) decoding).cancel(false);
+		}
+		loader.submit(new Runnable() {
+			@Override
+			public void run() { // destroying a context makes it current first, which must not happen on the render thread
+				try {
+					context.destroy();
+				} catch (final GLException e) {
+					LOGGER.log(Level.WARNING, "Error destroying shared OpenGL context", e);
+				}
+			}
+		});
+		loader.shutdown();
+		try {
+			if (!loader.awaitTermination(TERMINATION_TIMEOUT, TimeUnit.SECONDS)) {
+				LOGGER.warning("Timed out waiting for resource loader to terminate, leaking shared OpenGL context");
+				return; // the loader thread may still use the shared context and its drawable
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			LOGGER.warning("Interrupted waiting for resource loader to terminate, leaking shared OpenGL context");
+			return;
+		}
+		drawable.setRealized(false);
+	}
+
+	/**
+	 * Load a resource asynchronously.
+	 *
+	 * @param <T>
+	 *            the type of the resource to load
+	 * @param upload
+	 *            the upload creating the resource
+	 * @param placeholder
+	 *            the placeholder to use until the resource has been loaded
+	 * @return the resource, which is ready once its upload has completed on the GPU
+	 */
+	public <T> Resource<T> load(final Upload<T> upload, final T placeholder) {
+		Objects.requireNonNull(upload, "Upload must not be null");
+		Objects.requireNonNull(placeholder, "Placeholder must not be null");
+		final Resource<T> resource = new Resource<T>(placeholder, false);
+		loader.submit(new Runnable() {
+			@Override
+			public void run() {
+				final GL3 gl = context.getGL().getGL3();
+				try {
+					final T result = upload.upload(gl);
+					final long fence = gl.glFenceSync(GL3.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+					gl.glFlush(); // make sure the fence reaches the GPU so that the render thread can observe it
+					resource.publish(result, fence);
+				} catch (final RendererException | RuntimeException e) {
+					LOGGER.log(Level.WARNING, "Error loading resource, keeping placeholder", e);
+				}
+			}
+		});
+		return resource;
+	}
+
+	/**
+	 * Load a texture asynchronously. The texture image is decoded on a worker thread and uploaded on the loader thread.
+	 *
+	 * @param renderer
+	 *            the renderer owning the texture
+	 * @param texture
+	 *            the image resource to use as texture
+	 * @param placeholder
+	 *            the placeholder texture to use until the texture has been loaded
+	 * @return the texture, which is ready once its upload has completed on the GPU
+	 */
+	Resource<Renderer.Texture> loadTexture(final Renderer renderer, final String texture, final Renderer.Texture placeholder) {
+		Objects.requireNonNull(renderer, "Renderer must not be null");
+		Objects.requireNonNull(texture, "Texture must not be null");
+		final Future<TextureData> data = decoder.submit(new Callable<TextureData>() {
+			@Override
+			public TextureData call() throws RendererException {
+				return TextureData.load(texture);
+			}
+		});
+		return load(new Upload<Renderer.Texture>() {
+			@Override
+			public Renderer.Texture upload(final GL3 gl) throws RendererException {
+				return renderer.new Texture(gl, TextureData.get(data, texture));
+			}
+		}, placeholder);
+	}
+}
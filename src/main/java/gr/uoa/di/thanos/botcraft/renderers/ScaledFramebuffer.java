@@ -0,0 +1,171 @@
+package gr.uoa.di.thanos.botcraft.renderers;
+
+import java.nio.IntBuffer;
+import java.util.Objects;
+import java.util.logging.Logger;
+
+import com.jogamp.opengl.GL3;
+
+/**
+ * An offscreen framebuffer, optionally multisampled, rendered into at a size independent of the window and then upscaled to it. Storage is reallocated only when the size or the number of samples changes, so the size can follow the load of the GPU from frame to frame.
+ *
+ * @author thanos
+ */
+public class ScaledFramebuffer {
+	private static final Logger LOGGER = Logger.getLogger(ScaledFramebuffer.class.getName());
+
+	private final int framebuffer;
+	private final int colorRenderbuffer;
+	private final int depthRenderbuffer;
+	private final int resolveFramebuffer;
+	private final int resolveColorRenderbuffer;
+	private final int maxSamples;
+	private int width;
+	private int height;
+	private int samples;
+
+	/**
+	 * Construct a new scaled framebuffer. The framebuffer has no storage until resized.
+	 *
+	 * @param gl
+	 *            the OpenGL context to use
+	 */
+	public ScaledFramebuffer(final GL3 gl) {
+		Objects.requireNonNull(gl, "OpenGL must not be null");
+		final IntBuffer framebuffers = IntBuffer.allocate(2);
+		gl.glGenFramebuffers(2, framebuffers);
+		framebuffer = framebuffers.get(0);
+		resolveFramebuffer = framebuffers.get(1);
+		final IntBuffer renderbuffers = IntBuffer.allocate(3);
+		gl.glGenRenderbuffers(3, renderbuffers);
+		colorRenderbuffer = renderbuffers.get(0);
+		depthRenderbuffer = renderbuffers.get(1);
+		resolveColorRenderbuffer = renderbuffers.get(2);
+		final IntBuffer maxSamples = IntBuffer.allocate(1);
+		gl.glGetIntegerv(GL3.GL_MAX_SAMPLES, maxSamples);
+		this.maxSamples = maxSamples.get(0);
+		width = 0;
+		height = 0;
+		samples = 0;
+	}
+
+	/**
+	 * Dispose this framebuffer.
+	 *
+	 * @param gl
+	 *            the OpenGL context to use
+	 */
+	public void dispose(final GL3 gl) {
+		Objects.requireNonNull(gl, "OpenGL must not be null");
+		gl.glDeleteFramebuffers(2, IntBuffer.wrap(new int[] {framebuffer, resolveFramebuffer}));
+		gl.glDeleteRenderbuffers(3, IntBuffer.wrap(new int[] {colorRenderbuffer, depthRenderbuffer, resolveColorRenderbuffer}));
+	}
+
+	/**
+	 * Get the maximum number of samples supported.
+	 *
+	 * @return the maximum number of samples supported
+	 */
+	public int getMaxSamples() {
+		return maxSamples;
+	}
+
+	/**
+	 * Resize this framebuffer. Nothing is reallocated if neither the size nor the number of samples changes.
+	 *
+	 * @param gl
+	 *            the OpenGL context to use
+	 * @param width
+	 *            the width to render at in pixels
+	 * @param height
+	 *            the height to render at in pixels
+	 * @param samples
+	 *            the number of samples per pixel (<code>0</code> for no multisampling, at most {@link #getMaxSamples()})
+	 * @throws RendererException
+	 *             if the framebuffer is not supported with this size and number of samples
+	 */
+	public void resize(final GL3 gl, final int width, final int height, final int samples) throws RendererException {
+		Objects.requireNonNull(gl, "OpenGL must not be null");
+		if (width <= 0) {
+			throw new IllegalArgumentException("Width must be positive");
+		}
+		if (height <= 0) {
+			throw new IllegalArgumentException("Height must be positive");
+		}
+		if ((samples < 0) || (samples > maxSamples)) {
+			throw new IllegalArgumentException("Samples must be non negative and at most " + maxSamples);
+		}
+		if ((width == this.width) && (height == this.height) && (samples == this.samples)) {
+			return;
+		}
+		gl.glBindRenderbuffer(GL3.GL_RENDERBUFFER, colorRenderbuffer);
+		gl.glRenderbufferStorageMultisample(GL3.GL_RENDERBUFFER, samples, GL3.GL_RGBA8, width, height);
+		gl.glBindRenderbuffer(GL3.GL_RENDERBUFFER, depthRenderbuffer);
+		gl.glRenderbufferStorageMultisample(GL3.GL_RENDERBUFFER, samples, GL3.GL_DEPTH_COMPONENT24, width, height);
+		gl.glBindFramebuffer(GL3.GL_FRAMEBUFFER, framebuffer);
+		gl.glFramebufferRenderbuffer(GL3.GL_FRAMEBUFFER, GL3.GL_COLOR_ATTACHMENT0, GL3.GL_RENDERBUFFER, colorRenderbuffer);
+		gl.glFramebufferRenderbuffer(GL3.GL_FRAMEBUFFER, GL3.GL_DEPTH_ATTACHMENT, GL3.GL_RENDERBUFFER, depthRenderbuffer);
+		check(gl);
+		if (samples > 0) { // multisampled renderbuffers cannot be scaled while blitting, so they are resolved at the same size first
+			gl.glBindRenderbuffer(GL3.GL_RENDERBUFFER, resolveColorRenderbuffer);
+			gl.glRenderbufferStorage(GL3.GL_RENDERBUFFER, GL3.GL_RGBA8, width, height);
+			gl.glBindFramebuffer(GL3.GL_FRAMEBUFFER, resolveFramebuffer);
+			gl.glFramebufferRenderbuffer(GL3.GL_FRAMEBUFFER, GL3.GL_COLOR_ATTACHMENT0, GL3.GL_RENDERBUFFER, resolveColorRenderbuffer);
+			check(gl);
+		}
+		gl.glBindRenderbuffer(GL3.GL_RENDERBUFFER, 0);
+		gl.glBindFramebuffer(GL3.GL_FRAMEBUFFER, 0);
+		this.width = width;
+		this.height = height;
+		this.samples = samples;
+		LOGGER.fine("Resized scaled framebuffer to " + width + "x" + height + " with " + samples + " samples");
+	}
+
+	/**
+	 * Bind this framebuffer for rendering, setting the viewport to its size.
+	 *
+	 * @param gl
+	 *            the OpenGL context to use
+	 */
+	public void bind(final GL3 gl) {
+		Objects.requireNonNull(gl, "OpenGL must not be null");
+		gl.glBindFramebuffer(GL3.GL_FRAMEBUFFER, framebuffer);
+		gl.glViewport(0, 0, width, height);
+	}
+
+	/**
+	 * Upscale the contents of this framebuffer to another framebuffer and bind the other framebuffer, setting the viewport to its size.
+	 *
+	 * @param gl
+	 *            the OpenGL context to use
+	 * @param target
+	 *            the OpenGL identifier of the framebuffer to upscale to (<code>0</code> for the default framebuffer)
+	 * @param width
+	 *            the width of the other framebuffer in pixels
+	 * @param height
+	 *            the height of the other framebuffer in pixels
+	 */
+	public void blit(final GL3 gl, final int target, final int width, final int height) {
+		Objects.requireNonNull(gl, "OpenGL must not be null");
+		int source = framebuffer;
+		if (samples > 0) {
+			gl.glBindFramebuffer(GL3.GL_READ_FRAMEBUFFER, framebuffer);
+			gl.glBindFramebuffer(GL3.GL_DRAW_FRAMEBUFFER, resolveFramebuffer);
+			gl.glBlitFramebuffer(0, 0, this.width, this.height, 0, 0, this.width, this.height, GL3.GL_COLOR_BUFFER_BIT, GL3.GL_NEAREST);
+			source = resolveFramebuffer;
+		}
+		gl.glBindFramebuffer(GL3.GL_READ_FRAMEBUFFER, source);
+		gl.glBindFramebuffer(GL3.GL_DRAW_FRAMEBUFFER, target);
+		gl.glBlitFramebuffer(0, 0, this.width, this.height, 0, 0, width, height, GL3.GL_COLOR_BUFFER_BIT, GL3.GL_LINEAR);
+		gl.glBindFramebuffer(GL3.GL_FRAMEBUFFER, target);
+		gl.glViewport(0, 0, width, height);
+	}
+
+	private void check(final GL3 gl) throws RendererException {
+		final int status = gl.glCheckFramebufferStatus(GL3.GL_FRAMEBUFFER);
+		if (status != GL3.GL_FRAMEBUFFER_COMPLETE) {
+			gl.glBindFramebuffer(GL3.GL_FRAMEBUFFER, 0);
+			throw new RendererException("Incomplete framebuffer (status 0x" + Integer.toHexString(status) + ")");
+		}
+	}
+}
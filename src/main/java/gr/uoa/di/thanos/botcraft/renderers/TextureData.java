@@ -0,0 +1,404 @@
+package gr.uoa.di.thanos.botcraft.renderers;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import javax.imageio.ImageIO;
+
+import com.jogamp.common.nio.Buffers;
+
+/**
+ * Decoded RGBA8 texture image together with all of its mipmap levels. Decoding reads image rasters in bulk and the result is cached on disk, so that later loads of the same image skip image decoding entirely.
+ *
+ * @author thanos
+ */
+public class TextureData {
+	private static final String CACHE = System.getProperty("user.home") + File.separator + ".botcraft" + File.separator + "textures";
+	private static final String CACHE_FILE = "%1$016x.rgba";
+	private static final int MAGIC = 0x52474241; // RGBA
+	private static final int HEADER_SIZE = 4 * Integer.SIZE / Byte.SIZE; // magic, width, height and levels
+	private static final int BUFFER_SIZE = 4096;
+	private static final Logger LOGGER = Logger.getLogger(TextureData.class.getName());
+	private static final ExecutorService DECODER = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() { // shared by all loads, threads are only started on demand
+		@Override
+		public Thread newThread(final Runnable runnable) {
+			final Thread thread = new Thread(runnable, "Texture decoder");
+			thread.setDaemon(true); // must not keep the application running
+			return thread;
+		}
+	});
+
+	private final int width;
+	private final int height;
+	private final ByteBuffer[] levels;
+
+	/**
+	 * Load a texture image resource, using the disk cache if possible.
+	 *
+	 * @param texture
+	 *            the image resource to load
+	 * @return the texture data loaded
+	 * @throws RendererException
+	 *             if any errors occur
+	 */
+	public static TextureData load(final String texture) throws RendererException {
+		Objects.requireNonNull(texture, "Texture must not be null");
+		if (texture.isEmpty()) {
+			throw new IllegalArgumentException("Texture must not be empty");
+		}
+		try (final InputStream inputStream = TextureData.class.getResourceAsStream(texture)) {
+			if (inputStream == null) {
+				throw new RendererException("Error loading texture " + texture, "Resource not found");
+			}
+			final byte[] encoded = readFully(inputStream);
+			final CRC32 crc = new CRC32();
+			crc.update(encoded);
+			final File cache = new File(CACHE, String.format(CACHE_FILE, (((long) encoded.length) << Integer.SIZE) | crc.getValue()));
+			if (cache.isFile()) {
+				try {
+					final TextureData data = read(cache);
+					LOGGER.info("Loaded texture " + texture + " from cache " + cache);
+					return data;
+				} catch (final IOException e) {
+					LOGGER.log(Level.WARNING, "Error reading texture cache " + cache + ", decoding texture " + texture, e);
+				}
+			}
+			final BufferedImage image = ImageIO.read(new ByteArrayInputStream(encoded));
+			if (image == null) {
+				throw new RendererException("Error loading texture " + texture, "Unsupported image format");
+			}
+			final TextureData data = new TextureData(image.getWidth(), image.getHeight(), decode(image));
+			try {
+				data.write(cache);
+			} catch (final IOException e) {
+				LOGGER.log(Level.WARNING, "Error writing texture cache " + cache, e);
+			}
+			LOGGER.info("Decoded texture " + texture);
+			return data;
+		} catch (final IOException e) {
+			throw new RendererException("Error loading texture " + texture, e);
+		}
+	}
+
+	/**
+	 * Create a texture of a single color, suitable as a placeholder.
+	 *
+	 * @param color
+	 *            the color of the texture
+	 * @return a texture of 1 x 1 pixels of the given color
+	 */
+	public static TextureData solid(final Color color) {
+		Objects.requireNonNull(color, "Color must not be null");
+		final byte[] pixels = new byte[ColorComponent.values().length];
+		pixels[ColorComponent.RED.ordinal()] = (byte) color.getRed();
+		pixels[ColorComponent.GREEN.ordinal()] = (byte) color.getGreen();
+		pixels[ColorComponent.BLUE.ordinal()] = (byte) color.getBlue();
+		pixels[ColorComponent.ALPHA.ordinal()] = (byte) color.getAlpha();
+		return new TextureData(1, 1, pixels);
+	}
+
+	/**
+	 * Load several texture image resources in parallel, on a pool of decoder threads shared by all loads.
+	 *
+	 * @param textures
+	 *            the image resources to load
+	 * @return the texture data loaded (in the same order as the given image resources)
+	 * @throws RendererException
+	 *             if any errors occur
+	 */
+	public static TextureData[] load(final String... textures) throws RendererException {
+		Objects.requireNonNull(textures, "Textures must not be null");
+		final List<Future<TextureData>> futures = new ArrayList<Future<TextureData>>();
+		for (final String texture : textures) {
+			futures.add(DECODER.submit(new Callable<TextureData>() {
+				@Override
+				public TextureData call() throws RendererException {
+					return load(texture);
+				}
+			}));
+		}
+		final TextureData[] data = new TextureData[textures.length];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = get(futures.get(i), textures[i]);
+		}
+		return data;
+	}
+
+	static TextureData get(final Future<TextureData> future, final String texture) throws RendererException {
+		try {
+			return future.get();
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof RendererException) {
+				throw (RendererException) e.getCause();
+			}
+			throw new RendererException("Error loading texture " + texture, e.getCause());
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RendererException("Interrupted while loading texture " + texture, e);
+		}
+	}
+
+	private static byte[] readFully(final InputStream inputStream) throws IOException {
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[BUFFER_SIZE];
+		int read = 0;
+		while ((read = inputStream.read(buffer)) != -1) {
+			outputStream.write(buffer, 0, read);
+		}
+		return outputStream.toByteArray();
+	}
+
+	private static byte[] decode(final BufferedImage image) {
+		final int pixels = image.getWidth() * image.getHeight();
+		final int components = ColorComponent.values().length;
+		final byte[] rgba = new byte[pixels * components];
+		final boolean packed = (image.getRaster().getParent() == null) && (image.getRaster().getDataBuffer().getNumBanks() == 1) && (image.getRaster().getSampleModelTranslateX() == 0) && (image.getRaster().getSampleModelTranslateY() == 0);
+		switch (packed ? image.getType() : BufferedImage.TYPE_CUSTOM) {
+		case BufferedImage.TYPE_4BYTE_ABGR:
+			final byte[] abgr = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+			for (int i = 0; i < pixels; i++) {
+				rgba[i * components + ColorComponent.RED.ordinal()] = abgr[i * 4 + 3];
+				rgba[i * components + ColorComponent.GREEN.ordinal()] = abgr[i * 4 + 2];
+				rgba[i * components + ColorComponent.BLUE.ordinal()] = abgr[i * 4 + 1];
+				rgba[i * components + ColorComponent.ALPHA.ordinal()] = abgr[i * 4];
+			}
+			return rgba;
+		case BufferedImage.TYPE_3BYTE_BGR:
+			final byte[] bgr = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+			for (int i = 0; i < pixels; i++) {
+				rgba[i * components + ColorComponent.RED.ordinal()] = bgr[i * 3 + 2];
+				rgba[i * components + ColorComponent.GREEN.ordinal()] = bgr[i * 3 + 1];
+				rgba[i * components + ColorComponent.BLUE.ordinal()] = bgr[i * 3];
+				rgba[i * components + ColorComponent.ALPHA.ordinal()] = (byte) 0xFF;
+			}
+			return rgba;
+		case BufferedImage.TYPE_INT_ARGB:
+		case BufferedImage.TYPE_INT_RGB:
+			final boolean alpha = image.getType() == BufferedImage.TYPE_INT_ARGB;
+			final int[] argb = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+			for (int i = 0; i < pixels; i++) {
+				rgba[i * components + ColorComponent.RED.ordinal()] = (byte) (argb[i] >>> 16);
+				rgba[i * components + ColorComponent.GREEN.ordinal()] = (byte) (argb[i] >>> 8);
+				rgba[i * components + ColorComponent.BLUE.ordinal()] = (byte) argb[i];
+				rgba[i * components + ColorComponent.ALPHA.ordinal()] = alpha ? (byte) (argb[i] >>> 24) : (byte) 0xFF;
+			}
+			return rgba;
+		default: // convert any other layout (indexed, grayscale, custom) to ABGR in a single bulk draw
+			final BufferedImage converted = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_4BYTE_ABGR);
+			final Graphics2D graphics = converted.createGraphics();
+			try {
+				graphics.drawImage(image, 0, 0, null);
+			} finally {
+				graphics.dispose();
+			}
+			return decode(converted);
+		}
+	}
+
+	private static int levels(final int width, final int height) {
+		return Math.max(Integer.SIZE - Integer.numberOfLeadingZeros(width), Integer.SIZE - Integer.numberOfLeadingZeros(height)); // max(log2(width), log2(height))
+	}
+
+	private static TextureData read(final File file) throws IOException {
+		try (final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r"); final FileChannel channel = randomAccessFile.getChannel()) {
+			final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			readFully(channel, header);
+			header.flip();
+			if (header.getInt() != MAGIC) {
+				throw new IOException("Invalid texture cache " + file);
+			}
+			final int width = header.getInt();
+			final int height = header.getInt();
+			final int levelCount = header.getInt();
+			if ((width <= 0) || (height <= 0) || (levelCount != levels(width, height))) {
+				throw new IOException("Invalid texture cache " + file);
+			}
+			final ByteBuffer[] levels = new ByteBuffer[levelCount];
+			for (int level = 0; level < levelCount; level++) {
+				levels[level] = Buffers.newDirectByteBuffer(levelWidth(width, level) * levelHeight(height, level) * ColorComponent.values().length);
+				readFully(channel, levels[level]);
+				levels[level].flip();
+			}
+			return new TextureData(width, height, levels);
+		}
+	}
+
+	private static void readFully(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) == -1) {
+				throw new IOException("Unexpected end of texture cache");
+			}
+		}
+	}
+
+	private static int levelWidth(final int width, final int level) {
+		return Math.max(1, width >> level);
+	}
+
+	private static int levelHeight(final int height, final int level) {
+		return Math.max(1, height >> level);
+	}
+
+	private static byte[] downsample(final byte[] pixels, final int width, final int height) {
+		final int components = ColorComponent.values().length;
+		final int halfWidth = Math.max(1, width / 2);
+		final int halfHeight = Math.max(1, height / 2);
+		final byte[] result = new byte[halfWidth * halfHeight * components];
+		for (int y = 0; y < halfHeight; y++) {
+			final int y0 = Math.min(2 * y, height - 1);
+			final int y1 = Math.min(2 * y + 1, height - 1);
+			for (int x = 0; x < halfWidth; x++) {
+				final int x0 = Math.min(2 * x, width - 1);
+				final int x1 = Math.min(2 * x + 1, width - 1);
+				for (int c = 0; c < components; c++) {
+					final int sum = (pixels[(y0 * width + x0) * components + c] & 0xFF) + (pixels[(y0 * width + x1) * components + c] & 0xFF) + (pixels[(y1 * width + x0) * components + c] & 0xFF) + (pixels[(y1 * width + x1) * components + c] & 0xFF);
+					result[(y * halfWidth + x) * components + c] = (byte) ((sum + 2) / 4);
+				}
+			}
+		}
+		return result;
+	}
+
+	private TextureData(final int width, final int height, final byte[] pixels) {
+		this.width = width;
+		this.height = height;
+		levels = new ByteBuffer[levels(width, height)];
+		byte[] level = pixels;
+		for (int i = 0; i < levels.length; i++) {
+			levels[i] = Buffers.newDirectByteBuffer(level);
+			if (i + 1 < levels.length) {
+				level = downsample(level, levelWidth(width, i), levelHeight(height, i));
+			}
+		}
+	}
+
+	private TextureData(final int width, final int height, final ByteBuffer[] levels) {
+		this.width = width;
+		this.height = height;
+		this.levels = levels;
+	}
+
+	/**
+	 * Get the width of this texture.
+	 *
+	 * @return the width of the base level of this texture in pixels
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Get the height of this texture.
+	 *
+	 * @return the height of the base level of this texture in pixels
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Get the number of mipmap levels of this texture.
+	 *
+	 * @return the number of mipmap levels of this texture (including the base level)
+	 */
+	public int getLevels() {
+		return levels.length;
+	}
+
+	/**
+	 * Get the width of a mipmap level of this texture.
+	 *
+	 * @param level
+	 *            the mipmap level
+	 * @return the width of the given mipmap level in pixels
+	 */
+	public int getWidth(final int level) {
+		return levelWidth(width, level);
+	}
+
+	/**
+	 * Get the height of a mipmap level of this texture.
+	 *
+	 * @param level
+	 *            the mipmap level
+	 * @return the height of the given mipmap level in pixels
+	 */
+	public int getHeight(final int level) {
+		return levelHeight(height, level);
+	}
+
+	/**
+	 * Get the RGBA8 pixels of a mipmap level of this texture.
+	 *
+	 * @param level
+	 *            the mipmap level
+	 * @return a direct buffer containing the pixels of the given mipmap level (shares its content with this texture and must not be modified)
+	 */
+	public ByteBuffer getPixels(final int level) {
+		if ((level < 0) || (level >= levels.length)) {
+			throw new IllegalArgumentException("Level must be between 0 and " + (levels.length - 1));
+		}
+		return levels[level].duplicate();
+	}
+
+	/**
+	 * Calculate the total size of all mipmap levels of this texture.
+	 *
+	 * @return the total size of all mipmap levels of this texture in bytes
+	 */
+	public long getSize() {
+		long size = 0L;
+		for (final ByteBuffer level : levels) {
+			size += level.capacity();
+		}
+		return size;
+	}
+
+	private void write(final File file) throws IOException {
+		final File directory = file.getParentFile();
+		if ((!directory.isDirectory()) && (!directory.mkdirs())) {
+			throw new IOException("Error creating texture cache directory " + directory);
+		}
+		final File temporary = File.createTempFile(file.getName(), null, directory);
+		try (final RandomAccessFile randomAccessFile = new RandomAccessFile(temporary, "rw"); final FileChannel channel = randomAccessFile.getChannel()) {
+			final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putInt(width).putInt(height).putInt(levels.length);
+			header.flip();
+			while (header.hasRemaining()) {
+				channel.write(header);
+			}
+			for (final ByteBuffer level : levels) {
+				final ByteBuffer pixels = level.duplicate();
+				while (pixels.hasRemaining()) {
+					channel.write(pixels);
+				}
+			}
+		}
+		if ((!temporary.renameTo(file)) && (!temporary.delete())) { // another thread or process may have written the same cache file concurrently
+			temporary.deleteOnExit();
+		}
+	}
+}
@@ -0,0 +1,154 @@
+package gr.uoa.di.thanos.botcraft.renderers;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.logging.Logger;
+
+/**
+ * A cache of compiled variants of programs, by source code. Since the definitions of a variant (using <code>#define</code>) are part of its source code, each distinct definition set is compiled once. Variants are reference counted: each user acquires a variant once and releases it once. Variants no longer in use are kept, least recently used first, up to a maximum number, so that switching between a few variants (e.g. loading maps of a few sizes) does not compile them again.
+ *
+ * @author thanos
+ * @param <C>
+ *            the type of the context variants are compiled in
+ * @param <K>
+ *            the type of the source code of the variants
+ * @param <V>
+ *            the type of the variants compiled
+ */
+public abstract class VariantCache<C, K, V> {
+	private static class Variant<V> {
+		private final V variant;
+		private int references;
+
+		private Variant(final V variant) {
+			this.variant = variant;
+			references = 0;
+		}
+	}
+
+	private static final Logger LOGGER = Logger.getLogger(VariantCache.class.getName());
+
+	private final int maxIdleVariants;
+	private final Map<K, Variant<V>> variants;
+
+	/**
+	 * Construct a new variant cache.
+	 *
+	 * @param maxIdleVariants
+	 *            the maximum number of variants to keep while not in use
+	 */
+	protected VariantCache(final int maxIdleVariants) {
+		if (maxIdleVariants < 0) {
+			throw new IllegalArgumentException("Max idle variants must not be negative");
+		}
+		this.maxIdleVariants = maxIdleVariants;
+		variants = new LinkedHashMap<K, Variant<V>>(16, 0.75f, true); // least recently used first
+	}
+
+	/**
+	 * Acquire a variant, compiling it if needed.
+	 *
+	 * @param context
+	 *            the context to compile the variant in
+	 * @param name
+	 *            the name of the variant (used in messages)
+	 * @param source
+	 *            the source code of the variant
+	 * @return the variant compiled (to be released with {@link #release(Object, Object)})
+	 * @throws RendererException
+	 *             if any errors occur
+	 */
+	public synchronized V acquire(final C context, final String name, final K source) throws RendererException {
+		Objects.requireNonNull(context, "Context must not be null");
+		Objects.requireNonNull(name, "Name must not be null");
+		Objects.requireNonNull(source, "Source must not be null");
+		Variant<V> variant = variants.get(source);
+		if (variant == null) {
+			variant = new Variant<V>(compile(context, name, source));
+			variants.put(source, variant);
+		} else {
+			LOGGER.info("Reusing compiled variant of " + name);
+		}
+		variant.references++;
+		return variant.variant;
+	}
+
+	/**
+	 * Release a variant. Variants no longer in use are destroyed once more than the maximum number of idle variants are kept.
+	 *
+	 * @param context
+	 *            the context to destroy variants in
+	 * @param variant
+	 *            the variant to release
+	 */
+	public synchronized void release(final C context, final V variant) {
+		Objects.requireNonNull(context, "Context must not be null");
+		Objects.requireNonNull(variant, "Variant must not be null");
+		Variant<V> released = null;
+		for (final Variant<V> cached : variants.values()) {
+			if (cached.variant.equals(variant)) {
+				released = cached;
+				break;
+			}
+		}
+		if (released == null) {
+			throw new IllegalArgumentException("Variant has not been acquired");
+		}
+		released.references--;
+		int idle = 0;
+		for (final Variant<V> cached : variants.values()) {
+			if (cached.references == 0) {
+				idle++;
+			}
+		}
+		for (final Iterator<Variant<V>> iterator = variants.values().iterator(); (idle > maxIdleVariants) && iterator.hasNext();) {
+			final Variant<V> cached = iterator.next();
+			if (cached.references == 0) {
+				iterator.remove();
+				destroy(context, cached.variant);
+				idle--;
+			}
+		}
+	}
+
+	/**
+	 * Destroy all variants, whether in use or not.
+	 *
+	 * @param context
+	 *            the context to destroy variants in
+	 */
+	public synchronized void clear(final C context) {
+		Objects.requireNonNull(context, "Context must not be null");
+		for (final Variant<V> variant : variants.values()) {
+			destroy(context, variant.variant);
+		}
+		variants.clear();
+	}
+
+	/**
+	 * Compile a variant.
+	 *
+	 * @param context
+	 *            the context to compile the variant in
+	 * @param name
+	 *            the name of the variant (used in messages)
+	 * @param source
+	 *            the source code of the variant
+	 * @return the variant compiled
+	 * @throws RendererException
+	 *             if any errors occur
+	 */
+	protected abstract V compile(C context, String name, K source) throws RendererException;
+
+	/**
+	 * Destroy a variant.
+	 *
+	 * @param context
+	 *            the context to destroy the variant in
+	 * @param variant
+	 *            the variant to destroy
+	 */
+	protected abstract void destroy(C context, V variant);
+}
@@ -0,0 +1,136 @@
+package gr.uoa.di.thanos.botcraft.renderers;
+
+import gr.uoa.di.thanos.botcraft.game.Map;
+
+import java.util.Arrays;
+
+/**
+ * A Java compute backend calculating a band of rows in passes over flat arrays of primitives: the altitudes of the tiles of the band (and one more tile on each side) are copied once, then the positions of all vertices of the band (and one more vertex on each side) are calculated, then their normals, then the triangles of the tiles. Unlike calculating each tile independently, vertices shared between tiles are calculated once. Each kind of vertex (tile centers, between two tiles and between four tiles) and each face of the normals is calculated by a loop of its own, so the inner loops have no branches and run over consecutive elements of separate coordinate arrays, which the JIT compiler can unroll and vectorize.
+ * 
+ * @author thanos
+ */
+public class VectorizedComputeBackend extends JavaComputeBackend {
+	private static final String NAME = "Java vectorized";
+
+	/**
+	 * Construct a new Java vectorized compute backend.
+	 * 
+	 * @param map
+	 *            the map whose terrain to calculate
+	 * @param maxTiles
+	 *            the maximum number of tiles calculated at once
+	 * @param position
+	 *            the OpenGL vertex buffer to upload the positions of the vertices to
+	 * @param normal
+	 *            the OpenGL vertex buffer to upload the normals of the vertices to
+	 * @param texture
+	 *            the OpenGL vertex buffer to upload the texture coordinates of the vertices to
+	 */
+	public VectorizedComputeBackend(final Map map, final int maxTiles, final int position, final int normal, final int texture) {
+		super(map, maxTiles, position, normal, texture);
+	}
+
+	private static void calculateNormals(final float[] xs, final float[] ys, final float[] zs, final int first, final int last, final int stride, final boolean fourFaces, final float[] nxs, final float[] nys, final float[] nzs) { // every other vertex from first to last, normals must be zero
+		if (fourFaces) { // only the faces averaged are calculated, the other ones are not needed
+			addFaceNormals(xs, ys, zs, first, last, 1, stride, nxs, nys, nzs);
+			addFaceNormals(xs, ys, zs, first, last, -stride, 1, nxs, nys, nzs);
+			addFaceNormals(xs, ys, zs, first, last, -1, -stride, nxs, nys, nzs);
+			addFaceNormals(xs, ys, zs, first, last, stride, -1, nxs, nys, nzs);
+		} else {
+			addFaceNormals(xs, ys, zs, first, last, stride + 1, stride, nxs, nys, nzs);
+			addFaceNormals(xs, ys, zs, first, last, 1, stride + 1, nxs, nys, nzs);
+			addFaceNormals(xs, ys, zs, first, last, -stride + 1, 1, nxs, nys, nzs);
+			addFaceNormals(xs, ys, zs, first, last, -stride, -stride + 1, nxs, nys, nzs);
+			addFaceNormals(xs, ys, zs, first, last, -stride - 1, -stride, nxs, nys, nzs);
+			addFaceNormals(xs, ys, zs, first, last, -1, -stride - 1, nxs, nys, nzs);
+			addFaceNormals(xs, ys, zs, first, last, stride - 1, -1, nxs, nys, nzs);
+			addFaceNormals(xs, ys, zs, first, last, stride, stride - 1, nxs, nys, nzs);
+		}
+		for (int vertex = first; vertex <= last; vertex += 2) {
+			normalize(vertex, nxs, nys, nzs);
+		}
+	}
+
+	private static void addFaceNormals(final float[] xs, final float[] ys, final float[] zs, final int first, final int last, final int firstNeighbor, final int secondNeighbor, final float[] nxs, final float[] nys, final float[] nzs) {
+		for (int vertex = first; vertex <= last; vertex += 2) {
+			addFaceNormal(xs, ys, zs, vertex, firstNeighbor, secondNeighbor, nxs, nys, nzs);
+		}
+	}
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	protected void calculateTerrain(final TerrainChunk chunk, final int firstRow, final int lastRow) {
+		final int firstLat = 2 * (chunk.getLatitude() + firstRow) - 1; // always odd, so even rows of the arrays are tile centers
+		final int firstLng = 2 * chunk.getLongitude() - 1; // always odd, so even columns of the arrays are tile centers
+		final int rows = 2 * (lastRow - firstRow) + 3;
+		final int stride = 2 * chunk.getLongitudinalSize() + 3;
+		final int tileRows = lastRow - firstRow + 2;
+		final int tileStride = chunk.getLongitudinalSize() + 2;
+		final float[] altitudes = new float[tileRows * tileStride];
+		final float[] xs = new float[rows * stride];
+		final float[] ys = new float[rows * stride];
+		final float[] zs = new float[rows * stride];
+		final float[] nxs = new float[rows * stride];
+		final float[] nys = new float[rows * stride];
+		final float[] nzs = new float[rows * stride];
+		chunk.getAltitudes(chunk.getLatitude() + firstRow - 1, chunk.getLongitude() - 1, tileRows, tileStride, altitudes);
+		for (int j = 0; j < stride; j++) { // x only depends on the column
+			xs[j] = chunk.getVertexX(firstLng + j);
+		}
+		for (int i = 0; i < rows; i++) {
+			System.arraycopy(xs, 0, xs, i * stride, stride);
+			Arrays.fill(zs, i * stride, (i + 1) * stride, chunk.getVertexZ(firstLat + i)); // z only depends on the row
+		}
+		for (int i = 0; i < rows; i += 2) { // rows of tile centers
+			final int vertex = i * stride;
+			final int tile = (i / 2) * tileStride;
+			for (int k = 0; k < tileStride; k++) { // vertices in the center of a tile
+				ys[vertex + 2 * k] = altitudes[tile + k];
+			}
+			for (int k = 0; k < tileStride - 1; k++) { // vertices between two tiles longitudinally
+				ys[vertex + 2 * k + 1] = (altitudes[tile + k + 1] + altitudes[tile + k]) / 2.0f;
+			}
+		}
+		for (int i = 1; i < rows; i += 2) { // rows between tiles
+			final int vertex = i * stride;
+			final int south = ((i - 1) / 2) * tileStride;
+			final int north = south + tileStride;
+			for (int k = 0; k < tileStride; k++) { // vertices between two tiles latitudinally
+				ys[vertex + 2 * k] = (altitudes[north + k] + altitudes[south + k]) / 2.0f;
+			}
+			for (int k = 0; k < tileStride - 1; k++) { // vertices between four tiles
+				ys[vertex + 2 * k + 1] = (altitudes[north + k + 1] + altitudes[south + k + 1] + altitudes[south + k] + altitudes[north + k]) / 4.0f;
+			}
+		}
+		// vertices outside the map are clamped to its edges, so that faces on the edges are degenerate
+		if (firstLng < 0) {
+			for (int i = 0; i < rows; i++) {
+				ys[i * stride] = ys[i * stride + 1];
+			}
+		}
+		if (firstLng + stride - 1 > 2 * chunk.getMapLongitudinalSize()) {
+			for (int i = 0; i < rows; i++) {
+				ys[i * stride + stride - 1] = ys[i * stride + stride - 2];
+			}
+		}
+		if (firstLat < 0) {
+			System.arraycopy(ys, stride, ys, 0, stride);
+		}
+		if (firstLat + rows - 1 > 2 * chunk.getMapLatitudinalSize()) {
+			System.arraycopy(ys, (rows - 2) * stride, ys, (rows - 1) * stride, stride);
+		}
+		for (int i = 1; i < rows - 1; i++) { // vertices shared by four and eight faces alternate along a row
+			calculateNormals(xs, ys, zs, i * stride + 1, i * stride + stride - 2, stride, i % 2 == 0, nxs, nys, nzs);
+			calculateNormals(xs, ys, zs, i * stride + 2, i * stride + stride - 3, stride, i % 2 == 1, nxs, nys, nzs);
+		}
+		for (int row = firstRow; row < lastRow; row++) {
+			for (int column = 0; column < chunk.getLongitudinalSize(); column++) {
+				chunk.storeTile(row * chunk.getLongitudinalSize() + column, xs, ys, zs, nxs, nys, nzs, (2 * (row - firstRow) + 1) * stride + 2 * column + 1, stride);
+			}
+		}
+	}
+}
@@ -1,28 +1,191 @@
-void calculatePositions(int latitudinalSize, int longitudinalSize, constant float* altitudes, global float* positions, int lat, int lng);
-void calculateNormals(int latitudinalSize, int longitudinalSize, global float* positions, global float* normals, int lat, int lng);
-void loadPositionVertexBuffer(int latitudinalSize, int longitudinalSize, global float* positions, global float* positionVertexBuffer, int lat, int lng);
-float getAltitude(int latitudinalSize, int longitudinalSize, constant float* altitudes, int lat, int lng);
-float3 getPosition(int latitudinalSize, int longitudinalSize, global float* positions, int lat, int lng);
+/*
+ * Map dimensions (and, unless streaming, the chunk being the whole map) may be defined at compile time, replacing the corresponding kernel arguments, so that index arithmetic is strength reduced and clamping is folded by the compiler. Arguments are kept so that the same host code drives every variant.
+ */
+#ifdef MAP_LATITUDINAL_SIZE
+#define SPECIALIZE_MAP(latitudinalSize, longitudinalSize) latitudinalSize = MAP_LATITUDINAL_SIZE; longitudinalSize = MAP_LONGITUDINAL_SIZE
+#else
+#define SPECIALIZE_MAP(latitudinalSize, longitudinalSize)
+#endif
+#ifdef RESIDENT
+#define SPECIALIZE_CHUNK(chunk, latitudinalSize, longitudinalSize) chunk = (int4) (0, 0, latitudinalSize, longitudinalSize)
+#else
+#define SPECIALIZE_CHUNK(chunk, latitudinalSize, longitudinalSize)
+#endif
 
-kernel void calculatePositionsAndNormals(int latitudinalSize, int longitudinalSize, constant float* altitudes, global float* positions, global float* normals) {
+void storePosition(int latitudinalSize, int longitudinalSize, global const float* altitudes, global float* positions, int lat, int lng);
+void storeNormal(int latitudinalSize, int longitudinalSize, global float* positions, global float* normals, int lat, int lng);
+float3 calculatePosition(int lat, int lng, float altitude, float altitudeNorth, float altitudeNortheast, float altitudeEast, float altitudeSoutheast, float altitudeSouth, float altitudeSouthwest, float altitudeWest, float altitudeNorthwest);
+float3 calculateNormal(int lat, int lng, float3 position, float3 positionNorth, float3 positionNortheast, float3 positionEast, float3 positionSoutheast, float3 positionSouth, float3 positionSouthwest, float3 positionWest, float3 positionNorthwest);
+void loadPositionVertexBuffer(int latitudinalSize, int longitudinalSize, global float* positions, int4 window, global float* positionVertexBuffer, int4 chunk, int lat, int lng);
+float getAltitude(int latitudinalSize, int longitudinalSize, global const float* altitudes, int lat, int lng);
+float3 getPosition(int latitudinalSize, int longitudinalSize, global float* positions, int4 window, int lat, int lng);
+bool isInWindow(int4 window, int lat, int lng);
+int getWindowIndex(int4 window, int lat, int lng);
+float3 getTileVertexPosition(local float* tile, int tileLatitude, int tileLongitude, int tileLongitudinalSize, int latitudinalSize, int longitudinalSize, int lat, int lng);
+void storeTriangle(global float* positionVertexBuffer, global float* normalVertexBuffer, global float* textureVertexBuffer, int index, float3* positions, float3* normals, int vertex1, int vertex2, int vertex3);
+float getTileAltitude(local float* tile, int tileLatitude, int tileLongitude, int tileLongitudinalSize, int lat, int lng);
+float3 getTilePosition(local float* tile, int tileLatitude, int tileLongitude, int tileLongitudinalSize, int lat, int lng);
+
+/*
+ * Calculates positions and normals in a single pass. Normals may read positions calculated by other work groups, which a memory fence does not synchronize, so this kernel is only kept as a reference for calculatePositions and calculateNormals.
+ */
+kernel void calculatePositionsAndNormals(int latitudinalSize, int longitudinalSize, global const float* altitudes, global float* positions, global float* normals) {
+	SPECIALIZE_MAP(latitudinalSize, longitudinalSize);
 	int lat = get_global_id(LATITUDE);
 	int lng = get_global_id(LONGITUDE);
 	if ((lat < 2 * latitudinalSize + 1) && (lng < 2 * longitudinalSize + 1)) {
-		calculatePositions(latitudinalSize, longitudinalSize, altitudes, positions, lat, lng);
+		storePosition(latitudinalSize, longitudinalSize, altitudes, positions, lat, lng);
 		mem_fence(CLK_GLOBAL_MEM_FENCE);
-		calculateNormals(latitudinalSize, longitudinalSize, positions, normals, lat, lng);
+		storeNormal(latitudinalSize, longitudinalSize, positions, normals, lat, lng);
+	}
+}
+
+/*
+ * Positions and normals are stored for a window of the 2 * latitudinalSize + 1 by 2 * longitudinalSize + 1 grid of vertices, starting at vertex (windowLatitude, windowLongitude) and spanning windowLatitudinalSize by windowLongitudinalSize vertices, so that a map may be calculated either at once or chunk by chunk through a fixed size scratch buffer.
+ */
+
+/*
+ * Calculates positions of the vertices of the window, caching the altitudes used by a work group (the tiles covered by the work group and one more tile on each side) in local memory of get_local_size(LATITUDE) / 2 + 3 by get_local_size(LONGITUDE) / 2 + 3 floats.
+ */
+kernel void calculatePositions(int latitudinalSize, int longitudinalSize, global const float* altitudes, global float* positions, int windowLatitude, int windowLongitude, int windowLatitudinalSize, int windowLongitudinalSize, local float* tile) {
+	SPECIALIZE_MAP(latitudinalSize, longitudinalSize);
+	int4 window = (int4) (windowLatitude, windowLongitude, windowLatitudinalSize, windowLongitudinalSize);
+	int lat = get_global_id(LATITUDE);
+	int lng = get_global_id(LONGITUDE);
+	int tileLatitude = (lat - (int) get_local_id(LATITUDE)) / 2 - 1;
+	int tileLongitude = (lng - (int) get_local_id(LONGITUDE)) / 2 - 1;
+	int tileLatitudinalSize = get_local_size(LATITUDE) / 2 + 3;
+	int tileLongitudinalSize = get_local_size(LONGITUDE) / 2 + 3;
+	for (int i = get_local_id(LATITUDE); i < tileLatitudinalSize; i += get_local_size(LATITUDE)) {
+		for (int j = get_local_id(LONGITUDE); j < tileLongitudinalSize; j += get_local_size(LONGITUDE)) {
+			tile[i * tileLongitudinalSize + j] = getAltitude(latitudinalSize, longitudinalSize, altitudes, tileLatitude + i, tileLongitude + j);
+		}
+	}
+	barrier(CLK_LOCAL_MEM_FENCE); // all work items, including the ones out of range, must reach the barrier
+	if (isInWindow(window, lat, lng)) {
+		int latitude = (lat - 1) / 2;
+		int latitudeNorth = lat / 2;
+		int latitudeSouth = lat / 2 - 1;
+		int longitude = (lng - 1) / 2;
+		int longitudeEast = lng / 2;
+		int longitudeWest = lng / 2 - 1;
+		float3 position = calculatePosition(lat, lng,
+				getTileAltitude(tile, tileLatitude, tileLongitude, tileLongitudinalSize, latitude, longitude),
+				getTileAltitude(tile, tileLatitude, tileLongitude, tileLongitudinalSize, latitudeNorth, longitude),
+				getTileAltitude(tile, tileLatitude, tileLongitude, tileLongitudinalSize, latitudeNorth, longitudeEast),
+				getTileAltitude(tile, tileLatitude, tileLongitude, tileLongitudinalSize, latitude, longitudeEast),
+				getTileAltitude(tile, tileLatitude, tileLongitude, tileLongitudinalSize, latitudeSouth, longitudeEast),
+				getTileAltitude(tile, tileLatitude, tileLongitude, tileLongitudinalSize, latitudeSouth, longitude),
+				getTileAltitude(tile, tileLatitude, tileLongitude, tileLongitudinalSize, latitudeSouth, longitudeWest),
+				getTileAltitude(tile, tileLatitude, tileLongitude, tileLongitudinalSize, latitude, longitudeWest),
+				getTileAltitude(tile, tileLatitude, tileLongitude, tileLongitudinalSize, latitudeNorth, longitudeWest));
+		vstore3(position, getWindowIndex(window, lat, lng), positions);
 	}
 }
 
-kernel void loadVertexBuffers(int latitudinalSize, int longitudinalSize, global float* positions, global float* positionVertexBuffer) {
+/*
+ * Calculates normals of the vertices of the window, caching the positions used by a work group (the positions covered by the work group and one more position on each side) in local memory of get_local_size(LATITUDE) + 2 by get_local_size(LONGITUDE) + 2 float3s. Must run after calculatePositions has completed for all work groups.
+ */
+kernel void calculateNormals(int latitudinalSize, int longitudinalSize, global float* positions, global float* normals, int windowLatitude, int windowLongitude, int windowLatitudinalSize, int windowLongitudinalSize, local float* tile) {
+	SPECIALIZE_MAP(latitudinalSize, longitudinalSize);
+	int4 window = (int4) (windowLatitude, windowLongitude, windowLatitudinalSize, windowLongitudinalSize);
 	int lat = get_global_id(LATITUDE);
 	int lng = get_global_id(LONGITUDE);
-	if ((lat < latitudinalSize) && (lng < longitudinalSize)) {
-		loadPositionVertexBuffer(latitudinalSize, longitudinalSize, positions, positionVertexBuffer, lat, lng);
+	int tileLatitude = lat - (int) get_local_id(LATITUDE) - 1;
+	int tileLongitude = lng - (int) get_local_id(LONGITUDE) - 1;
+	int tileLatitudinalSize = get_local_size(LATITUDE) + 2;
+	int tileLongitudinalSize = get_local_size(LONGITUDE) + 2;
+	for (int i = get_local_id(LATITUDE); i < tileLatitudinalSize; i += get_local_size(LATITUDE)) {
+		for (int j = get_local_id(LONGITUDE); j < tileLongitudinalSize; j += get_local_size(LONGITUDE)) {
+			vstore3(getPosition(latitudinalSize, longitudinalSize, positions, window, tileLatitude + i, tileLongitude + j), i * tileLongitudinalSize + j, tile);
+		}
+	}
+	barrier(CLK_LOCAL_MEM_FENCE); // all work items, including the ones out of range, must reach the barrier
+	if (isInWindow(window, lat, lng)) {
+		float3 normal = calculateNormal(lat, lng,
+				getTilePosition(tile, tileLatitude, tileLongitude, tileLongitudinalSize, lat, lng),
+				getTilePosition(tile, tileLatitude, tileLongitude, tileLongitudinalSize, lat + 1, lng),
+				getTilePosition(tile, tileLatitude, tileLongitude, tileLongitudinalSize, lat + 1, lng + 1),
+				getTilePosition(tile, tileLatitude, tileLongitude, tileLongitudinalSize, lat, lng + 1),
+				getTilePosition(tile, tileLatitude, tileLongitude, tileLongitudinalSize, lat - 1, lng + 1),
+				getTilePosition(tile, tileLatitude, tileLongitude, tileLongitudinalSize, lat - 1, lng),
+				getTilePosition(tile, tileLatitude, tileLongitude, tileLongitudinalSize, lat - 1, lng - 1),
+				getTilePosition(tile, tileLatitude, tileLongitude, tileLongitudinalSize, lat, lng - 1),
+				getTilePosition(tile, tileLatitude, tileLongitude, tileLongitudinalSize, lat + 1, lng - 1));
+		vstore3(normal, getWindowIndex(window, lat, lng), normals);
 	}
 }
 
-void calculatePositions(int latitudinalSize, int longitudinalSize, constant float* altitudes, global float* positions, int lat, int lng) {
+/*
+ * Loads the vertex buffers of a chunk of chunkLatitudinalSize by chunkLongitudinalSize tiles starting at tile (chunkLatitude, chunkLongitude), whose vertices must be contained in the window.
+ */
+kernel void loadVertexBuffers(int latitudinalSize, int longitudinalSize, global float* positions, int windowLatitude, int windowLongitude, int windowLatitudinalSize, int windowLongitudinalSize, global float* positionVertexBuffer, int chunkLatitude, int chunkLongitude, int chunkLatitudinalSize, int chunkLongitudinalSize) {
+	SPECIALIZE_MAP(latitudinalSize, longitudinalSize);
+	int4 window = (int4) (windowLatitude, windowLongitude, windowLatitudinalSize, windowLongitudinalSize);
+	int4 chunk = (int4) (chunkLatitude, chunkLongitude, chunkLatitudinalSize, chunkLongitudinalSize);
+	int lat = get_global_id(LATITUDE);
+	int lng = get_global_id(LONGITUDE);
+	if (isInWindow(chunk, lat, lng)) {
+		loadPositionVertexBuffer(latitudinalSize, longitudinalSize, positions, window, positionVertexBuffer, chunk, lat, lng);
+	}
+}
+
+/*
+ * Calculates positions, normals and texture coordinates of the tiles of a chunk in a single pass, straight into the vertex buffers, caching the altitudes used by a work group (the tiles covered by the work group and one more tile on each side) in local memory of get_local_size(LATITUDE) + 2 by get_local_size(LONGITUDE) + 2 floats. Each work item calculates the positions of the vertices of its tile and of one more vertex on each side (which only depend on the altitudes of its tile and the tiles around it) instead of reading them from global memory.
+ */
+kernel void calculateVertexBuffers(int latitudinalSize, int longitudinalSize, global const float* altitudes, global float* positionVertexBuffer, global float* normalVertexBuffer, global float* textureVertexBuffer, int chunkLatitude, int chunkLongitude, int chunkLatitudinalSize, int chunkLongitudinalSize, local float* tile) {
+	SPECIALIZE_MAP(latitudinalSize, longitudinalSize);
+	int4 chunk = (int4) (chunkLatitude, chunkLongitude, chunkLatitudinalSize, chunkLongitudinalSize);
+	SPECIALIZE_CHUNK(chunk, latitudinalSize, longitudinalSize);
+	int lat = get_global_id(LATITUDE);
+	int lng = get_global_id(LONGITUDE);
+	int tileLatitude = lat - (int) get_local_id(LATITUDE) - 1;
+	int tileLongitude = lng - (int) get_local_id(LONGITUDE) - 1;
+	int tileLatitudinalSize = get_local_size(LATITUDE) + 2;
+	int tileLongitudinalSize = get_local_size(LONGITUDE) + 2;
+	for (int i = get_local_id(LATITUDE); i < tileLatitudinalSize; i += get_local_size(LATITUDE)) {
+		for (int j = get_local_id(LONGITUDE); j < tileLongitudinalSize; j += get_local_size(LONGITUDE)) {
+			tile[i * tileLongitudinalSize + j] = getAltitude(latitudinalSize, longitudinalSize, altitudes, tileLatitude + i, tileLongitude + j);
+		}
+	}
+	barrier(CLK_LOCAL_MEM_FENCE); // all work items, including the ones out of range, must reach the barrier
+	if (isInWindow(chunk, lat, lng)) {
+		float3 positions[25]; // vertices 2 * lat - 1 to 2 * lat + 3 by 2 * lng - 1 to 2 * lng + 3
+		for (int i = 0; i < 5; i++) {
+			for (int j = 0; j < 5; j++) {
+				positions[i * 5 + j] = getTileVertexPosition(tile, tileLatitude, tileLongitude, tileLongitudinalSize, latitudinalSize, longitudinalSize, 2 * lat - 1 + i, 2 * lng - 1 + j);
+			}
+		}
+		float3 tilePositions[9]; // vertices 2 * lat to 2 * lat + 2 by 2 * lng to 2 * lng + 2
+		float3 tileNormals[9];
+		for (int i = 0; i < 3; i++) {
+			for (int j = 0; j < 3; j++) {
+				tilePositions[i * 3 + j] = positions[(i + 1) * 5 + (j + 1)];
+				tileNormals[i * 3 + j] = calculateNormal(2 * lat + i, 2 * lng + j, positions[(i + 1) * 5 + (j + 1)],
+						positions[(i + 2) * 5 + (j + 1)],
+						positions[(i + 2) * 5 + (j + 2)],
+						positions[(i + 1) * 5 + (j + 2)],
+						positions[i * 5 + (j + 2)],
+						positions[i * 5 + (j + 1)],
+						positions[i * 5 + j],
+						positions[(i + 1) * 5 + j],
+						positions[(i + 2) * 5 + j]);
+			}
+		}
+		// vertices of the tile by direction: southwest 0, south 1, southeast 2, west 3, center 4, east 5, northwest 6, north 7, northeast 8
+		int offset = ((lat - chunk.s0) * chunk.s3 + (lng - chunk.s1)) * DIRECTIONS * TRIANGLE_VERTICES; // tiles of the chunk are stored contiguously
+		storeTriangle(positionVertexBuffer, normalVertexBuffer, textureVertexBuffer, offset + NORTH * TRIANGLE_VERTICES, tilePositions, tileNormals, 7, 4, 8);
+		storeTriangle(positionVertexBuffer, normalVertexBuffer, textureVertexBuffer, offset + NORTHEAST * TRIANGLE_VERTICES, tilePositions, tileNormals, 8, 4, 5);
+		storeTriangle(positionVertexBuffer, normalVertexBuffer, textureVertexBuffer, offset + EAST * TRIANGLE_VERTICES, tilePositions, tileNormals, 5, 4, 2);
+		storeTriangle(positionVertexBuffer, normalVertexBuffer, textureVertexBuffer, offset + SOUTHEAST * TRIANGLE_VERTICES, tilePositions, tileNormals, 2, 4, 1);
+		storeTriangle(positionVertexBuffer, normalVertexBuffer, textureVertexBuffer, offset + SOUTH * TRIANGLE_VERTICES, tilePositions, tileNormals, 1, 4, 0);
+		storeTriangle(positionVertexBuffer, normalVertexBuffer, textureVertexBuffer, offset + SOUTHWEST * TRIANGLE_VERTICES, tilePositions, tileNormals, 0, 4, 3);
+		storeTriangle(positionVertexBuffer, normalVertexBuffer, textureVertexBuffer, offset + WEST * TRIANGLE_VERTICES, tilePositions, tileNormals, 3, 4, 6);
+		storeTriangle(positionVertexBuffer, normalVertexBuffer, textureVertexBuffer, offset + NORTHWEST * TRIANGLE_VERTICES, tilePositions, tileNormals, 6, 4, 7);
+	}
+}
+
+void storePosition(int latitudinalSize, int longitudinalSize, global const float* altitudes, global float* positions, int lat, int lng) {
 	int latitude = (lat - 1) / 2;
 	int latitudeNorth = lat / 2;
 	int latitudeSouth = lat / 2 - 1;
@@ -38,33 +201,40 @@ void calculatePositions(int latitudinalSize, int longitudinalSize, constant floa
 	float altitudeSouthwest = getAltitude(latitudinalSize, longitudinalSize, altitudes, latitudeSouth, longitudeWest);
 	float altitudeWest = getAltitude(latitudinalSize, longitudinalSize, altitudes, latitude, longitudeWest);
 	float altitudeNorthwest = getAltitude(latitudinalSize, longitudinalSize, altitudes, latitudeNorth, longitudeWest);
-	float3 centerPosition = (float3) (longitude + 0.5f, altitude, -latitude - 0.5f);
-	float3 latitudinalPosition = (float3) (longitude + 0.5f, (altitudeNorth + altitudeSouth) / 2.0f, -latitudeNorth);
-	float3 longitudinalPosition = (float3) (longitudeEast, (altitudeEast + altitudeWest) / 2.0f, -latitude - 0.5f);
-	float3 latitudinalLongitudinalPosition = (float3) (longitudeEast, (altitudeNortheast + altitudeSoutheast + altitudeSouthwest + altitudeNorthwest) / 4.0f, -latitudeNorth);
-	int vertex = lat * (2 * longitudinalSize + 1) + lng;
+	vstore3(calculatePosition(lat, lng, altitude, altitudeNorth, altitudeNortheast, altitudeEast, altitudeSoutheast, altitudeSouth, altitudeSouthwest, altitudeWest, altitudeNorthwest), lat * (2 * longitudinalSize + 1) + lng, positions);
+}
+
+void storeNormal(int latitudinalSize, int longitudinalSize, global float* positions, global float* normals, int lat, int lng) {
+	int4 window = (int4) (0, 0, 2 * latitudinalSize + 1, 2 * longitudinalSize + 1);
+	float3 position = getPosition(latitudinalSize, longitudinalSize, positions, window, lat, lng);
+	float3 positionNorth = getPosition(latitudinalSize, longitudinalSize, positions, window, lat + 1, lng);
+	float3 positionNortheast = getPosition(latitudinalSize, longitudinalSize, positions, window, lat + 1, lng + 1);
+	float3 positionEast = getPosition(latitudinalSize, longitudinalSize, positions, window, lat, lng + 1);
+	float3 positionSoutheast = getPosition(latitudinalSize, longitudinalSize, positions, window, lat -1, lng + 1);
+	float3 positionSouth = getPosition(latitudinalSize, longitudinalSize, positions, window, lat - 1, lng);
+	float3 positionSouthwest = getPosition(latitudinalSize, longitudinalSize, positions, window, lat - 1, lng - 1);
+	float3 positionWest = getPosition(latitudinalSize, longitudinalSize, positions, window, lat, lng - 1);
+	float3 positionNorthwest = getPosition(latitudinalSize, longitudinalSize, positions, window, lat + 1, lng -1);
+	vstore3(calculateNormal(lat, lng, position, positionNorth, positionNortheast, positionEast, positionSoutheast, positionSouth, positionSouthwest, positionWest, positionNorthwest), lat * (2 * longitudinalSize + 1) + lng, normals);
+}
+
+float3 calculatePosition(int lat, int lng, float altitude, float altitudeNorth, float altitudeNortheast, float altitudeEast, float altitudeSoutheast, float altitudeSouth, float altitudeSouthwest, float altitudeWest, float altitudeNorthwest) {
+	int latitude = (lat - 1) / 2;
+	int latitudeNorth = lat / 2;
+	int longitude = (lng - 1) / 2;
+	int longitudeEast = lng / 2;
 	if ((lat % 2 == 0) && (lng % 2 == 0)) { // vertex between four tiles both latitudinally and longitudinally
-		vstore3(latitudinalLongitudinalPosition, vertex, positions);
+		return (float3) (longitudeEast, (altitudeNortheast + altitudeSoutheast + altitudeSouthwest + altitudeNorthwest) / 4.0f, -latitudeNorth);
 	} else if (lat % 2 == 0) { // vertex between two tiles latitudinally
-		vstore3(latitudinalPosition, vertex, positions);
+		return (float3) (longitude + 0.5f, (altitudeNorth + altitudeSouth) / 2.0f, -latitudeNorth);
 	} else if (lng % 2 == 0) { // vertex between two tiles longitudinally
-		vstore3(longitudinalPosition, vertex, positions);
+		return (float3) (longitudeEast, (altitudeEast + altitudeWest) / 2.0f, -latitude - 0.5f);
 	} else { // vertex in the center of the tile
-		vstore3(centerPosition, vertex, positions);
+		return (float3) (longitude + 0.5f, altitude, -latitude - 0.5f);
 	}
 }
 
-void calculateNormals(int latitudinalSize, int longitudinalSize, global float* positions, global float* normals, int lat, int lng) {
-	float3 position = getPosition(latitudinalSize, longitudinalSize, positions, lat, lng);
-	float3 positionNorth = getPosition(latitudinalSize, longitudinalSize, positions, lat + 1, lng);
-	float3 positionNortheast = getPosition(latitudinalSize, longitudinalSize, positions, lat + 1, lng + 1);
-	float3 positionEast = getPosition(latitudinalSize, longitudinalSize, positions, lat, lng + 1);
-	float3 positionSoutheast = getPosition(latitudinalSize, longitudinalSize, positions, lat -1, lng + 1);
-	float3 positionSouth = getPosition(latitudinalSize, longitudinalSize, positions, lat - 1, lng);
-	float3 positionSouthwest = getPosition(latitudinalSize, longitudinalSize, positions, lat - 1, lng - 1);
-	float3 positionWest = getPosition(latitudinalSize, longitudinalSize, positions, lat, lng - 1);
-	float3 positionNorthwest = getPosition(latitudinalSize, longitudinalSize, positions, lat + 1, lng -1);
-	int vertex = lat * (2 * longitudinalSize + 1) + lng;
+float3 calculateNormal(int lat, int lng, float3 position, float3 positionNorth, float3 positionNortheast, float3 positionEast, float3 positionSoutheast, float3 positionSouth, float3 positionSouthwest, float3 positionWest, float3 positionNorthwest) {
 	float3 normalNorthNortheast = normalize(cross(positionNortheast - position, positionNorth - position));
 	float3 normalNortheast = normalize(cross(positionEast - position, positionNorth - position));
 	float3 normalNortheastEast = normalize(cross(positionEast - position, positionNortheast - position));
@@ -79,26 +249,26 @@ void calculateNormals(int latitudinalSize, int longitudinalSize, global float* p
 	float3 normalNorthwestNorth = normalize(cross(positionNorth - position, positionNorthwest - position));
 	float3 normal4 = normalize((normalNortheast + normalSoutheast + normalSouthwest + normalNorthwest) / 4.0f); // normal between four faces
 	float3 normal8 = normalize((normalNorthNortheast + normalNortheastEast + normalEastSoutheast + normalSoutheastSouth + normalSouthSouthwest + normalSouthwestWest + normalWestNorthwest + normalNorthwestNorth) / 8.0f); // normal between eight faces
-	vstore3(((lat % 2 == 0) != (lng % 2 == 0)) ? normal4 : normal8, vertex, normals);
+	return ((lat % 2 == 0) != (lng % 2 == 0)) ? normal4 : normal8;
 }
 
-void loadPositionVertexBuffer(int latitudinalSize, int longitudinalSize, global float* positions, global float* positionVertexBuffer, int lat, int lng) {
+void loadPositionVertexBuffer(int latitudinalSize, int longitudinalSize, global float* positions, int4 window, global float* positionVertexBuffer, int4 chunk, int lat, int lng) {
 	int latitude = lat * 2 + 1;
 	int latitudeNorth = (lat + 1) * 2;
 	int latitudeSouth = lat * 2;
 	int longitude = lng * 2 + 1;
 	int longitudeEast = (lng + 1) * 2;
 	int longitudeWest = lng * 2;
-	float3 positionCenter = getPosition(latitudinalSize, longitudinalSize, positions, latitude, longitude);
-	float3 positionNorth = getPosition(latitudinalSize, longitudinalSize, positions, latitudeNorth, longitude);
-	float3 positionNortheast = getPosition(latitudinalSize, longitudinalSize, positions, latitudeNorth, longitudeEast);
-	float3 positionEast = getPosition(latitudinalSize, longitudinalSize, positions, latitude, longitudeEast);
-	float3 positionSoutheast = getPosition(latitudinalSize, longitudinalSize, positions, latitudeSouth, longitudeEast);
-	float3 positionSouth = getPosition(latitudinalSize, longitudinalSize, positions, latitudeSouth, longitude);
-	float3 positionSouthwest = getPosition(latitudinalSize, longitudinalSize, positions, latitudeSouth, longitudeWest);
-	float3 positionWest = getPosition(latitudinalSize, longitudinalSize, positions, latitude, longitudeWest);
-	float3 positionNorthwest = getPosition(latitudinalSize, longitudinalSize, positions, latitudeNorth, longitudeWest);
-	int offset = lat * longitudinalSize * DIRECTIONS * TRIANGLE_VERTICES + lng * DIRECTIONS * TRIANGLE_VERTICES;
+	float3 positionCenter = getPosition(latitudinalSize, longitudinalSize, positions, window, latitude, longitude);
+	float3 positionNorth = getPosition(latitudinalSize, longitudinalSize, positions, window, latitudeNorth, longitude);
+	float3 positionNortheast = getPosition(latitudinalSize, longitudinalSize, positions, window, latitudeNorth, longitudeEast);
+	float3 positionEast = getPosition(latitudinalSize, longitudinalSize, positions, window, latitude, longitudeEast);
+	float3 positionSoutheast = getPosition(latitudinalSize, longitudinalSize, positions, window, latitudeSouth, longitudeEast);
+	float3 positionSouth = getPosition(latitudinalSize, longitudinalSize, positions, window, latitudeSouth, longitude);
+	float3 positionSouthwest = getPosition(latitudinalSize, longitudinalSize, positions, window, latitudeSouth, longitudeWest);
+	float3 positionWest = getPosition(latitudinalSize, longitudinalSize, positions, window, latitude, longitudeWest);
+	float3 positionNorthwest = getPosition(latitudinalSize, longitudinalSize, positions, window, latitudeNorth, longitudeWest);
+	int offset = ((lat - chunk.s0) * chunk.s3 + (lng - chunk.s1)) * DIRECTIONS * TRIANGLE_VERTICES; // tiles of the chunk are stored contiguously
 	vstore3(positionNorth, offset + NORTH * TRIANGLE_VERTICES + V1, positionVertexBuffer);
 	vstore3(positionCenter, offset + NORTH * TRIANGLE_VERTICES + V2, positionVertexBuffer);
 	vstore3(positionNortheast, offset + NORTH * TRIANGLE_VERTICES + V3, positionVertexBuffer);
@@ -125,14 +295,65 @@ void loadPositionVertexBuffer(int latitudinalSize, int longitudinalSize, global
 	vstore3(positionNorth, offset + NORTHWEST * TRIANGLE_VERTICES + V3, positionVertexBuffer);
 }
 
-float getAltitude(int latitudinalSize, int longitudinalSize, constant float* altitudes, int lat, int lng) {
+float getAltitude(int latitudinalSize, int longitudinalSize, global const float* altitudes, int lat, int lng) {
 	lat = (lat < 0) ? 0 : ((lat < latitudinalSize) ? lat : (latitudinalSize - 1));
 	lng = (lng < 0) ? 0 : ((lng < longitudinalSize) ? lng : (longitudinalSize - 1));
 	return altitudes[lat * longitudinalSize + lng];
 }
 
-float3 getPosition(int latitudinalSize, int longitudinalSize, global float* positions, int lat, int lng) {
+float3 getPosition(int latitudinalSize, int longitudinalSize, global float* positions, int4 window, int lat, int lng) {
 	lat = (lat < 0) ? 0 : ((lat < 2 * latitudinalSize + 1) ? lat : (2 * latitudinalSize));
 	lng = (lng < 0) ? 0 : ((lng < 2 * longitudinalSize + 1) ? lng : (2 * longitudinalSize));
-	return vload3(lat * (longitudinalSize * 2 + 1) + lng, positions);
+	lat = clamp(lat, window.s0, window.s0 + window.s2 - 1); // only reached by work items whose results are discarded
+	lng = clamp(lng, window.s1, window.s1 + window.s3 - 1);
+	return vload3(getWindowIndex(window, lat, lng), positions);
+}
+
+float3 getTileVertexPosition(local float* tile, int tileLatitude, int tileLongitude, int tileLongitudinalSize, int latitudinalSize, int longitudinalSize, int lat, int lng) {
+	lat = (lat < 0) ? 0 : ((lat < 2 * latitudinalSize + 1) ? lat : (2 * latitudinalSize)); // as positions outside the map are clamped by getPosition
+	lng = (lng < 0) ? 0 : ((lng < 2 * longitudinalSize + 1) ? lng : (2 * longitudinalSize));
+	int latitude = (lat - 1) / 2;
+	int latitudeNorth = lat / 2;
+	int latitudeSouth = (lat % 2 == 0) ? (lat / 2 - 1) : latitude; // only used by even vertices, odd ones would read one row south of the tile
+	int longitude = (lng - 1) / 2;
+	int longitudeEast = lng / 2;
+	int longitudeWest = (lng % 2 == 0) ? (lng / 2 - 1) : longitude; // only used by even vertices, odd ones would read one column west of the tile
+	return calculatePosition(lat, lng,
+			getTileAltitude(tile, tileLatitude, tileLongitude, tileLongitudinalSize, latitude, longitude),
+			getTileAltitude(tile, tileLatitude, tileLongitude, tileLongitudinalSize, latitudeNorth, longitude),
+			getTileAltitude(tile, tileLatitude, tileLongitude, tileLongitudinalSize, latitudeNorth, longitudeEast),
+			getTileAltitude(tile, tileLatitude, tileLongitude, tileLongitudinalSize, latitude, longitudeEast),
+			getTileAltitude(tile, tileLatitude, tileLongitude, tileLongitudinalSize, latitudeSouth, longitudeEast),
+			getTileAltitude(tile, tileLatitude, tileLongitude, tileLongitudinalSize, latitudeSouth, longitude),
+			getTileAltitude(tile, tileLatitude, tileLongitude, tileLongitudinalSize, latitudeSouth, longitudeWest),
+			getTileAltitude(tile, tileLatitude, tileLongitude, tileLongitudinalSize, latitude, longitudeWest),
+			getTileAltitude(tile, tileLatitude, tileLongitude, tileLongitudinalSize, latitudeNorth, longitudeWest));
+}
+
+void storeTriangle(global float* positionVertexBuffer, global float* normalVertexBuffer, global float* textureVertexBuffer, int index, float3* positions, float3* normals, int vertex1, int vertex2, int vertex3) {
+	int vertices[TRIANGLE_VERTICES];
+	vertices[V1] = vertex1;
+	vertices[V2] = vertex2;
+	vertices[V3] = vertex3;
+	for (int i = 0; i < TRIANGLE_VERTICES; i++) {
+		vstore3(positions[vertices[i]], index + i, positionVertexBuffer);
+		vstore3(normals[vertices[i]], index + i, normalVertexBuffer);
+		vstore2((float2) (positions[vertices[i]].x, -positions[vertices[i]].z), index + i, textureVertexBuffer); // textures repeat once per tile
+	}
+}
+
+bool isInWindow(int4 window, int lat, int lng) {
+	return (lat >= window.s0) && (lat < window.s0 + window.s2) && (lng >= window.s1) && (lng < window.s1 + window.s3);
+}
+
+int getWindowIndex(int4 window, int lat, int lng) {
+	return (lat - window.s0) * window.s3 + (lng - window.s1);
+}
+
+float getTileAltitude(local float* tile, int tileLatitude, int tileLongitude, int tileLongitudinalSize, int lat, int lng) {
+	return tile[(lat - tileLatitude) * tileLongitudinalSize + (lng - tileLongitude)];
+}
+
+float3 getTilePosition(local float* tile, int tileLatitude, int tileLongitude, int tileLongitudinalSize, int lat, int lng) {
+	return vload3((lat - tileLatitude) * tileLongitudinalSize + (lng - tileLongitude), tile);
 }
@@ -0,0 +1,34 @@
+uniform sampler2D source;
+uniform vec2 inverseResolution;
+in vec2 _textureCoordinates;
+out vec4 color;
+
+const vec3 LUMA = vec3(0.299f, 0.587f, 0.114f);
+
+void main() {
+	vec3 rgbNW = texture(source, _textureCoordinates + vec2(-1.0f, -1.0f) * inverseResolution).rgb;
+	vec3 rgbNE = texture(source, _textureCoordinates + vec2(1.0f, -1.0f) * inverseResolution).rgb;
+	vec3 rgbSW = texture(source, _textureCoordinates + vec2(-1.0f, 1.0f) * inverseResolution).rgb;
+	vec3 rgbSE = texture(source, _textureCoordinates + vec2(1.0f, 1.0f) * inverseResolution).rgb;
+	vec3 rgbM = texture(source, _textureCoordinates).rgb;
+	float lumaNW = dot(rgbNW, LUMA);
+	float lumaNE = dot(rgbNE, LUMA);
+	float lumaSW = dot(rgbSW, LUMA);
+	float lumaSE = dot(rgbSE, LUMA);
+	float lumaM = dot(rgbM, LUMA);
+	float lumaMin = min(lumaM, min(min(lumaNW, lumaNE), min(lumaSW, lumaSE)));
+	float lumaMax = max(lumaM, max(max(lumaNW, lumaNE), max(lumaSW, lumaSE)));
+	if (lumaMax - lumaMin < max(FXAA_EDGE_THRESHOLD_MIN, lumaMax * FXAA_EDGE_THRESHOLD)) { // not an edge
+		color = vec4(rgbM, 1.0f);
+		return;
+	}
+	// blur along the edge, perpendicular to the luma gradient
+	vec2 direction = vec2(-((lumaNW + lumaNE) - (lumaSW + lumaSE)), (lumaNW + lumaSW) - (lumaNE + lumaSE));
+	float directionReduce = max((lumaNW + lumaNE + lumaSW + lumaSE) * (0.25f * FXAA_REDUCE_MUL), FXAA_REDUCE_MIN);
+	float inverseDirectionMin = 1.0f / (min(abs(direction.x), abs(direction.y)) + directionReduce);
+	direction = clamp(direction * inverseDirectionMin, vec2(-FXAA_SPAN_MAX), vec2(FXAA_SPAN_MAX)) * inverseResolution;
+	vec3 rgbA = 0.5f * (texture(source, _textureCoordinates + direction * (1.0f / 3.0f - 0.5f)).rgb + texture(source, _textureCoordinates + direction * (2.0f / 3.0f - 0.5f)).rgb);
+	vec3 rgbB = 0.5f * rgbA + 0.25f * (texture(source, _textureCoordinates - 0.5f * direction).rgb + texture(source, _textureCoordinates + 0.5f * direction).rgb);
+	float lumaB = dot(rgbB, LUMA);
+	color = vec4(((lumaB < lumaMin) || (lumaB > lumaMax)) ? rgbA : rgbB, 1.0f); // the wider blur crossed another edge
+}
@@ -1,7 +1,12 @@
 uniform sampler2D terrains[TERRAINS];
+in vec3 _normal;
 in vec2 _texture;
 out vec4 color;
 
+const vec3 LIGHT = vec3(0.0f, 0.8f, 0.6f); // unit vector towards the light
+const float AMBIENT = 0.3f;
+
 void main() {
-	color = texture(terrains[1], _texture);
+	float diffuse = max(dot(normalize(_normal), LIGHT), 0.0f);
+	color = vec4(texture(terrains[1], _texture).rgb * (AMBIENT + (1.0f - AMBIENT) * diffuse), 1.0f);
 }
@@ -0,0 +1,8 @@
+out vec2 _textureCoordinates;
+
+void main() {
+	// a single triangle covering the screen, (-1, -1), (3, -1) and (-1, 3) in counter clockwise order
+	vec2 position = vec2(float((gl_VertexID & 1) << 2) - 1.0f, float((gl_VertexID & 2) << 1) - 1.0f);
+	gl_Position = vec4(position, 0.0f, 1.0f);
+	_textureCoordinates = 0.5f * position + 0.5f;
+}